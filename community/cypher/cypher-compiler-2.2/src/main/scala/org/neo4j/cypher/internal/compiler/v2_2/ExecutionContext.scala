@@ -40,7 +40,8 @@ case class ExecutionContext(m: MutableMap[String, Any] = MutableMaps.empty,
 
   override def size = m.size
 
-  def ++(other: ExecutionContext): ExecutionContext = copy(m = m ++ other.m)
+  // Goes through the entries of the other row rather than its map, since rows that keep their values in slots have none
+  def ++(other: ExecutionContext): ExecutionContext = createWithNewMap(m.clone() ++= other)
 
   override def foreach[U](f: ((String, Any)) => U) {
     m.foreach(f)
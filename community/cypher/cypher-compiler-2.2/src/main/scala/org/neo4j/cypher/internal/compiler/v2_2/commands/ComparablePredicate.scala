@@ -28,10 +28,9 @@ import org.neo4j.graphdb.{Relationship, Node}
 abstract sealed class ComparablePredicate(left: Expression, right: Expression) extends Predicate with Comparer {
   def compare(comparisonResult: Int): Boolean
 
-  def isMatch(m: ExecutionContext)(implicit state: QueryState): Option[Boolean] = {
-    val l: Any = left(m)
-    val r: Any = right(m)
+  def isMatch(m: ExecutionContext)(implicit state: QueryState): Option[Boolean] = compareValues(left(m), right(m))
 
+  def compareValues(l: Any, r: Any)(implicit state: QueryState): Option[Boolean] = {
     if (l == null || r == null)
       return None
 
@@ -56,10 +55,9 @@ case class Equals(a: Expression, b: Expression) extends Predicate with Comparer
     else             None
   }
 
-  def isMatch(m: ExecutionContext)(implicit state: QueryState): Option[Boolean] = {
-    val a1 = a(m)
-    val b1 = b(m)
+  def isMatch(m: ExecutionContext)(implicit state: QueryState): Option[Boolean] = equalValues(a(m), b(m))
 
+  def equalValues(a1: Any, b1: Any)(implicit state: QueryState): Option[Boolean] =
     (a1, b1) match {
       case (null, _)                                             => None
       case (_, null)                                             => None
@@ -70,7 +68,6 @@ case class Equals(a: Expression, b: Expression) extends Predicate with Comparer
       case (l, r: Relationship) if !l.isInstanceOf[Relationship] => incomparable(l, r)
       case _                                                     => Some(a1 == b1)
     }
-  }
 
   private def incomparable(lhs: Any, rhs: Any)(implicit state: QueryState): Nothing =
     throw new IncomparableValuesException(textWithType(lhs), textWithType(rhs))
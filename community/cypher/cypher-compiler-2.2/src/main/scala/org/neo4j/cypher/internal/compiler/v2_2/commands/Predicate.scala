@@ -347,7 +347,9 @@ case class HasLabel(entity: Expression, label: KeyToken) extends Predicate {
 case class CoercedPredicate(inner:Expression) extends Predicate with CollectionSupport {
   def arguments = Seq(inner)
 
-  def isMatch(m: ExecutionContext)(implicit state: QueryState) = inner(m) match {
+  def isMatch(m: ExecutionContext)(implicit state: QueryState) = coerce(inner(m))
+
+  def coerce(value: Any): Option[Boolean] = value match {
     case x: Boolean         => Some(x)
     case null               => None
     case IsCollection(coll) => Some(coll.nonEmpty)
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.commands.compiled
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+import org.neo4j.cypher.internal.compiler.v2_2.ExecutionContext
+import org.neo4j.cypher.internal.compiler.v2_2.commands.Predicate
+import org.neo4j.cypher.internal.compiler.v2_2.commands.expressions.Expression
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.QueryState
+
+/*
+ * Interprets the inner predicate until it has been evaluated often enough for compiling it to pay off, and evaluates
+ * it with the class that the ExpressionCompiler generates for it once that is ready. The compiling happens in the
+ * background, and the predicate is interpreted in the meantime. A predicate that can not be compiled is interpreted for
+ * good.
+ */
+case class CompiledPredicate(inner: Predicate, threshold: Int = CompiledPredicate.DEFAULT_THRESHOLD) extends Predicate {
+
+  @volatile private var generated: GeneratedPredicate = null
+  private val compiling = new AtomicBoolean()
+  private var evaluations = 0
+
+  def isMatch(m: ExecutionContext)(implicit state: QueryState): Option[Boolean] = {
+    val code = generated
+    if (code != null)
+      CompiledSupport.fromTristate(code.isMatch(m, state))
+    else {
+      // Races only make us compile a little later
+      evaluations += 1
+      if (evaluations >= threshold && compiling.compareAndSet(false, true))
+        compile()
+      inner.isMatch(m)
+    }
+  }
+
+  private def compile() {
+    val queued = ExpressionCompiler.compileInBackground(inner) {
+      result => generated = result.getOrElse(new InterpretedPredicate(inner))
+    }
+    if (!queued) {
+      // Try again after another round of interpreting
+      evaluations = 0
+      compiling.set(false)
+    }
+  }
+
+  def isCompiled = generated match {
+    case null | _: InterpretedPredicate => false
+    case _                              => true
+  }
+
+  def rewrite(f: (Expression) => Expression) = f(CompiledPredicate(inner.rewriteAsPredicate(f), threshold))
+
+  def arguments = Seq(inner)
+
+  def containsIsNull = inner.containsIsNull
+
+  def symbolTableDependencies = inner.symbolTableDependencies
+
+  override def toString = inner.toString
+}
+
+object CompiledPredicate {
+  val DEFAULT_THRESHOLD = 1000
+}
+
+private class InterpretedPredicate(predicate: Predicate) extends GeneratedPredicate {
+  def isMatch(ctx: ExecutionContext, state: QueryState): Int = CompiledSupport.tristate(predicate.isMatch(ctx)(state))
+}
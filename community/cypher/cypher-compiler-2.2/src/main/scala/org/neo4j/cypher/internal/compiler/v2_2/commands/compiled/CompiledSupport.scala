@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.commands.compiled
+
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.QueryState
+import org.neo4j.cypher.internal.compiler.v2_2.{EntityNotFoundException, ExecutionContext}
+import org.neo4j.graphdb.NotFoundException
+
+/*
+ * The parts of the generated code that are easier to write in Scala. Everything here must behave exactly like the
+ * interpreted expressions do.
+ */
+object CompiledSupport {
+  final val TRUE = 1
+  final val FALSE = 0
+  final val NULL = -1
+
+  private val SOME_TRUE = Some(true)
+  private val SOME_FALSE = Some(false)
+
+  def tristate(result: Option[Boolean]): Int = result match {
+    case Some(true)  => TRUE
+    case Some(false) => FALSE
+    case None        => NULL
+  }
+
+  def fromTristate(result: Int): Option[Boolean] = result match {
+    case TRUE  => SOME_TRUE
+    case FALSE => SOME_FALSE
+    case _     => None
+  }
+
+  def identifier(ctx: ExecutionContext, name: String): Any =
+    ctx.getOrElse(name, throw new NotFoundException("Unknown identifier `%s`.".format(name)))
+
+  def nodeProperty(node: Long, propertyKeyId: Int, state: QueryState): Any = try {
+    state.query.nodeOps.getProperty(node, propertyKeyId)
+  } catch {
+    case _: EntityNotFoundException => null
+    case _: NotFoundException => null
+  }
+
+  def relationshipProperty(relationship: Long, propertyKeyId: Int, state: QueryState): Any = try {
+    state.query.relationshipOps.getProperty(relationship, propertyKeyId)
+  } catch {
+    case _: EntityNotFoundException => null
+    case _: NotFoundException => null
+  }
+}
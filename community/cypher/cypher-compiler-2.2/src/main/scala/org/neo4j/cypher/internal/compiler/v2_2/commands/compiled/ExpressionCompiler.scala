@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.commands.compiled
+
+import java.lang.reflect.Constructor
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.{ArrayBlockingQueue, RejectedExecutionException, ThreadPoolExecutor, TimeUnit}
+
+import org.neo4j.cypher.internal.LRUCache
+import org.neo4j.cypher.internal.compiler.v2_2.commands._
+import org.neo4j.cypher.internal.compiler.v2_2.commands.expressions._
+import org.neo4j.cypher.internal.compiler.v2_2.commands.values.KeyToken
+import org.neo4j.helpers.NamedThreadFactory
+
+import scala.collection.mutable.ArrayBuffer
+
+/*
+ * Compiles predicates into classes of their own, that evaluate them without going through the expression tree and
+ * boxing every intermediate value. Comparisons and arithmetic on two longs, two doubles or two strings are done on the
+ * values themselves, and properties with known keys are read straight from the QueryContext. Everything else is done
+ * by the expressions that the generated code comes from, so the answers are always the same as when interpreting.
+ *
+ * Literals, names and token ids are handed to the instances of the generated classes, so predicates that only differ in
+ * those share a class. Every class is loaded by a class loader of its own, so once it has been evicted from the cache and
+ * the predicates that use it are gone, it is unloaded.
+ *
+ * Running javac takes a while, so predicates are compiled on a thread in the background, and go on being interpreted
+ * until their class is ready.
+ */
+object ExpressionCompiler {
+
+  private val PACKAGE = "org.neo4j.cypher.internal.compiler.v2_2.commands.compiled"
+
+  private val javaCompiler = new InMemoryJavaCompiler(getClass.getClassLoader)
+  private val classes = new LRUCache[String, Option[Constructor[_]]](1000)
+  private val classIds = new AtomicLong()
+
+  // A single thread, with room for a few predicates to wait. Predicates that don't fit are interpreted a while longer.
+  private val compilations = {
+    val executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue[Runnable](100),
+      NamedThreadFactory.daemon("Cypher predicate compiler"))
+    executor.allowCoreThreadTimeOut(true)
+    executor
+  }
+
+  def isAvailable = javaCompiler.isAvailable
+
+  /*
+   * None when there is no compiler to compile with, or the generated code could not be compiled.
+   */
+  def compile(predicate: Predicate): Option[GeneratedPredicate] = {
+    if (!javaCompiler.isAvailable)
+      return None
+
+    val generator = new PredicateCodeGenerator
+    val body = generator.generate(predicate)
+    classes.getOrElseUpdate(body, compileClass(body)).map {
+      constructor => constructor.newInstance(Array[AnyRef](generator.constants): _*).asInstanceOf[GeneratedPredicate]
+    }
+  }
+
+  /*
+   * Compiles the predicate on the background thread, and hands what compile() answers to the callback there. False if
+   * too many predicates are waiting to be compiled already, and the callback will never be called.
+   */
+  def compileInBackground(predicate: Predicate)(callback: Option[GeneratedPredicate] => Unit): Boolean = try {
+    compilations.execute(new Runnable {
+      def run() {
+        callback(try { compile(predicate) } catch { case _: Exception => None })
+      }
+    })
+    true
+  } catch {
+    case _: RejectedExecutionException => false
+  }
+
+  private def compileClass(body: String): Option[Constructor[_]] = {
+    val className = "GeneratedPredicate" + classIds.incrementAndGet()
+    javaCompiler.compile(PACKAGE + "." + className, source(className, body)).map(_.getConstructor(classOf[Array[AnyRef]]))
+  }
+
+  private def source(className: String, body: String) = {
+    val header =
+      s"""package $PACKAGE;
+         |
+         |import org.neo4j.cypher.internal.compiler.v2_2.ExecutionContext;
+         |import org.neo4j.cypher.internal.compiler.v2_2.pipes.QueryState;
+         |import org.neo4j.graphdb.Node;
+         |import org.neo4j.graphdb.Relationship;
+         |
+         |public final class $className implements GeneratedPredicate
+         |{
+         |    private final Object[] c;
+         |
+         |    public $className( Object[] c )
+         |    {
+         |        this.c = c;
+         |    }
+         |
+         |    public int isMatch( ExecutionContext ctx, QueryState state )
+         |    {
+         |""".stripMargin
+    header + body + "    }\n}\n"
+  }
+}
+
+/*
+ * Generates the body of the isMatch method of a GeneratedPredicate. Every expression is evaluated into a local variable
+ * of its own, in the same order as the interpreter evaluates them. Predicates are evaluated into ints, like the
+ * GeneratedPredicate answers, and the other expressions into Objects.
+ */
+private class PredicateCodeGenerator {
+
+  private val code = new StringBuilder
+  private val values = new ArrayBuffer[AnyRef]
+  private var variables = 0
+
+  def constants: Array[AnyRef] = values.toArray
+
+  def generate(predicate: Predicate): String = {
+    val result = tristate(predicate)
+    line(s"return $result;")
+    code.toString()
+  }
+
+  private def tristate(predicate: Predicate): String = predicate match {
+    case True() =>
+      declare("int", "1")
+
+    case Not(a) =>
+      val v = tristate(a)
+      declare("int", s"$v == -1 ? -1 : 1 - $v")
+
+    case and: And =>
+      val (l, r) = (tristate(and.a), tristate(and.b))
+      declare("int", s"$l == 0 || $r == 0 ? 0 : ($l == -1 || $r == -1 ? -1 : 1)")
+
+    case Or(a, b) =>
+      val (l, r) = (tristate(a), tristate(b))
+      declare("int", s"$l == 1 || $r == 1 ? 1 : ($l == -1 || $r == -1 ? -1 : 0)")
+
+    case Xor(a, b) =>
+      val (l, r) = (tristate(a), tristate(b))
+      declare("int", s"$l == -1 || $r == -1 ? -1 : $l ^ $r")
+
+    case Ands(predicates) =>
+      shortCircuit(predicates, decisive = 0)
+
+    case Ors(predicates) =>
+      shortCircuit(predicates, decisive = 1)
+
+    case IsNull(expression) =>
+      val v = value(expression)
+      declare("int", s"$v == null ? 1 : 0")
+
+    case p@Equals(a, b) =>
+      val (l, r) = (value(a), value(b))
+      val result = declare("int", "-1")
+      line(s"if ($l == null || $r == null) { $result = -1; }")
+      line(s"else if ($l instanceof Long && $r instanceof Long) { $result = ${long(l)} == ${long(r)} ? 1 : 0; }")
+      // The same boxed NaN is equal to itself when interpreting, so the reference is compared too
+      line(s"else if ($l instanceof Double && $r instanceof Double) { $result = $l == $r || ${double(l)} == ${double(r)} ? 1 : 0; }")
+      line(s"else if ($l instanceof String && $r instanceof String) { $result = $l.equals($r) ? 1 : 0; }")
+      line(s"else { $result = CompiledSupport.tristate(${constant(p)}.equalValues($l, $r, state)); }")
+      result
+
+    case p@LessThan(a, b)           => comparison(p, a, b)
+    case p@LessThanOrEqual(a, b)    => comparison(p, a, b)
+    case p@GreaterThan(a, b)        => comparison(p, a, b)
+    case p@GreaterThanOrEqual(a, b) => comparison(p, a, b)
+
+    case p@CoercedPredicate(inner) =>
+      val v = value(inner)
+      val result = declare("int", "-1")
+      line(s"if ($v instanceof Boolean) { $result = ((Boolean) $v).booleanValue() ? 1 : 0; }")
+      line(s"else if ($v != null) { $result = CompiledSupport.tristate(${constant(p)}.coerce($v)); }")
+      result
+
+    case _ =>
+      declare("int", s"CompiledSupport.tristate(${constant(predicate, classOf[Predicate])}.isMatch(ctx, state))")
+  }
+
+  private def value(expression: Expression): String = expression match {
+    case Literal(v) =>
+      declare("Object", constant(v, classOf[Object]))
+
+    case Identifier(name) =>
+      declare("Object", s"CompiledSupport.identifier(ctx, ${constant(name)})")
+
+    case ParameterExpression(name) =>
+      declare("Object", s"state.getParam(${constant(name)})")
+
+    case p@Property(mapExpr, KeyToken.Resolved(_, propertyKeyId, _)) =>
+      val v = value(mapExpr)
+      val key = declare("int", s"${constant(Int.box(propertyKeyId))}.intValue()")
+      val result = declare("Object", "null")
+      line(s"if ($v instanceof Node) { $result = CompiledSupport.nodeProperty(((Node) $v).getId(), $key, state); }")
+      line(s"else if ($v instanceof Relationship) { $result = CompiledSupport.relationshipProperty(((Relationship) $v).getId(), $key, state); }")
+      line(s"else { $result = ${constant(p)}.propertyOf($v, state); }")
+      result
+
+    case p@Property(mapExpr, _) =>
+      val v = value(mapExpr)
+      declare("Object", s"${constant(p)}.propertyOf($v, state)")
+
+    case e@Add(a, b)      => arithmetic(e, a, b, "+", "add")
+    case e@Subtract(a, b) => arithmetic(e, a, b, "-", "compute")
+    case e@Multiply(a, b) => arithmetic(e, a, b, "*", "compute")
+
+    case p: Predicate =>
+      val v = tristate(p)
+      declare("Object", s"$v == -1 ? null : Boolean.valueOf($v == 1)")
+
+    case _ =>
+      declare("Object", s"${constant(expression, classOf[Expression])}.apply(ctx, state)")
+  }
+
+  private def comparison(p: ComparablePredicate, a: Expression, b: Expression): String = {
+    val (l, r) = (value(a), value(b))
+    val sign = p.sign
+    val result = declare("int", "-1")
+    line(s"if ($l == null || $r == null) { $result = -1; }")
+    line(s"else if ($l instanceof Long && $r instanceof Long) { $result = ${long(l)} $sign ${long(r)} ? 1 : 0; }")
+    line(s"else if ($l instanceof Double && $r instanceof Double) { $result = Double.compare(${double(l)}, ${double(r)}) $sign 0 ? 1 : 0; }")
+    line(s"else if ($l instanceof String && $r instanceof String) { $result = ((String) $l).compareTo((String) $r) $sign 0 ? 1 : 0; }")
+    line(s"else { $result = CompiledSupport.tristate(${constant(p, classOf[ComparablePredicate])}.compareValues($l, $r, state)); }")
+    result
+  }
+
+  private def arithmetic(e: Expression, a: Expression, b: Expression, operator: String, slowPath: String): String = {
+    val (l, r) = (value(a), value(b))
+    val result = declare("Object", "null")
+    line(s"if ($l instanceof Long && $r instanceof Long) { $result = Long.valueOf(${long(l)} $operator ${long(r)}); }")
+    line(s"else if ($l instanceof Double && $r instanceof Double) { $result = Double.valueOf(${double(l)} $operator ${double(r)}); }")
+    line(s"else { $result = ${constant(e)}.$slowPath($l, $r); }")
+    result
+  }
+
+  /*
+   * Until the first of the predicates that answers the decisive value, every predicate is evaluated, and if any of them
+   * answers null, so do all of them together. The ones after it are never evaluated.
+   */
+  private def shortCircuit(predicates: Seq[Predicate], decisive: Int): String = {
+    val result = declare("int", (1 - decisive).toString)
+    predicates.foreach {
+      predicate =>
+        val v = tristate(predicate)
+        line(s"if ($v == $decisive) { $result = $decisive; }")
+        line(s"else { if ($v == -1) { $result = -1; }")
+    }
+    line("}" * predicates.size)
+    result
+  }
+
+  private def long(v: String) = s"((Long) $v).longValue()"
+
+  private def double(v: String) = s"((Double) $v).doubleValue()"
+
+  private def constant(value: AnyRef): String = constant(value, value.getClass)
+
+  private def constant(value: Any, as: Class[_]): String = {
+    values += value.asInstanceOf[AnyRef]
+    s"((${as.getName}) c[${values.size - 1}])"
+  }
+
+  private def declare(javaType: String, initialValue: String): String = {
+    variables += 1
+    val name = "v" + variables
+    line(s"$javaType $name = $initialValue;")
+    name
+  }
+
+  private def line(statement: String) {
+    code.append("        ").append(statement).append('\n')
+  }
+}
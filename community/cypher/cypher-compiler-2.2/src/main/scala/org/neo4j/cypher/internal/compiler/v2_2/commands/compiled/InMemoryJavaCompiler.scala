@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.commands.compiled
+
+import java.io.{ByteArrayOutputStream, File}
+import java.net.{URI, URLClassLoader}
+import java.util.Arrays
+import javax.tools.JavaFileManager.Location
+import javax.tools.JavaFileObject.Kind
+import javax.tools._
+
+import scala.collection.mutable
+
+/*
+ * Compiles Java source in memory, with the compiler of the JDK that we run on, and loads each class in a class loader
+ * of its own, so that it can be collected once nobody uses it. There is no compiler when we run on a JRE, and then
+ * nothing gets compiled.
+ */
+class InMemoryJavaCompiler(parent: ClassLoader) {
+
+  private val compiler = ToolProvider.getSystemJavaCompiler
+
+  def isAvailable = compiler != null
+
+  def compile(className: String, source: String): Option[Class[_]] = {
+    if (compiler == null)
+      return None
+
+    val fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null))
+    try {
+      val options = Arrays.asList("-classpath", classPath, "-g:none")
+      val sources = Arrays.asList(new SourceFile(className, source))
+      val diagnostics = new DiagnosticCollector[JavaFileObject]
+      if (!compiler.getTask(null, fileManager, diagnostics, options, null, sources).call())
+        None
+      else
+        Some(new GeneratedClassLoader(fileManager.classes).loadClass(className))
+    } finally {
+      fileManager.close()
+    }
+  }
+
+  // The compiler must see the classes that the generated code uses, also when they were not loaded from the class path
+  private lazy val classPath = {
+    val loaders = Iterator.iterate(parent)(_.getParent).takeWhile(_ != null)
+    val files = loaders.flatMap {
+      case loader: URLClassLoader => loader.getURLs.filter(_.getProtocol == "file").map(url => new File(url.toURI).getPath)
+      case _                      => Nil
+    }
+    (files ++ Option(System.getProperty("java.class.path")).iterator).mkString(File.pathSeparator)
+  }
+
+  private class SourceFile(className: String, source: String)
+    extends SimpleJavaFileObject(URI.create("source:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE) {
+    override def getCharContent(ignoreEncodingErrors: Boolean): CharSequence = source
+  }
+
+  private class ClassFileManager(fileManager: StandardJavaFileManager)
+    extends ForwardingJavaFileManager[StandardJavaFileManager](fileManager) {
+    private val outputs = mutable.Map[String, ByteArrayOutputStream]()
+
+    def classes: Map[String, Array[Byte]] = outputs.mapValues(_.toByteArray).toMap
+
+    override def getJavaFileForOutput(location: Location, className: String, kind: Kind, sibling: FileObject): JavaFileObject =
+      new SimpleJavaFileObject(URI.create("class:///" + className.replace('.', '/') + kind.extension), kind) {
+        override def openOutputStream() = {
+          val output = new ByteArrayOutputStream()
+          outputs(className) = output
+          output
+        }
+      }
+  }
+
+  private class GeneratedClassLoader(classes: Map[String, Array[Byte]]) extends ClassLoader(parent) {
+    override protected def findClass(name: String): Class[_] = classes.get(name) match {
+      case Some(bytes) => defineClass(name, bytes, 0, bytes.length)
+      case None        => throw new ClassNotFoundException(name)
+    }
+  }
+}
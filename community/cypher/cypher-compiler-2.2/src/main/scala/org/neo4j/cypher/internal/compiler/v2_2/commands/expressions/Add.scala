@@ -25,10 +25,9 @@ import symbols._
 import org.neo4j.cypher.internal.helpers.{TypeSafeMathSupport, IsCollection}
 
 case class Add(a: Expression, b: Expression) extends Expression with TypeSafeMathSupport {
-  def apply(ctx: ExecutionContext)(implicit state: QueryState) = {
-    val aVal = a(ctx)
-    val bVal = b(ctx)
+  def apply(ctx: ExecutionContext)(implicit state: QueryState) = add(a(ctx), b(ctx))
 
+  def add(aVal: Any, bVal: Any): Any =
     (aVal, bVal) match {
       case (null, _)                          => null
       case (_, null)                          => null
@@ -41,7 +40,6 @@ case class Add(a: Expression, b: Expression) extends Expression with TypeSafeMat
       case (x: Number, y: String)             => x.toString + y
       case _                                  => throw new CypherTypeException("Don't know how to add `" + aVal.toString + "` and `" + bVal.toString + "`")
     }
-  }
 
   def rewrite(f: (Expression) => Expression) = f(Add(a.rewrite(f), b.rewrite(f)))
 
@@ -102,17 +102,15 @@ abstract class Arithmetics(left: Expression, right: Expression)
     throw new CypherTypeException("Don't know how to " + this + " `" + bVal + "` with `" + aVal + "`")
   }
 
-  def apply(ctx: ExecutionContext)(implicit state: QueryState) = {
-    val aVal = left(ctx)
-    val bVal = right(ctx)
+  def apply(ctx: ExecutionContext)(implicit state: QueryState) = compute(left(ctx), right(ctx))
 
+  def compute(aVal: Any, bVal: Any): Any =
     (aVal, bVal) match {
       case (null, _) => null
       case (_, null) => null
       case (x: Number, y: Number) => calc(x, y)
       case _ => throwTypeError(bVal, aVal)
     }
-  }
 
   def calc(a: Number, b: Number): Any
 
@@ -30,7 +30,9 @@ import org.neo4j.helpers.ThisShouldNotHappenError
 case class Property(mapExpr: Expression, propertyKey: KeyToken)
   extends Expression with Product with Serializable
 {
-  def apply(ctx: ExecutionContext)(implicit state: QueryState): Any = mapExpr(ctx) match {
+  def apply(ctx: ExecutionContext)(implicit state: QueryState): Any = propertyOf(mapExpr(ctx))
+
+  def propertyOf(value: Any)(implicit state: QueryState): Any = value match {
     case null => null
     case IsMap(mapFunc) => try {
       mapFunc(state.query).getOrElse(propertyKey.name, null)
@@ -57,7 +57,8 @@ case class DefaultExecutionResultBuilderFactory(pipeInfo: PipeInfo, columns: Lis
 
     def build(graph: GraphDatabaseService, queryId: AnyRef, params: Map[String, Any]): InternalExecutionResult = {
       taskCloser.addTask(queryContext.close)
-      val state = new QueryState(graph, queryContext, externalResource, params, pipeDecorator, queryId = queryId)
+      val state = new QueryState(graph, queryContext, externalResource, params, pipeDecorator, queryId = queryId,
+        closer = taskCloser)
       try {
         try {
           createResults(state)
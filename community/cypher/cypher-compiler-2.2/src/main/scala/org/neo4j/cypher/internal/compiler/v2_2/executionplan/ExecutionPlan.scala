@@ -28,4 +28,6 @@ abstract class ExecutionPlan {
   def isPeriodicCommit: Boolean
   def plannerUsed: PlannerName
   def isStale(lastTxId: Long, statistics: GraphStatistics): Boolean
+  // The labels and property keys of the indexes and constraints that the plan was built with, or without
+  def schemaDependencies: Set[(String, String)]
 }
@@ -58,12 +58,11 @@ trait PipeBuilder {
 
 class ExecutionPlanBuilder(graph: GraphDatabaseService,
                            pipeBuilder: PipeBuilder) extends PatternGraphBuilder {
-  val MIN_DIVERGENCE = 0.5
-
   def build(planContext: PlanContext, inputQuery: PreparedQuery): ExecutionPlan = {
     val abstractQuery = inputQuery.abstractQuery
 
-    val pipeInfo = pipeBuilder.producePlan(inputQuery, planContext)
+    val schemaRecorder = new SchemaRecordingPlanContext(planContext)
+    val pipeInfo = pipeBuilder.producePlan(inputQuery, schemaRecorder)
     val PipeInfo(pipe, updating, periodicCommitInfo, fp, planner) = pipeInfo
 
     val columns = getQueryResultColumns(abstractQuery, pipe.symbols)
@@ -71,9 +70,11 @@ class ExecutionPlanBuilder(graph: GraphDatabaseService,
     val func = getExecutionPlanFunction(periodicCommitInfo, abstractQuery.getQueryText, updating, resultBuilderFactory)
 
     val TTL = getQueryPlanTTL
+    val minDivergence = getStatisticsDivergenceThreshold
     val profileMarker = inputQuery.planType == Profiled
     new ExecutionPlan {
       val fingerprint: Option[PlanFingerprint] = fp
+      val schemaDependencies = schemaRecorder.schemaDependencies
       def execute(queryContext: QueryContext, params: Map[String, Any]) = func(queryContext, params, profileMarker)
       def profile(queryContext: QueryContext, params: Map[String, Any]) = func(new UpdateCountingQueryContext(queryContext), params, true)
       def isPeriodicCommit = periodicCommitInfo.isDefined
@@ -83,7 +84,7 @@ class ExecutionPlanBuilder(graph: GraphDatabaseService,
         fingerprint.fold(false) { fingerprint =>
           lastTxId != fingerprint.txId &&
             fingerprint.creationDate.getTime + TTL < date.getTime &&
-            fingerprint.snapshot.diverges(fingerprint.snapshot.recompute(statistics), MIN_DIVERGENCE)
+            fingerprint.snapshot.diverges(fingerprint.snapshot.recompute(statistics), minDivergence)
         }
       }
     }
@@ -98,6 +99,15 @@ class ExecutionPlanBuilder(graph: GraphDatabaseService,
     }
   }
 
+  private def getStatisticsDivergenceThreshold: Double = {
+    graph match {
+      case iagdb: InternalAbstractGraphDatabase =>
+        iagdb.getConfig.get(GraphDatabaseSettings.query_statistics_divergence_threshold)
+      case _ =>
+        GraphDatabaseSettings.query_statistics_divergence_threshold.getDefaultValue.toDouble
+    }
+  }
+
   private def getQueryResultColumns(q: AbstractQuery, currentSymbols: SymbolTable): List[String] = q match {
     case in: PeriodicCommitQuery =>
       getQueryResultColumns(in.query, currentSymbols)
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes
+
+import org.neo4j.cypher.internal.compiler.v2_2._
+import org.neo4j.cypher.internal.compiler.v2_2.executionplan.Effects
+import org.neo4j.cypher.internal.compiler.v2_2.planDescription.InternalPlanDescription.Arguments.CountRelationshipsExpression
+import org.neo4j.cypher.internal.compiler.v2_2.planDescription.{NoChildren, PlanDescriptionImpl}
+import org.neo4j.cypher.internal.compiler.v2_2.symbols._
+
+case class RelationshipCountFromCountStorePipe(ident: String, startLabel: Option[Either[String, LabelId]],
+                                               typeName: Option[Either[String, RelTypeId]],
+                                               endLabel: Option[Either[String, LabelId]])
+                                              (val estimatedCardinality: Option[Long] = None)(implicit pipeMonitor: PipeMonitor)
+  extends Pipe
+  with RonjaPipe {
+
+  protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
+    def labelId(label: Either[String, LabelId]) = label match {
+      case Left(str) => state.query.getOptLabelId(str)
+      case Right(id) => Some(id.id)
+    }
+
+    val startLabelId = startLabel.map(labelId)
+    val endLabelId = endLabel.map(labelId)
+    val typeId = typeName.map {
+      case Left(str) => state.query.getOptRelTypeId(str)
+      case Right(id) => Some(id.id)
+    }
+
+    // A label or type that does not exist yet has nothing to count
+    val count =
+      if ((startLabelId ++ typeId ++ endLabelId).exists(_.isEmpty)) 0L
+      else state.query.relationshipCountByCountStore(startLabelId.flatten, typeId.flatten, endLabelId.flatten)
+
+    val baseContext = state.initialContext.getOrElse(ExecutionContext.empty)
+    Iterator(baseContext.newWith1(ident, count))
+  }
+
+  def exists(predicate: Pipe => Boolean): Boolean = predicate(this)
+
+  private def name[T <: NameId](token: Option[Either[String, T]]) = token.map {
+    case Left(str) => str
+    case Right(id) => id.id.toString
+  }
+
+  def planDescription = new PlanDescriptionImpl(this, "RelationshipCountFromCountStore", NoChildren,
+    Seq(CountRelationshipsExpression(ident, name(startLabel), name(typeName), name(endLabel))), identifiers)
+
+  def symbols: SymbolTable = new SymbolTable(Map(ident -> CTInteger))
+
+  override def monitor = pipeMonitor
+
+  def dup(sources: List[Pipe]): Pipe = {
+    require(sources.isEmpty)
+    this
+  }
+
+  def sources: Seq[Pipe] = Seq.empty
+
+  override def localEffects = Effects.READS_RELATIONSHIPS
+
+  def withEstimatedCardinality(estimated: Long) = copy()(Some(estimated))
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.parallel
+
+import org.neo4j.cypher.internal.compiler.v2_2.executionplan.Effects
+import org.neo4j.cypher.internal.compiler.v2_2.pipes._
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted.{AllNodesScanSlottedPipe, NodeByLabelScanSlottedPipe, SlotConfiguration, SlottedExecutionContext}
+import org.neo4j.cypher.internal.compiler.v2_2.symbols.SymbolTable
+import org.neo4j.cypher.internal.compiler.v2_2.{ExecutionContext, LabelId}
+
+object MorselPipe {
+  def isScan(pipe: Pipe): Boolean = pipe match {
+    case _: AllNodesScanPipe | _: NodeByLabelScanPipe | _: AllNodesScanSlottedPipe | _: NodeByLabelScanSlottedPipe => true
+    case _ => false
+  }
+
+  // The ids of the nodes that a scan produces rows for, in the order that it produces them
+  def nodeIds(scan: Pipe, state: QueryState): Iterator[Long] = scan match {
+    case _: AllNodesScanPipe | _: AllNodesScanSlottedPipe => state.query.getAllNodeIds
+    case p: NodeByLabelScanPipe => nodeIdsByLabel(p.label, state)
+    case p: NodeByLabelScanSlottedPipe => nodeIdsByLabel(p.label, state)
+  }
+
+  private def nodeIdsByLabel(label: Either[String, LabelId], state: QueryState): Iterator[Long] = {
+    val optLabelId = label match {
+      case Left(str)      => state.query.getOptLabelId(str)
+      case Right(labelId) => Some(labelId.id)
+    }
+    optLabelId.map(state.query.getNodeIdsByLabel).getOrElse(Iterator.empty)
+  }
+}
+
+/*
+ * Stands in for a scan, and produces the rows that the scan would for a morsel of the nodes that it scans.
+ */
+class MorselPipe(scan: Pipe, ids: Array[Long])(implicit val monitor: PipeMonitor) extends Pipe {
+
+  protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = scan match {
+    case p: AllNodesScanSlottedPipe => slottedRows(p.ident, p.slots, state)
+    case p: NodeByLabelScanSlottedPipe => slottedRows(p.ident, p.slots, state)
+    case p: AllNodesScanPipe => rows(p.ident, state)
+    case p: NodeByLabelScanPipe => rows(p.ident, state)
+  }
+
+  private def rows(ident: String, state: QueryState): Iterator[ExecutionContext] = {
+    val baseContext = state.initialContext.getOrElse(ExecutionContext.empty)
+    ids.iterator.map(id => baseContext.newWith1(ident, state.query.nodeById(id)))
+  }
+
+  private def slottedRows(ident: String, slots: SlotConfiguration, state: QueryState): Iterator[ExecutionContext] = {
+    val offset = slots.longOffset(ident)
+    ids.iterator.map {
+      id =>
+        val row = SlottedExecutionContext(slots, state)
+        row.longs(offset) = id
+        row
+    }
+  }
+
+  def exists(predicate: Pipe => Boolean): Boolean = predicate(this)
+
+  def planDescription = scan.planDescription
+
+  def symbols: SymbolTable = scan.symbols
+
+  override def localEffects: Effects = Effects.READS_NODES
+
+  def dup(sources: List[Pipe]): Pipe = {
+    require(sources.isEmpty)
+    this
+  }
+
+  def sources: Seq[Pipe] = Seq.empty
+}
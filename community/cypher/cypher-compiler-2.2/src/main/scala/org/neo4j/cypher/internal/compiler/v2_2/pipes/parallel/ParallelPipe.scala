@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.parallel
+
+import java.util.concurrent.{Callable, ConcurrentLinkedQueue, ExecutionException, FutureTask}
+
+import org.neo4j.cypher.internal.compiler.v2_2.commands.SortItem
+import org.neo4j.cypher.internal.compiler.v2_2.executionplan.Effects
+import org.neo4j.cypher.internal.compiler.v2_2.pipes._
+import org.neo4j.cypher.internal.compiler.v2_2.spi.ParallelReads
+import org.neo4j.cypher.internal.compiler.v2_2.symbols.SymbolTable
+import org.neo4j.cypher.internal.compiler.v2_2.{Comparer, ExecutionContext}
+
+object ParallelPipe {
+  val DEFAULT_MORSEL_SIZE = 10000
+
+  // The scan at the bottom of a chain of pipes that each have a single source
+  def scanOf(pipe: Pipe): Pipe = if (pipe.sources.isEmpty) pipe else scanOf(pipe.sources.head)
+}
+
+/*
+ * Runs its source, a chain of pipes over a scan of nodes, on morsels of the scanned nodes at the same time. The ids of
+ * the nodes are read on this thread, and every morsel is run through a copy of the chain on one of the threads that the
+ * database shares between all queries, in a read transaction of its own. The results of the morsels come out in the
+ * order of the morsels, so they come out in the order that the source would produce them in, and only a few morsels are
+ * run ahead of the rows that have been asked for. When orderBy is given, the results of each morsel are sorted, and
+ * they are merged in that order as the morsels finish. Closing the query cancels the morsels that have not started yet.
+ *
+ * The source is run as it is, on this thread, when the query can not be read from other threads, like when it is
+ * profiled or when its transaction has changes of its own.
+ */
+case class ParallelPipe(source: Pipe, parallelism: Int, orderBy: Seq[SortItem] = Seq.empty,
+                        morselSize: Int = ParallelPipe.DEFAULT_MORSEL_SIZE)
+                       (val estimatedCardinality: Option[Long] = None)(implicit val monitor: PipeMonitor)
+  extends Pipe with Comparer with RonjaPipe {
+
+  private val scan = ParallelPipe.scanOf(source)
+
+  protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] =
+    state.query.parallelReads match {
+      case Some(reads) if state.decorator == NullPipeDecorator =>
+        val morsels = MorselPipe.nodeIds(scan, state).grouped(morselSize).map(_.toArray)
+        val results = new MorselResults(morsels, reads, state)
+        state.closer.addTask(_ => results.cancel())
+        if (orderBy.isEmpty)
+          results.flatMap(_.iterator)
+        else
+          merged(results, state)
+      case _ =>
+        source.createResults(state)
+    }
+
+  private def run(morsel: Array[Long], reads: ParallelReads, state: QueryState): FutureTask[Seq[ExecutionContext]] =
+    new FutureTask(new Callable[Seq[ExecutionContext]] {
+      def call(): Seq[ExecutionContext] = {
+        val query = reads.newContext()
+        var success = false
+        try {
+          val results = withScan(source, new MorselPipe(scan, morsel)).createResults(state.copy(query = query)).toVector
+          success = true
+          results
+        } finally {
+          query.close(success)
+        }
+      }
+    })
+
+  private def withScan(pipe: Pipe, morsel: Pipe): Pipe =
+    if (pipe.sources.isEmpty) morsel else pipe.dup(List(withScan(pipe.sources.head, morsel)))
+
+  /*
+   * The results of the morsels, in the order of the morsels. At most twice as many morsels as the parallelism are
+   * running or waiting to be taken at any time.
+   */
+  private class MorselResults(morsels: Iterator[Array[Long]], reads: ParallelReads, state: QueryState)
+    extends Iterator[Seq[ExecutionContext]] {
+
+    // Cancelled from the thread that closes the query
+    private val running = new ConcurrentLinkedQueue[FutureTask[Seq[ExecutionContext]]]()
+    @volatile private var cancelled = false
+
+    start()
+
+    def hasNext: Boolean = !running.isEmpty
+
+    def next(): Seq[ExecutionContext] = {
+      val task = running.poll()
+      if (task == null)
+        Iterator.empty.next()
+      val results = try {
+        task.get()
+      } catch {
+        case e: ExecutionException => throw e.getCause
+      }
+      start()
+      results
+    }
+
+    // Morsels that have started finish, and close their transactions, but nothing new is started
+    def cancel() {
+      cancelled = true
+      var task = running.poll()
+      while (task != null) {
+        task.cancel(false)
+        task = running.poll()
+      }
+    }
+
+    private def start() {
+      while (!cancelled && running.size < 2 * parallelism && morsels.hasNext) {
+        val task = run(morsels.next(), reads, state)
+        running.add(task)
+        reads.executor.execute(task)
+      }
+    }
+  }
+
+  // A row, and the values that it is sorted by
+  private type Keyed = (Array[Any], ExecutionContext)
+
+  /*
+   * Merges the sorted results of the morsels as they come in. Runs of neighbouring morsels are merged pairwise, like the
+   * levels of a merge sort, so every row is copied a logarithmic number of times. Ties are broken by the order of the
+   * morsels, so the rows come out like a stable sort of all of them would.
+   */
+  private def merged(results: Iterator[Seq[ExecutionContext]], state: QueryState): Iterator[ExecutionContext] = {
+    implicit val s = state
+    val sortItems = orderBy.toArray
+
+    def compareKeys(a: Array[Any], b: Array[Any]): Int = {
+      var i = 0
+      while (i < sortItems.length) {
+        val res = math.signum(compare(a(i), b(i)))
+        if (res != 0)
+          return if (sortItems(i).ascending) res else -res
+        i += 1
+      }
+      0
+    }
+
+    def merge(earlier: Vector[Keyed], later: Vector[Keyed]): Vector[Keyed] = {
+      val builder = Vector.newBuilder[Keyed]
+      var (i, j) = (0, 0)
+      while (i < earlier.size && j < later.size) {
+        if (compareKeys(later(j)._1, earlier(i)._1) < 0) {
+          builder += later(j)
+          j += 1
+        } else {
+          builder += earlier(i)
+          i += 1
+        }
+      }
+      builder ++= earlier.drop(i) ++= later.drop(j)
+      builder.result()
+    }
+
+    // Runs, with the latest on top, and how many morsels each holds as a power of two
+    var runs = List.empty[(Int, Vector[Keyed])]
+    results.foreach {
+      rows =>
+        var run = (0, rows.map(row => (sortItems.map(_(row)), row)).toVector)
+        while (runs.nonEmpty && runs.head._1 == run._1) {
+          run = (run._1 + 1, merge(runs.head._2, run._2))
+          runs = runs.tail
+        }
+        runs = run :: runs
+    }
+    runs.foldLeft(Vector.empty[Keyed]) { case (later, (_, earlier)) => merge(earlier, later) }.iterator.map(_._2)
+  }
+
+  def planDescription = source.planDescription.andThen(this, "Parallel", identifiers)
+
+  def symbols: SymbolTable = source.symbols
+
+  def sources: Seq[Pipe] = Seq(source)
+
+  def exists(pred: Pipe => Boolean) = pred(this) || source.exists(pred)
+
+  override def localEffects = Effects.NONE
+
+  override def effects = source.effects
+
+  def dup(sources: List[Pipe]): Pipe = {
+    val (head :: Nil) = sources
+    copy(source = head)(estimatedCardinality)
+  }
+
+  def withEstimatedCardinality(estimated: Long) = copy()(Some(estimated))
+}
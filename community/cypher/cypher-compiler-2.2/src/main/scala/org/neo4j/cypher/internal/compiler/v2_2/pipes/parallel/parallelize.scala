@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.parallel
+
+import org.neo4j.cypher.internal.compiler.v2_2.commands.SortItem
+import org.neo4j.cypher.internal.compiler.v2_2.commands.expressions._
+import org.neo4j.cypher.internal.compiler.v2_2.pipes._
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted.{ExpandSlottedPipe, ProjectionSlottedPipe}
+
+/*
+ * Rewrites a read-only plan so that the chain of pipes at its bottom runs in a ParallelPipe, when the chain streams
+ * the rows of a scan of nodes through pipes that work on one row at a time. The pipe right above the chain is split
+ * into a part that runs per morsel and a part that merges the results of the morsels, when it is an aggregation that
+ * only has aggregation functions that can be combined, a sort, a top or a limit. Every other pipe above the chain is
+ * kept as it is.
+ */
+object parallelize {
+  def apply(pipe: Pipe, parallelism: Int)(implicit monitor: PipeMonitor): Pipe =
+    if (parallelism < 1 || pipe.effects.writes()) pipe else rewrite(pipe, parallelism)
+
+  private def rewrite(pipe: Pipe, parallelism: Int)(implicit monitor: PipeMonitor): Pipe = pipe match {
+    case p if isMorselChain(p) =>
+      ParallelPipe(p, parallelism)(estimatedCardinality(p))
+
+    case p: EagerAggregationPipe if isMorselChain(p.source) =>
+      merging(p.aggregations) match {
+        case Some(mergingAggregations) =>
+          val keys: Map[String, Expression] = p.keyExpressions.map { case (name, _) => name -> Identifier(name) }
+          EagerAggregationPipe(ParallelPipe(p, parallelism)(), keys, mergingAggregations)(p.estimatedCardinality)
+        case None =>
+          p.dup(List(ParallelPipe(p.source, parallelism)(estimatedCardinality(p.source))))
+      }
+
+    case p: SortPipe if isMorselChain(p.source) =>
+      val orderBy = p.orderBy.map {
+        case Ascending(id)  => SortItem(Identifier(id), ascending = true)
+        case Descending(id) => SortItem(Identifier(id), ascending = false)
+      }
+      ParallelPipe(p, parallelism, orderBy)(p.estimatedCardinality)
+
+    case p: TopPipe if isMorselChain(p.source) =>
+      p.dup(List(ParallelPipe(p, parallelism)()))
+
+    case p: LimitPipe if isMorselChain(p.source) =>
+      p.dup(List(ParallelPipe(p, parallelism)()))
+
+    case p if p.sources.size == 1 =>
+      p.dup(List(rewrite(p.sources.head, parallelism)))
+
+    case p =>
+      p
+  }
+
+  private def isMorselChain(pipe: Pipe): Boolean = pipe match {
+    case p if MorselPipe.isScan(p) => true
+    case p: FilterPipe => isMorselChain(p.source)
+    case p: ExpandPipeForIntTypes => isMorselChain(p.source)
+    case p: ExpandPipeForStringTypes => isMorselChain(p.source)
+    case p: OptionalExpandPipe => isMorselChain(p.source)
+    case p: ProjectionNewPipe => isMorselChain(p.source)
+    case p: ExpandSlottedPipe => isMorselChain(p.source)
+    case p: ProjectionSlottedPipe => isMorselChain(p.source)
+    case _ => false
+  }
+
+  // The aggregations that combine the results of the same aggregations on every morsel, if they all can be combined
+  private def merging(aggregations: Map[String, AggregationExpression]): Option[Map[String, AggregationExpression]] = {
+    val merged = aggregations.collect {
+      case (name, _: Count | _: CountStar | _: Sum) => name -> Sum(Identifier(name))
+      case (name, _: Min)                           => name -> Min(Identifier(name))
+      case (name, _: Max)                           => name -> Max(Identifier(name))
+    }
+    if (merged.size == aggregations.size) Some(merged) else None
+  }
+
+  private def estimatedCardinality(pipe: Pipe): Option[Long] = pipe match {
+    case p: RonjaPipe => p.estimatedCardinality
+    case _            => None
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted
+
+import org.neo4j.cypher.internal.compiler.v2_2.executionplan.Effects
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.{Pipe, PipeMonitor, PipeWithSource, QueryState, RonjaPipe}
+import org.neo4j.cypher.internal.compiler.v2_2.planDescription.InternalPlanDescription.Arguments.ExpandExpression
+import org.neo4j.cypher.internal.compiler.v2_2.symbols._
+import org.neo4j.cypher.internal.compiler.v2_2.{ExecutionContext, InternalException}
+import org.neo4j.graphdb.Direction
+
+/*
+ * Expands from the node id in the slot of the from node, and puts the ids of the relationships and of the nodes at
+ * their other ends in the slots of the new rows, without ever looking up the entities themselves.
+ */
+case class ExpandSlottedPipe(source: Pipe,
+                             from: String,
+                             relName: String,
+                             to: String,
+                             dir: Direction,
+                             types: Seq[Int],
+                             slots: SlotConfiguration)
+                            (val estimatedCardinality: Option[Long] = None)
+                            (implicit pipeMonitor: PipeMonitor)
+  extends PipeWithSource(source, pipeMonitor) with SlottedPipe with RonjaPipe {
+
+  private val fromOffset = slots.longOffset(from)
+  private val relOffset = slots.longOffset(relName)
+  private val toOffset = slots.longOffset(to)
+
+  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
+    input.flatMap {
+      case row: SlottedExecutionContext =>
+        val fromNode = row.longs(fromOffset)
+        if (fromNode == SlottedExecutionContext.NULL_ENTITY)
+          Iterator.empty
+        else
+          state.query.getRelationshipIdsForIds(fromNode, dir, types).map {
+            relId =>
+              val newRow = row.copyTo(slots)
+              newRow.longs(relOffset) = relId
+              newRow.longs(toOffset) = state.query.getOtherNodeIdFor(relId, fromNode)
+              newRow
+          }
+
+      case row => throw new InternalException(s"Expected a slotted row to expand from, but got $row")
+    }
+  }
+
+  def planDescription = {
+    source.planDescription.andThen(this, "Expand", identifiers, ExpandExpression(from, relName, to, dir))
+  }
+
+  val symbols = source.symbols.add(to, CTNode).add(relName, CTRelationship)
+
+  override def localEffects = Effects.READS_ENTITIES
+
+  def dup(sources: List[Pipe]): Pipe = {
+    val (source :: Nil) = sources
+    copy(source = source)(estimatedCardinality)
+  }
+
+  def withEstimatedCardinality(estimated: Long) = copy()(Some(estimated))
+}
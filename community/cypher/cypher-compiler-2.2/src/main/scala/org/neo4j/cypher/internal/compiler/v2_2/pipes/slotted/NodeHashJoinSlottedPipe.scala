@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted
+
+import org.neo4j.cypher.internal.compiler.v2_2.executionplan.Effects
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.{Pipe, PipeMonitor, PipeWithSource, QueryState, RonjaPipe}
+import org.neo4j.cypher.internal.compiler.v2_2.planDescription.InternalPlanDescription.Arguments.KeyNames
+import org.neo4j.cypher.internal.compiler.v2_2.planDescription.{InternalPlanDescription, PlanDescriptionImpl, TwoChildren}
+import org.neo4j.cypher.internal.compiler.v2_2.symbols._
+import org.neo4j.cypher.internal.compiler.v2_2.{ExecutionContext, InternalException}
+
+import scala.collection.mutable
+
+/*
+ * Joins on the node ids in the slots of the join nodes. The slots of the left rows keep their offsets in the joined
+ * rows, and the slots that only the right rows have are copied after them.
+ */
+case class NodeHashJoinSlottedPipe(nodeIdentifiers: Set[String],
+                                   left: Pipe,
+                                   right: Pipe,
+                                   leftSlots: SlotConfiguration,
+                                   rightSlots: SlotConfiguration,
+                                   slots: SlotConfiguration)
+                                  (val estimatedCardinality: Option[Long] = None)(implicit pipeMonitor: PipeMonitor)
+  extends PipeWithSource(left, pipeMonitor) with SlottedPipe with RonjaPipe {
+
+  private val cachedIdentifiers = nodeIdentifiers.toIndexedSeq
+  private val leftKeyOffsets = cachedIdentifiers.map(leftSlots.longOffset).toArray
+  private val rightKeyOffsets = cachedIdentifiers.map(rightSlots.longOffset).toArray
+
+  private val (rightLongSources, rightLongTargets) = {
+    val rightOnly = rightSlots.longSlots.filterKeys(!leftSlots.contains(_)).toArray
+    (rightOnly.map(_._2.offset), rightOnly.map(entry => slots.longOffset(entry._1)))
+  }
+
+  private val (rightRefSources, rightRefTargets) = {
+    val rightOnly = rightSlots.refSlots.filterKeys(!leftSlots.contains(_)).toArray
+    (rightOnly.map(_._2), rightOnly.map(entry => slots.refOffset(entry._1)))
+  }
+
+  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
+    if (input.isEmpty)
+      return Iterator.empty
+
+    val rhsIterator = right.createResults(state)
+
+    if (rhsIterator.isEmpty)
+      return Iterator.empty
+
+    val table = buildProbeTable(input)
+
+    if (table.isEmpty)
+      return Iterator.empty
+
+    rhsIterator.flatMap {
+      context =>
+        val rightRow = slotted(context)
+        val joinKey = computeKey(rightRow, rightKeyOffsets)
+        if (joinKey == null)
+          Iterator.empty
+        else
+          table.get(joinKey) match {
+            case Some(leftRows) => leftRows.iterator.map(join(_, rightRow))
+            case None => Iterator.empty
+          }
+    }
+  }
+
+  def planDescription: InternalPlanDescription =
+    new PlanDescriptionImpl(
+      pipe = this,
+      name = "NodeHashJoin",
+      children = TwoChildren(left.planDescription, right.planDescription),
+      _arguments = Seq(KeyNames(nodeIdentifiers.toSeq)),
+      identifiers
+    )
+
+  def symbols: SymbolTable = left.symbols.add(right.symbols.identifiers)
+
+  override val sources = Seq(left, right)
+
+  def dup(sources: List[Pipe]): Pipe = {
+    val (left :: right :: Nil) = sources
+    copy(left = left, right = right)(estimatedCardinality)
+  }
+
+  override def localEffects = Effects.NONE
+
+  def withEstimatedCardinality(estimated: Long) = copy()(Some(estimated))
+
+  private def buildProbeTable(input: Iterator[ExecutionContext]): mutable.HashMap[Any, mutable.ArrayBuffer[SlottedExecutionContext]] = {
+    val table = new mutable.HashMap[Any, mutable.ArrayBuffer[SlottedExecutionContext]]
+
+    for (context <- input) {
+      val leftRow = slotted(context)
+      val joinKey = computeKey(leftRow, leftKeyOffsets)
+      if (joinKey != null)
+        table.getOrElseUpdate(joinKey, new mutable.ArrayBuffer[SlottedExecutionContext](1)) += leftRow
+    }
+
+    table
+  }
+
+  private def join(leftRow: SlottedExecutionContext, rightRow: SlottedExecutionContext): SlottedExecutionContext = {
+    val row = leftRow.copyTo(slots)
+    var i = 0
+    while (i < rightLongSources.length) {
+      row.longs(rightLongTargets(i)) = rightRow.longs(rightLongSources(i))
+      i += 1
+    }
+    i = 0
+    while (i < rightRefSources.length) {
+      row.refs(rightRefTargets(i)) = rightRow.refs(rightRefSources(i))
+      i += 1
+    }
+    rightRow.copyExtraTo(row)
+    row
+  }
+
+  // A single join node is keyed on its id alone, more of them on the sequence of their ids
+  private def computeKey(row: SlottedExecutionContext, offsets: Array[Int]): Any = {
+    if (offsets.length == 1) {
+      val id = row.longs(offsets(0))
+      if (id == SlottedExecutionContext.NULL_ENTITY) null else id
+    } else {
+      val key = new Array[Long](offsets.length)
+      var i = 0
+      while (i < offsets.length) {
+        key(i) = row.longs(offsets(i))
+        if (key(i) == SlottedExecutionContext.NULL_ENTITY)
+          return null
+        i += 1
+      }
+      key.toSeq
+    }
+  }
+
+  private def slotted(context: ExecutionContext): SlottedExecutionContext = context match {
+    case row: SlottedExecutionContext => row
+    case row => throw new InternalException(s"Expected a slotted row to join, but got $row")
+  }
+}
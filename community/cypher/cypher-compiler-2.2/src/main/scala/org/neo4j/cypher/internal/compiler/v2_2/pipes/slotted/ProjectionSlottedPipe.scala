@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted
+
+import org.neo4j.cypher.internal.compiler.v2_2.commands.expressions.{Expression, Identifier}
+import org.neo4j.cypher.internal.compiler.v2_2.executionplan.Effects._
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.{Pipe, PipeMonitor, PipeWithSource, QueryState, RonjaPipe}
+import org.neo4j.cypher.internal.compiler.v2_2.planDescription.InternalPlanDescription.Arguments.KeyNames
+import org.neo4j.cypher.internal.compiler.v2_2.symbols.SymbolTable
+import org.neo4j.cypher.internal.compiler.v2_2.{ExecutionContext, InternalException}
+
+/*
+ * Projects into new rows that only have slots for the projected names. Nodes and relationships that are projected
+ * under a new name stay in long slots, and are copied over as ids. Everything else is evaluated into ref slots, which
+ * is where nodes and relationships in long slots of the source are turned into entities, if at all.
+ */
+case class ProjectionSlottedPipe(source: Pipe,
+                                 expressions: Map[String, Expression],
+                                 sourceSlots: SlotConfiguration,
+                                 slots: SlotConfiguration)
+                                (val estimatedCardinality: Option[Long] = None)
+                                (implicit pipeMonitor: PipeMonitor)
+  extends PipeWithSource(source, pipeMonitor) with SlottedPipe with RonjaPipe {
+
+  val symbols: SymbolTable = {
+    val newIdentifiers = expressions.map {
+      case (name, expression) => name -> expression.getType(source.symbols)
+    }
+
+    source.symbols.add(newIdentifiers)
+  }
+
+  private val longSources: Array[Int] = slots.longNames.map {
+    name => expressions(name) match {
+      case Identifier(identifier) => sourceSlots.longOffset(identifier)
+      case expression => throw new InternalException(s"Can not project $expression into the long slot of $name")
+    }
+  }
+
+  private val refExpressions: Array[Expression] = slots.refNames.map(expressions)
+
+  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) =
+    input.map {
+      original =>
+        val row = SlottedExecutionContext(slots, state.query)
+        if (longSources.length > 0) {
+          val longs = original match {
+            case slotted: SlottedExecutionContext => slotted.longs
+            case _ => throw new InternalException(s"Expected a slotted row to project, but got $original")
+          }
+          var i = 0
+          while (i < longSources.length) {
+            row.longs(i) = longs(longSources(i))
+            i += 1
+          }
+        }
+        var i = 0
+        while (i < refExpressions.length) {
+          row.refs(i) = refExpressions(i)(original)(state)
+          i += 1
+        }
+        row
+    }
+
+  override def planDescription =
+    source.planDescription
+      .andThen(this, "Projection", identifiers, KeyNames(expressions.keys.toSeq))
+
+  def dup(sources: List[Pipe]): Pipe = {
+    val (source :: Nil) = sources
+    copy(source = source)(estimatedCardinality)
+  }
+
+  override def localEffects = expressions.effects
+
+  def withEstimatedCardinality(estimated: Long) = copy()(Some(estimated))
+}
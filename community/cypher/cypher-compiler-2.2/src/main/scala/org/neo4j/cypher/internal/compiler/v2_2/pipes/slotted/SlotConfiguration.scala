@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted
+
+import org.neo4j.cypher.internal.compiler.v2_2.InternalException
+
+/*
+ * Assigns the identifiers of the rows that a slotted pipe produces to fixed slots, when the pipes are built. Nodes and
+ * relationships live in long slots, as their ids, and all other values in ref slots. Slots are only ever added, so the
+ * slots of the source of a pipe keep their offsets in the rows that the pipe produces.
+ */
+case class SlotConfiguration(longSlots: Map[String, LongSlot] = Map.empty, refSlots: Map[String, Int] = Map.empty) {
+
+  def numberOfLongs: Int = longSlots.size
+
+  def numberOfRefs: Int = refSlots.size
+
+  def newNode(name: String): SlotConfiguration = newLong(name, isNode = true)
+
+  def newRelationship(name: String): SlotConfiguration = newLong(name, isNode = false)
+
+  def newReference(name: String): SlotConfiguration = refSlots.get(name) match {
+    case Some(_) => this
+    case None =>
+      checkNotInLongSlot(name)
+      copy(refSlots = refSlots + (name -> refSlots.size))
+  }
+
+  /*
+   * Adds the slots of the other configuration that this one does not have already, after the slots of this one.
+   */
+  def ++(other: SlotConfiguration): SlotConfiguration = {
+    val withLongs = other.longSlots.toSeq.sortBy(_._2.offset).foldLeft(this) {
+      case (acc, (name, slot)) => acc.newLong(name, slot.isNode)
+    }
+    other.refSlots.toSeq.sortBy(_._2).foldLeft(withLongs) {
+      case (acc, (name, _)) => acc.newReference(name)
+    }
+  }
+
+  /*
+   * Whether the names that both configurations have slots for are in the same kind of slot in both.
+   */
+  def canBeCombinedWith(other: SlotConfiguration): Boolean =
+    other.longSlots.forall {
+      case (name, slot) => !refSlots.contains(name) && longSlots.get(name).forall(_.isNode == slot.isNode)
+    } && other.refSlots.keys.forall(!longSlots.contains(_))
+
+  def contains(name: String): Boolean = longSlots.contains(name) || refSlots.contains(name)
+
+  def isNode(name: String): Boolean = longSlots.get(name).exists(_.isNode)
+
+  def longOffset(name: String): Int =
+    longSlots.getOrElse(name, throw new InternalException(s"There is no long slot for $name")).offset
+
+  def refOffset(name: String): Int =
+    refSlots.getOrElse(name, throw new InternalException(s"There is no ref slot for $name"))
+
+  // The names and kinds of the slots by offset, for going through all values of a row
+  private[slotted] val longNames: Array[String] = namesByOffset(longSlots.mapValues(_.offset))
+  private[slotted] val longIsNode: Array[Boolean] = longNames.map(longSlots(_).isNode)
+  private[slotted] val refNames: Array[String] = namesByOffset(refSlots)
+
+  private def newLong(name: String, isNode: Boolean): SlotConfiguration = longSlots.get(name) match {
+    case Some(slot) if slot.isNode == isNode => this
+    case Some(_) => throw new InternalException(s"$name is already in a slot for another kind of entity")
+    case None =>
+      if (refSlots.contains(name))
+        throw new InternalException(s"$name is already in a ref slot")
+      copy(longSlots = longSlots + (name -> LongSlot(longSlots.size, isNode)))
+  }
+
+  private def checkNotInLongSlot(name: String) {
+    if (longSlots.contains(name))
+      throw new InternalException(s"$name is already in a long slot")
+  }
+
+  private def namesByOffset(offsets: collection.Map[String, Int]): Array[String] = {
+    val names = new Array[String](offsets.size)
+    offsets.foreach {
+      case (name, offset) => names(offset) = name
+    }
+    names
+  }
+}
+
+object SlotConfiguration {
+  val empty = SlotConfiguration()
+}
+
+case class LongSlot(offset: Int, isNode: Boolean)
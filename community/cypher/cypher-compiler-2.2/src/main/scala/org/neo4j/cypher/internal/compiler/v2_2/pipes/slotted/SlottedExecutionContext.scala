@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted
+
+import org.neo4j.cypher.internal.compiler.v2_2.mutation.UpdateAction
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.{MutableMaps, QueryState}
+import org.neo4j.cypher.internal.compiler.v2_2.spi.QueryContext
+import org.neo4j.cypher.internal.compiler.v2_2.{CypherTypeException, ExecutionContext, InternalException}
+import org.neo4j.graphdb.{Node, Relationship}
+
+import scala.collection.mutable.{Queue, Map => MutableMap}
+import scala.collection.{Iterator, immutable}
+
+object SlottedExecutionContext {
+  val NULL_ENTITY = -1L
+
+  private val NO_REFS = new Array[Any](0)
+
+  def apply(slots: SlotConfiguration, query: QueryContext): SlottedExecutionContext =
+    new SlottedExecutionContext(slots, newLongs(slots.numberOfLongs, 0), newRefs(slots.numberOfRefs), query)
+
+  /*
+   * A new row for a leaf pipe, that carries the values of the row that the pipe is applied to, if any.
+   */
+  def apply(slots: SlotConfiguration, state: QueryState): SlottedExecutionContext = {
+    val row = apply(slots, state.query)
+    state.initialContext.foreach(row ++= _)
+    row
+  }
+
+  // Slots that nothing has been put in hold no entity, rather than the entity with id 0
+  private[slotted] def newLongs(size: Int, from: Int) = {
+    val longs = new Array[Long](size)
+    java.util.Arrays.fill(longs, from, size, NULL_ENTITY)
+    longs
+  }
+
+  private def newRefs(size: Int) = if (size == 0) NO_REFS else new Array[Any](size)
+}
+
+/*
+ * A row that keeps its values in the slots that its pipe was given when the pipes were built, instead of in a map.
+ * Slotted pipes read and write the slots by offset. Everybody else sees a map, where nodes and relationships are turned
+ * from ids into entities when they are read. Values under names that have no slot, like the ones that nested pipes add,
+ * go in a map on the side that is only created when it is needed.
+ */
+final class SlottedExecutionContext(val slots: SlotConfiguration,
+                                    val longs: Array[Long],
+                                    val refs: Array[Any],
+                                    query: QueryContext,
+                                    private var extra: MutableMap[String, Any] = null,
+                                    commands: Queue[UpdateAction] = Queue.empty)
+  extends ExecutionContext(m = null, mutationCommands = commands) {
+
+  import SlottedExecutionContext._
+
+  override def get(key: String): Option[Any] = slots.longSlots.get(key) match {
+    case Some(slot) => Some(entity(slot.offset, slot.isNode))
+    case None => slots.refSlots.get(key) match {
+      case Some(offset) => Some(refs(offset))
+      case None => if (extra == null) None else extra.get(key)
+    }
+  }
+
+  override def iterator: Iterator[(String, Any)] = {
+    val longValues = slots.longNames.iterator.zipWithIndex.map {
+      case (name, offset) => name -> entity(offset, slots.longIsNode(offset))
+    }
+    val refValues = slots.refNames.iterator.zipWithIndex.map {
+      case (name, offset) => name -> refs(offset)
+    }
+    if (extra == null) longValues ++ refValues else longValues ++ refValues ++ extra.iterator
+  }
+
+  override def size = slots.numberOfLongs + slots.numberOfRefs + (if (extra == null) 0 else extra.size)
+
+  override def foreach[U](f: ((String, Any)) => U) {
+    iterator.foreach(f)
+  }
+
+  override def +=(kv: (String, Any)): this.type = {
+    val (key, value) = kv
+    slots.longSlots.get(key) match {
+      case Some(slot) => longs(slot.offset) = idOf(key, value, slot.isNode)
+      case None => slots.refSlots.get(key) match {
+        case Some(offset) => refs(offset) = value
+        case None =>
+          if (extra == null)
+            extra = MutableMaps.empty
+          extra += kv
+      }
+    }
+    this
+  }
+
+  override def -=(key: String): this.type = {
+    if (slots.contains(key))
+      throw new InternalException(s"Can not remove $key from a row, since it has a slot")
+    if (extra != null)
+      extra -= key
+    this
+  }
+
+  override def ++(other: ExecutionContext): SlottedExecutionContext = clone() ++= other
+
+  override def toMap[T, U](implicit ev: (String, Any) <:< (T, U)): immutable.Map[T, U] = iterator.toMap(ev)
+
+  override def newWith(newEntries: Seq[(String, Any)]): SlottedExecutionContext = clone() ++= newEntries
+
+  override def newWith(newEntries: scala.collection.Map[String, Any]): SlottedExecutionContext = clone() ++= newEntries
+
+  override def newWith(newEntry: (String, Any)): SlottedExecutionContext = clone() += newEntry
+
+  override def newWith1(key1: String, value1: Any): SlottedExecutionContext = {
+    val row = clone()
+    row += key1 -> value1
+    row
+  }
+
+  override def newWith2(key1: String, value1: Any, key2: String, value2: Any): SlottedExecutionContext = {
+    val row = clone()
+    row += key1 -> value1
+    row += key2 -> value2
+    row
+  }
+
+  override def newWith3(key1: String, value1: Any, key2: String, value2: Any, key3: String, value3: Any): SlottedExecutionContext = {
+    val row = clone()
+    row += key1 -> value1
+    row += key2 -> value2
+    row += key3 -> value3
+    row
+  }
+
+  override def clone(): SlottedExecutionContext = copyTo(slots)
+
+  /*
+   * A copy of this row, in a configuration that has all the slots of the configuration of this row, and maybe more.
+   * The slots that this row does not have hold nothing, and are left for the caller to fill in.
+   */
+  def copyTo(target: SlotConfiguration): SlottedExecutionContext = {
+    val newLongs = SlottedExecutionContext.newLongs(target.numberOfLongs, longs.length)
+    System.arraycopy(longs, 0, newLongs, 0, longs.length)
+    val newRefs = if (target.numberOfRefs == 0) refs else new Array[Any](target.numberOfRefs)
+    if (newRefs ne refs)
+      System.arraycopy(refs, 0, newRefs, 0, refs.length)
+    val newExtra = if (extra == null) null else extra.clone()
+    new SlottedExecutionContext(target, newLongs, newRefs, query, newExtra, mutationCommands)
+  }
+
+  /*
+   * Puts the values that this row keeps outside of slots in the given row, unless it has values by those names already.
+   */
+  def copyExtraTo(target: SlottedExecutionContext) {
+    if (extra != null)
+      extra.foreach {
+        case kv@(key, _) => if (!target.contains(key)) target += kv
+      }
+  }
+
+  override protected def createWithNewMap(newMap: MutableMap[String, Any]) = ExecutionContext(newMap, mutationCommands)
+
+  private def entity(offset: Int, isNode: Boolean): Any = {
+    val id = longs(offset)
+    if (id == NULL_ENTITY) null
+    else if (isNode) query.nodeById(id)
+    else query.relationshipById(id)
+  }
+
+  private def idOf(key: String, value: Any, isNode: Boolean): Long = value match {
+    case null => NULL_ENTITY
+    case n: Node if isNode => n.getId
+    case r: Relationship if !isNode => r.getId
+    case _ =>
+      val expected = if (isNode) "a node" else "a relationship"
+      throw new CypherTypeException(s"Expected $key to be $expected, but it was $value")
+  }
+}
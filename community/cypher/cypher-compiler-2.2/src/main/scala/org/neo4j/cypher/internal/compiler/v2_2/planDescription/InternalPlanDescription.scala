@@ -87,6 +87,8 @@ object InternalPlanDescription {
       override def name = "version"
     }
     case class ExpandExpression(from: String, relName: String, to: String, direction: Direction, varLength: Boolean = false) extends Argument
+    case class CountNodesExpression(ident: String, label: Option[String]) extends Argument
+    case class CountRelationshipsExpression(ident: String, startLabel: Option[String], typeName: Option[String], endLabel: Option[String]) extends Argument
   }
 }
 
@@ -45,6 +45,14 @@ object PlanDescriptionArgumentSerializer {
         val right = if (dir == Direction.OUTGOING) "]->" else "]-"
         val asterisk = if (varLength) "*" else ""
         s"($from)$left:$rel$asterisk$right($to)"
+      case CountNodesExpression(ident, label) =>
+        val node = label.map(":" + _).getOrElse("")
+        s"count( ($node) ) AS $ident"
+      case CountRelationshipsExpression(ident, startLabel, typeName, endLabel) =>
+        val start = startLabel.map(":" + _).getOrElse("")
+        val rel = typeName.map(":" + _).getOrElse("")
+        val end = endLabel.map(":" + _).getOrElse("")
+        s"count( ($start)-[$rel]->($end) ) AS $ident"
 
       // Do not add a fallthrough here - we rely on exhaustive checking to ensure
       // that we don't forget to add new types of arguments here
@@ -28,11 +28,14 @@ import org.neo4j.cypher.internal.compiler.v2_2.ast.convert.commands.PatternConve
 import org.neo4j.cypher.internal.compiler.v2_2.ast.convert.commands.StatementConverters
 import org.neo4j.cypher.internal.compiler.v2_2.ast.rewriters.projectNamedPaths
 import org.neo4j.cypher.internal.compiler.v2_2.ast.{Expression, Identifier, NodeStartItem, RelTypeName}
+import org.neo4j.cypher.internal.compiler.v2_2.commands.compiled.CompiledPredicate
 import org.neo4j.cypher.internal.compiler.v2_2.commands.expressions.{AggregationExpression, Expression => CommandExpression}
 import org.neo4j.cypher.internal.compiler.v2_2.commands.{EntityProducerFactory, True, Predicate => CommandPredicate}
 import org.neo4j.cypher.internal.compiler.v2_2.executionplan.{PlanFingerprint, PipeInfo}
 import org.neo4j.cypher.internal.compiler.v2_2.executionplan.builders.prepare.KeyTokenResolver
 import org.neo4j.cypher.internal.compiler.v2_2.pipes._
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.parallel.parallelize
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted._
 import org.neo4j.cypher.internal.compiler.v2_2.planner.logical.Metrics
 import org.neo4j.cypher.internal.compiler.v2_2.planner.logical.plans._
 import org.neo4j.cypher.internal.compiler.v2_2.planner.{CantHandleQueryException, SemanticTable}
@@ -45,7 +48,19 @@ case class PipeExecutionBuilderContext(f: ast.PatternExpression => LogicalPlan,
   def plan(expr: ast.PatternExpression) = f(expr)
 }
 
-class PipeExecutionPlanBuilder(monitors: Monitors) {
+/*
+ * With slotted set, the pipes that can work on slots are given fixed slots for the identifiers of their rows, instead of
+ * keeping them in a map, as long as their sources produce slotted rows too. The other pipes are built as usual, and
+ * see slotted rows as maps.
+ *
+ * With compiledPredicates set, filters compile their predicates into classes of their own once they have evaluated
+ * them often enough.
+ *
+ * With a parallelism above zero, the scans at the bottom of read-only plans, and the pipes right above them, are run
+ * on that many threads at the same time.
+ */
+class PipeExecutionPlanBuilder(monitors: Monitors, slotted: Boolean = true, compiledPredicates: Boolean = true,
+                               parallelism: Int = 0) {
 
   val entityProducerFactory = new EntityProducerFactory
   val resolver = new KeyTokenResolver
@@ -82,7 +97,14 @@ class PipeExecutionPlanBuilder(monitors: Monitors) {
 
       val result: Pipe with RonjaPipe = plan match {
         case Projection(left, expressions) =>
-          ProjectionNewPipe(buildPipe(left), Eagerly.immutableMapValues(expressions, buildExpression))()
+          val source = buildPipe(left)
+          val commandExpressions = Eagerly.immutableMapValues(expressions, buildExpression)
+          slotsOf(source) match {
+            case Some(sourceSlots) =>
+              ProjectionSlottedPipe(source, commandExpressions, sourceSlots, projectionSlots(sourceSlots, commandExpressions))()
+            case None =>
+              ProjectionNewPipe(source, commandExpressions)()
+          }
 
         case ProjectEndpoints(left, rel, start, end, directed, length) =>
           ProjectEndpointsPipe(buildPipe(left), rel.name, start.name, end.name, directed, length.isSimple)()
@@ -93,12 +115,24 @@ class PipeExecutionPlanBuilder(monitors: Monitors) {
         case sr @ Argument(ids) =>
           ArgumentPipe(new SymbolTable(sr.typeInfo))()
 
+        case AllNodesScan(IdName(id), _) if slotted =>
+          AllNodesScanSlottedPipe(id, SlotConfiguration.empty.newNode(id))()
+
         case AllNodesScan(IdName(id), _) =>
           AllNodesScanPipe(id)()
 
+        case NodeByLabelScan(IdName(id), label, _) if slotted =>
+          NodeByLabelScanSlottedPipe(id, label, SlotConfiguration.empty.newNode(id))()
+
         case NodeByLabelScan(IdName(id), label, _) =>
           NodeByLabelScanPipe(id, label)()
 
+        case NodeCountFromCountStore(IdName(id), label, _) =>
+          NodeCountFromCountStorePipe(id, label)()
+
+        case RelationshipCountFromCountStore(IdName(id), startLabel, typeName, endLabel, _) =>
+          RelationshipCountFromCountStorePipe(id, startLabel, typeName, endLabel)()
+
         case NodeByIdSeek(IdName(id), nodeIdExpr, _) =>
           NodeByIdSeekPipe(id, nodeIdExpr.asEntityByIdRhs)()
 
@@ -115,7 +149,8 @@ class PipeExecutionPlanBuilder(monitors: Monitors) {
           NodeIndexSeekPipe(id, label, propertyKey, valueExpr.map(buildExpression), unique = true)()
 
         case Selection(predicates, left) =>
-          FilterPipe(buildPipe(left), predicates.map(buildPredicate).reduce(_ ++ _))()
+          val predicate = predicates.map(buildPredicate).reduce(_ ++ _)
+          FilterPipe(buildPipe(left), if (compiledPredicates) CompiledPredicate(predicate) else predicate)()
 
         case CartesianProduct(left, right) =>
           CartesianProductPipe(buildPipe(left), buildPipe(right))()
@@ -123,10 +158,18 @@ class PipeExecutionPlanBuilder(monitors: Monitors) {
         case Expand(left, IdName(fromName), dir, projectedDir, types: Seq[RelTypeName], IdName(toName), IdName(relName), SimplePatternLength, _) =>
           implicit val table: SemanticTable = context.semanticTable
 
+          val source = buildPipe(left)
           if (types.exists(_.id == None))
-            ExpandPipeForStringTypes(buildPipe(left), fromName, relName, toName, dir, types.map(_.name))()
+            ExpandPipeForStringTypes(source, fromName, relName, toName, dir, types.map(_.name))()
           else {
-            ExpandPipeForIntTypes(buildPipe(left), fromName, relName, toName, dir, types.flatMap(_.id).map(_.id))()
+            val typeIds = types.flatMap(_.id).map(_.id)
+            slotsOf(source) match {
+              case Some(sourceSlots) if sourceSlots.isNode(fromName) && canExpandInto(sourceSlots, relName, toName) =>
+                val slots = sourceSlots.newRelationship(relName).newNode(toName)
+                ExpandSlottedPipe(source, fromName, relName, toName, dir, typeIds, slots)()
+              case _ =>
+                ExpandPipeForIntTypes(source, fromName, relName, toName, dir, typeIds)()
+            }
           }
 
         case Expand(left, IdName(fromName), dir, projectedDir, types, IdName(toName), IdName(relName), VarPatternLength(min, max), predicates) =>
@@ -153,7 +196,16 @@ class PipeExecutionPlanBuilder(monitors: Monitors) {
           OptionalExpandPipe(buildPipe(left), fromName, relName, toName, dir, types.map(_.name), predicate)()
 
         case NodeHashJoin(nodes, left, right) =>
-          NodeHashJoinPipe(nodes.map(_.name), buildPipe(left), buildPipe(right))()
+          val nodeNames = nodes.map(_.name)
+          val (lhs, rhs) = (buildPipe(left), buildPipe(right))
+          (slotsOf(lhs), slotsOf(rhs)) match {
+            case (Some(leftSlots), Some(rightSlots))
+              if nodeNames.forall(name => leftSlots.isNode(name) && rightSlots.isNode(name)) &&
+                 leftSlots.canBeCombinedWith(rightSlots) =>
+              NodeHashJoinSlottedPipe(nodeNames, lhs, rhs, leftSlots, rightSlots, leftSlots ++ rightSlots)()
+            case _ =>
+              NodeHashJoinPipe(nodeNames, lhs, rhs)()
+          }
 
         case OuterHashJoin(nodes, left, right) =>
           NodeOuterHashJoinPipe(nodes.map(_.name), buildPipe(left), buildPipe(right), (right.availableSymbols -- left.availableSymbols).map(_.name))()
@@ -238,7 +290,32 @@ class PipeExecutionPlanBuilder(monitors: Monitors) {
       result.withEstimatedCardinality(context.cardinality(plan).amount.toLong)
     }
 
-    val topLevelPipe = buildPipe(plan)
+    /*
+     * The slots of the rows that a pipe produces, if they are slotted. Pipes that only filter or reorder the rows of
+     * their source produce slotted rows when their source does.
+     */
+    def slotsOf(pipe: Pipe): Option[SlotConfiguration] = pipe match {
+      case p: SlottedPipe => Some(p.slots)
+      case p: FilterPipe => slotsOf(p.source)
+      case p: LimitPipe => slotsOf(p.source)
+      case p: SkipPipe => slotsOf(p.source)
+      case p: SortPipe => slotsOf(p.source)
+      case _ => None
+    }
+
+    // Nodes and relationships that are projected as they are stay in long slots
+    def projectionSlots(sourceSlots: SlotConfiguration, expressions: Map[String, CommandExpression]): SlotConfiguration =
+      expressions.foldLeft(SlotConfiguration.empty) {
+        case (slots, (name, commands.expressions.Identifier(identifier))) if sourceSlots.longSlots.contains(identifier) =>
+          if (sourceSlots.isNode(identifier)) slots.newNode(name) else slots.newRelationship(name)
+        case (slots, (name, _)) =>
+          slots.newReference(name)
+      }
+
+    def canExpandInto(sourceSlots: SlotConfiguration, relName: String, toName: String) =
+      !sourceSlots.contains(relName) && !sourceSlots.contains(toName)
+
+    val topLevelPipe = parallelize(buildPipe(plan), parallelism)(monitors.newMonitor[PipeMonitor]())
 
     val fingerprint = planContext.statistics match {
       case igs: InstrumentedGraphStatistics =>
@@ -39,8 +39,11 @@ class QueryPlanningStrategy(config: PlanningStrategyConfiguration = PlanningStra
   }
 
   protected def planSingleQuery(query: PlannerQuery)(implicit context: LogicalPlanningContext, leafPlan: Option[LogicalPlan] = None): LogicalPlan = {
-    val firstPart = planPart(query, leafPlan)
-    val projectedFirstPart = planEventHorizon(query, firstPart)
+    val countStorePlan = if (leafPlan.isEmpty) countStorePlanner(query) else None
+    val projectedFirstPart = countStorePlan.getOrElse {
+      val firstPart = planPart(query, leafPlan)
+      planEventHorizon(query, firstPart)
+    }
     val finalPlan = planWithTail(projectedFirstPart, query.tail, context)
     verifyBestPlan(finalPlan, query)
   }
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.planner.logical.plans
+
+import org.neo4j.cypher.internal.compiler.v2_2.planner.PlannerQuery
+import org.neo4j.cypher.internal.compiler.v2_2.{LabelId, RelTypeId}
+
+/*
+ * Produces a single row, with the number of relationships of the type, or of any type, that go from nodes with the start
+ * label to nodes with the end label, in the given column. At most one of the labels is given.
+ */
+case class RelationshipCountFromCountStore(idName: IdName, startLabel: Option[Either[String, LabelId]],
+                                           typeName: Option[Either[String, RelTypeId]],
+                                           endLabel: Option[Either[String, LabelId]], argumentIds: Set[IdName])
+                                          (val solved: PlannerQuery) extends LogicalLeafPlan {
+  def availableSymbols = argumentIds + idName
+}
@@ -25,7 +25,7 @@ import org.neo4j.cypher.internal.compiler.v2_2.pipes.SortDescription
 import org.neo4j.cypher.internal.compiler.v2_2.planner._
 import org.neo4j.cypher.internal.compiler.v2_2.planner.logical.plans.{Limit => LimitPlan, Skip => SkipPlan, _}
 import org.neo4j.cypher.internal.compiler.v2_2.symbols._
-import org.neo4j.cypher.internal.compiler.v2_2.{LabelId, ast}
+import org.neo4j.cypher.internal.compiler.v2_2.{LabelId, RelTypeId, ast}
 import org.neo4j.graphdb.Direction
 
 object LogicalPlanProducer {
@@ -38,6 +38,18 @@ object LogicalPlanProducer {
         AggregatingQueryProjection(groupingKeys = grouping, aggregationExpressions = aggregation)
       )))
 
+  def planCountStoreNodeAggregation(graph: QueryGraph, aggregation: Map[String, Expression], idName: IdName,
+                                    label: Option[Either[String, LabelId]], argumentIds: Set[IdName]) =
+    NodeCountFromCountStore(idName, label, argumentIds)(
+      PlannerQuery(graph = graph, horizon = AggregatingQueryProjection(aggregationExpressions = aggregation)))
+
+  def planCountStoreRelationshipAggregation(graph: QueryGraph, aggregation: Map[String, Expression], idName: IdName,
+                                            startLabel: Option[Either[String, LabelId]],
+                                            typeName: Option[Either[String, RelTypeId]],
+                                            endLabel: Option[Either[String, LabelId]], argumentIds: Set[IdName]) =
+    RelationshipCountFromCountStore(idName, startLabel, typeName, endLabel, argumentIds)(
+      PlannerQuery(graph = graph, horizon = AggregatingQueryProjection(aggregationExpressions = aggregation)))
+
   def planAllNodesScan(idName: IdName, argumentIds: Set[IdName]) =
     AllNodesScan(idName, argumentIds)(
       PlannerQuery(graph = QueryGraph(
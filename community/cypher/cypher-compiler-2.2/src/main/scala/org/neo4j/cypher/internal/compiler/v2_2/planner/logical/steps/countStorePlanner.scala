@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.planner.logical.steps
+
+import org.neo4j.cypher.internal.compiler.v2_2.ast._
+import org.neo4j.cypher.internal.compiler.v2_2.planner.logical.LogicalPlanningContext
+import org.neo4j.cypher.internal.compiler.v2_2.planner.logical.plans._
+import org.neo4j.cypher.internal.compiler.v2_2.planner.logical.steps.LogicalPlanProducer._
+import org.neo4j.cypher.internal.compiler.v2_2.planner.{AggregatingQueryProjection, PlannerQuery, Predicate, QueryGraph}
+import org.neo4j.cypher.internal.compiler.v2_2.{LabelId, functions}
+import org.neo4j.graphdb.Direction
+
+/*
+ * Plans queries that only count the nodes with a label, or the relationships of a type between nodes with a label,
+ * like MATCH (n:Label) RETURN count(n) and MATCH (:A)-[:T]->() RETURN count(*), by reading the counts store instead
+ * of finding the nodes or relationships.
+ */
+object countStorePlanner {
+
+  def apply(query: PlannerQuery)(implicit context: LogicalPlanningContext): Option[LogicalPlan] = query.horizon match {
+    case AggregatingQueryProjection(groupingKeys, aggregations, _) if groupingKeys.isEmpty && aggregations.size == 1 =>
+      val (columnName, expression) = aggregations.head
+      countStorePlan(query.graph, aggregations, IdName(columnName), expression).map(sortSkipAndLimit(_, query))
+
+    case _ =>
+      None
+  }
+
+  private def countStorePlan(graph: QueryGraph, aggregations: Map[String, Expression], idName: IdName, expression: Expression)
+                            (implicit context: LogicalPlanningContext): Option[LogicalPlan] = {
+    implicit val semanticTable = context.semanticTable
+
+    // Nothing but labels, at most one per node, may be asked of the pattern
+    def label(node: IdName): Option[Option[Either[String, LabelId]]] = graph.selections.labelsOnNode(node).toSeq match {
+      case Seq() => Some(None)
+      case Seq(labelName) => Some(Some(labelName.either))
+      case _ => None
+    }
+
+    val onlyLabelPredicates = graph.selections.predicates.forall {
+      case Predicate(_, HasLabels(_: Identifier, Seq(_))) => true
+      case _ => false
+    }
+
+    if (!onlyLabelPredicates || !countsRows(expression, graph) || graph.argumentIds.nonEmpty ||
+        graph.optionalMatches.nonEmpty || graph.hints.nonEmpty || graph.shortestPathPatterns.nonEmpty)
+      None
+    else (graph.patternNodes.toSeq, graph.patternRelationships.toSeq) match {
+      case (Seq(node), Seq()) =>
+        label(node).map(planCountStoreNodeAggregation(graph, aggregations, idName, _, graph.argumentIds))
+
+      case (_, Seq(rel@PatternRelationship(_, _, dir, types, SimplePatternLength)))
+        if dir != Direction.BOTH && types.size <= 1 && graph.patternNodes == Set(rel.left, rel.right) && rel.left != rel.right =>
+        val (start, end) = rel.inOrder
+        for (startLabel <- label(start); endLabel <- label(end) if startLabel.isEmpty || endLabel.isEmpty)
+          yield planCountStoreRelationshipAggregation(graph, aggregations, idName, startLabel, types.headOption.map(_.either),
+                                                      endLabel, graph.argumentIds)
+
+      case _ =>
+        None
+    }
+  }
+
+  // count(*), and count of any identifier of the pattern, since those are never null, count every row of the match
+  private def countsRows(expression: Expression, graph: QueryGraph): Boolean = expression match {
+    case _: CountStar =>
+      true
+    case func@FunctionInvocation(_, false, IndexedSeq(Identifier(name))) if func.function == Some(functions.Count) =>
+      graph.patternNodes(IdName(name)) || graph.patternRelationships.exists(_.name == IdName(name))
+    case _ =>
+      false
+  }
+}
@@ -23,7 +23,7 @@ import org.neo4j.cypher.internal.compiler.v2_2.planDescription.InternalPlanDescr
 import org.neo4j.cypher.internal.compiler.v2_2.planDescription.InternalPlanDescription.Arguments
 import org.neo4j.cypher.internal.compiler.v2_2._
 import org.neo4j.cypher.internal.compiler.v2_2.pipes.{SingleRowPipe, Pipe, PipeDecorator, QueryState}
-import org.neo4j.cypher.internal.compiler.v2_2.spi.{DelegatingOperations, DelegatingQueryContext, Operations, QueryContext}
+import org.neo4j.cypher.internal.compiler.v2_2.spi.{DelegatingOperations, DelegatingQueryContext, Operations, ParallelReads, QueryContext}
 import org.neo4j.graphdb.{Node, PropertyContainer, Relationship}
 
 import scala.collection.mutable
@@ -109,6 +109,9 @@ final class ProfilingQueryContext(val inner: QueryContext, val p: Pipe, startVal
 
   override def nodeOps: Operations[Node] = new ProfilerOperations(inner.nodeOps)
   override def relationshipOps: Operations[Relationship] = new ProfilerOperations(inner.relationshipOps)
+
+  // The counters are not thread safe, so profiled queries are read from this thread only
+  override def parallelReads: Option[ParallelReads] = None
 }
 
 class ProfilingIterator(inner: Iterator[ExecutionContext], startValue: Long) extends Iterator[ExecutionContext] with Counter {
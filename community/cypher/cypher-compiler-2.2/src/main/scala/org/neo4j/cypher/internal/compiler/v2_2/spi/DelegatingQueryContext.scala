@@ -56,6 +56,14 @@ class DelegatingQueryContext(inner: QueryContext) extends QueryContext {
 
   def getRelationshipsForIds(node: Node, dir: Direction, types: Seq[Int]): Iterator[Relationship] = manyDbHits(inner.getRelationshipsForIds(node, dir, types))
 
+  def getRelationshipIdsForIds(node: Long, dir: Direction, types: Seq[Int]): Iterator[Long] = manyDbHits(inner.getRelationshipIdsForIds(node, dir, types))
+
+  def getOtherNodeIdFor(relationship: Long, node: Long): Long = inner.getOtherNodeIdFor(relationship, node)
+
+  def nodeById(id: Long): Node = inner.nodeById(id)
+
+  def relationshipById(id: Long): Relationship = inner.relationshipById(id)
+
   def nodeOps = inner.nodeOps
 
   def relationshipOps = inner.relationshipOps
@@ -79,6 +87,17 @@ class DelegatingQueryContext(inner: QueryContext) extends QueryContext {
 
   def getNodesByLabel(id: Int): Iterator[Node] = manyDbHits(inner.getNodesByLabel(id))
 
+  def getNodeIdsByLabel(id: Int): Iterator[Long] = manyDbHits(inner.getNodeIdsByLabel(id))
+
+  def getAllNodeIds: Iterator[Long] = manyDbHits(inner.getAllNodeIds)
+
+  def nodeCountByCountStore(labelId: Option[Int]): Long = singleDbHit(inner.nodeCountByCountStore(labelId))
+
+  def relationshipCountByCountStore(startLabelId: Option[Int], typeId: Option[Int], endLabelId: Option[Int]): Long =
+    singleDbHit(inner.relationshipCountByCountStore(startLabelId, typeId, endLabelId))
+
+  def parallelReads: Option[ParallelReads] = inner.parallelReads
+
   def upgrade(context: QueryContext): LockingQueryContext = inner.upgrade(context)
 
   def getOrCreateFromSchemaState[K, V](key: K, creator: => V): V = singleDbHit(inner.getOrCreateFromSchemaState(key, creator))
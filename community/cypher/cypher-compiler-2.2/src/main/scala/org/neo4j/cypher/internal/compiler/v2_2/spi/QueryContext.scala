@@ -50,6 +50,15 @@ trait QueryContext extends TokenContext {
 
   def getRelationshipsForIds(node: Node, dir: Direction, types: Seq[Int]): Iterator[Relationship]
 
+  def getRelationshipIdsForIds(node: Long, dir: Direction, types: Seq[Int]): Iterator[Long]
+
+  def getOtherNodeIdFor(relationship: Long, node: Long): Long
+
+  // The entities of ids that are known to exist, without reading anything
+  def nodeById(id: Long): Node
+
+  def relationshipById(id: Long): Relationship
+
   def getOrCreateLabelId(labelName: String): Int
 
   def getLabelsForNode(node: Long): Iterator[Int]
@@ -78,6 +87,21 @@ trait QueryContext extends TokenContext {
 
   def getNodesByLabel(id: Int): Iterator[Node]
 
+  def getNodeIdsByLabel(id: Int): Iterator[Long]
+
+  def getAllNodeIds: Iterator[Long]
+
+  // The number of nodes with the label, or of all nodes, including the changes made in this transaction
+  def nodeCountByCountStore(labelId: Option[Int]): Long
+
+  // The number of relationships of the type, or of any type, between nodes with the labels, or with any labels. At most
+  // one of the labels can be given, since those are the only counts that are kept.
+  def relationshipCountByCountStore(startLabelId: Option[Int], typeId: Option[Int], endLabelId: Option[Int]): Long
+
+  // The threads and contexts for reading from other threads. There are none when the reads of those contexts would miss
+  // changes that have been made in this one.
+  def parallelReads: Option[ParallelReads]
+
   def upgradeToLockingQueryContext: LockingQueryContext = upgrade(this)
 
   def upgrade(context: QueryContext): LockingQueryContext
@@ -51,6 +51,20 @@ final class RepeatableReadQueryContext(inner: QueryContext, locker: Locker) exte
 
   override def getNodesByLabel(id: Int): Iterator[Node] = lockAll(inner.getNodesByLabel(id))
 
+  override def getNodeIdsByLabel(id: Int): Iterator[Long] = lockAllNodes(inner.getNodeIdsByLabel(id))
+
+  // Reads made in other transactions would not take the locks of this one
+  override def parallelReads: Option[ParallelReads] = None
+
+  override def getRelationshipIdsForIds(node: Long, dir: Direction, types: Seq[Int]): Iterator[Long] = {
+    lockNode(node)
+    inner.getRelationshipIdsForIds(node, dir, types).map {
+      id =>
+        locker.acquireLock(relationshipOps.getByInnerId(id))
+        id
+    }
+  }
+
   val nodeOpsValue = new RepeatableReadOperations[Node](inner.nodeOps)
   val relationshipOpsValue = new RepeatableReadOperations[Relationship](inner.relationshipOps)
 
@@ -92,6 +106,12 @@ final class RepeatableReadQueryContext(inner: QueryContext, locker: Locker) exte
     locker.acquireLock(nodeOps.getByInnerId(id))
   }
 
+  private def lockAllNodes(ids: Iterator[Long]): Iterator[Long] = ids.map {
+    id =>
+      lockNode(id)
+      id
+  }
+
   private def lockAll[T <: PropertyContainer](iter: Iterator[T]): Iterator[T] = iter.map {
     item =>
       locker.acquireLock(item)
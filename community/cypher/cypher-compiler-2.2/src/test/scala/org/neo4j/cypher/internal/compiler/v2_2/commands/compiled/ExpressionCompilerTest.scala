@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.commands.compiled
+
+import org.mockito.Mockito._
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_2.ExecutionContext
+import org.neo4j.cypher.internal.compiler.v2_2.commands._
+import org.neo4j.cypher.internal.compiler.v2_2.commands.expressions._
+import org.neo4j.cypher.internal.compiler.v2_2.commands.values.{KeyToken, TokenType}
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.QueryStateHelper
+import org.neo4j.cypher.internal.compiler.v2_2.spi.{Operations, QueryContext}
+import org.neo4j.graphdb.Node
+
+import scala.util.Try
+
+class ExpressionCompilerTest extends CypherFunSuite {
+
+  val query = mock[QueryContext]
+  val nodeOps = mock[Operations[Node]]
+  val node = mock[Node]
+  val state = QueryStateHelper.emptyWith(query = query, params = Map("p" -> 1L))
+
+  when(node.getId).thenReturn(1L)
+  when(query.nodeOps).thenReturn(nodeOps)
+  when(query.getOptPropertyKeyId("prop")).thenReturn(Some(3))
+
+  val values: Seq[Any] = Seq(
+    null, 0L, 1L, -1L, Long.MaxValue, Long.MinValue, 1, 0.0, -0.0, 0.5, 1.0, Double.NaN,
+    "", "a", "b", 'a', true, false, Seq(), Seq(1L), node)
+
+  val x = Identifier("a")
+  val y = Identifier("b")
+  val resolvedProperty = Property(Identifier("n"), KeyToken.Resolved("prop", 3, TokenType.PropertyKey))
+  val unresolvedProperty = Property(Identifier("n"), KeyToken.Unresolved("prop", TokenType.PropertyKey))
+
+  val predicates: Seq[Predicate] = Seq(
+    True(),
+    Equals(x, y),
+    LessThan(x, y),
+    LessThanOrEqual(x, y),
+    GreaterThan(x, y),
+    GreaterThanOrEqual(x, y),
+    IsNull(x),
+    CoercedPredicate(x),
+    Not(LessThan(x, y)),
+    And(LessThan(x, y), IsNull(y)),
+    Or(GreaterThan(x, y), Equals(x, y)),
+    Xor(CoercedPredicate(x), CoercedPredicate(y)),
+    Ands(List(CoercedPredicate(x), LessThan(x, y), CoercedPredicate(y))),
+    Ors(List(CoercedPredicate(x), GreaterThan(x, y), CoercedPredicate(y))),
+    Equals(Add(x, y), Literal(2L)),
+    LessThan(Subtract(x, y), Multiply(x, y)),
+    GreaterThan(Divide(x, y), Literal(0.5)),
+    Equals(resolvedProperty, y),
+    LessThan(unresolvedProperty, y),
+    Equals(ParameterExpression("p"), x),
+    Equals(ToStringFunction(x), Literal("1")),
+    CoercedPredicate(LessThan(x, y)),
+    LiteralRegularExpression(Identifier("b"), Literal("a.*")))
+
+  test("compiled predicates give the same answers as interpreted predicates") {
+    assume(ExpressionCompiler.isAvailable, "no Java compiler to compile with")
+
+    for (predicate <- predicates) {
+      val compiled = ExpressionCompiler.compile(predicate)
+      compiled should not be empty
+
+      for (aValue <- values; bValue <- values) {
+        doReturn(aValue).when(nodeOps).getProperty(1L, 3)
+        val ctx = ExecutionContext.from("a" -> aValue, "b" -> bValue, "n" -> node)
+
+        val expected = Try(predicate.isMatch(ctx)(state))
+        val actual = Try(CompiledSupport.fromTristate(compiled.get.isMatch(ctx, state)))
+
+        withClue(s"$predicate with a = $aValue and b = $bValue:") {
+          if (expected.isSuccess)
+            actual should equal(expected)
+          else
+            actual.failed.map(_.getClass) should equal(expected.failed.map(_.getClass))
+        }
+      }
+    }
+  }
+
+  test("predicates that only differ in their literals share a generated class") {
+    assume(ExpressionCompiler.isAvailable, "no Java compiler to compile with")
+
+    val first = ExpressionCompiler.compile(Equals(x, Literal(1L))).get
+    val second = ExpressionCompiler.compile(Equals(x, Literal("x"))).get
+
+    first.getClass should equal(second.getClass)
+    CompiledSupport.fromTristate(second.isMatch(ExecutionContext.from("a" -> "x"), state)) should equal(Some(true))
+  }
+
+  test("predicates that only differ in their property keys share a generated class") {
+    assume(ExpressionCompiler.isAvailable, "no Java compiler to compile with")
+
+    val otherProperty = Property(Identifier("n"), KeyToken.Resolved("other", 4, TokenType.PropertyKey))
+    val first = ExpressionCompiler.compile(Equals(resolvedProperty, y)).get
+    val second = ExpressionCompiler.compile(Equals(otherProperty, y)).get
+
+    first.getClass should equal(second.getClass)
+  }
+
+  test("every generated class has a class loader of its own") {
+    assume(ExpressionCompiler.isAvailable, "no Java compiler to compile with")
+
+    val first = ExpressionCompiler.compile(IsNull(x)).get
+    val second = ExpressionCompiler.compile(Not(IsNull(x))).get
+
+    first.getClass.getClassLoader should not be theSameInstanceAs(second.getClass.getClassLoader)
+    first.getClass.getClassLoader should not be theSameInstanceAs(getClass.getClassLoader)
+  }
+
+  test("should interpret until the threshold is reached and until compiling in the background is done") {
+    assume(ExpressionCompiler.isAvailable, "no Java compiler to compile with")
+
+    val predicate = CompiledPredicate(LessThan(x, Literal(10L)), threshold = 2)
+    val ctx = ExecutionContext.from("a" -> 1L)
+
+    predicate.isMatch(ctx)(state) should equal(Some(true))
+    predicate.isCompiled should equal(false)
+    predicate.isMatch(ctx)(state) should equal(Some(true))
+
+    val deadline = System.currentTimeMillis() + 60000
+    while (!predicate.isCompiled && System.currentTimeMillis() < deadline) {
+      predicate.isMatch(ctx)(state) should equal(Some(true))
+      Thread.sleep(10)
+    }
+    predicate.isCompiled should equal(true)
+    predicate.isMatch(ExecutionContext.from("a" -> 11L))(state) should equal(Some(false))
+  }
+
+  test("compiled predicates look like the predicates they compile") {
+    val inner = Equals(x, Literal(1L))
+
+    CompiledPredicate(inner).toString should equal(inner.toString)
+    CompiledPredicate(inner).symbolTableDependencies should equal(Set("a"))
+  }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.parallel
+
+import java.util.concurrent.{Callable, Executor, ExecutorService, Executors, LinkedBlockingQueue, TimeUnit}
+
+import org.mockito.Matchers._
+import org.mockito.Mockito._
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_2.commands.expressions._
+import org.neo4j.cypher.internal.compiler.v2_2.commands.{LessThan, SortItem}
+import org.neo4j.cypher.internal.compiler.v2_2.pipes._
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted.{AllNodesScanSlottedPipe, SlotConfiguration}
+import org.neo4j.cypher.internal.compiler.v2_2.spi.{ParallelReads, QueryContext}
+import org.neo4j.graphdb.Node
+
+import scala.collection.JavaConverters._
+
+class ParallelPipeTest extends CypherFunSuite {
+
+  implicit val monitor = mock[PipeMonitor]
+  val query = mock[QueryContext]
+  val queryState = QueryStateHelper.emptyWith(query = query)
+  var executor: ExecutorService = null
+
+  val nodes = (0 until 100).map {
+    id =>
+      val node = mock[Node]
+      when(node.getId).thenReturn(id.toLong)
+      node
+  }
+
+  val scan = AllNodesScanSlottedPipe("n", SlotConfiguration.empty.newNode("n"))()
+  val ids = ProjectionNewPipe(scan, Map("id" -> IdFunction(Identifier("n"))))()
+
+  override protected def beforeEach() {
+    super.beforeEach()
+    executor = Executors.newFixedThreadPool(4)
+    reset(query)
+    when(query.getAllNodeIds).thenAnswer(new Answer[Iterator[Long]] {
+      def answer(invocation: InvocationOnMock): Iterator[Long] = (0L until 100L).iterator
+    })
+    when(query.nodeById(anyLong())).thenAnswer(new Answer[Node] {
+      def answer(invocation: InvocationOnMock): Node = nodes(invocation.getArguments()(0).asInstanceOf[Long].toInt)
+    })
+    when(query.parallelReads).thenReturn(Some(ParallelReads(executor, () => query)))
+  }
+
+  override protected def afterEach() {
+    super.afterEach()
+    executor.shutdown()
+  }
+
+  test("should produce the rows of its source in the order that the source produces them") {
+    // given
+    val source = FilterPipe(ids, LessThan(Identifier("id"), Literal(50)))()
+
+    // when
+    val result = ParallelPipe(source, 4, morselSize = 7)().createResults(queryState).map(_("id")).toList
+
+    // then
+    result should equal((0L until 50L).toList)
+  }
+
+  test("should read every morsel in a transaction of its own") {
+    // when
+    ParallelPipe(ids, 4, morselSize = 7)().createResults(queryState).toList
+
+    // then
+    verify(query, times(15)).close(true)
+  }
+
+  test("should merge the sorted results of the morsels") {
+    // given
+    val source = SortPipe(ids, List(Descending("id")))()
+
+    // when
+    val result = ParallelPipe(source, 4, Seq(SortItem(Identifier("id"), ascending = false)), morselSize = 7)()
+      .createResults(queryState).map(_("id")).toList
+
+    // then
+    result should equal((99L to 0L by -1).toList)
+  }
+
+  test("should not run more than twice as many morsels as the parallelism ahead of the merge") {
+    // given
+    val stepping = new SteppingExecutor
+    when(query.parallelReads).thenReturn(Some(ParallelReads(stepping, () => query)))
+    val source = SortPipe(ids, List(Descending("id")))()
+    val pipe = ParallelPipe(source, 2, Seq(SortItem(Identifier("id"), ascending = false)), morselSize = 7)()
+
+    // when
+    val consumer = Executors.newSingleThreadExecutor()
+    val result = try {
+      val future = consumer.submit(new Callable[List[Any]] {
+        def call(): List[Any] = pipe.createResults(queryState).map(_("id")).toList
+      })
+      while (!future.isDone)
+        Option(stepping.pending.poll(10, TimeUnit.MILLISECONDS)).foreach(_.run())
+      future.get()
+    } finally {
+      consumer.shutdown()
+    }
+
+    // then
+    result should equal((99L to 0L by -1).toList)
+    stepping.mostPending should equal(4)
+  }
+
+  test("should cancel the morsels that have not started when the query is closed") {
+    // given
+    val stepping = new SteppingExecutor
+    when(query.parallelReads).thenReturn(Some(ParallelReads(stepping, () => query)))
+    val state = QueryStateHelper.emptyWith(query = query)
+    ParallelPipe(ids, 2, morselSize = 7)().createResults(state)
+
+    // when
+    state.closer.close(success = false)
+    stepping.pending.asScala.foreach(_.run())
+
+    // then
+    stepping.mostPending should equal(4)
+    verify(query, never()).close(anyBoolean())
+  }
+
+  test("should run its source on this thread when the query can not be read from other threads") {
+    // given
+    when(query.parallelReads).thenReturn(None)
+
+    // when
+    val result = ParallelPipe(ids, 4, morselSize = 7)().createResults(queryState).map(_("id")).toList
+
+    // then
+    result should equal((0L until 100L).toList)
+    verify(query, never()).close(anyBoolean())
+  }
+
+  test("should merge the counts of the morsels") {
+    // given
+    val aggregation = EagerAggregationPipe(ids, Map.empty, Map("count" -> CountStar()))()
+
+    // when
+    val parallel = parallelize(aggregation, 4)
+
+    // then
+    parallel match {
+      case EagerAggregationPipe(ParallelPipe(`aggregation`, 4, Seq(), _), keys, aggregations) =>
+        keys should be(empty)
+        aggregations should equal(Map("count" -> Sum(Identifier("count"))))
+      case _ =>
+        fail("Expected the aggregation to be split, but got " + parallel)
+    }
+    parallel.createResults(queryState).map(_("count")).toList should equal(List(100L))
+  }
+
+  test("should aggregate the rows of all morsels when the aggregation can not be merged") {
+    // given
+    val aggregation = EagerAggregationPipe(ids, Map.empty, Map("ids" -> Collect(Identifier("id"))))()
+
+    // when
+    val parallel = parallelize(aggregation, 4)
+
+    // then
+    parallel should equal(EagerAggregationPipe(ParallelPipe(ids, 4)(), Map.empty, Map("ids" -> Collect(Identifier("id"))))())
+  }
+
+  test("should not rewrite plans when the parallelism is zero") {
+    // given
+    val aggregation = EagerAggregationPipe(ids, Map.empty, Map("count" -> CountStar()))()
+
+    // when
+    val parallel = parallelize(aggregation, 0)
+
+    // then
+    parallel should be theSameInstanceAs aggregation
+  }
+
+  // Holds on to the morsels until the test runs them
+  class SteppingExecutor extends Executor {
+    val pending = new LinkedBlockingQueue[Runnable]()
+    @volatile var mostPending = 0
+
+    def execute(command: Runnable) {
+      pending.add(command)
+      mostPending = math.max(mostPending, pending.size)
+    }
+  }
+}
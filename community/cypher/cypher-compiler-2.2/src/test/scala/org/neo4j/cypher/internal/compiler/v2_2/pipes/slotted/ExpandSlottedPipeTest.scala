@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted
+
+import org.mockito.Matchers._
+import org.mockito.Mockito._
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_2.ExecutionContext
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.{Pipe, PipeMonitor, QueryStateHelper}
+import org.neo4j.cypher.internal.compiler.v2_2.spi.QueryContext
+import org.neo4j.cypher.internal.compiler.v2_2.symbols._
+import org.neo4j.graphdb.Direction
+
+class ExpandSlottedPipeTest extends CypherFunSuite {
+
+  implicit val monitor = mock[PipeMonitor]
+  val query = mock[QueryContext]
+  val queryState = QueryStateHelper.emptyWith(query = query)
+
+  val sourceSlots = SlotConfiguration.empty.newNode("a")
+  val slots = sourceSlots.newRelationship("r").newNode("b")
+
+  test("should put the ids of the relationships and of their other nodes in the slots") {
+    // given
+    mockRelationships(1L, 10L -> 2L, 11L -> 3L)
+    val source = newMockedPipe(sourceRow(1L))
+
+    // when
+    val result = ExpandSlottedPipe(source, "a", "r", "b", Direction.OUTGOING, Seq.empty, slots)()
+      .createResults(queryState).toList
+
+    // then
+    result.map(_.asInstanceOf[SlottedExecutionContext].longs.toList) should equal(List(
+      List(1L, 10L, 2L),
+      List(1L, 11L, 3L)))
+  }
+
+  test("should support self loops") {
+    // given
+    mockRelationships(1L, 10L -> 1L)
+    val source = newMockedPipe(sourceRow(1L))
+
+    // when
+    val result = ExpandSlottedPipe(source, "a", "r", "b", Direction.BOTH, Seq.empty, slots)()
+      .createResults(queryState).toList
+
+    // then
+    result.map(_.asInstanceOf[SlottedExecutionContext].longs.toList) should equal(List(List(1L, 10L, 1L)))
+  }
+
+  test("given a null start point, returns an empty iterator") {
+    // given
+    mockRelationships(1L, 10L -> 2L)
+    val source = newMockedPipe(sourceRow(SlottedExecutionContext.NULL_ENTITY))
+
+    // when
+    val result = ExpandSlottedPipe(source, "a", "r", "b", Direction.OUTGOING, Seq.empty, slots)()
+      .createResults(queryState).toList
+
+    // then
+    result should be(empty)
+  }
+
+  test("should not touch the slots of the source row") {
+    // given
+    mockRelationships(1L, 10L -> 2L)
+    val row = sourceRow(1L)
+    val source = newMockedPipe(row)
+
+    // when
+    ExpandSlottedPipe(source, "a", "r", "b", Direction.OUTGOING, Seq.empty, slots)().createResults(queryState).toList
+
+    // then
+    row.longs.toList should equal(List(1L))
+  }
+
+  private def sourceRow(node: Long) = {
+    val row = SlottedExecutionContext(sourceSlots, query)
+    row.longs(0) = node
+    row
+  }
+
+  private def mockRelationships(node: Long, rels: (Long, Long)*) {
+    when(query.getRelationshipIdsForIds(anyLong(), any(), any())).thenAnswer(new Answer[Iterator[Long]] {
+      def answer(invocation: InvocationOnMock): Iterator[Long] = rels.iterator.map(_._1)
+    })
+    rels.foreach {
+      case (rel, other) => when(query.getOtherNodeIdFor(rel, node)).thenReturn(other)
+    }
+  }
+
+  private def newMockedPipe(rows: ExecutionContext*): Pipe = {
+    val pipe = mock[Pipe]
+    when(pipe.sources).thenReturn(Seq.empty)
+    when(pipe.symbols).thenReturn(SymbolTable(Map("a" -> CTNode)))
+    when(pipe.createResults(any())).thenAnswer(new Answer[Iterator[ExecutionContext]] {
+      def answer(invocation: InvocationOnMock): Iterator[ExecutionContext] = rows.iterator
+    })
+    pipe
+  }
+}
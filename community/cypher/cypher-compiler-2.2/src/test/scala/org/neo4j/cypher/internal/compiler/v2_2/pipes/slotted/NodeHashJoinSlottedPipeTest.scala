@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted
+
+import org.mockito.Mockito._
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.{Pipe, PipeMonitor, QueryStateHelper}
+import org.neo4j.cypher.internal.compiler.v2_2.spi.QueryContext
+import org.neo4j.cypher.internal.compiler.v2_2.symbols._
+
+class NodeHashJoinSlottedPipeTest extends CypherFunSuite {
+
+  implicit val monitor = mock[PipeMonitor]
+  val query = mock[QueryContext]
+  val queryState = QueryStateHelper.emptyWith(query = query)
+
+  test("should join on the ids in the node slots") {
+    // given
+    val leftSlots = SlotConfiguration.empty.newNode("b")
+    val rightSlots = SlotConfiguration.empty.newNode("b")
+    val left = newMockedPipe(leftSlots, rows(leftSlots, Array(1L), Array(2L)))
+    val right = newMockedPipe(rightSlots, rows(rightSlots, Array(2L), Array(3L)))
+
+    // when
+    val result = NodeHashJoinSlottedPipe(Set("b"), left, right, leftSlots, rightSlots, leftSlots ++ rightSlots)()
+      .createResults(queryState).toList
+
+    // then
+    result.map(longsOf) should equal(List(List(2L)))
+  }
+
+  test("should copy the slots that only the right side has after the ones of the left side") {
+    // given
+    val leftSlots = SlotConfiguration.empty.newNode("a").newNode("b")
+    val rightSlots = SlotConfiguration.empty.newNode("b").newNode("c")
+    val left = newMockedPipe(leftSlots, rows(leftSlots, Array(10L, 1L), Array(11L, 1L)))
+    val right = newMockedPipe(rightSlots, rows(rightSlots, Array(1L, 20L), Array(2L, 21L)))
+
+    // when
+    val result = NodeHashJoinSlottedPipe(Set("b"), left, right, leftSlots, rightSlots, leftSlots ++ rightSlots)()
+      .createResults(queryState).toList
+
+    // then
+    result.map(longsOf) should equal(List(List(10L, 1L, 20L), List(11L, 1L, 20L)))
+  }
+
+  test("should join on two nodes") {
+    // given
+    val leftSlots = SlotConfiguration.empty.newNode("a").newNode("b")
+    val rightSlots = SlotConfiguration.empty.newNode("b").newNode("a")
+    val left = newMockedPipe(leftSlots, rows(leftSlots, Array(1L, 2L), Array(1L, 3L)))
+    val right = newMockedPipe(rightSlots, rows(rightSlots, Array(2L, 1L), Array(1L, 3L)))
+
+    // when
+    val result = NodeHashJoinSlottedPipe(Set("a", "b"), left, right, leftSlots, rightSlots, leftSlots ++ rightSlots)()
+      .createResults(queryState).toList
+
+    // then
+    result.map(longsOf) should equal(List(List(1L, 2L)))
+  }
+
+  test("should not join rows where a join node is null") {
+    // given
+    val leftSlots = SlotConfiguration.empty.newNode("b")
+    val rightSlots = SlotConfiguration.empty.newNode("b")
+    val nothing = SlottedExecutionContext.NULL_ENTITY
+    val left = newMockedPipe(leftSlots, rows(leftSlots, Array(nothing)))
+    val right = newMockedPipe(rightSlots, rows(rightSlots, Array(nothing)))
+
+    // when
+    val result = NodeHashJoinSlottedPipe(Set("b"), left, right, leftSlots, rightSlots, leftSlots ++ rightSlots)()
+      .createResults(queryState).toList
+
+    // then
+    result should be(empty)
+  }
+
+  private def longsOf(row: Any) = row.asInstanceOf[SlottedExecutionContext].longs.toList
+
+  private def rows(slots: SlotConfiguration, values: Array[Long]*) = values.map {
+    longs =>
+      val row = SlottedExecutionContext(slots, query)
+      System.arraycopy(longs, 0, row.longs, 0, longs.length)
+      row
+  }
+
+  private def newMockedPipe(slots: SlotConfiguration, rows: Seq[SlottedExecutionContext]): Pipe = {
+    val pipe = mock[Pipe]
+    when(pipe.sources).thenReturn(Seq.empty)
+    when(pipe.symbols).thenReturn(SymbolTable(slots.longSlots.mapValues(_ => CTNode)))
+    when(pipe.createResults(queryState)).thenReturn(rows.iterator)
+    pipe
+  }
+}
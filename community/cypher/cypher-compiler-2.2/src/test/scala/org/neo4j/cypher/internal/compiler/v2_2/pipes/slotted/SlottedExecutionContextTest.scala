@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted
+
+import org.mockito.Mockito._
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_2.mutation.UpdateAction
+import org.neo4j.cypher.internal.compiler.v2_2.spi.QueryContext
+import org.neo4j.cypher.internal.compiler.v2_2.{CypherTypeException, ExecutionContext, InternalException}
+import org.neo4j.graphdb.{Node, Relationship}
+
+import scala.collection.mutable.Queue
+
+class SlottedExecutionContextTest extends CypherFunSuite {
+
+  val query = mock[QueryContext]
+  val node = newMockedNode(12)
+  val relationship = newMockedRelationship(42)
+  val slots = SlotConfiguration.empty.newNode("a").newRelationship("r").newReference("x")
+
+  test("should keep nodes and relationships as ids in their slots") {
+    val row = SlottedExecutionContext(slots, query)
+
+    row += "a" -> node
+    row += "r" -> relationship
+
+    row.longs should equal(Array(12L, 42L))
+    row("a") should equal(node)
+    row("r") should equal(relationship)
+  }
+
+  test("should keep other values in their slots and in a map on the side") {
+    val row = SlottedExecutionContext(slots, query)
+
+    row += "x" -> "hello"
+    row += "y" -> 17
+
+    row.refs should equal(Array("hello"))
+    row.toMap should equal(Map("a" -> null, "r" -> null, "x" -> "hello", "y" -> 17))
+  }
+
+  test("should read a null entity out of an empty slot") {
+    val row = SlottedExecutionContext(slots, query)
+
+    row += "a" -> null
+
+    row.longs(0) should equal(SlottedExecutionContext.NULL_ENTITY)
+    row.get("a") should equal(Some(null))
+  }
+
+  test("should not put a relationship in the slot of a node") {
+    val row = SlottedExecutionContext(slots, query)
+
+    intercept[CypherTypeException](row += "a" -> relationship)
+  }
+
+  test("should not remove a value that has a slot") {
+    val row = SlottedExecutionContext(slots, query)
+
+    intercept[InternalException](row -= "a")
+  }
+
+  test("new rows should not share slots with the row they come from") {
+    val row = SlottedExecutionContext(slots, query)
+    row += "a" -> node
+
+    val newRow = row.newWith1("x", 1)
+    newRow += "a" -> null
+
+    row("a") should equal(node)
+    row.get("x") should equal(Some(null))
+    newRow("x") should equal(1)
+  }
+
+  test("should copy its slots to the same offsets in a bigger configuration") {
+    val row = SlottedExecutionContext(slots, query)
+    row += "a" -> node
+    row += "x" -> "hello"
+    row += "y" -> 17
+
+    val bigger = slots.newNode("b")
+    val copy = row.copyTo(bigger)
+
+    copy.longs should equal(Array(12L, SlottedExecutionContext.NULL_ENTITY, SlottedExecutionContext.NULL_ENTITY))
+    copy("x") should equal("hello")
+    copy("y") should equal(17)
+  }
+
+  test("should be equal to a map backed row with the same values") {
+    val row = SlottedExecutionContext(SlotConfiguration.empty.newNode("a"), query)
+    row += "a" -> node
+
+    row.toMap should equal(ExecutionContext.from("a" -> node).toMap)
+  }
+
+  test("copies should share the mutation commands of the row they come from") {
+    val row = SlottedExecutionContext(slots, query)
+    val action = mock[UpdateAction]
+
+    val copy = row.newWith1("y", 17).copyTo(slots.newReference("z"))
+    copy.mutationCommands += action
+
+    row.mutationCommands should equal(Queue(action))
+    row.clone().mutationCommands should equal(Queue(action))
+  }
+
+  private def newMockedNode(id: Long): Node = {
+    val node = mock[Node]
+    when(node.getId).thenReturn(id)
+    when(query.nodeById(id)).thenReturn(node)
+    node
+  }
+
+  private def newMockedRelationship(id: Long): Relationship = {
+    val relationship = mock[Relationship]
+    when(relationship.getId).thenReturn(id)
+    when(query.relationshipById(id)).thenReturn(relationship)
+    relationship
+  }
+}
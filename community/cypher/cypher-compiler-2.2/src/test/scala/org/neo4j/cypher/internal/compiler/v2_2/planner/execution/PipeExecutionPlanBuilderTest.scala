@@ -38,7 +38,7 @@ class PipeExecutionPlanBuilderTest extends CypherFunSuite with LogicalPlanningTe
   implicit val pipeBuildContext = newMockedPipeExecutionPlanBuilderContext
   val patternRel = PatternRelationship("r", ("a", "b"), Direction.OUTGOING, Seq.empty, SimplePatternLength)
 
-  val planBuilder = new PipeExecutionPlanBuilder(monitors)
+  val planBuilder = new PipeExecutionPlanBuilder(monitors, slotted = false)
 
   def build(f: PlannerQuery => LogicalPlan): PipeInfo =
     planBuilder.build(f(solved))
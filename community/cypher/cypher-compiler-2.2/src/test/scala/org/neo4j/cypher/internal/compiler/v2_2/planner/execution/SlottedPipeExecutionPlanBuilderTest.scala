@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.planner.execution
+
+import org.mockito.Mockito._
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_2.LabelId
+import org.neo4j.cypher.internal.compiler.v2_2.ast.{RelTypeName, SignedDecimalIntegerLiteral}
+import org.neo4j.cypher.internal.compiler.v2_2.executionplan.PipeInfo
+import org.neo4j.cypher.internal.compiler.v2_2.pipes._
+import org.neo4j.cypher.internal.compiler.v2_2.pipes.slotted._
+import org.neo4j.cypher.internal.compiler.v2_2.planner._
+import org.neo4j.cypher.internal.compiler.v2_2.planner.logical.plans._
+import org.neo4j.cypher.internal.compiler.v2_2.planner.logical.plans.EntityByIdExprs
+import org.neo4j.cypher.internal.compiler.v2_2.spi.{Operations, QueryContext}
+import org.neo4j.graphdb.{Direction, Node, Relationship}
+
+class SlottedPipeExecutionPlanBuilderTest extends CypherFunSuite with LogicalPlanningTestSupport {
+
+  implicit val planContext = newMockedPlanContext
+  implicit val pipeMonitor = monitors.newMonitor[PipeMonitor]()
+  implicit val LogicalPlanningContext = newMockedLogicalPlanningContext(planContext)
+  implicit val pipeBuildContext = newMockedPipeExecutionPlanBuilderContext
+
+  val planBuilder = new PipeExecutionPlanBuilder(monitors, slotted = true)
+
+  def build(f: PlannerQuery => LogicalPlan): PipeInfo =
+    planBuilder.build(f(solved))
+
+  test("all nodes scan gets a slot for its node") {
+    val logicalPlan = AllNodesScan(IdName("n"), Set.empty)_
+
+    build(logicalPlan).pipe should equal(AllNodesScanSlottedPipe("n", SlotConfiguration.empty.newNode("n"))())
+  }
+
+  test("label scan gets a slot for its node") {
+    val logicalPlan = NodeByLabelScan(IdName("n"), Right(LabelId(12)), Set.empty)_
+
+    build(logicalPlan).pipe should equal(
+      NodeByLabelScanSlottedPipe("n", Right(LabelId(12)), SlotConfiguration.empty.newNode("n"))())
+  }
+
+  test("expand adds slots for the relationship and the node at its other end") {
+    val logicalPlan = Expand(AllNodesScan("a", Set.empty)(solved), "a", Direction.INCOMING, Direction.INCOMING, Seq(), "b", "r1", SimplePatternLength)_
+
+    val scanSlots = SlotConfiguration.empty.newNode("a")
+    build(logicalPlan).pipe should equal(ExpandSlottedPipe(
+      AllNodesScanSlottedPipe("a", scanSlots)(), "a", "r1", "b", Direction.INCOMING, Seq(),
+      scanSlots.newRelationship("r1").newNode("b"))())
+  }
+
+  test("expand with unknown relationship types falls back to the map backed pipe") {
+    val names = Seq("existing1", "nonexisting", "existing3")
+    val relTypeNames = names.map(new RelTypeName(_)(null))
+    val logicalPlan = Expand(AllNodesScan("a", Set.empty)(solved), "a", Direction.INCOMING, Direction.INCOMING, relTypeNames, "b", "r1", SimplePatternLength)_
+
+    build(logicalPlan).pipe should equal(ExpandPipeForStringTypes(
+      AllNodesScanSlottedPipe("a", SlotConfiguration.empty.newNode("a"))(), "a", "r1", "b", Direction.INCOMING, names)())
+  }
+
+  test("hash join of slotted pipes joins on the node slots") {
+    val logicalPlan =
+      NodeHashJoin(
+        Set(IdName("b")),
+        Expand(AllNodesScan("a", Set.empty)(solved), "a", Direction.INCOMING, Direction.INCOMING, Seq(), "b", "r1", SimplePatternLength)(solved),
+        Expand(AllNodesScan("c", Set.empty)(solved), "c", Direction.INCOMING, Direction.INCOMING, Seq(), "b", "r2", SimplePatternLength)(solved)
+      )_
+
+    val leftSlots = SlotConfiguration.empty.newNode("a").newRelationship("r1").newNode("b")
+    val rightSlots = SlotConfiguration.empty.newNode("c").newRelationship("r2").newNode("b")
+
+    build(logicalPlan).pipe should equal(NodeHashJoinSlottedPipe(
+      Set("b"),
+      ExpandSlottedPipe(AllNodesScanSlottedPipe("a", SlotConfiguration.empty.newNode("a"))(), "a", "r1", "b", Direction.INCOMING, Seq(), leftSlots)(),
+      ExpandSlottedPipe(AllNodesScanSlottedPipe("c", SlotConfiguration.empty.newNode("c"))(), "c", "r2", "b", Direction.INCOMING, Seq(), rightSlots)(),
+      leftSlots, rightSlots, leftSlots ++ rightSlots)())
+  }
+
+  test("cartesian product of a map backed pipe and a slotted pipe has the values of both") {
+    val nodes = Seq(newMockedNode(1), newMockedNode(2))
+    val logicalPlan = CartesianProduct(
+      NodeByIdSeek("a", EntityByIdExprs(Seq(SignedDecimalIntegerLiteral("1")_)), Set.empty)(solved),
+      AllNodesScan("b", Set.empty)(solved)
+    )_
+
+    val pipe = build(logicalPlan).pipe
+    pipe.asInstanceOf[CartesianProductPipe].rhs shouldBe an[AllNodesScanSlottedPipe]
+
+    val result = pipe.createResults(newQueryState(nodes)).toList
+    result.map(row => (row("a"), row("b"))) should equal(List(nodes(0) -> nodes(0), nodes(0) -> nodes(1)))
+  }
+
+  test("hash join of a slotted pipe and a map backed pipe has the values of both") {
+    val nodes = Seq(newMockedNode(1), newMockedNode(2))
+    val logicalPlan = NodeHashJoin(
+      Set(IdName("b")),
+      Expand(AllNodesScan("a", Set.empty)(solved), "a", Direction.OUTGOING, Direction.OUTGOING, Seq(), "b", "r", SimplePatternLength)(solved),
+      NodeByIdSeek("b", EntityByIdExprs(Seq(SignedDecimalIntegerLiteral("2")_)), Set.empty)(solved)
+    )_
+    val query = newQueryContext(nodes)
+    val relationship = mock[Relationship]
+    when(query.getRelationshipIdsForIds(1L, Direction.OUTGOING, Seq.empty)).thenReturn(Iterator(7L))
+    when(query.getRelationshipIdsForIds(2L, Direction.OUTGOING, Seq.empty)).thenReturn(Iterator.empty)
+    when(query.getOtherNodeIdFor(7L, 1L)).thenReturn(2L)
+    when(query.relationshipById(7L)).thenReturn(relationship)
+
+    val pipe = build(logicalPlan).pipe
+    pipe shouldBe a[NodeHashJoinPipe]
+
+    val result = pipe.createResults(QueryStateHelper.emptyWith(query = query)).toList
+    result.map(row => (row("a"), row("r"), row("b"))) should equal(List((nodes(0), relationship, nodes(1))))
+  }
+
+  private def newMockedNode(id: Long) = {
+    val node = mock[Node]
+    when(node.getId).thenReturn(id)
+    node
+  }
+
+  private def newQueryContext(nodes: Seq[Node]) = {
+    val query = mock[QueryContext]
+    val nodeOps = mock[Operations[Node]]
+    when(query.nodeOps).thenReturn(nodeOps)
+    val ids = nodes.map(_.getId)
+    when(query.getAllNodeIds).thenReturn(ids.iterator)
+    for ((id, node) <- ids.zip(nodes)) {
+      when(query.nodeById(id)).thenReturn(node)
+      when(nodeOps.getById(id)).thenReturn(node)
+    }
+    query
+  }
+
+  private def newQueryState(nodes: Seq[Node]) = QueryStateHelper.emptyWith(query = newQueryContext(nodes))
+}
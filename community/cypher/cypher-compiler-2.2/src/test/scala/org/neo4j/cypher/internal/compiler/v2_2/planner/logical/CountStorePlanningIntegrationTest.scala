@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_2.planner.logical
+
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_2.planner.logical.plans._
+import org.neo4j.cypher.internal.compiler.v2_2.planner.{LogicalPlanningTestSupport2, PlannerQuery}
+
+class CountStorePlanningIntegrationTest extends CypherFunSuite with LogicalPlanningTestSupport2 {
+
+  test("should plan counting all nodes from the count store") {
+    planFor("MATCH (n) RETURN count(n)").plan should equal(
+      NodeCountFromCountStore("count(n)", None, Set.empty)(PlannerQuery.empty)
+    )
+  }
+
+  test("should plan counting nodes with a label from the count store") {
+    implicit val plan = new given {
+      knownLabels = Set("Awesome")
+    } planFor "MATCH (n:Awesome) RETURN count(*)"
+
+    plan.plan should equal(
+      NodeCountFromCountStore("count(*)", Some(Right(labelId("Awesome"))), Set.empty)(PlannerQuery.empty)
+    )
+  }
+
+  test("should plan counting relationships by type and start label from the count store") {
+    planFor("MATCH (:A)-[r:T]->() RETURN count(r)").plan should equal(
+      RelationshipCountFromCountStore("count(r)", Some(Left("A")), Some(Left("T")), None, Set.empty)(PlannerQuery.empty)
+    )
+  }
+
+  test("should plan counting incoming relationships by their end label from the count store") {
+    planFor("MATCH (a:A)<-[:T]-(b) RETURN count(*)").plan should equal(
+      RelationshipCountFromCountStore("count(*)", None, Some(Left("T")), Some(Left("A")), Set.empty)(PlannerQuery.empty)
+    )
+  }
+
+  test("should not plan counting from the count store when both nodes have labels") {
+    planFor("MATCH (:A)-[:T]->(:B) RETURN count(*)").plan shouldBe an[Aggregation]
+  }
+
+  test("should not plan counting from the count store when there are other predicates") {
+    planFor("MATCH (n:A) WHERE n.prop = 42 RETURN count(n)").plan shouldBe an[Aggregation]
+  }
+
+  test("should not plan counting from the count store when counting distinct values") {
+    planFor("MATCH (n:A) RETURN count(DISTINCT n)").plan shouldBe an[Aggregation]
+  }
+}
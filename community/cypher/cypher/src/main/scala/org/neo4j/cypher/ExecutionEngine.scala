@@ -54,6 +54,9 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
 
   private val parsedQueries = new LRUCache[String, ParsedQuery](getPlanCacheSize)
 
+  // The plan cache in use, and the schema that its plans were made against
+  @volatile private var lastPlans: Option[(LRUCache[String, (ExecutionPlan, Map[String, Any])], Option[SchemaSnapshot])] = None
+
   @throws(classOf[SyntaxException])
   def profile(query: String): ExtendedExecutionResult = profile(query, Map[String, Any]())
 
@@ -97,7 +100,7 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
         // fetch plan cache
         val cache: LRUCache[String, (ExecutionPlan, Map[String, Any])] = getOrCreateFromSchemaState(kernelStatement, {
           cacheMonitor.cacheFlushDetected(kernelStatement)
-          new LRUCache[String, (ExecutionPlan, Map[String, Any])](getPlanCacheSize)
+          createPlanCache(kernelStatement)
         })
 
         Iterator.continually {
@@ -145,6 +148,28 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
     .getDependencyResolver
     .resolveDependency(classOf[ThreadToStatementContextBridge])
 
+  /*
+   * The schema state is cleared on every schema change, but only the plans that use the indexes or constraints that
+   * changed need to go. The others are carried over into the new cache. In-flight planning still puts its plans in
+   * the old cache, which is no longer reachable.
+   */
+  private def createPlanCache(statement: api.Statement): LRUCache[String, (ExecutionPlan, Map[String, Any])] = {
+    val cache = new LRUCache[String, (ExecutionPlan, Map[String, Any])](getPlanCacheSize)
+    val snapshot = SchemaSnapshot.of(statement)
+
+    for ((oldCache, Some(oldSnapshot)) <- lastPlans; newSnapshot <- snapshot) {
+      val changes = oldSnapshot.changes(newSnapshot)
+      oldCache.inner.asScala.foreach {
+        case (queryText, entry@(plan, _)) if plan.schemaDependencies.exists(_.forall(dependency => !changes(dependency))) =>
+          cache.put(queryText, entry)
+        case _ =>
+      }
+    }
+
+    lastPlans = Some(cache -> snapshot)
+    cache
+  }
+
   private def getOrCreateFromSchemaState[V](statement: api.Statement, creator: => V) = {
     val javaCreator = new org.neo4j.helpers.Function[ExecutionEngine, V]() {
       def apply(key: ExecutionEngine) = creator
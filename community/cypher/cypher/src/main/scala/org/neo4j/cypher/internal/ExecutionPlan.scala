@@ -34,4 +34,8 @@ trait ExecutionPlan {
   def isPeriodicCommit: Boolean
 
   def isStale(graph: GraphDatabaseAPI, statement: Statement): Boolean
+
+  // The labels and property keys of the indexes and constraints that the plan was built with, or without. Plans that
+  // do not know this depend on the whole schema.
+  def schemaDependencies: Option[Set[(String, String)]] = None
 }
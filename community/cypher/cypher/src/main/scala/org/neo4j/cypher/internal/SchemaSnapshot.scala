@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import org.neo4j.kernel.api.Statement
+import org.neo4j.kernel.api.exceptions.index.IndexNotFoundKernelException
+import org.neo4j.kernel.api.index.IndexDescriptor
+import org.neo4j.kernel.impl.api.KernelStatement
+
+import scala.collection.JavaConverters._
+
+/*
+ * The indexes and uniqueness constraints of the schema, with the states of the indexes, by the names of the labels and
+ * property keys that they are on.
+ */
+case class SchemaSnapshot(rules: Set[SchemaSnapshot.Rule]) {
+
+  // The labels and property keys of the indexes and constraints that are not the same in the other snapshot
+  def changes(other: SchemaSnapshot): Set[(String, String)] =
+    ((rules diff other.rules) ++ (other.rules diff rules)).map(rule => rule.label -> rule.propertyKey)
+}
+
+object SchemaSnapshot {
+  case class Rule(kind: String, label: String, propertyKey: String)
+
+  // None when the statement has changes of its own, since they might not be committed
+  def of(statement: Statement): Option[SchemaSnapshot] = statement match {
+    case kernel: KernelStatement if kernel.hasTxStateWithChanges =>
+      None
+    case _ =>
+      val read = statement.readOperations()
+      def name(labelId: Int, propertyKeyId: Int) = (read.labelGetName(labelId), read.propertyKeyGetName(propertyKeyId))
+      def state(descriptor: IndexDescriptor) =
+        try { read.indexGetState(descriptor).name() } catch { case _: IndexNotFoundKernelException => "NOT_FOUND" }
+
+      val indexes = read.indexesGetAll().asScala.map {
+        index =>
+          val (label, propertyKey) = name(index.getLabelId, index.getPropertyKeyId)
+          Rule("index " + state(index), label, propertyKey)
+      }
+      val uniqueIndexes = read.uniqueIndexesGetAll().asScala.map {
+        index =>
+          val (label, propertyKey) = name(index.getLabelId, index.getPropertyKeyId)
+          Rule("unique index " + state(index), label, propertyKey)
+      }
+      val constraints = read.constraintsGetAll().asScala.map {
+        constraint =>
+          val (label, propertyKey) = name(constraint.label, constraint.propertyKeyId)
+          Rule("uniqueness constraint", label, propertyKey)
+      }
+      Some(SchemaSnapshot((indexes ++ uniqueIndexes ++ constraints).toSet))
+  }
+}
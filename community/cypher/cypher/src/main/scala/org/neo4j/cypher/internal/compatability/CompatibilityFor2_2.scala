@@ -152,6 +152,8 @@ trait CompatibilityFor2_2 {
       val statistics = new TransactionBoundGraphStatistics(statement)
       inner.isStale(lastTxId, statistics)
     }
+
+    override def schemaDependencies = Some(inner.schemaDependencies)
   }
 
 }
@@ -270,8 +272,9 @@ case class CompatibilityPlanDescription(inner: InternalPlanDescription, version:
 case class CompatibilityFor2_2Cost(graph: GraphDatabaseService,
                                    queryCacheSize: Int,
                                    kernelMonitors: KernelMonitors,
-                                   kernelAPI: KernelAPI) extends CompatibilityFor2_2 {
-  protected val compiler = CypherCompilerFactory.ronjaCompiler(graph, queryCacheSize, kernelMonitors)
+                                   kernelAPI: KernelAPI,
+                                   parallelism: Int = 0) extends CompatibilityFor2_2 {
+  protected val compiler = CypherCompilerFactory.ronjaCompiler(graph, queryCacheSize, kernelMonitors, parallelism)
 }
 
 case class CompatibilityFor2_2Rule(graph: GraphDatabaseService,
@@ -110,6 +110,15 @@ class ExceptionTranslatingQueryContext(inner: QueryContext) extends DelegatingQu
         work(new ExceptionTranslatingQueryContext(qc))
       ))
 
+  override def nodeCountByCountStore(labelId: Option[Int]) =
+    translateException(super.nodeCountByCountStore(labelId))
+
+  override def relationshipCountByCountStore(startLabelId: Option[Int], typeId: Option[Int], endLabelId: Option[Int]) =
+    translateException(super.relationshipCountByCountStore(startLabelId, typeId, endLabelId))
+
+  override def parallelReads: Option[ParallelReads] =
+    super.parallelReads.map(reads => reads.copy(newContext = () => new ExceptionTranslatingQueryContext(translateException(reads.newContext()))))
+
   override def isLabelSetOnNode(label: Int, node: Long): Boolean =
     translateException(super.isLabelSetOnNode(label, node))
 
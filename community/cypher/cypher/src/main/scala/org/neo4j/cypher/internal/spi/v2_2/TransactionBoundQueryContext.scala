@@ -19,6 +19,8 @@
  */
 package org.neo4j.cypher.internal.spi.v2_2
 
+import java.util.concurrent.Executor
+
 import org.neo4j.collection.primitive.PrimitiveLongIterator
 import org.neo4j.cypher.internal.compiler.v2_2.{EntityNotFoundException, FailedIndexException}
 import org.neo4j.cypher.internal.compiler.v2_2.spi._
@@ -32,8 +34,9 @@ import org.neo4j.kernel.api._
 import org.neo4j.kernel.api.constraints.UniquenessConstraint
 import org.neo4j.kernel.api.exceptions.schema.{AlreadyConstrainedException, AlreadyIndexedException}
 import org.neo4j.kernel.api.index.{IndexDescriptor, InternalIndexState}
-import org.neo4j.kernel.impl.api.KernelStatement
-import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge
+import org.neo4j.kernel.impl.api.{KernelStatement, RelationshipVisitor}
+import org.neo4j.kernel.impl.core.{NodeManager, ThreadToStatementContextBridge}
+import org.neo4j.kernel.impl.util.JobScheduler
 import org.neo4j.kernel.{GraphDatabaseAPI, InternalAbstractGraphDatabase}
 import org.neo4j.tooling.GlobalGraphOperations
 
@@ -48,6 +51,7 @@ final class TransactionBoundQueryContext(graph: GraphDatabaseAPI,
 
   private var open = true
   private val txBridge = graph.getDependencyResolver.resolveDependency(classOf[ThreadToStatementContextBridge])
+  private val nodeManager = graph.getDependencyResolver.resolveDependency(classOf[NodeManager])
 
   def isOpen = open
 
@@ -118,6 +122,25 @@ final class TransactionBoundQueryContext(graph: GraphDatabaseAPI,
     case _ => JavaConversionSupport.asScala(statement.readOperations().nodeGetRelationships(node.getId, dir, types: _* )).map(relationshipOps.getById)
   }
 
+  def getRelationshipIdsForIds(node: Long, dir: Direction, types: Seq[Int]): Iterator[Long] = types match {
+    case Seq() => JavaConversionSupport.asScala(statement.readOperations().nodeGetRelationships(node, dir))
+    case _ => JavaConversionSupport.asScala(statement.readOperations().nodeGetRelationships(node, dir, types: _* ))
+  }
+
+  def getOtherNodeIdFor(relationship: Long, node: Long): Long = {
+    var otherNode = -1L
+    statement.readOperations().relationshipVisit(relationship, new RelationshipVisitor[RuntimeException] {
+      def visit(relId: Long, `type`: Int, startNode: Long, endNode: Long) {
+        otherNode = if (startNode == node) endNode else startNode
+      }
+    })
+    otherNode
+  }
+
+  def nodeById(id: Long): Node = nodeManager.newNodeProxyById(id)
+
+  def relationshipById(id: Long): Relationship = nodeManager.newRelationshipProxyById(id)
+
   def exactIndexSearch(index: IndexDescriptor, value: Any) =
     mapToScala(statement.readOperations().nodesGetFromIndexLookup(index, value))(nodeOps.getById)
 
@@ -138,6 +161,49 @@ final class TransactionBoundQueryContext(graph: GraphDatabaseAPI,
   def getNodesByLabel(id: Int): Iterator[Node] =
     mapToScala(statement.readOperations().nodesGetForLabel(id))(nodeOps.getById)
 
+  def getNodeIdsByLabel(id: Int): Iterator[Long] =
+    JavaConversionSupport.asScala(statement.readOperations().nodesGetForLabel(id))
+
+  def getAllNodeIds: Iterator[Long] =
+    JavaConversionSupport.asScala(statement.readOperations().nodesGetAll())
+
+  // The kernel adds the changes of this transaction to what the counts store knows about committed transactions
+  def nodeCountByCountStore(labelId: Option[Int]): Long =
+    statement.readOperations().countsForNode(labelId.getOrElse(TransactionBoundGraphStatistics.WILDCARD))
+
+  def relationshipCountByCountStore(startLabelId: Option[Int], typeId: Option[Int], endLabelId: Option[Int]): Long = {
+    require(startLabelId.isEmpty || endLabelId.isEmpty, "Relationships are not counted by the labels of both of their nodes")
+    statement.readOperations().countsForRelationship(
+      startLabelId.getOrElse(TransactionBoundGraphStatistics.WILDCARD),
+      typeId.getOrElse(TransactionBoundGraphStatistics.WILDCARD),
+      endLabelId.getOrElse(TransactionBoundGraphStatistics.WILDCARD))
+  }
+
+  def parallelReads: Option[ParallelReads] = statement match {
+    case kernel: KernelStatement if !kernel.hasTxStateWithChanges =>
+      Some(ParallelReads(parallelReadsExecutor, () => {
+        val tx = graph.beginTx()
+        try {
+          new TransactionBoundQueryContext(graph, tx, isTopLevelTx = true, txBridge.instance())
+        } catch {
+          case e: Throwable =>
+            tx.close()
+            throw e
+        }
+      }))
+    case _ =>
+      None
+  }
+
+  // All queries share the cypher_parallelism threads of the database, which stop when it shuts down
+  private def parallelReadsExecutor = new Executor {
+    private val scheduler = graph.getDependencyResolver.resolveDependency(classOf[JobScheduler])
+
+    def execute(command: Runnable) {
+      scheduler.schedule(JobScheduler.Group.cypherParallelReads, command)
+    }
+  }
+
   private def kernelStatement: KernelStatement =
     txBridge
       .getKernelTransactionBoundToThisThread(true)
@@ -19,7 +19,7 @@
  */
 package org.neo4j.cypher
 
-import org.neo4j.graphdb.Node
+import org.neo4j.graphdb.{DynamicLabel, Node}
 
 class AggregationAcceptanceTest extends ExecutionEngineFunSuite with NewPlannerTestSupport {
   test("should handle aggregates inside non aggregate expressions") {
@@ -177,4 +177,50 @@ class AggregationAcceptanceTest extends ExecutionEngineFunSuite with NewPlannerT
     //THEN
     result.toList should equal (List(Map("count(*)" -> 100)))
   }
+
+  test("should count nodes with a label and relationships of a type from the count store") {
+    val a = createLabeledNode("A")
+    relate(a, createNode(), "T")
+    relate(a, createLabeledNode("A"), "T")
+    relate(createNode(), a, "T")
+    createNode()
+
+    executeWithNewPlanner("match (n:A) return count(n)").toList should equal(List(Map("count(n)" -> 2)))
+    executeWithNewPlanner("match (:A)-[:T]->() return count(*)").toList should equal(List(Map("count(*)" -> 2)))
+    executeWithNewPlanner("match ()-[r:T]->(:A) return count(r)").toList should equal(List(Map("count(r)" -> 2)))
+    executeWithNewPlanner("match (:Missing)-[:T]->() return count(*)").toList should equal(List(Map("count(*)" -> 0)))
+  }
+
+  test("should count the changes of the current transaction") {
+    val a = createLabeledNode("A")
+    relate(a, createNode(), "T")
+
+    graph.inTx {
+      relate(a, createLabeledNode("A"), "T")
+
+      executeWithNewPlanner("match (n:A) return count(n)").toList should equal(List(Map("count(n)" -> 2)))
+      executeWithNewPlanner("match (:A)-[:T]->() return count(*)").toList should equal(List(Map("count(*)" -> 2)))
+    }
+  }
+
+  test("should count the deletions and removed labels of the current transaction from the count store") {
+    val a = createLabeledNode("A")
+    val c = createLabeledNode("A")
+    val r = relate(a, createNode(), "T")
+    relate(c, createNode(), "T")
+
+    graph.inTx {
+      r.delete()
+      c.removeLabel(DynamicLabel.label("A"))
+      relate(createLabeledNode("A"), createNode(), "T")
+
+      val nodes = executeWithNewPlanner("match (n:A) return count(n)")
+      nodes.toList should equal(List(Map("count(n)" -> 2)))
+      nodes.executionPlanDescription().toString should include("NodeCountFromCountStore")
+
+      val relationships = executeWithNewPlanner("match (:A)-[:T]->() return count(*)")
+      relationships.toList should equal(List(Map("count(*)" -> 1)))
+      relationships.executionPlanDescription().toString should include("RelationshipCountFromCountStore")
+    }
+  }
 }
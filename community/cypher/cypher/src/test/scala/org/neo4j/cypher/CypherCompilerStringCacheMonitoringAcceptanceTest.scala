@@ -19,6 +19,8 @@
  */
 package org.neo4j.cypher
 
+import java.util.concurrent.TimeUnit
+
 import org.neo4j.kernel.api
 
 class CypherCompilerStringCacheMonitoringAcceptanceTest extends ExecutionEngineFunSuite {
@@ -77,7 +79,28 @@ class CypherCompilerStringCacheMonitoringAcceptanceTest extends ExecutionEngineF
     execute("return 42").toList
 
     // then
-    counter.counts should equal(CacheCounts(hits = 3, misses = 3, flushes = 2))
+    counter.counts should equal(CacheCounts(hits = 3, misses = 2, flushes = 2))
+  }
+
+  test("should replan queries that depend on a changed index") {
+    // given
+    val counter = new CacheCounter()
+    kernelMonitors.addMonitorListener(counter)
+
+    // when
+    execute("match (n:Person) where n.id = 42 return n").toList
+    execute("create index on :Person(id)").toList
+    val tx = graph.beginTx()
+    try {
+      graph.schema().awaitIndexesOnline(3, TimeUnit.SECONDS)
+      tx.success()
+    } finally {
+      tx.close()
+    }
+    execute("match (n:Person) where n.id = 42 return n").toList
+
+    // then
+    counter.counts.misses should equal(3)
   }
 }
 
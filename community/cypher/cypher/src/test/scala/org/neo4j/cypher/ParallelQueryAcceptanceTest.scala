@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+import org.neo4j.graphdb.factory.GraphDatabaseSettings
+
+class ParallelQueryAcceptanceTest extends ExecutionEngineFunSuite with NewPlannerTestSupport {
+
+  override def databaseConfig() = super.databaseConfig() + (GraphDatabaseSettings.cypher_parallelism.name() -> "2")
+
+  test("should count nodes on the threads of the database") {
+    (1 to 30).foreach(x => createNode("x" -> x))
+
+    val result = executeWithNewPlanner("MATCH (n) WHERE n.x > 10 RETURN count(*)")
+
+    result.toList should equal(List(Map("count(*)" -> 20)))
+    result.executionPlanDescription().toString should include("Parallel")
+  }
+
+  test("should see the changes of its own transaction") {
+    (1 to 10).foreach(x => createNode("x" -> x))
+
+    val result = graph.inTx {
+      createNode("x" -> 11)
+      executeWithNewPlanner("MATCH (n) WHERE n.x > 5 RETURN n.x").columnAs[Int]("n.x").toList
+    }
+
+    result.sorted should equal((6 to 11).toList)
+  }
+}
@@ -23,7 +23,7 @@ import org.neo4j.cypher.GraphDatabaseFunSuite
 import org.neo4j.cypher.internal.compiler.v2_2.commands.expressions.Literal
 import org.neo4j.cypher.internal.compiler.v2_2.commands.values.{KeyToken, TokenType}
 import org.neo4j.cypher.internal.compiler.v2_2.commands.{LabelAction, LabelSetOp}
-import org.neo4j.cypher.internal.compiler.v2_2.spi.{IdempotentResult, LockingQueryContext, QueryContext}
+import org.neo4j.cypher.internal.compiler.v2_2.spi.{IdempotentResult, LockingQueryContext, ParallelReads, QueryContext}
 import org.neo4j.graphdb.{Relationship, Direction, Node}
 import org.neo4j.kernel.api.constraints.UniquenessConstraint
 import org.neo4j.kernel.api.index.IndexDescriptor
@@ -120,6 +120,16 @@ class SnitchingQueryContext extends QueryContext {
 
   def getNodesByLabel(id: Int): Iterator[Node] = ???
 
+  def getNodeIdsByLabel(id: Int): Iterator[Long] = ???
+
+  def getAllNodeIds: Iterator[Long] = ???
+
+  def nodeCountByCountStore(labelId: Option[Int]): Long = ???
+
+  def relationshipCountByCountStore(startLabelId: Option[Int], typeId: Option[Int], endLabelId: Option[Int]): Long = ???
+
+  def parallelReads: Option[ParallelReads] = ???
+
   def upgrade(context: QueryContext): LockingQueryContext = ???
 
   def getOrCreateFromSchemaState[K, V](key: K, creator: => V): V = ???
@@ -153,4 +163,12 @@ class SnitchingQueryContext extends QueryContext {
   def relationshipEndNode(rel: Relationship) = ???
 
   def getRelationshipsForIds(node: Node, dir: Direction, types: Seq[Int]): Iterator[Relationship] = ???
+
+  def getRelationshipIdsForIds(node: Long, dir: Direction, types: Seq[Int]): Iterator[Long] = ???
+
+  def getOtherNodeIdFor(relationship: Long, node: Long): Long = ???
+
+  def nodeById(id: Long): Node = ???
+
+  def relationshipById(id: Long): Relationship = ???
 }
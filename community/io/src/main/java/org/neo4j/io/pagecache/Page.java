@@ -20,6 +20,7 @@
 package org.neo4j.io.pagecache;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.neo4j.io.fs.StoreChannel;
 
@@ -152,6 +153,19 @@ public interface Page
      */
     void swapOut( StoreChannel channel, long offset, int length ) throws IOException;
 
+    /**
+     * Get a ByteBuffer view of the first given length of bytes in this page.
+     *
+     * This is used for scattering and gathering IO, where the contents of several pages are transferred
+     * to or from the file in a single operation.
+     *
+     * The buffer is only valid for as long as the caller holds a lock on the page, and it must not be retained
+     * beyond that. Changes to the page are visible through the buffer, and vice versa.
+     *
+     * May throw an AssertionError or a RuntimeException if the given length is greater than the cache-page size.
+     */
+    ByteBuffer asByteBuffer( int length );
+
     /**
      * Get the internal id of this cache page object.
      */
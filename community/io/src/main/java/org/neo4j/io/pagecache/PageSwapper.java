@@ -47,6 +47,26 @@ public interface PageSwapper
      */
     int read( long filePageId, Page page ) throws IOException;
 
+    /**
+     * Read the given run of consecutive file pages, starting from the given
+     * startFilePageId, from the concrete file on the file system, into the
+     * given pages. The page at the given arrayOffset receives the contents of
+     * the startFilePageId, the next page receives startFilePageId + 1, and so
+     * on, for the given length of pages.
+     *
+     * This should be implemented with a single scattering read, using the
+     * {@link Page#asByteBuffer(int)} views of the pages.
+     *
+     * Returns the number of bytes read in from the file. Pages, or parts of
+     * pages, that are beyond the end of the file will contain zeros.
+     *
+     * Note: It is possible for the channel to be asynchronously closed while
+     * this operation is taking place. For instance, if the current thread is
+     * interrupted. If this happens, then the implementation must reopen the
+     * channel and the operation must be retried.
+     */
+    long read( long startFilePageId, Page[] pages, int arrayOffset, int length ) throws IOException;
+
     /**
      * Write the contents of the given page, to the concrete file on the file
      * system, at the located indicated by the given filePageId.
@@ -63,6 +83,26 @@ public interface PageSwapper
      */
     int write( long filePageId, Page page ) throws IOException;
 
+    /**
+     * Write the contents of the given run of pages, to the concrete file on
+     * the file system, starting at the location indicated by the given
+     * startFilePageId. The page at the given arrayOffset ends up at the
+     * startFilePageId, the next page at startFilePageId + 1, and so on, for
+     * the given length of pages.
+     *
+     * This should be implemented with a single gathering write, using the
+     * {@link Page#asByteBuffer(int)} views of the pages, such that a run of
+     * adjacent dirty pages costs one system call rather than one per page.
+     *
+     * Returns the number of bytes written to the file.
+     *
+     * Note: It is possible for the channel to be asynchronously closed while
+     * this operation is taking place. For instance, if the current thread is
+     * interrupted. If this happens, then implementation must reopen the
+     * channel and the operation must be retried.
+     */
+    long write( long startFilePageId, Page[] pages, int arrayOffset, int length ) throws IOException;
+
     /**
      * Notification that a page has been evicted, used to clean up state in structures
      * outside the page table.
@@ -53,8 +53,12 @@ public interface PagedFile
     public static final int PF_NO_GROW = 1 << 2;
     /**
      * Read-ahead hint for sequential forward scanning.
+     *
+     * Cursors with a shared lock will start reading ahead as soon as they are
+     * pinned, instead of waiting until they have seen a number of consecutive
+     * pages. See {@link #setMaxReadAheadPages(int)}.
      */
-    public static final int PF_READ_AHEAD = 1 << 3; // TBD
+    public static final int PF_READ_AHEAD = 1 << 3;
     /**
      * Do not load in the page if it is not loaded already. Only useful with
      * exclusive locking when you want to overwrite the whole page anyway.
@@ -64,6 +68,13 @@ public interface PagedFile
      * Do not update page access statistics.
      */
     public static final int PF_TRANSIENT = 1 << 5;
+    /**
+     * The cursor is used for a large sequential scan. Pages that are faulted
+     * in by such a cursor are inserted at a low priority, and will be among
+     * the first to be evicted, so the scan does not push the working set out
+     * of the cache. This is only a hint, and some eviction policies ignore it.
+     */
+    public static final int PF_SEQUENTIAL_SCAN = 1 << 6;
 
     /**
      * Initiate an IO interaction with the contents of the paged file.
@@ -151,6 +162,16 @@ public interface PagedFile
      */
     void force() throws IOException;
 
+    /**
+     * Set the max number of pages that cursors with a shared lock will
+     * prefetch ahead of themselves, when they are reading this file
+     * sequentially. Zero disables read-ahead for this file.
+     *
+     * This is only a hint, and page cache implementations are free to ignore
+     * it.
+     */
+    void setMaxReadAheadPages( int maxReadAheadPages );
+
     /**
      * Get the file-page-id of the last page in the file.
      *
@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.Page;
+import org.neo4j.io.pagecache.PageEvictionCallback;
+
+/**
+ * A PageSwapper that swaps pages in by copying them out of read-only memory
+ * mapped regions of the file, instead of reading them through the file
+ * channel. This turns every swap-in into a plain memory copy, with no system
+ * call, which is a big win when the file fits in the memory of the operating
+ * system.
+ *
+ * The file is mapped in chunks of a fixed size, as the pages in them are
+ * needed. The chunk at the end of the file only covers the part of the file
+ * that existed when it was mapped, and it is mapped again when pages beyond
+ * its end are needed, and the file has grown. Nothing is ever mapped beyond
+ * the end of the file, since that would grow it.
+ *
+ * Writes go through the file channel, exactly like in the
+ * SingleFilePageSwapper, and show up in the mapped regions since they are
+ * backed by the same memory in the operating system.
+ */
+public class MappedPageSwapper extends SingleFilePageSwapper
+{
+    // The size of the chunks that we map the file in, rounded down to a
+    // multiple of the file page size.
+    private static final int defaultChunkSize = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.MappedPageSwapper.chunkSize", 64 * 1024 * 1024 );
+
+    private final int chunkSize;
+
+    // Replaced wholesale when it needs to grow, and guarded by synchronized(this) for writes.
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    public MappedPageSwapper(
+            File file,
+            FileSystemAbstraction fs,
+            int filePageSize,
+            PageEvictionCallback onEviction ) throws IOException
+    {
+        this( file, fs, filePageSize, onEviction, defaultChunkSize );
+    }
+
+    public MappedPageSwapper(
+            File file,
+            FileSystemAbstraction fs,
+            int filePageSize,
+            PageEvictionCallback onEviction,
+            int chunkSize ) throws IOException
+    {
+        super( file, fs, filePageSize, onEviction );
+        this.chunkSize = Math.max( chunkSize / filePageSize, 1 ) * filePageSize;
+    }
+
+    @Override
+    public int read( long filePageId, Page page ) throws IOException
+    {
+        ByteBuffer dst = page.asByteBuffer( filePageSize );
+        int bytesRead = copyIn( filePageId, dst );
+        while ( dst.hasRemaining() )
+        {
+            dst.put( (byte) 0 );
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long read( long startFilePageId, Page[] pages, int arrayOffset, int length ) throws IOException
+    {
+        long bytesRead = 0;
+        for ( int i = 0; i < length; i++ )
+        {
+            bytesRead += read( startFilePageId + i, pages[arrayOffset + i] );
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Copy as much of the given file page as exists in the file, into the
+     * given buffer. Returns the number of bytes copied.
+     */
+    private int copyIn( long filePageId, ByteBuffer dst ) throws IOException
+    {
+        long offset = pageIdToPosition( filePageId );
+        if ( offset >= getCurrentFileSize() )
+        {
+            return 0;
+        }
+
+        // The chunk size is a multiple of the file page size, so pages never
+        // straddle chunks.
+        int chunkIndex = (int) (offset / chunkSize);
+        int chunkOffset = (int) (offset % chunkSize);
+        MappedByteBuffer chunk = chunk( chunkIndex, chunkOffset + filePageSize );
+        int length = Math.min( filePageSize, chunk.capacity() - chunkOffset );
+        if ( length <= 0 )
+        {
+            // The file is not as big as we thought. Maybe a write is in
+            // flight. Either way, there is nothing for us to read.
+            return 0;
+        }
+
+        ByteBuffer src = chunk.duplicate();
+        src.limit( chunkOffset + length );
+        src.position( chunkOffset );
+        dst.put( src );
+        return length;
+    }
+
+    /**
+     * Get the mapping of the chunk with the given index, and make sure that
+     * it covers at least the given number of bytes from the start of the
+     * chunk, if the file is that big.
+     */
+    private MappedByteBuffer chunk( int chunkIndex, int requiredLength ) throws IOException
+    {
+        MappedByteBuffer[] chunks = this.chunks;
+        if ( chunkIndex < chunks.length )
+        {
+            MappedByteBuffer chunk = chunks[chunkIndex];
+            if ( chunk != null && chunk.capacity() >= requiredLength )
+            {
+                return chunk;
+            }
+        }
+        return mapChunk( chunkIndex, requiredLength );
+    }
+
+    private synchronized MappedByteBuffer mapChunk( int chunkIndex, int requiredLength ) throws IOException
+    {
+        MappedByteBuffer[] chunks = this.chunks;
+        if ( chunkIndex < chunks.length )
+        {
+            MappedByteBuffer chunk = chunks[chunkIndex];
+            if ( chunk != null && chunk.capacity() >= requiredLength )
+            {
+                // Someone got ahead of us.
+                return chunk;
+            }
+        }
+        else
+        {
+            MappedByteBuffer[] grown = new MappedByteBuffer[chunkIndex + 1];
+            System.arraycopy( chunks, 0, grown, 0, chunks.length );
+            chunks = grown;
+        }
+
+        long chunkStart = ((long) chunkIndex) * chunkSize;
+        MappedByteBuffer chunk;
+        try
+        {
+            // We must look at the real size of the file here, because the
+            // size we track might be ahead of it, and mapping beyond the end
+            // of the file would grow it.
+            long mappableSize = Math.max( channel().size() - chunkStart, 0 );
+            int mapLength = (int) Math.min( chunkSize, mappableSize );
+            chunk = channel().map( FileChannel.MapMode.READ_ONLY, chunkStart, mapLength );
+        }
+        catch ( ClosedChannelException e )
+        {
+            tryReopen( e );
+            boolean interrupted = Thread.interrupted();
+            // Recurse because this is hopefully a very rare occurrence.
+            chunk = mapChunk( chunkIndex, requiredLength );
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return chunk;
+        }
+        // The old mapping of this chunk, if any, is left for the garbage
+        // collector to unmap, since other threads might still be copying out
+        // of it.
+        chunks[chunkIndex] = chunk;
+        this.chunks = chunks;
+        return chunk;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        chunks = new MappedByteBuffer[0];
+        super.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MappedPageSwapper{" +
+                "filePageSize=" + filePageSize +
+                ", chunkSize=" + chunkSize +
+                ", file=" + fileName() +
+                '}';
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.PageEvictionCallback;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.PageSwapperFactory;
+
+/**
+ * A factory for MappedPageSwapper instances.
+ *
+ * The memory mapping can be limited to a given set of file names, in which
+ * case all other files get a SingleFilePageSwapper.
+ *
+ * @see org.neo4j.io.pagecache.impl.MappedPageSwapper
+ */
+public class MappedPageSwapperFactory implements PageSwapperFactory
+{
+    private final FileSystemAbstraction fs;
+    private final Set<String> mappedFileNames;
+
+    /**
+     * Create a factory that memory maps all files.
+     */
+    public MappedPageSwapperFactory( FileSystemAbstraction fs )
+    {
+        this.fs = fs;
+        this.mappedFileNames = null;
+    }
+
+    /**
+     * Create a factory that only memory maps the files with the given names.
+     */
+    public MappedPageSwapperFactory( FileSystemAbstraction fs, Collection<String> mappedFileNames )
+    {
+        this.fs = fs;
+        this.mappedFileNames = new HashSet<>( mappedFileNames );
+    }
+
+    @Override
+    public PageSwapper createPageSwapper(
+            File file,
+            int filePageSize,
+            PageEvictionCallback onEviction ) throws IOException
+    {
+        if ( mappedFileNames == null || mappedFileNames.contains( file.getName() ) )
+        {
+            return new MappedPageSwapper( file, fs, filePageSize, onEviction );
+        }
+        return new SingleFilePageSwapper( file, fs, filePageSize, onEviction );
+    }
+}
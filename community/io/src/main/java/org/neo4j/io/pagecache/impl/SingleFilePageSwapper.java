@@ -21,6 +21,7 @@ package org.neo4j.io.pagecache.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 
 import org.neo4j.io.fs.FileSystemAbstraction;
@@ -45,13 +46,19 @@ public class SingleFilePageSwapper implements PageSwapper
 
     private final FileSystemAbstraction fs;
     private final File file;
-    private final int filePageSize;
+    final int filePageSize;
     private final PageEvictionCallback onEviction;
     private volatile StoreChannel channel;
 
     // Guarded by synchronized(this). See tryReopen() and close().
     private boolean closed;
 
+    // The StoreChannel has no positional gathering write, so vectored writes
+    // have to move the channel position. This lock makes sure that concurrent
+    // vectored writes don't move it from under each other. The positional
+    // single-page reads and writes are unaffected by the channel position.
+    private final Object positionLock = new Object();
+
     // Accessed through unsafe
     private volatile long fileSize;
 
@@ -80,7 +87,7 @@ public class SingleFilePageSwapper implements PageSwapper
                 this, fileSizeOffset, currentFileSize, newFileSize ) );
     }
 
-    private long getCurrentFileSize()
+    long getCurrentFileSize()
     {
         return UnsafeUtil.getLongVolatile( this, fileSizeOffset );
     }
@@ -114,6 +121,69 @@ public class SingleFilePageSwapper implements PageSwapper
         return 0;
     }
 
+    @Override
+    public long read( long startFilePageId, Page[] pages, int arrayOffset, int length ) throws IOException
+    {
+        long offset = pageIdToPosition( startFilePageId );
+        ByteBuffer[] dsts = new ByteBuffer[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            dsts[i] = pages[arrayOffset + i].asByteBuffer( filePageSize );
+        }
+        try
+        {
+            long bytesRead = 0;
+            if ( offset < getCurrentFileSize() )
+            {
+                bytesRead = scatteringRead( dsts, offset );
+            }
+            // Zero-fill whatever is beyond the end of the file.
+            for ( ByteBuffer dst : dsts )
+            {
+                while ( dst.hasRemaining() )
+                {
+                    dst.put( (byte) 0 );
+                }
+            }
+            return bytesRead;
+        }
+        catch ( ClosedChannelException e )
+        {
+            // AsynchronousCloseException is a subclass of
+            // ClosedChannelException, and ClosedByInterruptException is in
+            // turn a subclass of AsynchronousCloseException.
+            tryReopen( e );
+            boolean interrupted = Thread.interrupted();
+            // Recurse because this is hopefully a very rare occurrence.
+            // This also gives us fresh buffers, since the ones we have might
+            // have been partially filled.
+            long bytesRead = read( startFilePageId, pages, arrayOffset, length );
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return bytesRead;
+        }
+    }
+
+    private long scatteringRead( ByteBuffer[] dsts, long offset ) throws IOException
+    {
+        long bytesToRead = ((long) filePageSize) * dsts.length;
+        long bytesRead = 0;
+        synchronized ( positionLock )
+        {
+            StoreChannel channel = this.channel;
+            channel.position( offset );
+            long read;
+            do
+            {
+                read = channel.read( dsts );
+            }
+            while ( read != -1 && (bytesRead += read) < bytesToRead );
+        }
+        return bytesRead;
+    }
+
     @Override
     public int write( long filePageId, Page page ) throws IOException
     {
@@ -141,6 +211,56 @@ public class SingleFilePageSwapper implements PageSwapper
         }
     }
 
+    @Override
+    public long write( long startFilePageId, Page[] pages, int arrayOffset, int length ) throws IOException
+    {
+        long offset = pageIdToPosition( startFilePageId );
+        increaseFileSizeTo( offset + ((long) filePageSize) * length );
+        ByteBuffer[] srcs = new ByteBuffer[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            srcs[i] = pages[arrayOffset + i].asByteBuffer( filePageSize );
+        }
+        try
+        {
+            return gatheringWrite( srcs, offset );
+        }
+        catch ( ClosedChannelException e )
+        {
+            // AsynchronousCloseException is a subclass of
+            // ClosedChannelException, and ClosedByInterruptException is in
+            // turn a subclass of AsynchronousCloseException.
+            tryReopen( e );
+            boolean interrupted = Thread.interrupted();
+            // Recurse because this is hopefully a very rare occurrence.
+            // This also gives us fresh buffers, since the ones we have might
+            // have been partially consumed.
+            long bytesWritten = write( startFilePageId, pages, arrayOffset, length );
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return bytesWritten;
+        }
+    }
+
+    private long gatheringWrite( ByteBuffer[] srcs, long offset ) throws IOException
+    {
+        long bytesToWrite = ((long) filePageSize) * srcs.length;
+        long bytesWritten = 0;
+        synchronized ( positionLock )
+        {
+            StoreChannel channel = this.channel;
+            channel.position( offset );
+            do
+            {
+                bytesWritten += channel.write( srcs );
+            }
+            while ( bytesWritten < bytesToWrite );
+        }
+        return bytesWritten;
+    }
+
     @Override
     public void evicted( long filePageId, Page page )
     {
@@ -153,7 +273,7 @@ public class SingleFilePageSwapper implements PageSwapper
         return file.getName();
     }
 
-    private long pageIdToPosition( long pageId )
+    long pageIdToPosition( long pageId )
     {
         return filePageSize * pageId;
     }
@@ -193,7 +313,7 @@ public class SingleFilePageSwapper implements PageSwapper
      * then that exception is added as a suppressed exception to the passed in
      * ClosedChannelException, and the CCE is then rethrown.
      */
-    private synchronized void tryReopen( ClosedChannelException closedException ) throws ClosedChannelException
+    synchronized void tryReopen( ClosedChannelException closedException ) throws ClosedChannelException
     {
         if ( channel.isOpen() )
         {
@@ -219,6 +339,15 @@ public class SingleFilePageSwapper implements PageSwapper
         }
     }
 
+    /**
+     * The channel to the file. This may be replaced by tryReopen() if it is
+     * closed by an interrupt, so it should not be cached.
+     */
+    StoreChannel channel()
+    {
+        return channel;
+    }
+
     @Override
     public synchronized void close() throws IOException
     {
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.neo4j.io.pagecache.PageSwapper;
+
+/**
+ * Decides which pages the eviction clock arm gets to evict, by maintaining
+ * the usage stamps of the pages as they are faulted in, pinned and evicted.
+ *
+ * The policy is consulted concurrently by page faulting and pinning threads,
+ * and by the eviction thread, so implementations must be thread-safe. Only
+ * the eviction thread calls {@link #shouldEvict(MuninnPage)} and
+ * {@link #pageEvicted(PageSwapper, long)}.
+ */
+interface EvictionPolicy
+{
+    /**
+     * The given page has just been faulted in for the given file page, while
+     * holding its write lock. This is always followed by a call to
+     * {@link #pageAccessed(MuninnPage, int)} for the same page.
+     */
+    void pageFaulted( MuninnPage page, PageSwapper swapper, long filePageId, int pf_flags );
+
+    /**
+     * A cursor with the given pf_flags has pinned the given page.
+     */
+    void pageAccessed( MuninnPage page, int pf_flags );
+
+    /**
+     * The clock arm has reached the given loaded page. Return true if the
+     * page should be evicted now.
+     */
+    boolean shouldEvict( MuninnPage page );
+
+    /**
+     * The page that was bound to the given file page has been evicted.
+     */
+    void pageEvicted( PageSwapper swapper, long filePageId );
+}
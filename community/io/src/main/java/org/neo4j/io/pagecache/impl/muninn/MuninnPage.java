@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.neo4j.io.fs.StoreChannel;
 import org.neo4j.io.pagecache.Page;
@@ -41,6 +42,7 @@ final class MuninnPage extends StampedLock implements Page
 {
     private static final Constructor<?> directBufferCtor;
     private static final long usageStampOffset = UnsafeUtil.getFieldOffset( MuninnPage.class, "usageStamp" );
+    private static final long dirtyOffset = UnsafeUtil.getFieldOffset( MuninnPage.class, "dirty" );
     static {
         Constructor<?> ctor = null;
         try
@@ -63,6 +65,9 @@ final class MuninnPage extends StampedLock implements Page
     // finalizable until all our pages are finalizable or collected.
     private final MemoryReleaser memoryReleaser;
 
+    // Shared by all the pages in the cache. Counts the pages that are dirty.
+    private final AtomicLong dirtyPageCount;
+
     private long pointer;
 
     // Optimistically incremented; occasionally truncated to a max of 5.
@@ -76,13 +81,25 @@ final class MuninnPage extends StampedLock implements Page
 
     private PageSwapper swapper;
     private long filePageId = PageCursor.UNBOUND_PAGE_ID;
-    private boolean dirty;
 
-    public MuninnPage( int cachePageSize, int cachePageId, MemoryReleaser memoryReleaser )
+    // 1 if the page has changes that are not yet written to the file, 0
+    // otherwise. The page only becomes dirty under the page write lock, but
+    // several threads might concurrently flush it under read locks, so it is
+    // made clean with a CAS, such that only one of them decrements the
+    // dirtyPageCount.
+    // accessed through unsafe
+    private volatile int dirty;
+
+    public MuninnPage(
+            int cachePageSize,
+            int cachePageId,
+            MemoryReleaser memoryReleaser,
+            AtomicLong dirtyPageCount )
     {
         this.cachePageSize = cachePageSize;
         this.cachePageId = cachePageId;
         this.memoryReleaser = memoryReleaser;
+        this.dirtyPageCount = dirtyPageCount;
     }
 
     private void checkBounds( int position )
@@ -300,6 +317,12 @@ final class MuninnPage extends StampedLock implements Page
         return true;
     }
 
+    /** Set the usage stamp to the given value, which must be between 0 and 5. */
+    public void setUsage( int usage )
+    {
+        UnsafeUtil.putByteVolatile( this, usageStampOffset, (byte) usage );
+    }
+
     /**
      * NOTE: This method must be called while holding the page write lock.
      * This method assumes that initBuffer() has already been called at least once.
@@ -368,12 +391,35 @@ final class MuninnPage extends StampedLock implements Page
         }
     }
 
+    /**
+     * NOTE: This method must be called while holding at least the page read lock.
+     * This method assumes that initBuffer() has already been called at least once.
+     */
+    @Override
+    public ByteBuffer asByteBuffer( int length )
+    {
+        assert isReadLocked() || isWriteLocked() : "asByteBuffer requires lock";
+        checkBounds( length );
+        try
+        {
+            ByteBuffer bufferProxy = (ByteBuffer) directBufferCtor.newInstance(
+                    pointer, cachePageSize );
+            bufferProxy.clear();
+            bufferProxy.limit( length );
+            return bufferProxy;
+        }
+        catch ( Exception e )
+        {
+            throw new IllegalStateException( "Failed to create a buffer view of page " + cachePageId, e );
+        }
+    }
+
     /**
      * NOTE: This method must be called while holding a pessimistic lock on the page.
      */
     public void flush( FlushEventOpportunity flushOpportunity ) throws IOException
     {
-        if ( swapper != null && dirty )
+        if ( swapper != null && isDirty() )
         {
             // The page is bound and has stuff to flush
             doFlush( swapper, filePageId, flushOpportunity );
@@ -388,7 +434,7 @@ final class MuninnPage extends StampedLock implements Page
             long filePageId,
             FlushEventOpportunity flushOpportunity ) throws IOException
     {
-        if ( dirty && this.swapper == swapper && this.filePageId == filePageId )
+        if ( isDirty() && this.swapper == swapper && this.filePageId == filePageId )
         {
             // The page is bound to the given swapper and has stuff to flush
             doFlush( swapper, filePageId, flushOpportunity );
@@ -404,8 +450,9 @@ final class MuninnPage extends StampedLock implements Page
         try
         {
             int bytesWritten = swapper.write( filePageId, this );
-            dirty = false;
+            markAsClean();
             event.addBytesWritten( bytesWritten );
+            event.addPagesFlushed( 1 );
             event.done();
         }
         catch ( IOException e )
@@ -415,9 +462,35 @@ final class MuninnPage extends StampedLock implements Page
         }
     }
 
+    /**
+     * NOTE: This method MUST be called while holding the page write lock.
+     */
     public void markAsDirty()
     {
-        dirty = true;
+        if ( dirty == 0 )
+        {
+            dirty = 1;
+            dirtyPageCount.getAndIncrement();
+        }
+    }
+
+    /**
+     * NOTE: This method must be called while holding a pessimistic lock on the
+     * page, and only after the contents of the page has been written out.
+     * This is done by the flush methods, but can also be done by some other
+     * means, for instance as part of a vectored write.
+     */
+    public void markAsClean()
+    {
+        if ( UnsafeUtil.compareAndSwapInt( this, dirtyOffset, 1, 0 ) )
+        {
+            dirtyPageCount.getAndDecrement();
+        }
+    }
+
+    public boolean isDirty()
+    {
+        return dirty == 1;
     }
 
     /**
@@ -429,15 +502,7 @@ final class MuninnPage extends StampedLock implements Page
             PageFaultEvent faultEvent ) throws IOException
     {
         assert isWriteLocked(): "Cannot fault page without write-lock";
-        if ( this.swapper != null || this.filePageId != PageCursor.UNBOUND_PAGE_ID )
-        {
-            String msg = String.format(
-                    "Cannot fault page {filePageId = %s, swapper = %s} into " +
-                            "cache page %s. Already bound to {filePageId = " +
-                            "%s, swapper = %s}.",
-                    filePageId, swapper, cachePageId, this.filePageId, this.swapper );
-            throw new IllegalStateException( msg );
-        }
+        assertUnbound( swapper, filePageId );
 
         // Note: It is important that we assign the filePageId before we swap
         // the page in. If the swapping fails, the page will be considered
@@ -453,6 +518,50 @@ final class MuninnPage extends StampedLock implements Page
         this.swapper = swapper; // Page now considered isBoundTo( swapper, filePageId )
     }
 
+    /**
+     * Fault in a run of pages for the consecutive file pages starting at the
+     * given startFilePageId, with a single vectored read. This is used by
+     * read-ahead. Returns the number of bytes read.
+     *
+     * NOTE: This method MUST be called while holding the write locks of all
+     * the given pages.
+     */
+    public static long faultRun(
+            PageSwapper swapper,
+            long startFilePageId,
+            MuninnPage[] pages,
+            int length ) throws IOException
+    {
+        // Same as in fault(): the filePageIds are assigned before the
+        // swapping in, and the swapper is assigned after it has succeeded.
+        for ( int i = 0; i < length; i++ )
+        {
+            MuninnPage page = pages[i];
+            assert page.isWriteLocked(): "Cannot fault page without write-lock";
+            page.assertUnbound( swapper, startFilePageId + i );
+            page.filePageId = startFilePageId + i;
+        }
+        long bytesRead = swapper.read( startFilePageId, pages, 0, length );
+        for ( int i = 0; i < length; i++ )
+        {
+            pages[i].swapper = swapper;
+        }
+        return bytesRead;
+    }
+
+    private void assertUnbound( PageSwapper swapper, long filePageId )
+    {
+        if ( this.swapper != null || this.filePageId != PageCursor.UNBOUND_PAGE_ID )
+        {
+            String msg = String.format(
+                    "Cannot fault page {filePageId = %s, swapper = %s} into " +
+                            "cache page %s. Already bound to {filePageId = " +
+                            "%s, swapper = %s}.",
+                    filePageId, swapper, cachePageId, this.filePageId, this.swapper );
+            throw new IllegalStateException( msg );
+        }
+    }
+
     /**
      * NOTE: This method MUST be called while holding the page write lock.
      */
@@ -522,7 +631,7 @@ final class MuninnPage extends StampedLock implements Page
     public String toString()
     {
         return String.format( "MuninnPage@%x[%s -> %x, filePageId = %s%s, swapper = %s]%s",
-                hashCode(), cachePageId, pointer, filePageId, (dirty? ", dirty" : ""),
+                hashCode(), cachePageId, pointer, filePageId, (isDirty()? ", dirty" : ""),
                 swapper, getLockStateString() );
     }
 }
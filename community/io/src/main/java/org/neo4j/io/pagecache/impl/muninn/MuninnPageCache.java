@@ -21,15 +21,20 @@ package org.neo4j.io.pagecache.impl.muninn;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.io.fs.FileUtils;
 import org.neo4j.io.pagecache.monitoring.EvictionEvent;
 import org.neo4j.io.pagecache.monitoring.EvictionRunEvent;
+import org.neo4j.io.pagecache.monitoring.FlushEventOpportunity;
 import org.neo4j.io.pagecache.monitoring.MajorFlushEvent;
 import org.neo4j.io.pagecache.monitoring.PageCacheMonitor;
+import org.neo4j.io.pagecache.PageSwapper;
 import org.neo4j.io.pagecache.PageSwapperFactory;
 import org.neo4j.io.pagecache.PagedFile;
 import org.neo4j.io.pagecache.RunnablePageCache;
@@ -100,6 +105,32 @@ public class MuninnPageCache implements RunnablePageCache
     private static final int pagesToKeepFree = Integer.getInteger(
             "org.neo4j.io.pagecache.impl.muninn.pagesToKeepFree", 30 );
 
+    // The background flusher always tries to keep this many times keepFree
+    // pages clean, right in front of the eviction clock arm.
+    private static final int backgroundFlushLookAheadFactor = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.muninn.backgroundFlushLookAheadFactor", 4 );
+
+    // The background flusher sleeps this long between its rounds, unless it
+    // is woken up by the eviction thread running into dirty pages.
+    private static final int backgroundFlushIntervalMillis = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.muninn.backgroundFlushIntervalMillis", 10 );
+
+    // The max number of read-ahead requests that can be waiting for the
+    // read-ahead thread. Requests beyond this are dropped.
+    private static final int readAheadQueueCapacity = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.muninn.readAheadQueueCapacity", 64 );
+
+    // The defaults for the background flushing, when not otherwise specified.
+    // A background flush IO budget of zero or less means that it is unlimited.
+    private static final int defaultDirtyPageHighWaterMarkPercent = 25;
+    private static final long defaultBackgroundFlushBytesPerSecond = 0;
+
+    // The eviction policy to use; either "clock", or "scanResistant" for the
+    // 2Q-style policy that keeps sequential scans from evicting the working
+    // set. See ScanResistantEvictionPolicy.
+    private static final String evictionPolicyName = System.getProperty(
+            "org.neo4j.io.pagecache.impl.muninn.evictionPolicy", "clock" );
+
     // This is a pre-allocated constant, so we can throw it without allocating any objects:
     private static final IOException oomException = new IOException(
             "OutOfMemoryError encountered in the page cache background eviction thread" );
@@ -119,6 +150,11 @@ public class MuninnPageCache implements RunnablePageCache
     private final int keepFree;
     private final MuninnCursorPool cursorPool;
     private final PageCacheMonitor monitor;
+    private final long dirtyPageHighWaterMark;
+    private final long backgroundFlushBytesPerSecond;
+    private final AtomicLong dirtyPageCount;
+    private final BlockingQueue<ReadAheadRequest> readAheadQueue;
+    final EvictionPolicy evictionPolicy;
     final MuninnPage[] pages;
 
     // The freelist takes a bit of explanation. It is a thread-safe linked-list
@@ -150,6 +186,24 @@ public class MuninnPageCache implements RunnablePageCache
     private volatile Thread evictorThread;
     private volatile IOException evictorException;
 
+    // The position of the eviction clock arm as of the last eviction run. The
+    // background flusher cleans the pages right in front of it.
+    private volatile int evictionClockArm;
+
+    // The thread that runs the background flushing algorithm, if any. We
+    // unpark this when the eviction thread runs into dirty pages.
+    private volatile Thread flusherThread;
+
+    // The thread that prefetches pages for read cursors that are reading
+    // their files sequentially, if any. Without it, cursors do their
+    // read-ahead themselves.
+    private volatile Thread readAheadThread;
+
+    // Book keeping for the background flush IO budget. Only accessed by the
+    // background flusher thread.
+    private long flushBudgetWindowStartNanos;
+    private long flushBudgetWindowBytes;
+
     // Flag for when page cache is closed - writes guarded by synchronized(this), reads can be unsynchronized
     private volatile boolean closed;
 
@@ -167,14 +221,58 @@ public class MuninnPageCache implements RunnablePageCache
             int maxPages,
             int cachePageSize,
             PageCacheMonitor monitor )
+    {
+        this( swapperFactory, maxPages, cachePageSize, monitor,
+                defaultDirtyPageHighWaterMarkPercent, defaultBackgroundFlushBytesPerSecond );
+    }
+
+    /**
+     * @param dirtyPageHighWaterMarkPercent The background flusher will try to
+     * keep the percentage of dirty pages in the cache at or below this number.
+     * @param backgroundFlushBytesPerSecond The background flusher will write at
+     * most this many bytes per second. Zero or less means no limit.
+     * @see #backgroundFlusher()
+     */
+    public MuninnPageCache(
+            PageSwapperFactory swapperFactory,
+            int maxPages,
+            int cachePageSize,
+            PageCacheMonitor monitor,
+            int dirtyPageHighWaterMarkPercent,
+            long backgroundFlushBytesPerSecond )
+    {
+        this( swapperFactory, maxPages, cachePageSize, monitor, dirtyPageHighWaterMarkPercent,
+                backgroundFlushBytesPerSecond, createEvictionPolicy( evictionPolicyName, maxPages ) );
+    }
+
+    MuninnPageCache(
+            PageSwapperFactory swapperFactory,
+            int maxPages,
+            int cachePageSize,
+            PageCacheMonitor monitor,
+            int dirtyPageHighWaterMarkPercent,
+            long backgroundFlushBytesPerSecond,
+            EvictionPolicy evictionPolicy )
     {
         verifyHacks();
 
+        if ( dirtyPageHighWaterMarkPercent < 0 || dirtyPageHighWaterMarkPercent > 100 )
+        {
+            throw new IllegalArgumentException(
+                    "The dirty page high-water mark must be a percentage between 0 and 100, but was " +
+                    dirtyPageHighWaterMarkPercent );
+        }
+
         this.swapperFactory = swapperFactory;
         this.cachePageSize = cachePageSize;
         this.keepFree = Math.min( pagesToKeepFree, maxPages / 2 );
         this.cursorPool = new MuninnCursorPool();
         this.monitor = monitor;
+        this.dirtyPageHighWaterMark = ((long) maxPages) * dirtyPageHighWaterMarkPercent / 100;
+        this.backgroundFlushBytesPerSecond = backgroundFlushBytesPerSecond;
+        this.dirtyPageCount = new AtomicLong();
+        this.readAheadQueue = new ArrayBlockingQueue<>( readAheadQueueCapacity );
+        this.evictionPolicy = evictionPolicy;
         this.pages = new MuninnPage[maxPages];
 
         MemoryReleaser memoryReleaser = new MemoryReleaser( maxPages );
@@ -182,7 +280,7 @@ public class MuninnPageCache implements RunnablePageCache
         int cachePageId = maxPages;
         while ( cachePageId --> 0 )
         {
-            MuninnPage page = new MuninnPage( cachePageSize, cachePageId, memoryReleaser );
+            MuninnPage page = new MuninnPage( cachePageSize, cachePageId, memoryReleaser, dirtyPageCount );
             pages[cachePageId] = page;
 
             if ( pageList == null )
@@ -207,6 +305,20 @@ public class MuninnPageCache implements RunnablePageCache
         UnsafeUtil.putObjectVolatile( this, freelistOffset, pageList );
     }
 
+    static EvictionPolicy createEvictionPolicy( String name, int maxPages )
+    {
+        if ( name.equalsIgnoreCase( "clock" ) )
+        {
+            return new ClockEvictionPolicy();
+        }
+        if ( name.equalsIgnoreCase( "scanResistant" ) )
+        {
+            return new ScanResistantEvictionPolicy( maxPages );
+        }
+        throw new IllegalArgumentException( "Unknown page cache eviction policy: '" + name +
+                "'. Must be either 'clock' or 'scanResistant'." );
+    }
+
     static void verifyHacks()
     {
         // Make sure that we have access to theUnsafe.
@@ -311,6 +423,16 @@ public class MuninnPageCache implements RunnablePageCache
     {
         try ( MajorFlushEvent cacheFlush = monitor.beginCacheFlush() )
         {
+            // First flush the files one by one, so that their dirty pages are
+            // written in file order, and then sweep the whole cache to pick up
+            // any dirty page that the file flushes might have missed.
+            FileMapping fileMapping = mappedFiles;
+            while ( fileMapping != null )
+            {
+                fileMapping.pagedFile.flushPages( cacheFlush );
+                fileMapping = fileMapping.next;
+            }
+
             for ( int i = 0; i < pages.length; i++ )
             {
                 MuninnPage page = pages[i];
@@ -493,6 +615,41 @@ public class MuninnPageCache implements RunnablePageCache
         }
     }
 
+    /**
+     * Grab a free page for read-ahead, if one is immediately available, and
+     * if taking it still leaves half of the keepFree pages for page faults.
+     * Otherwise return null. This never waits for eviction.
+     */
+    MuninnPage tryGrabFreePage()
+    {
+        int reserve = keepFree / 2;
+        for (;;)
+        {
+            Object current = getFreelistHead();
+            if ( current instanceof MuninnPage )
+            {
+                MuninnPage page = (MuninnPage) current;
+                if ( compareAndSetFreelistHead( page, page.nextFree ) )
+                {
+                    return page;
+                }
+            }
+            else if ( current instanceof FreePage && ((FreePage) current).count > reserve )
+            {
+                FreePage freePage = (FreePage) current;
+                if ( compareAndSetFreelistHead( freePage, freePage.next ) )
+                {
+                    return freePage.page;
+                }
+            }
+            else
+            {
+                unparkEvictor();
+                return null;
+            }
+        }
+    }
+
     private void unparkEvictor()
     {
         LockSupport.unpark( evictorThread );
@@ -541,6 +698,7 @@ public class MuninnPageCache implements RunnablePageCache
             {
                 clockArm = evictPages( pageCountToEvict, clockArm, evictionRunEvent );
             }
+            evictionClockArm = clockArm;
         }
 
         // The last thing we do, is unparking any thread that might be waiting
@@ -614,7 +772,7 @@ public class MuninnPageCache implements RunnablePageCache
                 return 0;
             }
 
-            if ( page.isLoaded() && page.decrementUsage() )
+            if ( page.isLoaded() && evictionPolicy.shouldEvict( page ) )
             {
                 long stamp = page.tryWriteLock();
                 if ( stamp != 0 )
@@ -631,6 +789,15 @@ public class MuninnPageCache implements RunnablePageCache
                     // scenario.
                     pageCountToEvict--;
                     boolean pageEvicted;
+                    PageSwapper swapper = page.getSwapper();
+                    long filePageId = page.getFilePageId();
+
+                    if ( page.isDirty() )
+                    {
+                        // We are going to stall on a write. Let the
+                        // background flusher know that it is falling behind.
+                        unparkFlusher();
+                    }
 
                     try ( EvictionEvent evictionEvent = evictionRunEvent.beginEviction() )
                     {
@@ -643,6 +810,11 @@ public class MuninnPageCache implements RunnablePageCache
 
                     if ( pageEvicted )
                     {
+                        if ( swapper != null )
+                        {
+                            evictionPolicy.pageEvicted( swapper, filePageId );
+                        }
+
                         if ( waiters != null )
                         {
                             waiters.unpark( page );
@@ -732,6 +904,258 @@ public class MuninnPageCache implements RunnablePageCache
         return false;
     }
 
+    /**
+     * Get a Runnable that runs the background flushing algorithm. It must be
+     * run in a dedicated thread, and it stops when that thread is interrupted,
+     * or when the page cache is closed.
+     *
+     * The background flusher writes out dirty pages ahead of the eviction
+     * clock arm, such that eviction will almost always find clean pages, and
+     * page faults won't have to wait for the eviction to write anything. It
+     * also keeps the number of dirty pages in the cache at or below the dirty
+     * page high-water mark, so that flushing the whole cache won't take too
+     * long. It writes at most the configured number of bytes per second.
+     */
+    public Runnable backgroundFlusher()
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                flusherThread = Thread.currentThread();
+                continuouslyFlushPages();
+            }
+        };
+    }
+
+    private void unparkFlusher()
+    {
+        Thread thread = flusherThread;
+        if ( thread != null )
+        {
+            LockSupport.unpark( thread );
+        }
+    }
+
+    private void continuouslyFlushPages()
+    {
+        long parkNanos = TimeUnit.MILLISECONDS.toNanos( backgroundFlushIntervalMillis );
+        int flushArm = 0;
+        flushBudgetWindowStartNanos = System.nanoTime();
+        flushBudgetWindowBytes = 0;
+
+        while ( !Thread.interrupted() && !closed )
+        {
+            LockSupport.parkNanos( parkNanos );
+            long dirtyPages = dirtyPageCount.get();
+            if ( dirtyPages == 0 )
+            {
+                continue;
+            }
+            try ( MajorFlushEvent flushEvent = monitor.beginBackgroundFlush( dirtyPages ) )
+            {
+                flushArm = flushPagesAheadOfClockArm( flushArm, flushEvent.flushEventOpportunity() );
+            }
+        }
+    }
+
+    /**
+     * First clean the pages right in front of the eviction clock arm, since
+     * that is where eviction will look next. Then, if we are still above the
+     * dirty page high-water mark, continue cleaning pages from where we left
+     * off the last time, until we get below the high-water mark, or have
+     * covered the whole cache.
+     *
+     * Returns the position where the next round should continue.
+     */
+    int flushPagesAheadOfClockArm( int flushArm, FlushEventOpportunity flushOpportunity )
+    {
+        int pageCount = pages.length;
+        int clockArm = evictionClockArm;
+        int lookAhead = (int) Math.min( pageCount, ((long) keepFree) * backgroundFlushLookAheadFactor );
+
+        for ( int i = 0; i < lookAhead; i++ )
+        {
+            if ( !backgroundFlushPage( (clockArm + i) % pageCount, flushOpportunity ) )
+            {
+                return flushArm;
+            }
+        }
+
+        // If the flush arm is within the window we just cleaned, or has been
+        // passed by the clock arm, then continue from the end of the window.
+        int flushArmLead = (flushArm - clockArm + pageCount) % pageCount;
+        if ( flushArmLead < lookAhead )
+        {
+            flushArm = (clockArm + lookAhead) % pageCount;
+            flushArmLead = lookAhead;
+        }
+
+        int remaining = pageCount - flushArmLead;
+        while ( remaining > 0 && dirtyPageCount.get() > dirtyPageHighWaterMark )
+        {
+            if ( !backgroundFlushPage( flushArm, flushOpportunity ) )
+            {
+                break;
+            }
+            flushArm = (flushArm + 1) % pageCount;
+            remaining--;
+        }
+        return flushArm;
+    }
+
+    /**
+     * Returns false if the background flushing should stop, because the page
+     * cache has been shut down, the flusher has been interrupted, or the
+     * flushing failed.
+     */
+    private boolean backgroundFlushPage( int cachePageId, FlushEventOpportunity flushOpportunity )
+    {
+        MuninnPage page = pages[cachePageId];
+        if ( page == null || Thread.currentThread().isInterrupted() )
+        {
+            // The page cache has been shut down.
+            return false;
+        }
+        if ( !page.isDirty() )
+        {
+            return true;
+        }
+
+        // We only try to take the lock, because we don't want to get in the
+        // way of the threads that use the page. If it is write locked, then it
+        // is in use, and probably not in danger of getting evicted anyway.
+        long stamp = page.tryReadLock();
+        if ( stamp == 0 )
+        {
+            return true;
+        }
+        try
+        {
+            page.flush( flushOpportunity );
+        }
+        catch ( IOException ignore )
+        {
+            // The flush event has been told about the failure. We stop this
+            // round, and let the eviction thread deal with the problem if it
+            // persists, since it is in a better position to report it.
+            return false;
+        }
+        finally
+        {
+            page.unlockRead( stamp );
+        }
+        spendBackgroundFlushBudget( cachePageSize );
+        return true;
+    }
+
+    /**
+     * Park the background flusher for as long as it takes to bring the rate
+     * of written bytes back within the IO budget.
+     */
+    private void spendBackgroundFlushBudget( int bytes )
+    {
+        if ( backgroundFlushBytesPerSecond <= 0 )
+        {
+            return;
+        }
+        long oneSecond = TimeUnit.SECONDS.toNanos( 1 );
+        long now = System.nanoTime();
+        if ( now - flushBudgetWindowStartNanos >= oneSecond )
+        {
+            flushBudgetWindowStartNanos = now;
+            flushBudgetWindowBytes = 0;
+        }
+        flushBudgetWindowBytes += bytes;
+        long allowedNanos = flushBudgetWindowBytes * oneSecond / backgroundFlushBytesPerSecond;
+        long elapsedNanos = now - flushBudgetWindowStartNanos;
+        if ( allowedNanos > elapsedNanos )
+        {
+            LockSupport.parkNanos( allowedNanos - elapsedNanos );
+        }
+    }
+
+    /**
+     * Get a Runnable that runs the read-ahead thread. It must be run in a
+     * dedicated thread, and it stops when that thread is interrupted, or when
+     * the page cache is closed.
+     *
+     * The read-ahead thread prefetches pages on behalf of read cursors that
+     * are reading their files sequentially, so the reads can overlap with the
+     * work that the cursors do on the pages they already have. If this is
+     * not running, then the cursors do their own read-ahead, which still
+     * reads many pages with few large reads.
+     */
+    public Runnable readAheader()
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                readAheadThread = Thread.currentThread();
+                try
+                {
+                    continuouslyReadAhead();
+                }
+                finally
+                {
+                    readAheadThread = null;
+                }
+            }
+        };
+    }
+
+    private void continuouslyReadAhead()
+    {
+        try
+        {
+            while ( !Thread.currentThread().isInterrupted() && !closed )
+            {
+                ReadAheadRequest request = readAheadQueue.poll( 10, TimeUnit.MILLISECONDS );
+                if ( request != null && request.pagedFile.getRefCount() > 0 )
+                {
+                    request.pagedFile.readAhead(
+                            request.startFilePageId, request.pageCount, request.pf_flags );
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        readAheadQueue.clear();
+    }
+
+    /**
+     * Prefetch the given run of pages from the given file. This is handed
+     * off to the read-ahead thread if it is running, or otherwise done right
+     * away by the calling thread. The request is dropped if the read-ahead
+     * thread is too far behind.
+     *
+     * NOTE: The calling thread must not hold any page locks.
+     */
+    void readAhead( MuninnPagedFile pagedFile, long startFilePageId, int pageCount, int pf_flags )
+    {
+        if ( readAheadThread != null )
+        {
+            readAheadQueue.offer( new ReadAheadRequest( pagedFile, startFilePageId, pageCount, pf_flags ) );
+        }
+        else
+        {
+            pagedFile.readAhead( startFilePageId, pageCount, pf_flags );
+        }
+    }
+
+    /**
+     * @return The number of dirty pages in the cache.
+     */
+    long countDirtyPages()
+    {
+        return dirtyPageCount.get();
+    }
+
     private FreePageWaiter grabFreePageWaitersIfAny()
     {
         Object freelistHead = getFreelistHead();
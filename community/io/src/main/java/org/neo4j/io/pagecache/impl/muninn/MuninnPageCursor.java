@@ -152,6 +152,7 @@ abstract class MuninnPageCursor implements PageCursor
             faultEvent.done( throwable );
             throw throwable;
         }
+        pagedFile.evictionPolicy.pageFaulted( page, swapper, filePageId, pf_flags );
         convertPageFaultLock( page, stamp );
         pinCursorToPage( page, filePageId, swapper );
         faultEvent.done();
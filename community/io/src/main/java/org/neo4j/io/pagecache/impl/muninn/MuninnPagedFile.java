@@ -33,6 +33,7 @@ import org.neo4j.io.pagecache.PageSwapperFactory;
 import org.neo4j.io.pagecache.PagedFile;
 import org.neo4j.jsr166e.StampedLock;
 import org.neo4j.io.pagecache.monitoring.PageFaultEvent;
+import org.neo4j.io.pagecache.monitoring.ReadAheadEvent;
 
 final class MuninnPagedFile implements PagedFile
 {
@@ -41,12 +42,34 @@ final class MuninnPagedFile implements PagedFile
     static final int translationTableStripeLevel = 1 << stripeFactor;
     static final int translationTableStripeMask = translationTableStripeLevel - 1;
 
+    // Flush the dirty pages in filePageId order, and write runs of adjacent
+    // pages with a single gathering write, rather than one page at a time in
+    // translation table order.
+    private static final boolean vectoredFlush = Boolean.parseBoolean( System.getProperty(
+            "org.neo4j.io.pagecache.impl.muninn.MuninnPagedFile.vectoredFlush", "true" ) );
+    // The max number of pages to write in a single vectored write.
+    private static final int maxFlushRunLength = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.muninn.MuninnPagedFile.maxFlushRunLength", 128 );
+
+    // Read cursors start reading ahead once they have pinned this many
+    // consecutive pages, unless they were opened with PF_READ_AHEAD, in
+    // which case they start right away. The read-ahead window starts out at
+    // initialReadAheadPages, and doubles every time the cursor catches up
+    // with it, up to the maxReadAheadPages of the file.
+    static final int readAheadThreshold = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.muninn.MuninnPagedFile.readAheadThreshold", 4 );
+    static final int initialReadAheadPages = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.muninn.MuninnPagedFile.initialReadAheadPages", 8 );
+    private static final int defaultMaxReadAheadPages = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.muninn.MuninnPagedFile.maxReadAheadPages", 64 );
+
     private static final long referenceCounterOffset =
             UnsafeUtil.getFieldOffset( MuninnPagedFile.class, "referenceCounter" );
     private static final long lastPageIdOffset =
             UnsafeUtil.getFieldOffset( MuninnPagedFile.class, "lastPageId" );
 
     final MuninnPageCache pageCache;
+    final EvictionPolicy evictionPolicy;
     // This is the table where we translate file-page-ids to cache-page-ids:
     final int pageSize;
     final PageCacheMonitor monitor;
@@ -56,6 +79,7 @@ final class MuninnPagedFile implements PagedFile
 
     final PageSwapper swapper;
     private final MuninnCursorPool cursorPool;
+    volatile int maxReadAheadPages = defaultMaxReadAheadPages;
 
     // Accessed via Unsafe
     private volatile int referenceCounter;
@@ -70,6 +94,7 @@ final class MuninnPagedFile implements PagedFile
             PageCacheMonitor monitor ) throws IOException
     {
         this.pageCache = pageCache;
+        this.evictionPolicy = pageCache.evictionPolicy;
         this.pageSize = pageSize;
         this.cursorPool = cursorPool;
         this.monitor = monitor;
@@ -144,23 +169,168 @@ final class MuninnPagedFile implements PagedFile
     {
         try ( MajorFlushEvent flushEvent = monitor.beginFileFlush( swapper ) )
         {
-            PageFlusher flusher = new PageFlusher( swapper, flushEvent );
-            for ( int i = 0; i < translationTableStripeLevel; i++ )
+            flushPages( flushEvent );
+            force();
+        }
+    }
+
+    /**
+     * Write out all the dirty pages of this file, without forcing.
+     */
+    void flushPages( MajorFlushEvent flushEvent ) throws IOException
+    {
+        if ( vectoredFlush )
+        {
+            VectoredPageFlusher flusher = new VectoredPageFlusher(
+                    translationTables, translationTableLocks, swapper, flushEvent, maxFlushRunLength );
+            flusher.flush();
+            return;
+        }
+
+        PageFlusher flusher = new PageFlusher( swapper, flushEvent );
+        for ( int i = 0; i < translationTableStripeLevel; i++ )
+        {
+            PrimitiveLongObjectMap<MuninnPage> translationTable = translationTables[i];
+            StampedLock translationTableLock = translationTableLocks[i];
+
+            long stamp = translationTableLock.readLock();
+            try
             {
-                PrimitiveLongObjectMap<MuninnPage> translationTable = translationTables[i];
-                StampedLock translationTableLock = translationTableLocks[i];
+                translationTable.visitEntries( flusher );
+            }
+            finally
+            {
+                translationTableLock.unlockRead( stamp );
+            }
+        }
+    }
+
+    @Override
+    public void setMaxReadAheadPages( int maxReadAheadPages )
+    {
+        if ( maxReadAheadPages < 0 )
+        {
+            throw new IllegalArgumentException(
+                    "The max number of read-ahead pages cannot be negative, but was " + maxReadAheadPages );
+        }
+        this.maxReadAheadPages = maxReadAheadPages;
+    }
 
-                long stamp = translationTableLock.readLock();
-                try
+    /**
+     * Prefetch the given number of file pages, starting from the given
+     * startFilePageId, into free pages, with as few vectored reads as
+     * possible. Pages that are already in the cache are skipped, and the
+     * read-ahead stops early if there are no free pages to be had without
+     * waiting for eviction.
+     *
+     * Read-ahead is only a hint, so IO errors are reported to the monitor
+     * and otherwise ignored. The cursors will get them when they fault the
+     * pages in themselves.
+     *
+     * NOTE: The calling thread must not hold any page locks.
+     */
+    void readAhead( long startFilePageId, int pageCount, int pf_flags )
+    {
+        ReadAheadEvent event = monitor.beginReadAhead( startFilePageId, pageCount, swapper );
+        MuninnPage[] run = new MuninnPage[pageCount];
+        long[] stamps = new long[pageCount];
+        int runLength = 0;
+        long runStart = startFilePageId;
+        long endFilePageId = startFilePageId + pageCount;
+        long filePageId = startFilePageId;
+        try
+        {
+            while ( filePageId < endFilePageId )
+            {
+                int stripe = (int) (filePageId & translationTableStripeMask);
+                StampedLock translationTableLock = translationTableLocks[stripe];
+                PrimitiveLongObjectMap<MuninnPage> translationTable = translationTables[stripe];
+
+                // We must not block on the translation table locks while we
+                // hold page locks, since page faulters take them in the
+                // opposite order. So if we can't get the lock right away, we
+                // end the run here, and wait for the lock without it.
+                long stamp = runLength == 0?
+                        translationTableLock.writeLock() : translationTableLock.tryWriteLock();
+                if ( stamp == 0 )
+                {
+                    readRun( runStart, run, stamps, runLength, pf_flags, event );
+                    runLength = 0;
+                    runStart = filePageId;
+                    continue;
+                }
+
+                MuninnPage page = null;
+                boolean cached = translationTable.get( filePageId ) != null;
+                if ( !cached )
                 {
-                    translationTable.visitEntries( flusher );
+                    page = pageCache.tryGrabFreePage();
+                    if ( page != null )
+                    {
+                        stamps[runLength] = page.writeLock();
+                        translationTable.put( filePageId, page );
+                    }
                 }
-                finally
+                translationTableLock.unlockWrite( stamp );
+
+                if ( page == null && !cached )
+                {
+                    // No more free pages
+                    break;
+                }
+                filePageId++;
+                if ( cached )
                 {
-                    translationTableLock.unlockRead( stamp );
+                    readRun( runStart, run, stamps, runLength, pf_flags, event );
+                    runLength = 0;
+                    runStart = filePageId;
+                }
+                else
+                {
+                    page.initBuffer();
+                    run[runLength] = page;
+                    runLength++;
                 }
             }
-            force();
+            readRun( runStart, run, stamps, runLength, pf_flags, event );
+            event.done();
+        }
+        catch ( IOException e )
+        {
+            event.done( e );
+        }
+    }
+
+    private void readRun(
+            long runStart,
+            MuninnPage[] run,
+            long[] stamps,
+            int runLength,
+            int pf_flags,
+            ReadAheadEvent event ) throws IOException
+    {
+        if ( runLength == 0 )
+        {
+            return;
+        }
+        try
+        {
+            long bytesRead = MuninnPage.faultRun( swapper, runStart, run, runLength );
+            event.addBytesRead( bytesRead );
+            event.addPagesRead( runLength );
+            for ( int i = 0; i < runLength; i++ )
+            {
+                evictionPolicy.pageFaulted( run[i], swapper, runStart + i, pf_flags );
+                evictionPolicy.pageAccessed( run[i], pf_flags );
+            }
+        }
+        finally
+        {
+            for ( int i = 0; i < runLength; i++ )
+            {
+                run[i].unlockWrite( stamps[i] );
+                run[i] = null;
+            }
         }
     }
 
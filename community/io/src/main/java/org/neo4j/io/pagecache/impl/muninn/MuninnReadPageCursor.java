@@ -23,12 +23,19 @@ import java.io.IOException;
 
 import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
 import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.PagedFile;
 import org.neo4j.jsr166e.StampedLock;
 
 final class MuninnReadPageCursor extends MuninnPageCursor
 {
     private boolean optimisticLock;
 
+    // Read-ahead state. The file pages before the readAheadFrontier have
+    // already been requested to be prefetched.
+    private int sequentialPins;
+    private int readAheadWindow;
+    private long readAheadFrontier;
+
     @Override
     protected void unpinCurrentPage()
     {
@@ -62,12 +69,67 @@ final class MuninnReadPageCursor extends MuninnPageCursor
             return false;
         }
         unpinCurrentPage();
+        considerReadAhead();
         pin( nextPageId );
         currentPageId = nextPageId;
         nextPageId++;
         return true;
     }
 
+    /**
+     * Figure out if we are reading the file sequentially, and if so, make
+     * sure that the pages ahead of us are being prefetched. The read-ahead
+     * window doubles every time we get halfway through it, up to the
+     * maxReadAheadPages of the file, and shrinks back to nothing as soon as
+     * we jump somewhere else in the file.
+     *
+     * NOTE: This must be called while we have no page pinned, since the
+     * read-ahead might take translation table locks and page locks.
+     */
+    private void considerReadAhead()
+    {
+        int maxReadAheadPages = pagedFile.maxReadAheadPages;
+        if ( maxReadAheadPages == 0 )
+        {
+            return;
+        }
+
+        if ( currentPageId == UNBOUND_PAGE_ID )
+        {
+            boolean readAheadHint = (pf_flags & PagedFile.PF_READ_AHEAD) != 0;
+            sequentialPins = readAheadHint? MuninnPagedFile.readAheadThreshold : 0;
+            readAheadWindow = 0;
+            readAheadFrontier = nextPageId;
+        }
+        else if ( nextPageId == currentPageId + 1 )
+        {
+            sequentialPins = Math.min( sequentialPins + 1, MuninnPagedFile.readAheadThreshold );
+        }
+        else
+        {
+            sequentialPins = 0;
+            readAheadWindow = 0;
+            readAheadFrontier = nextPageId;
+        }
+
+        if ( sequentialPins < MuninnPagedFile.readAheadThreshold
+                || readAheadFrontier - nextPageId > readAheadWindow / 2 )
+        {
+            return;
+        }
+
+        readAheadWindow = readAheadWindow == 0?
+                MuninnPagedFile.initialReadAheadPages : readAheadWindow * 2;
+        readAheadWindow = Math.min( readAheadWindow, maxReadAheadPages );
+        long start = Math.max( nextPageId, readAheadFrontier );
+        long end = Math.min( nextPageId + readAheadWindow, lastPageId + 1 );
+        if ( start < end )
+        {
+            pagedFile.pageCache.readAhead( pagedFile, start, (int) (end - start), pf_flags );
+            readAheadFrontier = end;
+        }
+    }
+
     private void pin( long filePageId ) throws IOException
     {
         int stripe = (int) (filePageId & MuninnPagedFile.translationTableStripeMask);
@@ -165,7 +227,7 @@ final class MuninnReadPageCursor extends MuninnPageCursor
     protected void pinCursorToPage( MuninnPage page, long filePageId, PageSwapper swapper )
     {
         reset( page );
-        page.incrementUsage();
+        pagedFile.evictionPolicy.pageAccessed( page, pf_flags );
     }
 
     @Override
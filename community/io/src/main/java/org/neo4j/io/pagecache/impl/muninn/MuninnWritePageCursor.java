@@ -163,7 +163,7 @@ final class MuninnWritePageCursor extends MuninnPageCursor
     protected void pinCursorToPage( MuninnPage page, long filePageId, PageSwapper swapper )
     {
         reset( page );
-        page.incrementUsage();
+        pagedFile.evictionPolicy.pageAccessed( page, pf_flags );
         page.markAsDirty();
     }
 
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+/**
+ * A request for the read-ahead thread to prefetch a run of pages into the
+ * MuninnPageCache, on behalf of a read cursor that is reading its file
+ * sequentially.
+ */
+final class ReadAheadRequest
+{
+    final MuninnPagedFile pagedFile;
+    final long startFilePageId;
+    final int pageCount;
+    final int pf_flags;
+
+    ReadAheadRequest( MuninnPagedFile pagedFile, long startFilePageId, int pageCount, int pf_flags )
+    {
+        this.pagedFile = pagedFile;
+        this.startFilePageId = startFilePageId;
+        this.pageCount = pageCount;
+        this.pf_flags = pf_flags;
+    }
+}
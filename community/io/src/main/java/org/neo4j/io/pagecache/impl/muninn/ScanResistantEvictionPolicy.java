@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.neo4j.io.pagecache.PageSwapper;
+
+import static org.neo4j.io.pagecache.PagedFile.PF_SEQUENTIAL_SCAN;
+import static org.neo4j.io.pagecache.PagedFile.PF_TRANSIENT;
+
+/**
+ * A 2Q-style variant of the CLOCK policy, that keeps large scans from
+ * flushing the working set out of the cache.
+ *
+ * Newly faulted pages start out on probation with a usage stamp of 1, so
+ * they are evicted on the first sweep of the clock arm, unless they are
+ * accessed again before then. When a page is evicted, we remember its file
+ * page in a ghost table. If a page is faulted in while its ghost is still
+ * there, then it was evicted too early, and it is brought back as a hot
+ * page, with a usage stamp that will keep it around for a number of sweeps.
+ *
+ * Pages that are accessed by cursors with the
+ * {@link org.neo4j.io.pagecache.PagedFile#PF_SEQUENTIAL_SCAN} flag are
+ * faulted in with a usage stamp of zero, and are never promoted by those
+ * accesses, so they are the first to go. Accesses through cursors with the
+ * {@link org.neo4j.io.pagecache.PagedFile#PF_TRANSIENT} flag do not update
+ * the usage stamp either.
+ *
+ * The ghost table is a direct-mapped hash table with as many slots as
+ * there are pages in the cache, so it roughly remembers the last cache-full
+ * of evictions. It is written by the eviction thread and read by the page
+ * faulting threads without synchronisation. The ghosts are only hints, so
+ * the occasional lost or stale entry is harmless.
+ */
+final class ScanResistantEvictionPolicy implements EvictionPolicy
+{
+    // The usage stamp that pages get when they are faulted back in while
+    // their ghost is still in the ghost table. The pageAccessed call that
+    // follows the fault adds one to this.
+    private static final int hotPageUsage = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.muninn.ScanResistantEvictionPolicy.hotPageUsage", 2 );
+
+    private static final long EMPTY = 0;
+
+    private final long[] ghosts;
+    private final int ghostMask;
+
+    ScanResistantEvictionPolicy( int maxPages )
+    {
+        int ghostCount = Integer.highestOneBit( Math.max( maxPages, 1 ) );
+        if ( ghostCount < maxPages )
+        {
+            ghostCount <<= 1;
+        }
+        ghosts = new long[ghostCount];
+        ghostMask = ghostCount - 1;
+    }
+
+    @Override
+    public void pageFaulted( MuninnPage page, PageSwapper swapper, long filePageId, int pf_flags )
+    {
+        if ( (pf_flags & PF_SEQUENTIAL_SCAN) != 0 )
+        {
+            page.setUsage( 0 );
+            return;
+        }
+
+        long key = ghostKey( swapper, filePageId );
+        int slot = ghostSlot( key );
+        if ( ghosts[slot] == key )
+        {
+            ghosts[slot] = EMPTY;
+            page.setUsage( hotPageUsage );
+        }
+        else
+        {
+            page.setUsage( 0 );
+        }
+    }
+
+    @Override
+    public void pageAccessed( MuninnPage page, int pf_flags )
+    {
+        if ( (pf_flags & (PF_SEQUENTIAL_SCAN | PF_TRANSIENT)) == 0 )
+        {
+            page.incrementUsage();
+        }
+    }
+
+    @Override
+    public boolean shouldEvict( MuninnPage page )
+    {
+        return page.decrementUsage();
+    }
+
+    @Override
+    public void pageEvicted( PageSwapper swapper, long filePageId )
+    {
+        long key = ghostKey( swapper, filePageId );
+        ghosts[ghostSlot( key )] = key;
+    }
+
+    boolean hasGhost( PageSwapper swapper, long filePageId )
+    {
+        long key = ghostKey( swapper, filePageId );
+        return ghosts[ghostSlot( key )] == key;
+    }
+
+    private static long ghostKey( PageSwapper swapper, long filePageId )
+    {
+        long key = (filePageId * 0x9E3779B97F4A7C15L) ^ System.identityHashCode( swapper );
+        return key == EMPTY? 1 : key;
+    }
+
+    private int ghostSlot( long key )
+    {
+        key ^= key >>> 32;
+        key ^= key >>> 16;
+        return (int) (key & ghostMask);
+    }
+}
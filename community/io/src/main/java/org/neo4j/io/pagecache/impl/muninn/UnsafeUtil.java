@@ -152,6 +152,12 @@ public final class UnsafeUtil
         return x;
     }
 
+    public static boolean compareAndSwapInt(
+            Object obj, long offset, int expected, int update )
+    {
+        return unsafe.compareAndSwapInt( obj, offset, expected, update );
+    }
+
     public static boolean compareAndSwapLong(
             Object obj, long offset, long expected, long update )
     {
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.monitoring.FlushEvent;
+import org.neo4j.io.pagecache.monitoring.FlushEventOpportunity;
+import org.neo4j.io.pagecache.monitoring.MajorFlushEvent;
+import org.neo4j.jsr166e.StampedLock;
+
+import static org.neo4j.io.pagecache.impl.muninn.MuninnPagedFile.translationTableStripeLevel;
+import static org.neo4j.io.pagecache.impl.muninn.MuninnPagedFile.translationTableStripeMask;
+
+/**
+ * Flushes the dirty pages of a file in filePageId order, writing runs of
+ * adjacent dirty pages with a single gathering write.
+ *
+ * The flushing happens in two phases. First we visit all the translation
+ * tables and collect the filePageIds of the pages that might be dirty. Then
+ * we sort those ids, and go through them in order, read locking the pages that
+ * are still dirty and bound to our file, and grouping them into runs of
+ * adjacent pages. Whenever a run is broken, because of a gap in the ids or
+ * because the run has reached its max length, it is written out and the pages
+ * are unlocked.
+ *
+ * We only ever block on a page lock or a translation table lock when we are
+ * not holding any other page locks. While we are building a run, we only try
+ * to take the locks, and if that fails, we write out the run we have so far
+ * before we block. This way, we cannot dead-lock with threads that hold a
+ * page write lock, and are waiting for a lock on another page.
+ */
+final class VectoredPageFlusher implements PrimitiveLongObjectVisitor<MuninnPage>
+{
+    private final PrimitiveLongObjectMap<MuninnPage>[] translationTables;
+    private final StampedLock[] translationTableLocks;
+    private final PageSwapper swapper;
+    private final FlushEventOpportunity flushOpportunity;
+
+    private long[] filePageIds;
+    private int filePageIdCount;
+
+    private final MuninnPage[] run;
+    private final long[] runStamps;
+    private long runStartFilePageId;
+    private int runLength;
+
+    public VectoredPageFlusher(
+            PrimitiveLongObjectMap<MuninnPage>[] translationTables,
+            StampedLock[] translationTableLocks,
+            PageSwapper swapper,
+            MajorFlushEvent flushEvent,
+            int maxRunLength )
+    {
+        this.translationTables = translationTables;
+        this.translationTableLocks = translationTableLocks;
+        this.swapper = swapper;
+        this.flushOpportunity = flushEvent.flushEventOpportunity();
+        this.filePageIds = new long[32];
+        this.run = new MuninnPage[maxRunLength];
+        this.runStamps = new long[maxRunLength];
+    }
+
+    public void flush() throws IOException
+    {
+        collectDirtyFilePageIds();
+        Arrays.sort( filePageIds, 0, filePageIdCount );
+
+        try
+        {
+            for ( int i = 0; i < filePageIdCount; i++ )
+            {
+                long filePageId = filePageIds[i];
+                if ( runLength > 0 &&
+                        (runLength == run.length || filePageId != runStartFilePageId + runLength) )
+                {
+                    writeRun();
+                }
+
+                if ( !tryAddToRun( filePageId, runLength == 0 ) )
+                {
+                    // We could not get the locks without blocking, so write
+                    // out what we have, and then wait for the page on its own.
+                    writeRun();
+                    tryAddToRun( filePageId, true );
+                }
+            }
+            if ( runLength > 0 )
+            {
+                writeRun();
+            }
+        }
+        finally
+        {
+            // Only non-empty if writeRun() threw, in which case we still have
+            // to release the locks.
+            unlockRun();
+        }
+    }
+
+    private void collectDirtyFilePageIds()
+    {
+        for ( int i = 0; i < translationTableStripeLevel; i++ )
+        {
+            PrimitiveLongObjectMap<MuninnPage> translationTable = translationTables[i];
+            StampedLock translationTableLock = translationTableLocks[i];
+
+            long stamp = translationTableLock.readLock();
+            try
+            {
+                translationTable.visitEntries( this );
+            }
+            finally
+            {
+                translationTableLock.unlockRead( stamp );
+            }
+        }
+    }
+
+    @Override
+    public void visited( long filePageId, MuninnPage page )
+    {
+        // If the page is currently write locked, then it may become dirty, so
+        // we include it as a candidate. Either way, the flag is checked again
+        // under a pessimistic lock before we write anything.
+        long stamp = page.tryOptimisticRead();
+        if ( stamp == 0 || page.isDirty() )
+        {
+            if ( filePageIdCount == filePageIds.length )
+            {
+                filePageIds = Arrays.copyOf( filePageIds, filePageIdCount * 2 );
+            }
+            filePageIds[filePageIdCount++] = filePageId;
+        }
+    }
+
+    /**
+     * Add the page with the given filePageId to the current run, if it is
+     * still dirty and bound to our file.
+     *
+     * Returns false if the locks could not be taken without blocking, and
+     * blocking was not allowed. Returns true otherwise, also if the page
+     * turned out to not need flushing.
+     */
+    private boolean tryAddToRun( long filePageId, boolean mayBlock )
+    {
+        int stripe = (int) (filePageId & translationTableStripeMask);
+        StampedLock translationTableLock = translationTableLocks[stripe];
+        long ttlStamp = mayBlock? translationTableLock.readLock() : translationTableLock.tryReadLock();
+        if ( ttlStamp == 0 )
+        {
+            return false;
+        }
+        try
+        {
+            MuninnPage page = translationTables[stripe].get( filePageId );
+            if ( page == null )
+            {
+                return true;
+            }
+            long stamp = mayBlock? page.readLock() : page.tryReadLock();
+            if ( stamp == 0 )
+            {
+                return false;
+            }
+            if ( page.isDirty() && page.isBoundTo( swapper, filePageId ) )
+            {
+                if ( runLength == 0 )
+                {
+                    runStartFilePageId = filePageId;
+                }
+                run[runLength] = page;
+                runStamps[runLength] = stamp;
+                runLength++;
+            }
+            else
+            {
+                page.unlockRead( stamp );
+            }
+            return true;
+        }
+        finally
+        {
+            translationTableLock.unlockRead( ttlStamp );
+        }
+    }
+
+    private void writeRun() throws IOException
+    {
+        FlushEvent event = flushOpportunity.beginFlush(
+                runStartFilePageId, run[0].getCachePageId(), swapper );
+        try
+        {
+            long bytesWritten = swapper.write( runStartFilePageId, run, 0, runLength );
+            for ( int i = 0; i < runLength; i++ )
+            {
+                run[i].markAsClean();
+            }
+            event.addBytesWritten( (int) bytesWritten );
+            event.addPagesFlushed( runLength );
+            event.done();
+        }
+        catch ( IOException e )
+        {
+            event.done( e );
+            throw e;
+        }
+        finally
+        {
+            unlockRun();
+        }
+    }
+
+    private void unlockRun()
+    {
+        for ( int i = 0; i < runLength; i++ )
+        {
+            run[i].unlockRead( runStamps[i] );
+            run[i] = null;
+        }
+        runLength = 0;
+    }
+}
@@ -90,6 +90,9 @@ public class DefaultPageCacheMonitor implements PageCacheMonitor
     protected final AtomicLong filesMapped = new AtomicLong();
     protected final AtomicLong filesUnmapped = new AtomicLong();
     protected final AtomicLong evictionExceptions = new AtomicLong();
+    protected final AtomicLong backgroundFlushes = new AtomicLong();
+    protected final AtomicLong readAheads = new AtomicLong();
+    protected final AtomicLong readAheadPages = new AtomicLong();
 
     private final FlushEvent flushEvent = new FlushEvent()
     {
@@ -99,16 +102,20 @@ public class DefaultPageCacheMonitor implements PageCacheMonitor
             bytesWritten.getAndAdd( bytes );
         }
 
+        @Override
+        public void addPagesFlushed( int pageCount )
+        {
+            flushes.getAndAdd( pageCount );
+        }
+
         @Override
         public void done()
         {
-            flushes.getAndIncrement();
         }
 
         @Override
         public void done( IOException exception )
         {
-            done();
         }
     };
 
@@ -121,6 +128,41 @@ public class DefaultPageCacheMonitor implements PageCacheMonitor
         }
     };
 
+    private final FlushEvent backgroundFlushEvent = new FlushEvent()
+    {
+        @Override
+        public void addBytesWritten( int bytes )
+        {
+            bytesWritten.getAndAdd( bytes );
+        }
+
+        @Override
+        public void addPagesFlushed( int pageCount )
+        {
+            flushes.getAndAdd( pageCount );
+            backgroundFlushes.getAndAdd( pageCount );
+        }
+
+        @Override
+        public void done()
+        {
+        }
+
+        @Override
+        public void done( IOException exception )
+        {
+        }
+    };
+
+    private final FlushEventOpportunity backgroundFlushEventOpportunity = new FlushEventOpportunity()
+    {
+        @Override
+        public FlushEvent beginFlush( long filePageId, int cachePageId, PageSwapper swapper )
+        {
+            return backgroundFlushEvent;
+        }
+    };
+
     private final EvictionEvent evictionEvent = new EvictionEvent()
     {
         @Override
@@ -202,6 +244,33 @@ public class DefaultPageCacheMonitor implements PageCacheMonitor
         }
     };
 
+    private final ReadAheadEvent readAheadEvent = new ReadAheadEvent()
+    {
+        @Override
+        public void addBytesRead( long bytes )
+        {
+            bytesRead.getAndAdd( bytes );
+        }
+
+        @Override
+        public void addPagesRead( int pageCount )
+        {
+            readAheadPages.getAndAdd( pageCount );
+        }
+
+        @Override
+        public void done()
+        {
+            readAheads.getAndIncrement();
+        }
+
+        @Override
+        public void done( Throwable throwable )
+        {
+            done();
+        }
+    };
+
     private final PinEvent pinEvent = new PinEvent()
     {
         @Override
@@ -236,6 +305,20 @@ public class DefaultPageCacheMonitor implements PageCacheMonitor
         }
     };
 
+    private final MajorFlushEvent backgroundMajorFlushEvent = new MajorFlushEvent()
+    {
+        @Override
+        public FlushEventOpportunity flushEventOpportunity()
+        {
+            return backgroundFlushEventOpportunity;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    };
+
     @Override
     public void mappedFile( File file )
     {
@@ -298,6 +381,18 @@ public class DefaultPageCacheMonitor implements PageCacheMonitor
         return majorFlushEvent;
     }
 
+    @Override
+    public MajorFlushEvent beginBackgroundFlush( long dirtyPageCount )
+    {
+        return backgroundMajorFlushEvent;
+    }
+
+    @Override
+    public ReadAheadEvent beginReadAhead( long startFilePageId, int pageCount, PageSwapper swapper )
+    {
+        return readAheadEvent;
+    }
+
     @Override
     public long countFaults()
     {
@@ -357,4 +452,22 @@ public class DefaultPageCacheMonitor implements PageCacheMonitor
     {
         return evictionExceptions.get();
     }
+
+    @Override
+    public long countBackgroundFlushes()
+    {
+        return backgroundFlushes.get();
+    }
+
+    @Override
+    public long countReadAheads()
+    {
+        return readAheads.get();
+    }
+
+    @Override
+    public long countReadAheadPages()
+    {
+        return readAheadPages.get();
+    }
 }
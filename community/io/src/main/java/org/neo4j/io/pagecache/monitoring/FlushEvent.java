@@ -31,6 +31,14 @@ public interface FlushEvent
      */
     public void addBytesWritten( int bytes );
 
+    /**
+     * Add up a number of pages that has been written to the file as part of this flush.
+     *
+     * This is normally 1, but vectored flushing will write runs of adjacent pages with a single
+     * gathering write, and report the length of each run here.
+     */
+    public void addPagesFlushed( int pageCount );
+
     /**
      * The page flush has completed successfully.
      */
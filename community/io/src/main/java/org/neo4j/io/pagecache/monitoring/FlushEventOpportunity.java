@@ -30,6 +30,10 @@ public interface FlushEventOpportunity
 {
     /**
      * Begin flushing the given page.
+     *
+     * When a run of adjacent pages is flushed in one vectored write, the filePageId and cachePageId are those of
+     * the first page in the run, and the length of the run is reported through
+     * {@link FlushEvent#addPagesFlushed(int)}.
      */
     public FlushEvent beginFlush( long filePageId, int cachePageId, PageSwapper swapper );
 }
@@ -41,6 +41,11 @@ public interface PageCacheMonitor
         {
         }
 
+        @Override
+        public void addPagesFlushed( int pageCount )
+        {
+        }
+
         @Override
         public void done()
         {
@@ -171,6 +176,32 @@ public interface PageCacheMonitor
         }
     };
 
+    /**
+     * A ReadAheadEvent that does nothing.
+     */
+    public static final ReadAheadEvent NULL_READ_AHEAD_EVENT = new ReadAheadEvent()
+    {
+        @Override
+        public void addBytesRead( long bytes )
+        {
+        }
+
+        @Override
+        public void addPagesRead( int pageCount )
+        {
+        }
+
+        @Override
+        public void done()
+        {
+        }
+
+        @Override
+        public void done( Throwable throwable )
+        {
+        }
+    };
+
     /**
      * An EvictionRunEvent that does nothing other than return the NULL_EVICTION_EVENT.
      */
@@ -228,6 +259,18 @@ public interface PageCacheMonitor
             return NULL_MAJOR_FLUSH_EVENT;
         }
 
+        @Override
+        public MajorFlushEvent beginBackgroundFlush( long dirtyPageCount )
+        {
+            return NULL_MAJOR_FLUSH_EVENT;
+        }
+
+        @Override
+        public ReadAheadEvent beginReadAhead( long startFilePageId, int pageCount, PageSwapper swapper )
+        {
+            return NULL_READ_AHEAD_EVENT;
+        }
+
         @Override
         public long countFaults()
         {
@@ -287,6 +330,24 @@ public interface PageCacheMonitor
         {
             return 0;
         }
+
+        @Override
+        public long countBackgroundFlushes()
+        {
+            return 0;
+        }
+
+        @Override
+        public long countReadAheads()
+        {
+            return 0;
+        }
+
+        @Override
+        public long countReadAheadPages()
+        {
+            return 0;
+        }
     };
 
     /**
@@ -323,6 +384,20 @@ public interface PageCacheMonitor
      */
     public MajorFlushEvent beginCacheFlush();
 
+    /**
+     * The background flusher has begun a round of cleaning dirty pages ahead of the eviction clock arm.
+     * Called from the background flusher thread.
+     *
+     * The given dirtyPageCount is the number of dirty pages in the cache at the start of the round.
+     */
+    public MajorFlushEvent beginBackgroundFlush( long dirtyPageCount );
+
+    /**
+     * A run of the given number of pages, starting from the given file page, is about to be prefetched into the
+     * page cache, ahead of a cursor that is reading the file sequentially.
+     */
+    public ReadAheadEvent beginReadAhead( long startFilePageId, int pageCount, PageSwapper swapper );
+
     /**
      * @return The number of page faults observed thus far.
      */
@@ -372,4 +447,22 @@ public interface PageCacheMonitor
      * @return The number of page evictions that have thrown exceptions thus far.
      */
     public long countEvictionExceptions();
+
+    /**
+     * @return The number of page flushes done by the background flusher thus far.
+     * These are also included in the {@link #countFlushes()} count.
+     */
+    public long countBackgroundFlushes();
+
+    /**
+     * @return The number of read-aheads observed thus far.
+     */
+    public long countReadAheads();
+
+    /**
+     * @return The number of pages that have been prefetched by read-aheads thus far.
+     * These are not included in the {@link #countFaults()} count, but the bytes read are included in the
+     * {@link #countBytesRead()} count.
+     */
+    public long countReadAheadPages();
 }
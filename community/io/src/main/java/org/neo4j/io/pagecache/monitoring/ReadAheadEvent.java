@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.monitoring;
+
+/**
+ * Begin a read-ahead, where a run of pages is prefetched into the page cache ahead of a cursor that is reading the
+ * file sequentially.
+ */
+public interface ReadAheadEvent
+{
+    /**
+     * Add up a number of bytes that has been read from the backing file into the prefetched pages.
+     */
+    public void addBytesRead( long bytes );
+
+    /**
+     * Add up a number of pages that has been prefetched into the page cache.
+     */
+    public void addPagesRead( int pageCount );
+
+    /**
+     * The read-ahead completed successfully.
+     */
+    public void done();
+
+    /**
+     * The read-ahead did not complete successfully, but instead caused the given Throwable to be thrown.
+     */
+    public void done( Throwable throwable );
+}
@@ -647,7 +647,21 @@ public class EphemeralFileSystemAbstraction implements FileSystemAbstraction
         public long read( ByteBuffer[] dsts, int offset, int length ) throws IOException
         {
             checkIfClosedOrInterrupted();
-            throw new UnsupportedOperationException();
+            long totalRead = 0;
+            for ( int i = offset; i < offset + length; i++ )
+            {
+                int read = data.read( this, dsts[i] );
+                if ( read == -1 )
+                {
+                    return totalRead == 0? -1 : totalRead;
+                }
+                totalRead += read;
+                if ( dsts[i].hasRemaining() )
+                {
+                    break;
+                }
+            }
+            return totalRead;
         }
 
         @Override
@@ -661,7 +675,12 @@ public class EphemeralFileSystemAbstraction implements FileSystemAbstraction
         public long write( ByteBuffer[] srcs, int offset, int length ) throws IOException
         {
             checkIfClosedOrInterrupted();
-            throw new UnsupportedOperationException();
+            long totalWritten = 0;
+            for ( int i = offset; i < offset + length; i++ )
+            {
+                totalWritten += data.write( this, srcs[i] );
+            }
+            return totalWritten;
         }
 
         @Override
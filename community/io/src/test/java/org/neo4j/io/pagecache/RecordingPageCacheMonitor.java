@@ -34,6 +34,7 @@ import org.neo4j.io.pagecache.monitoring.MajorFlushEvent;
 import org.neo4j.io.pagecache.monitoring.PageCacheMonitor;
 import org.neo4j.io.pagecache.monitoring.PageFaultEvent;
 import org.neo4j.io.pagecache.monitoring.PinEvent;
+import org.neo4j.io.pagecache.monitoring.ReadAheadEvent;
 
 public class RecordingPageCacheMonitor implements PageCacheMonitor
 {
@@ -186,6 +187,18 @@ public class RecordingPageCacheMonitor implements PageCacheMonitor
         return PageCacheMonitor.NULL_MAJOR_FLUSH_EVENT;
     }
 
+    @Override
+    public MajorFlushEvent beginBackgroundFlush( long dirtyPageCount )
+    {
+        return PageCacheMonitor.NULL_MAJOR_FLUSH_EVENT;
+    }
+
+    @Override
+    public ReadAheadEvent beginReadAhead( long startFilePageId, int pageCount, PageSwapper swapper )
+    {
+        return PageCacheMonitor.NULL_READ_AHEAD_EVENT;
+    }
+
     @Override
     public long countFaults()
     {
@@ -246,6 +259,24 @@ public class RecordingPageCacheMonitor implements PageCacheMonitor
         return 0;
     }
 
+    @Override
+    public long countBackgroundFlushes()
+    {
+        return 0;
+    }
+
+    @Override
+    public long countReadAheads()
+    {
+        return 0;
+    }
+
+    @Override
+    public long countReadAheadPages()
+    {
+        return 0;
+    }
+
     public <T extends Event> T observe( Class<T> type ) throws InterruptedException
     {
         return type.cast( record.take() );
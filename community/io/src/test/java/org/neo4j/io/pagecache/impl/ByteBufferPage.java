@@ -133,6 +133,15 @@ public class ByteBufferPage implements Page
         channel.writeAll( duplicate, offset );
     }
 
+    @Override
+    public ByteBuffer asByteBuffer( int length )
+    {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position( 0 );
+        duplicate.limit( length );
+        return duplicate;
+    }
+
     @Override
     public int getCachePageId()
     {
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.io.pagecache.Page;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.test.TargetDirectory;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import static org.neo4j.test.ByteArrayMatcher.byteArray;
+
+public class MappedPageSwapperTest
+{
+    @Rule
+    public final TargetDirectory.TestDirectory testdir =
+            TargetDirectory.testDirForTest( MappedPageSwapperTest.class );
+
+    private DefaultFileSystemAbstraction fs;
+    private File file;
+    private PageSwapper swapper;
+
+    @Before
+    public void setUp()
+    {
+        fs = new DefaultFileSystemAbstraction();
+        file = testdir.file( "file" );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        if ( swapper != null )
+        {
+            swapper.close();
+        }
+    }
+
+    private void writeFile( byte[] bytes ) throws IOException
+    {
+        StoreChannel channel = fs.create( file );
+        channel.writeAll( ByteBuffer.wrap( bytes ) );
+        channel.close();
+    }
+
+    @Test
+    public void swappingInMustFillPageWithData() throws IOException
+    {
+        byte[] bytes = new byte[] { 1, 2, 3, 4 };
+        writeFile( bytes );
+
+        swapper = new MappedPageSwapper( file, fs, 4, null );
+        ByteBuffer target = ByteBuffer.allocate( 4 );
+        swapper.read( 0, new ByteBufferPage( target ) );
+
+        assertThat( target.array(), byteArray( bytes ) );
+    }
+
+    @Test
+    public void mustZeroFillPageBeyondEndOfFile() throws IOException
+    {
+        writeFile( new byte[] { 1, 2, 3, 4, 5, 6 } );
+
+        swapper = new MappedPageSwapper( file, fs, 4, null );
+        ByteBuffer partial = ByteBuffer.allocate( 4 );
+        swapper.read( 1, new ByteBufferPage( partial ) );
+        ByteBuffer beyond = ByteBuffer.wrap( new byte[] { 9, 9, 9, 9 } );
+        swapper.read( 7, new ByteBufferPage( beyond ) );
+
+        assertThat( partial.array(), byteArray( new byte[]{ 5, 6, 0, 0 } ) );
+        assertThat( beyond.array(), byteArray( new byte[]{ 0, 0, 0, 0 } ) );
+    }
+
+    @Test
+    public void mustSeeDataWrittenAfterTheFileWasMapped() throws IOException
+    {
+        writeFile( new byte[] { 1, 2, 3, 4 } );
+
+        // A chunk size of two pages forces the mapping to grow and be remapped
+        swapper = new MappedPageSwapper( file, fs, 4, null, 8 );
+        ByteBuffer target = ByteBuffer.allocate( 4 );
+        swapper.read( 0, new ByteBufferPage( target ) );
+        for ( int i = 1; i < 5; i++ )
+        {
+            byte b = (byte) (i * 10);
+            swapper.write( i, new ByteBufferPage( ByteBuffer.wrap( new byte[] { b, b, b, b } ) ) );
+        }
+
+        for ( int i = 1; i < 5; i++ )
+        {
+            byte b = (byte) (i * 10);
+            target.clear();
+            swapper.read( i, new ByteBufferPage( target ) );
+            assertThat( target.array(), byteArray( new byte[]{ b, b, b, b } ) );
+        }
+    }
+
+    @Test
+    public void vectoredReadMustReadPagesInOrderAndZeroFillBeyondEndOfFile() throws IOException
+    {
+        writeFile( new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 } );
+
+        swapper = new MappedPageSwapper( file, fs, 4, null, 4 );
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        Page[] pages = new Page[4];
+        for ( int i = 0; i < buffers.length; i++ )
+        {
+            buffers[i] = ByteBuffer.allocate( 4 );
+            Arrays.fill( buffers[i].array(), (byte) -1 );
+            pages[i] = new ByteBufferPage( buffers[i] );
+        }
+        long bytesRead = swapper.read( 0, pages, 1, 3 );
+
+        assertThat( bytesRead, is( 10L ) );
+        assertThat( buffers[0].array(), byteArray( new byte[]{ -1, -1, -1, -1 } ) );
+        assertThat( buffers[1].array(), byteArray( new byte[]{ 1, 2, 3, 4 } ) );
+        assertThat( buffers[2].array(), byteArray( new byte[]{ 5, 6, 7, 8 } ) );
+        assertThat( buffers[3].array(), byteArray( new byte[]{ 9, 10, 0, 0 } ) );
+    }
+
+    @Test
+    public void factoryMustOnlyMapTheNamedFiles() throws IOException
+    {
+        writeFile( new byte[0] );
+        File other = testdir.file( "other" );
+        fs.create( other ).close();
+
+        MappedPageSwapperFactory factory = new MappedPageSwapperFactory( fs, Arrays.asList( "file" ) );
+        swapper = factory.createPageSwapper( file, 4, null );
+        PageSwapper otherSwapper = factory.createPageSwapper( other, 4, null );
+        try
+        {
+            assertThat( swapper, instanceOf( MappedPageSwapper.class ) );
+            assertThat( otherSwapper, not( instanceOf( MappedPageSwapper.class ) ) );
+        }
+        finally
+        {
+            otherSwapper.close();
+        }
+    }
+}
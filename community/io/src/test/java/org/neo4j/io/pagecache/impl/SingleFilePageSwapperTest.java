@@ -30,8 +30,10 @@ import org.junit.Test;
 
 import org.neo4j.graphdb.mockfs.EphemeralFileSystemAbstraction;
 import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.io.pagecache.Page;
 import org.neo4j.io.pagecache.PageSwapper;
 
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
 import static org.neo4j.test.ByteArrayMatcher.byteArray;
@@ -146,4 +148,83 @@ public class SingleFilePageSwapperTest
 
         assertThat( actual, byteArray( finalData ) );
     }
+
+    @Test
+    public void vectoredWriteMustWritePagesInOrderFromStartPage() throws IOException
+    {
+        byte[] initialData = new byte[] {
+                // --- page 0:
+                1, 2, 3, 4,
+                // --- page 1:
+                5, 6, 7, 8,
+                // --- page 2:
+                9, 10, 11, 12,
+                // --- page 3:
+                13, 14
+        };
+        byte[] finalData = new byte[] {
+                // --- page 0:
+                1, 2, 3, 4,
+                // --- page 1:
+                8, 7, 6, 5,
+                // --- page 2:
+                12, 11, 10, 9,
+                // --- page 3:
+                13, 14
+        };
+        StoreChannel channel = fs.create( file );
+        channel.writeAll( ByteBuffer.wrap( initialData ) );
+        channel.close();
+
+        Page[] pages = new Page[] {
+                new ByteBufferPage( ByteBuffer.wrap( new byte[] { 0, 0, 0, 0 } ) ),
+                new ByteBufferPage( ByteBuffer.wrap( new byte[] { 8, 7, 6, 5 } ) ),
+                new ByteBufferPage( ByteBuffer.wrap( new byte[] { 12, 11, 10, 9 } ) )
+        };
+
+        PageSwapper swapper = factory.createPageSwapper( file, 4, null );
+        assertThat( swapper.write( 1, pages, 1, 2 ), is( 8L ) );
+
+        InputStream stream = fs.openAsInputStream( file );
+        byte[] actual = new byte[(int) fs.getFileSize( file )];
+        stream.read( actual );
+
+        assertThat( actual, byteArray( finalData ) );
+    }
+
+    @Test
+    public void vectoredReadMustReadPagesInOrderAndZeroFillBeyondEndOfFile() throws IOException
+    {
+        byte[] data = new byte[] {
+                // --- page 0:
+                1, 2, 3, 4,
+                // --- page 1:
+                5, 6, 7, 8,
+                // --- page 2:
+                9, 10
+        };
+        StoreChannel channel = fs.create( file );
+        channel.writeAll( ByteBuffer.wrap( data ) );
+        channel.close();
+
+        ByteBuffer[] targets = new ByteBuffer[] {
+                ByteBuffer.wrap( new byte[] { 9, 9, 9, 9 } ),
+                ByteBuffer.wrap( new byte[] { 9, 9, 9, 9 } ),
+                ByteBuffer.wrap( new byte[] { 9, 9, 9, 9 } ),
+                ByteBuffer.wrap( new byte[] { 9, 9, 9, 9 } )
+        };
+        Page[] pages = new Page[targets.length];
+        for ( int i = 0; i < targets.length; i++ )
+        {
+            pages[i] = new ByteBufferPage( targets[i] );
+        }
+
+        PageSwapper swapper = factory.createPageSwapper( file, 4, null );
+        assertThat( swapper.read( 1, pages, 1, 3 ), is( 6L ) );
+
+        assertThat( targets[0].array(), byteArray( new byte[]{ 9, 9, 9, 9 } ) );
+        assertThat( targets[1].array(), byteArray( new byte[]{ 5, 6, 7, 8 } ) );
+        assertThat( targets[2].array(), byteArray( new byte[]{ 9, 10, 0, 0 } ) );
+        assertThat( targets[3].array(), byteArray( new byte[]{ 0, 0, 0, 0 } ) );
+    }
 }
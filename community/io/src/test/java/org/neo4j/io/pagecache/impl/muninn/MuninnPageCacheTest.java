@@ -24,7 +24,9 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -38,10 +40,18 @@ import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.io.fs.StoreChannel;
 import org.neo4j.io.pagecache.PageCacheTest;
 import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PageSwapper;
 import org.neo4j.io.pagecache.PagedFile;
 import org.neo4j.io.pagecache.RecordingPageCacheMonitor;
+import org.neo4j.io.pagecache.impl.SingleFilePageSwapperFactory;
+import org.neo4j.io.pagecache.monitoring.DefaultPageCacheMonitor;
+import org.neo4j.io.pagecache.monitoring.FlushEvent;
+import org.neo4j.io.pagecache.monitoring.FlushEventOpportunity;
+import org.neo4j.io.pagecache.monitoring.MajorFlushEvent;
 import org.neo4j.io.pagecache.monitoring.PageCacheMonitor;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertFalse;
@@ -51,6 +61,8 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.neo4j.io.pagecache.PagedFile.PF_EXCLUSIVE_LOCK;
 import static org.neo4j.io.pagecache.PagedFile.PF_NO_GROW;
+import static org.neo4j.io.pagecache.PagedFile.PF_READ_AHEAD;
+import static org.neo4j.io.pagecache.PagedFile.PF_SEQUENTIAL_SCAN;
 import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_LOCK;
 import static org.neo4j.io.pagecache.RecordingPageCacheMonitor.Evict;
 import static org.neo4j.io.pagecache.RecordingPageCacheMonitor.Fault;
@@ -203,6 +215,276 @@ public class MuninnPageCacheTest extends PageCacheTest<MuninnPageCache>
         assertThat( buf.getLong(), is( 0L ) );
     }
 
+    @Test
+    public void mustCountDirtyPages() throws Exception
+    {
+        writeInitialDataTo( file );
+        MuninnPageCache pageCache = new MuninnPageCache( fs, 4, 8, PageCacheMonitor.NULL );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        try ( PageCursor cursor = pagedFile.io( 0, PF_EXCLUSIVE_LOCK | PF_NO_GROW ) )
+        {
+            assertTrue( cursor.next() );
+            cursor.putLong( 0L );
+            assertTrue( cursor.next() );
+            cursor.putLong( 0L );
+        }
+        assertThat( pageCache.countDirtyPages(), is( 2L ) );
+
+        try ( PageCursor cursor = pagedFile.io( 0, PF_EXCLUSIVE_LOCK | PF_NO_GROW ) )
+        {
+            assertTrue( cursor.next() );
+            cursor.putLong( 1L );
+        }
+        assertThat( pageCache.countDirtyPages(), is( 2L ) );
+
+        pagedFile.flush();
+        assertThat( pageCache.countDirtyPages(), is( 0L ) );
+    }
+
+    @Test
+    public void backgroundFlushMustCleanPagesAheadOfClockArm() throws Exception
+    {
+        writeInitialDataTo( file );
+        MuninnPageCache pageCache = new MuninnPageCache( fs, 4, 8, PageCacheMonitor.NULL );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        try ( PageCursor cursor = pagedFile.io( 0, PF_EXCLUSIVE_LOCK | PF_NO_GROW ) )
+        {
+            assertTrue( cursor.next() );
+            cursor.putLong( 0L );
+            assertTrue( cursor.next() );
+            cursor.putLong( 0L );
+        }
+        assertThat( pageCache.countDirtyPages(), is( 2L ) );
+
+        pageCache.flushPagesAheadOfClockArm( 0, PageCacheMonitor.NULL_FLUSH_EVENT_OPPORTUNITY );
+        assertThat( pageCache.countDirtyPages(), is( 0L ) );
+
+        ByteBuffer buf = ByteBuffer.allocate( 16 );
+        StoreChannel channel = fs.open( file, "r" );
+        channel.read( buf );
+        buf.flip();
+        assertThat( buf.getLong(), is( 0L ) );
+        assertThat( buf.getLong(), is( 0L ) );
+    }
+
+    @Test( timeout = 10000 )
+    public void backgroundFlusherThreadMustCleanDirtyPages() throws Exception
+    {
+        writeInitialDataTo( file );
+        DefaultPageCacheMonitor monitor = new DefaultPageCacheMonitor();
+        MuninnPageCache pageCache = new MuninnPageCache( fs, 4, 8, monitor );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        try ( PageCursor cursor = pagedFile.io( 0, PF_EXCLUSIVE_LOCK | PF_NO_GROW ) )
+        {
+            assertTrue( cursor.next() );
+            cursor.putLong( 0L );
+        }
+
+        Future<?> flusher = executor.submit( pageCache.backgroundFlusher() );
+        try
+        {
+            while ( monitor.countBackgroundFlushes() < 1 )
+            {
+                Thread.sleep( 1 );
+            }
+            assertThat( pageCache.countDirtyPages(), is( 0L ) );
+        }
+        finally
+        {
+            flusher.cancel( true );
+        }
+    }
+
+    @Test
+    public void sequentialReadsMustPrefetchPagesWithReadAhead() throws Exception
+    {
+        writePageIdsTo( file, 16 );
+        DefaultPageCacheMonitor monitor = new DefaultPageCacheMonitor();
+        MuninnPageCache pageCache = new MuninnPageCache( fs, 32, 8, monitor );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        assertScanSeesPageIds( pagedFile, PF_SHARED_LOCK | PF_READ_AHEAD, 16 );
+
+        // The first window covers the first 8 pages, and the second window
+        // is twice as big, but limited by the end of the file.
+        assertThat( monitor.countReadAheads(), is( 2L ) );
+        assertThat( monitor.countReadAheadPages(), is( 16L ) );
+        assertThat( monitor.countBytesRead(), is( 16 * 8L ) );
+    }
+
+    @Test
+    public void readAheadMustStartAfterConsecutivePinsWithoutHint() throws Exception
+    {
+        writePageIdsTo( file, 16 );
+        DefaultPageCacheMonitor monitor = new DefaultPageCacheMonitor();
+        MuninnPageCache pageCache = new MuninnPageCache( fs, 32, 8, monitor );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        assertScanSeesPageIds( pagedFile, PF_SHARED_LOCK, 16 );
+
+        assertThat( monitor.countReadAheadPages(),
+                is( 16L - MuninnPagedFile.readAheadThreshold ) );
+    }
+
+    @Test
+    public void randomReadsMustNotReadAhead() throws Exception
+    {
+        writePageIdsTo( file, 16 );
+        DefaultPageCacheMonitor monitor = new DefaultPageCacheMonitor();
+        MuninnPageCache pageCache = new MuninnPageCache( fs, 32, 8, monitor );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        try ( PageCursor cursor = pagedFile.io( 0, PF_SHARED_LOCK ) )
+        {
+            for ( long pageId : new long[] { 3, 9, 1, 14, 6, 11, 0, 5, 12, 2 } )
+            {
+                assertTrue( cursor.next( pageId ) );
+            }
+        }
+        assertThat( monitor.countReadAheads(), is( 0L ) );
+    }
+
+    @Test
+    public void readAheadMustBeConfigurablePerPagedFile() throws Exception
+    {
+        writePageIdsTo( file, 16 );
+        DefaultPageCacheMonitor monitor = new DefaultPageCacheMonitor();
+        MuninnPageCache pageCache = new MuninnPageCache( fs, 32, 8, monitor );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        pagedFile.setMaxReadAheadPages( 0 );
+        assertScanSeesPageIds( pagedFile, PF_SHARED_LOCK | PF_READ_AHEAD, 16 );
+        assertThat( monitor.countReadAheads(), is( 0L ) );
+
+        pageCache.unmap( file );
+        pagedFile = pageCache.map( file, 8 );
+        pagedFile.setMaxReadAheadPages( 2 );
+        assertScanSeesPageIds( pagedFile, PF_SHARED_LOCK | PF_READ_AHEAD, 16 );
+        assertThat( monitor.countReadAheads(), greaterThanOrEqualTo( 8L ) );
+    }
+
+    @Test( timeout = 10000 )
+    public void readAheadThreadMustPrefetchPagesForSequentialReads() throws Exception
+    {
+        writePageIdsTo( file, 16 );
+        DefaultPageCacheMonitor monitor = new DefaultPageCacheMonitor();
+        MuninnPageCache pageCache = new MuninnPageCache( fs, 32, 8, monitor );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        Future<?> readAheader = executor.submit( pageCache.readAheader() );
+        try
+        {
+            assertScanSeesPageIds( pagedFile, PF_SHARED_LOCK | PF_READ_AHEAD, 16 );
+            while ( monitor.countReadAheads() < 1 )
+            {
+                Thread.sleep( 1 );
+            }
+        }
+        finally
+        {
+            readAheader.cancel( true );
+        }
+    }
+
+    private void writePageIdsTo( File file, int pageCount ) throws IOException
+    {
+        StoreChannel channel = fs.create( file );
+        ByteBuffer buf = ByteBuffer.allocate( 8 * pageCount );
+        for ( long pageId = 0; pageId < pageCount; pageId++ )
+        {
+            buf.putLong( pageId );
+        }
+        buf.flip();
+        channel.writeAll( buf );
+        channel.close();
+    }
+
+    private void assertScanSeesPageIds( PagedFile pagedFile, int pf_flags, int pageCount ) throws IOException
+    {
+        try ( PageCursor cursor = pagedFile.io( 0, pf_flags ) )
+        {
+            for ( long pageId = 0; pageId < pageCount; pageId++ )
+            {
+                assertTrue( cursor.next() );
+                long value;
+                do
+                {
+                    value = cursor.getLong();
+                }
+                while ( cursor.shouldRetry() );
+                assertThat( value, is( pageId ) );
+            }
+            assertFalse( cursor.next() );
+        }
+    }
+
+    @Test
+    public void scanResistantPolicyMustEvictSequentialScanPagesFirst() throws Exception
+    {
+        writeInitialDataTo( file );
+        MuninnPageCache pageCache = new MuninnPageCache( new SingleFilePageSwapperFactory( fs ), 4, 8,
+                PageCacheMonitor.NULL, 25, 0, new ScanResistantEvictionPolicy( 4 ) );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            try ( PageCursor cursor = pagedFile.io( 0, PF_SHARED_LOCK ) )
+            {
+                assertTrue( cursor.next() );
+            }
+        }
+        for ( int i = 0; i < 3; i++ )
+        {
+            try ( PageCursor cursor = pagedFile.io( 1, PF_SHARED_LOCK | PF_SEQUENTIAL_SCAN ) )
+            {
+                assertTrue( cursor.next() );
+            }
+        }
+
+        int clockArm = pageCache.evictPages( 1, 0, PageCacheMonitor.NULL.beginPageEvictions( 1 ) );
+        assertThat( clockArm, is( 2 ) );
+        assertThat( pageCache.pages[0].getFilePageId(), is( 0L ) );
+        assertFalse( pageCache.pages[1].isLoaded() );
+    }
+
+    @Test
+    public void scanResistantPolicyMustPromotePagesFaultedBackInWhileTheirGhostIsAround() throws Exception
+    {
+        writeInitialDataTo( file );
+        ScanResistantEvictionPolicy policy = new ScanResistantEvictionPolicy( 4 );
+        MuninnPageCache pageCache = new MuninnPageCache( new SingleFilePageSwapperFactory( fs ), 4, 8,
+                PageCacheMonitor.NULL, 25, 0, policy );
+        MuninnPagedFile pagedFile = (MuninnPagedFile) pageCache.map( file, 8 );
+
+        try ( PageCursor cursor = pagedFile.io( 0, PF_SHARED_LOCK ) )
+        {
+            assertTrue( cursor.next() );
+            assertTrue( cursor.next() );
+        }
+
+        // Evict file page 0 from cache page 0, leaving a ghost behind
+        pageCache.evictPages( 1, 0, PageCacheMonitor.NULL.beginPageEvictions( 1 ) );
+        assertFalse( pageCache.pages[0].isLoaded() );
+        assertTrue( policy.hasGhost( pagedFile.swapper, 0 ) );
+
+        // Fault it back in, and it becomes hot
+        try ( PageCursor cursor = pagedFile.io( 0, PF_SHARED_LOCK ) )
+        {
+            assertTrue( cursor.next() );
+        }
+        assertFalse( policy.hasGhost( pagedFile.swapper, 0 ) );
+        assertThat( pageCache.pages[0].getFilePageId(), is( 0L ) );
+
+        // So the probationary file page 1 gets evicted before it
+        pageCache.evictPages( 1, 0, PageCacheMonitor.NULL.beginPageEvictions( 1 ) );
+        assertThat( pageCache.pages[0].getFilePageId(), is( 0L ) );
+        assertFalse( pageCache.pages[1].isLoaded() );
+        assertTrue( policy.hasGhost( pagedFile.swapper, 1 ) );
+    }
+
     @Test
     public void closingTheCursorMustUnlockModifiedPage() throws Exception
     {
@@ -309,4 +591,102 @@ public class MuninnPageCacheTest extends PageCacheTest<MuninnPageCache>
             assertThat( e.getCause(), instanceOf( IOException.class ) );
         }
     }
+
+    @Test
+    public void flushMustWriteAdjacentDirtyPagesAsOneRun() throws Exception
+    {
+        final List<Long> runStarts = new CopyOnWriteArrayList<>();
+        final List<Integer> runLengths = new CopyOnWriteArrayList<>();
+        PageCacheMonitor monitor = new DefaultPageCacheMonitor()
+        {
+            @Override
+            public MajorFlushEvent beginFileFlush( PageSwapper swapper )
+            {
+                return new RunRecordingFlushEvent( runStarts, runLengths );
+            }
+        };
+
+        MuninnPageCache pageCache = new MuninnPageCache( fs, 10, 8, monitor );
+        PagedFile pagedFile = pageCache.map( file, 8 );
+
+        long[] dirtyPageIds = new long[] { 5, 2, 0, 3, 1 };
+        for ( long pageId : dirtyPageIds )
+        {
+            try ( PageCursor cursor = pagedFile.io( pageId, PF_EXCLUSIVE_LOCK ) )
+            {
+                assertTrue( cursor.next() );
+                cursor.putLong( pageId + 1 );
+            }
+        }
+        pagedFile.flush();
+
+        assertThat( runStarts, contains( 0L, 5L ) );
+        assertThat( runLengths, contains( 4, 1 ) );
+
+        ByteBuffer buf = ByteBuffer.allocate( 48 );
+        StoreChannel channel = fs.open( file, "r" );
+        channel.read( buf );
+        channel.close();
+        buf.flip();
+        assertThat( buf.getLong(), is( 1L ) );
+        assertThat( buf.getLong(), is( 2L ) );
+        assertThat( buf.getLong(), is( 3L ) );
+        assertThat( buf.getLong(), is( 4L ) );
+        assertThat( buf.getLong(), is( 0L ) );
+        assertThat( buf.getLong(), is( 6L ) );
+
+        pageCache.unmap( file );
+        pageCache.close();
+    }
+
+    private static class RunRecordingFlushEvent implements MajorFlushEvent, FlushEventOpportunity, FlushEvent
+    {
+        private final List<Long> runStarts;
+        private final List<Integer> runLengths;
+
+        RunRecordingFlushEvent( List<Long> runStarts, List<Integer> runLengths )
+        {
+            this.runStarts = runStarts;
+            this.runLengths = runLengths;
+        }
+
+        @Override
+        public FlushEventOpportunity flushEventOpportunity()
+        {
+            return this;
+        }
+
+        @Override
+        public FlushEvent beginFlush( long filePageId, int cachePageId, PageSwapper swapper )
+        {
+            runStarts.add( filePageId );
+            return this;
+        }
+
+        @Override
+        public void addBytesWritten( int bytes )
+        {
+        }
+
+        @Override
+        public void addPagesFlushed( int pageCount )
+        {
+            runLengths.add( pageCount );
+        }
+
+        @Override
+        public void done()
+        {
+        }
+
+        @Override
+        public void done( IOException exception )
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
 }
@@ -19,6 +19,8 @@
  */
 package org.neo4j.io.pagecache.impl.muninn;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.neo4j.function.Factory;
 import org.neo4j.io.pagecache.Page;
 import org.neo4j.io.pagecache.PageSwapperFactory;
@@ -35,7 +37,7 @@ public class MuninnPageSwappingTest extends PageSwappingTest
     protected Page createPage( int cachePageSize )
     {
         MemoryReleaser memoryReleaser = new MemoryReleaser( 1 );
-        MuninnPage page = new MuninnPage( cachePageSize, 0, memoryReleaser );
+        MuninnPage page = new MuninnPage( cachePageSize, 0, memoryReleaser, new AtomicLong() );
         long stamp = page.writeLock();
         try
         {
@@ -94,6 +94,7 @@ public abstract class PageCacheMonitorTest
             {
                 FlushEvent flushEvent = evictionEvent.flushEventOpportunity().beginFlush( 0, 0, swapper );
                 flushEvent.addBytesWritten( 12 );
+                flushEvent.addPagesFlushed( 1 );
                 flushEvent.done();
             }
 
@@ -101,6 +102,7 @@ public abstract class PageCacheMonitorTest
             {
                 FlushEvent flushEvent = evictionEvent.flushEventOpportunity().beginFlush( 0, 0, swapper );
                 flushEvent.addBytesWritten( 12 );
+                flushEvent.addPagesFlushed( 1 );
                 flushEvent.done();
                 evictionEvent.threwException( new IOException() );
             }
@@ -109,6 +111,7 @@ public abstract class PageCacheMonitorTest
             {
                 FlushEvent flushEvent = evictionEvent.flushEventOpportunity().beginFlush( 0, 0, swapper );
                 flushEvent.addBytesWritten( 12 );
+                flushEvent.addPagesFlushed( 1 );
                 flushEvent.done();
                 evictionEvent.threwException( new IOException() );
             }
@@ -136,20 +139,64 @@ public abstract class PageCacheMonitorTest
     {
         try ( MajorFlushEvent cacheFlush = monitor.beginCacheFlush() )
         {
-            cacheFlush.flushEventOpportunity().beginFlush( 0, 0, swapper ).done();
-            cacheFlush.flushEventOpportunity().beginFlush( 0, 0, swapper ).done();
-            cacheFlush.flushEventOpportunity().beginFlush( 0, 0, swapper ).done();
+            flush( cacheFlush, 1 );
+            flush( cacheFlush, 1 );
+            flush( cacheFlush, 1 );
         }
 
         assertCounts( 0, 0, 0, 0, 0, 3, 0, 0, 0, 0 );
 
         try ( MajorFlushEvent fileFlush = monitor.beginFileFlush( swapper ) )
         {
-            fileFlush.flushEventOpportunity().beginFlush( 0, 0, swapper ).done();
-            fileFlush.flushEventOpportunity().beginFlush( 0, 0, swapper ).done();
-            fileFlush.flushEventOpportunity().beginFlush( 0, 0, swapper ).done();
+            flush( fileFlush, 1 );
+            flush( fileFlush, 1 );
+            flush( fileFlush, 1 );
         }
 
         assertCounts( 0, 0, 0, 0, 0, 6, 0, 0, 0, 0 );
     }
+
+    @Test
+    public void mustCountEveryPageOfAVectoredFlush()
+    {
+        try ( MajorFlushEvent fileFlush = monitor.beginFileFlush( swapper ) )
+        {
+            flush( fileFlush, 5 );
+            flush( fileFlush, 1 );
+        }
+
+        assertCounts( 0, 0, 0, 0, 0, 6, 0, 0, 0, 0 );
+    }
+
+    @Test
+    public void mustNotCountFailedFlushes()
+    {
+        try ( MajorFlushEvent fileFlush = monitor.beginFileFlush( swapper ) )
+        {
+            fileFlush.flushEventOpportunity().beginFlush( 0, 0, swapper ).done( new IOException() );
+        }
+
+        assertCounts( 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 );
+    }
+
+    @Test
+    public void mustCountBackgroundFlushesAsFlushes()
+    {
+        try ( MajorFlushEvent backgroundFlush = monitor.beginBackgroundFlush( 2 ) )
+        {
+            flush( backgroundFlush, 1 );
+            flush( backgroundFlush, 3 );
+            backgroundFlush.flushEventOpportunity().beginFlush( 0, 0, swapper ).done( new IOException() );
+        }
+
+        assertCounts( 0, 0, 0, 0, 0, 4, 0, 0, 0, 0 );
+        assertThat( "countBackgroundFlushes", monitor.countBackgroundFlushes(), is( 4L ) );
+    }
+
+    private void flush( MajorFlushEvent majorFlush, int pageCount )
+    {
+        FlushEvent flushEvent = majorFlush.flushEventOpportunity().beginFlush( 0, 0, swapper );
+        flushEvent.addPagesFlushed( pageCount );
+        flushEvent.done();
+    }
 }
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx;
+
+@ManagementInterface( name = RelationshipIdsOffHeap.NAME )
+@Description( "Information about the relationship ids that cached nodes keep outside of the heap" )
+public interface RelationshipIdsOffHeap
+{
+    final String NAME = "Off heap relationship ids";
+
+    @Description( "The maximum amount of memory to use for relationship ids outside of the heap, in bytes." )
+    long getMaxMemory();
+
+    @Description( "The amount of memory used for relationship ids outside of the heap, in bytes." )
+    long getUsedMemory();
+
+    @Description( "The number of blocks of relationship ids outside of the heap." )
+    long getNumberOfBlocks();
+
+    @Description( "The number of relationship ids outside of the heap." )
+    long getNumberOfIds();
+}
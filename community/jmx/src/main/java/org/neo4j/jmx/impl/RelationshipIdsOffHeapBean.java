@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.jmx.impl;
+
+import javax.management.NotCompliantMBeanException;
+
+import org.neo4j.helpers.Service;
+import org.neo4j.jmx.RelationshipIdsOffHeap;
+import org.neo4j.kernel.NeoStoreDataSource;
+import org.neo4j.kernel.impl.transaction.state.DataSourceManager;
+import org.neo4j.kernel.impl.util.OffHeapRelIdBlocks;
+
+@Service.Implementation( ManagementBeanProvider.class )
+public final class RelationshipIdsOffHeapBean extends ManagementBeanProvider
+{
+    public RelationshipIdsOffHeapBean()
+    {
+        super( RelationshipIdsOffHeap.class );
+    }
+
+    @Override
+    protected Neo4jMBean createMBean( ManagementData management ) throws NotCompliantMBeanException
+    {
+        return new RelationshipIdsOffHeapImpl( management );
+    }
+
+    private static class RelationshipIdsOffHeapImpl extends Neo4jMBean implements RelationshipIdsOffHeap
+    {
+        private OffHeapRelIdBlocks blocks = OffHeapRelIdBlocks.NONE;
+
+        RelationshipIdsOffHeapImpl( ManagementData management ) throws NotCompliantMBeanException
+        {
+            super( management );
+
+            DataSourceManager dataSourceManager = management.resolveDependency( DataSourceManager.class );
+            dataSourceManager.addListener( new DataSourceManager.Listener()
+            {
+                @Override
+                public void registered( NeoStoreDataSource ds )
+                {
+                    blocks = ds.getDependencyResolver().resolveDependency( OffHeapRelIdBlocks.class );
+                }
+
+                @Override
+                public void unregistered( NeoStoreDataSource ds )
+                {
+                    blocks = OffHeapRelIdBlocks.NONE;
+                }
+            } );
+        }
+
+        @Override
+        public long getMaxMemory()
+        {
+            return blocks.getMaxMemory();
+        }
+
+        @Override
+        public long getUsedMemory()
+        {
+            return blocks.getUsedMemory();
+        }
+
+        @Override
+        public long getNumberOfBlocks()
+        {
+            return blocks.getNumberOfBlocks();
+        }
+
+        @Override
+        public long getNumberOfIds()
+        {
+            return blocks.getNumberOfIds();
+        }
+    }
+}
@@ -40,12 +40,15 @@ import static org.neo4j.helpers.Settings.ANY;
 import static org.neo4j.helpers.Settings.BOOLEAN;
 import static org.neo4j.helpers.Settings.BYTES;
 import static org.neo4j.helpers.Settings.BYTES_AS_INT;
+import static org.neo4j.helpers.Settings.DOUBLE;
 import static org.neo4j.helpers.Settings.DirectMemoryUsage.directMemoryUsage;
+import static org.neo4j.helpers.Settings.EMPTY;
 import static org.neo4j.helpers.Settings.FALSE;
 import static org.neo4j.helpers.Settings.INTEGER;
 import static org.neo4j.helpers.Settings.NO_DEFAULT;
 import static org.neo4j.helpers.Settings.PATH;
 import static org.neo4j.helpers.Settings.STRING;
+import static org.neo4j.helpers.Settings.STRING_LIST;
 import static org.neo4j.helpers.Settings.TRUE;
 import static org.neo4j.helpers.Settings.basePath;
 import static org.neo4j.helpers.Settings.illegalValueMessage;
@@ -53,6 +56,7 @@ import static org.neo4j.helpers.Settings.matches;
 import static org.neo4j.helpers.Settings.min;
 import static org.neo4j.helpers.Settings.options;
 import static org.neo4j.helpers.Settings.port;
+import static org.neo4j.helpers.Settings.range;
 import static org.neo4j.helpers.Settings.setting;
 
 /**
@@ -69,6 +73,8 @@ public abstract class GraphDatabaseSettings
     public static final Setting<Boolean> read_only = setting( "read_only", BOOLEAN, FALSE );
 
     @Description("The type of cache to use for nodes and relationships. "
+                  + "The `clock` cache type keeps a size bounded number of objects, that are evicted without relying "
+                  + "on the garbage collector. "
                   + "Note that the Neo4j Enterprise Edition has the additional `hpc` cache type (High-Performance Cache). "
             + "See the chapter on caches in the manual for more information.")
     public static final Setting<String> cache_type = setting( "cache_type", options( availableCaches() ), availableCaches()[0] );
@@ -99,9 +105,18 @@ public abstract class GraphDatabaseSettings
     @Description( "The number of Cypher query execution plans that are cached." )
     public static Setting<Integer> query_cache_size = setting( "query_cache_size", INTEGER, "100", min( 0 ) );
 
+    @Description( "The number of threads that the scans of read-only Cypher queries, and what they feed into, are run " +
+                  "on at the same time. Queries are run on the thread that executes them when this is 0." )
+    public static Setting<Integer> cypher_parallelism = setting( "cypher_parallelism", INTEGER, "0", min( 0 ) );
+
     @Description("The minimum lifetime of a query plan before a query is considered for replanning")
     public static Setting<Integer> query_plan_ttl = setting( "query_plan_ttl", INTEGER, "1000", min( 0 ) );
 
+    @Description( "How far the statistics of the graph must have drifted from the ones that a query plan was built " +
+                  "with, between 0 (not at all) and 1 (completely), before the query is planned again." )
+    public static Setting<Double> query_statistics_divergence_threshold = setting(
+            "query_statistics_divergence_threshold", DOUBLE, "0.5", range( 0.0, 1.0 ) );
+
     @Description( "Determines if Cypher will allow using file URLs when loading data using `LOAD CSV`. Setting this "
                   + "value to `false` will cause Neo4j to fail `LOAD CSV` clauses that load data from the file system." )
     public static Setting<Boolean> allow_file_urls = setting( "allow_file_urls", BOOLEAN, TRUE );
@@ -205,6 +220,25 @@ public abstract class GraphDatabaseSettings
             " that less than 2GB of memory is free when it starts.")
     public static final Setting<Long> mapped_memory_total_size = setting("mapped_memory_total_size", directMemoryUsage(), "50%" );
 
+    @Description( "The percentage of the mapped memory pages that are allowed to be dirty. A background thread " +
+            "writes out dirty pages, both to keep their number at or below this percentage, and to make sure that " +
+            "the pages that are next in line for eviction are clean, so that reads don't have to wait for writes." )
+    public static final Setting<Integer> mapped_memory_dirty_page_high_water_mark =
+            setting( "mapped_memory_dirty_page_high_water_mark", INTEGER, "25", range( 0, 100 ) );
+
+    @Description( "The maximum number of bytes per second that the background writing of dirty mapped memory " +
+            "pages is allowed to write. Zero means that there is no limit." )
+    public static final Setting<Long> mapped_memory_background_flush_io_budget =
+            setting( "mapped_memory_background_flush_io_budget", BYTES, "0", min( 0L ) );
+
+    @Description( "The store files, by file name, that should be read into the mapped memory pages by copying " +
+            "them out of memory mapped regions of the files, instead of with regular file reads. This avoids a " +
+            "system call for every page that is read in, which is a good fit for read-mostly databases where " +
+            "the store files fit in the memory of the operating system. For example: " +
+            "`neostore.nodestore.db,neostore.relationshipstore.db`." )
+    public static final Setting<List<String>> mapped_memory_mmap_store_files =
+            setting( "mapped_memory_mmap_store_files", STRING_LIST, EMPTY );
+
     @Description( "Log memory mapping statistics regularly." )
     public static final Setting<Boolean> log_mapped_memory_stats = setting("log_mapped_memory_stats", BOOLEAN, FALSE );
 
@@ -274,6 +308,18 @@ public abstract class GraphDatabaseSettings
     @Description("How many relationships to read at a time during iteration")
     public static final Setting<Integer> relationship_grab_size = setting("relationship_grab_size", INTEGER, "100", min( 1 ));
 
+    @Description("The maximum amount of memory outside of the heap, that cached nodes can use for the ids of their " +
+            "relationships. Nodes with very many relationships keep the ids there, delta encoded, " +
+            "instead of on the heap. Setting this to 0 keeps all relationship ids on the heap.")
+    public static final Setting<Long> relationship_ids_off_heap_memory =
+            setting( "relationship_ids_off_heap_memory", BYTES, "64M" );
+
+    @Description("The number of relationship ids of a given type and direction, that a node must have, for those ids " +
+            "to be moved off the heap.")
+    @Internal
+    public static final Setting<Integer> relationship_ids_off_heap_min_block_size =
+            setting( "relationship_ids_off_heap_min_block_size", INTEGER, "1024", min( 1 ) );
+
     @Description("Specifies the block size for storing strings. This parameter is only honored when the store is " +
             "created, otherwise it is ignored. " +
             "Note that each character in a string occupies two bytes, meaning that a block size of 120 (the default " +
@@ -321,6 +367,16 @@ public abstract class GraphDatabaseSettings
     @Description("Whether or not transactions are appended to the log in batches")
     public static final Setting<Boolean> batched_writes = setting( "batched_writes", BOOLEAN, Boolean.TRUE.toString() );
 
+    @Description("Whether or not committing threads hand their transactions over to a single writer thread, which " +
+            "appends and forces them to the log in groups. Only has an effect when batched_writes is enabled.")
+    public static final Setting<Boolean> group_commit = setting( "group_commit", BOOLEAN, FALSE );
+
+    @Description("Whether or not label scan store and schema index updates are applied by dedicated worker threads, " +
+            "in parallel with the application of the transaction to the graph store. The updates are still " +
+            "visible when the commit returns.")
+    public static final Setting<Boolean> parallel_index_application =
+            setting( "parallel_index_application", BOOLEAN, FALSE );
+
     private static String[] availableCaches()
     {
         List<String> available = new ArrayList<>();
@@ -61,6 +61,8 @@ import org.neo4j.helpers.collection.IteratorUtil;
 import org.neo4j.helpers.collection.ResourceClosingIterator;
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.io.pagecache.PageSwapperFactory;
+import org.neo4j.io.pagecache.impl.MappedPageSwapperFactory;
 import org.neo4j.io.pagecache.impl.SingleFilePageSwapperFactory;
 import org.neo4j.io.pagecache.monitoring.DefaultPageCacheMonitor;
 import org.neo4j.io.pagecache.monitoring.PageCacheMonitor;
@@ -139,6 +141,7 @@ import org.neo4j.kernel.impl.locking.LockService;
 import org.neo4j.kernel.impl.locking.Locks;
 import org.neo4j.kernel.impl.locking.ResourceTypes;
 import org.neo4j.kernel.impl.locking.community.CommunityLockManger;
+import org.neo4j.kernel.impl.locking.striped.StripedLockManager;
 import org.neo4j.kernel.impl.pagecache.LifecycledPageCache;
 import org.neo4j.kernel.impl.store.NeoStore;
 import org.neo4j.kernel.impl.store.StoreFactory;
@@ -606,7 +609,7 @@ public abstract class InternalAbstractGraphDatabase
     protected Neo4jJobScheduler createJobScheduler()
 
     {
-        return new Neo4jJobScheduler( this.toString() );
+        return new Neo4jJobScheduler( this.toString(), config.get( GraphDatabaseSettings.cypher_parallelism ) );
     }
 
     protected LegacyIndexProxy.Lookup createIndexLookup()
@@ -730,7 +733,10 @@ public abstract class InternalAbstractGraphDatabase
 
     protected LifecycledPageCache createPageCache()
     {
-        SingleFilePageSwapperFactory swapperFactory = new SingleFilePageSwapperFactory( fileSystem );
+        List<String> mmapStoreFiles = config.get( GraphDatabaseSettings.mapped_memory_mmap_store_files );
+        PageSwapperFactory swapperFactory = mmapStoreFiles.isEmpty() ?
+                new SingleFilePageSwapperFactory( fileSystem ) :
+                new MappedPageSwapperFactory( fileSystem, mmapStoreFiles );
         LifecycledPageCache lifecycledPageCache = new LifecycledPageCache(
                 swapperFactory, jobScheduler, config, pageCacheMonitor );
 
@@ -876,6 +882,10 @@ public abstract class InternalAbstractGraphDatabase
         {
             return new CommunityLockManger();
         }
+        else if ( key.equals( StripedLockManager.KEY ) )
+        {
+            return new StripedLockManager( ResourceTypes.values() );
+        }
         else if ( key.equals( "" ) )
         {
             logging.getMessagesLog( InternalAbstractGraphDatabase.class )
@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
 
@@ -131,6 +132,7 @@ import org.neo4j.kernel.impl.transaction.state.RelationshipChainLoader;
 import org.neo4j.kernel.impl.util.Dependencies;
 import org.neo4j.kernel.impl.util.IdOrderingQueue;
 import org.neo4j.kernel.impl.util.JobScheduler;
+import org.neo4j.kernel.impl.util.OffHeapRelIdBlocks;
 import org.neo4j.kernel.impl.util.StringLogger;
 import org.neo4j.kernel.impl.util.SynchronizedArrayIdOrderingQueue;
 import org.neo4j.kernel.info.DiagnosticsExtractor;
@@ -142,6 +144,9 @@ import org.neo4j.kernel.lifecycle.LifecycleAdapter;
 import org.neo4j.kernel.logging.Logging;
 import org.neo4j.kernel.monitoring.Monitors;
 
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+
+import static org.neo4j.helpers.NamedThreadFactory.daemon;
 import static org.neo4j.helpers.collection.IteratorUtil.loop;
 import static org.neo4j.kernel.impl.transaction.log.entry.LogHeader.LOG_HEADER_SIZE;
 import static org.neo4j.kernel.impl.transaction.state.CacheLoaders.nodeLoader;
@@ -376,8 +381,11 @@ public class NeoStoreDataSource implements NeoStoreProvider, Lifecycle, LogRotat
                 nodeLoader( neoStore.getNodeStore() ) );
         relationshipCache = new AutoLoadingCache<>( cacheProvider.relationship(),
                 relationshipLoader( neoStore.getRelationshipStore() ) );
+        OffHeapRelIdBlocks offHeapRelIdBlocks = dependencies.satisfyDependency( new OffHeapRelIdBlocks(
+                config.get( GraphDatabaseSettings.relationship_ids_off_heap_memory ),
+                config.get( GraphDatabaseSettings.relationship_ids_off_heap_min_block_size ) ) );
         RelationshipLoader relationshipLoader = new RelationshipLoader(
-                lockService, relationshipCache, new RelationshipChainLoader( neoStore ) );
+                lockService, relationshipCache, new RelationshipChainLoader( neoStore ), offHeapRelIdBlocks );
         PersistenceCache persistenceCache = new PersistenceCache( nodeCache, relationshipCache, nodeManager,
                 relationshipLoader, propertyKeyTokenHolder, relationshipTypeTokens, labelTokens, nodeManager );
         CacheAccessBackDoor cacheAccess = new BridgingCacheAccess( schemaCache, updateableSchemaState,
@@ -454,11 +462,19 @@ public class NeoStoreDataSource implements NeoStoreProvider, Lifecycle, LogRotat
                     logFiles, neoStore, config.get( GraphDatabaseSettings.keep_logical_logs ) );
 
             IdOrderingQueue legacyIndexTransactionOrdering = new SynchronizedArrayIdOrderingQueue( 20 );
+            ExecutorService labelScanUpdateExecutor = null;
+            ExecutorService indexUpdateExecutor = null;
+            if ( config.get( GraphDatabaseSettings.parallel_index_application ) )
+            {
+                labelScanUpdateExecutor = newSingleThreadExecutor( daemon( "Label scan store updater" ) );
+                indexUpdateExecutor = newSingleThreadExecutor( daemon( "Schema index updater" ) );
+                life.add( shutdownOnStop( labelScanUpdateExecutor, indexUpdateExecutor ) );
+            }
             final TransactionRepresentationStoreApplier storeApplier = dependencies.satisfyDependency(
                     new TransactionRepresentationStoreApplier(
                             indexingService, labelScanStore, neoStore,
                             cacheAccess, lockService, legacyIndexProviderLookup, indexConfigStore,
-                            legacyIndexTransactionOrdering ) );
+                            legacyIndexTransactionOrdering, labelScanUpdateExecutor, indexUpdateExecutor ) );
 
             LoggingLogFileMonitor loggingLogMonitor = new LoggingLogFileMonitor( logging.getMessagesLog( getClass() ) );
 
@@ -481,7 +497,8 @@ public class NeoStoreDataSource implements NeoStoreProvider, Lifecycle, LogRotat
             final LogicalTransactionStore logicalTransactionStore = dependencies.satisfyDependency(
                     new PhysicalLogicalTransactionStore( logFile,
                             transactionMetadataCache, neoStore, legacyIndexTransactionOrdering,
-                            config.get( GraphDatabaseSettings.batched_writes ) ) );
+                            config.get( GraphDatabaseSettings.batched_writes ),
+                            config.get( GraphDatabaseSettings.group_commit ) ) );
 
             TransactionCommitProcess transactionCommitProcess = dependencies.satisfyDependency(
                     commitProcessFactory.create( logicalTransactionStore, kernelHealth, neoStore, storeApplier,
@@ -583,6 +600,21 @@ public class NeoStoreDataSource implements NeoStoreProvider, Lifecycle, LogRotat
         };
     }
 
+    private static Lifecycle shutdownOnStop( final ExecutorService... executors )
+    {
+        return new LifecycleAdapter()
+        {
+            @Override
+            public void shutdown()
+            {
+                for ( ExecutorService executor : executors )
+                {
+                    executor.shutdown();
+                }
+            }
+        };
+    }
+
     public NeoStore getNeoStore()
     {
         return neoStore;
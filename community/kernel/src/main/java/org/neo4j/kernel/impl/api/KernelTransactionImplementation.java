@@ -25,14 +25,12 @@ import java.util.Map;
 import java.util.Set;
 
 import org.neo4j.collection.pool.Pool;
-import org.neo4j.collection.primitive.PrimitiveIntIterator;
 import org.neo4j.helpers.Clock;
 import org.neo4j.helpers.ThisShouldNotHappenError;
 import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.api.Statement;
 import org.neo4j.kernel.api.TxState;
 import org.neo4j.kernel.api.constraints.UniquenessConstraint;
-import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.kernel.api.exceptions.InvalidTransactionTypeKernelException;
 import org.neo4j.kernel.api.exceptions.Status;
 import org.neo4j.kernel.api.exceptions.TransactionFailureException;
@@ -63,9 +61,6 @@ import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionRepresentation;
 import org.neo4j.kernel.impl.transaction.state.TransactionRecordState;
 import org.neo4j.kernel.impl.util.collection.ArrayCollection;
 
-import static org.neo4j.kernel.api.ReadOperations.ANY_LABEL;
-import static org.neo4j.kernel.api.ReadOperations.ANY_RELATIONSHIP_TYPE;
-
 /**
  * This class should replace the {@link org.neo4j.kernel.api.KernelTransaction} interface, and take its name, as soon
  * as
@@ -353,6 +348,7 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
         {
             txState().accept( txStateToRecordStateVisitor );
             txStateToRecordStateVisitor.done();
+            txState().accept( new TransactionCountingStateVisitor( storeLayer, txState, counts ) );
         }
     }
 
@@ -578,7 +574,6 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
 
     private class TransactionToRecordStateVisitor extends TxState.VisitorAdapter
     {
-        private final RelationshipDataExtractor relationshipData = new RelationshipDataExtractor();
         private boolean clearState;
 
         void done()
@@ -611,66 +606,15 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
         @Override
         public void visitCreatedRelationship( long id, int type, long startNode, long endNode, long timeid )
         {
-            try
-            {
-                // update counts
-                for ( PrimitiveIntIterator labels = labelsOf( startNode ); labels.hasNext(); )
-                {
-                    int label = labels.next();
-                    counts.incrementRelationshipCount( label, ANY_RELATIONSHIP_TYPE, ANY_LABEL, 1 );
-                    counts.incrementRelationshipCount( label, type, ANY_LABEL, 1 );
-                }
-                for ( PrimitiveIntIterator labels = labelsOf( endNode ); labels.hasNext(); )
-                {
-                    int label = labels.next();
-                    counts.incrementRelationshipCount( ANY_LABEL, ANY_RELATIONSHIP_TYPE, label, 1 );
-                    counts.incrementRelationshipCount( ANY_LABEL, type, label, 1 );
-                }
-            }
-            catch ( EntityNotFoundException e )
-            {
-                throw new IllegalStateException( "Nodes with added relationships should exist.", e );
-            }
-
-            // record the state changes to be made to the store
             recordState.relCreate( id, type, startNode, endNode, timeid );
         }
 
         @Override
         public void visitDeletedRelationship( long id, int type, long startNode, long endNode )
         {
-            try
-            {
-                // update counts
-                storeLayer.relationshipVisit( id, relationshipData );
-                for ( PrimitiveIntIterator labels = labelsOf( relationshipData.startNode() ); labels.hasNext(); )
-                {
-                    int label = labels.next();
-                    counts.incrementRelationshipCount( label, ANY_RELATIONSHIP_TYPE, ANY_LABEL, -1 );
-                    counts.incrementRelationshipCount( label, relationshipData.type(), ANY_LABEL, -1 );
-                }
-                for ( PrimitiveIntIterator labels = labelsOf( relationshipData.endNode() ); labels.hasNext(); )
-                {
-                    int label = labels.next();
-                    counts.incrementRelationshipCount( ANY_LABEL, ANY_RELATIONSHIP_TYPE, label, -1 );
-                    counts.incrementRelationshipCount( ANY_LABEL, relationshipData.type(), label, -1 );
-                }
-            }
-            catch ( EntityNotFoundException e )
-            {
-                throw new IllegalStateException(
-                        "Relationship being deleted should exist along with its nodes.", e );
-            }
-
-            // record the state changes to be made to the store
             recordState.relDelete( id );
         }
 
-        private PrimitiveIntIterator labelsOf( long nodeId ) throws EntityNotFoundException
-        {
-            return StateHandlingStatementOperations.nodeGetLabels( storeLayer, txState, nodeId );
-        }
-
         @Override
         public void visitNodePropertyChanges( long id, Iterator<DefinedProperty> added,
                                               Iterator<DefinedProperty> changed, Iterator<Integer> removed )
@@ -732,48 +676,8 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
         }
 
         @Override
-        public void visitNodeLabelChanges( long id, final Set<Integer> added, final Set<Integer> removed )
+        public void visitNodeLabelChanges( long id, Set<Integer> added, Set<Integer> removed )
         {
-            try
-            {
-                // update counts
-                if ( !(added.isEmpty() && removed.isEmpty()) )
-                {
-                    // get the relationship counts from *before* this transaction,
-                    // the relationship changes will compensate for what happens during the transaction
-                    storeLayer.nodeVisitDegrees( id, new DegreeVisitor()
-                    {
-                        @Override
-                        public void visitDegree( int type, int outgoing, int incoming )
-                        {
-                            for ( Integer label : added )
-                            {
-                                // untyped
-                                counts.incrementRelationshipCount( label, -1, -1, outgoing );
-                                counts.incrementRelationshipCount( -1, -1, label, incoming );
-                                // typed
-                                counts.incrementRelationshipCount( label, type, -1, outgoing );
-                                counts.incrementRelationshipCount( -1, type, label, incoming );
-                            }
-                            for ( Integer label : removed )
-                            {
-                                // untyped
-                                counts.incrementRelationshipCount( label, -1, -1, -outgoing );
-                                counts.incrementRelationshipCount( -1, -1, label, -incoming );
-                                // typed
-                                counts.incrementRelationshipCount( label, type, -1, -outgoing );
-                                counts.incrementRelationshipCount( -1, type, label, -incoming );
-                            }
-                        }
-                    } );
-                }
-            }
-            catch ( EntityNotFoundException e )
-            {
-                // ok, the node was created in this transaction
-            }
-
-            // record the state changes to be made to the store
             for ( Integer label : removed )
             {
                 recordState.removeLabelFromNode( label, id );
@@ -229,17 +229,7 @@ public class LockingStatementOperations implements
     public long relationshipCreate( KernelStatement state, int relationshipTypeId, long startNodeId, long endNodeId )
             throws EntityNotFoundException
     {
-        // Order the locks to lower the risk of deadlocks with other threads adding rels concurrently
-        if(startNodeId < endNodeId)
-        {
-            state.locks().acquireExclusive( ResourceTypes.NODE, startNodeId );
-            state.locks().acquireExclusive( ResourceTypes.NODE, endNodeId );
-        }
-        else
-        {
-            state.locks().acquireExclusive( ResourceTypes.NODE, endNodeId );
-            state.locks().acquireExclusive( ResourceTypes.NODE, startNodeId );
-        }
+        acquireExclusiveNodeLocksInOrder( state, startNodeId, endNodeId );
         return entityWriteDelegate.relationshipCreate( state, relationshipTypeId, startNodeId, endNodeId );
     }
     
@@ -247,17 +237,7 @@ public class LockingStatementOperations implements
     public long relationshipCreate( KernelStatement state, int relationshipTypeId, long startNodeId, long endNodeId, long timeid )
             throws EntityNotFoundException
     {
-        // Order the locks to lower the risk of deadlocks with other threads adding rels concurrently
-        if(startNodeId < endNodeId)
-        {
-            state.locks().acquireExclusive( ResourceTypes.NODE, startNodeId );
-            state.locks().acquireExclusive( ResourceTypes.NODE, endNodeId );
-        }
-        else
-        {
-            state.locks().acquireExclusive( ResourceTypes.NODE, endNodeId );
-            state.locks().acquireExclusive( ResourceTypes.NODE, startNodeId );
-        }
+        acquireExclusiveNodeLocksInOrder( state, startNodeId, endNodeId );
         return entityWriteDelegate.relationshipCreate( state, relationshipTypeId, startNodeId, endNodeId, timeid );
     }
     
@@ -271,8 +251,7 @@ public class LockingStatementOperations implements
                 @Override
                 public void visit( long relId, int type, long startNode, long endNode )
                 {
-                    state.locks().acquireExclusive( ResourceTypes.NODE, startNode );
-                    state.locks().acquireExclusive( ResourceTypes.NODE, endNode );
+                    acquireExclusiveNodeLocksInOrder( state, startNode, endNode );
                 }
             });
         }
@@ -284,6 +263,26 @@ public class LockingStatementOperations implements
         entityWriteDelegate.relationshipDelete( state, relationshipId );
     }
 
+    /**
+     * Locks both nodes in a single call, lowest id first, to lower the risk of deadlocks with other threads adding or
+     * removing relationships concurrently. On HA slaves this is also a single round trip to the master.
+     */
+    private void acquireExclusiveNodeLocksInOrder( KernelStatement state, long nodeId, long otherNodeId )
+    {
+        if ( nodeId == otherNodeId )
+        {
+            state.locks().acquireExclusive( ResourceTypes.NODE, nodeId );
+        }
+        else if ( nodeId < otherNodeId )
+        {
+            state.locks().acquireExclusive( ResourceTypes.NODE, nodeId, otherNodeId );
+        }
+        else
+        {
+            state.locks().acquireExclusive( ResourceTypes.NODE, otherNodeId, nodeId );
+        }
+    }
+
     @Override
     public UniquenessConstraint uniquenessConstraintCreate( KernelStatement state, int labelId, int propertyKeyId )
             throws CreateConstraintFailureException, AlreadyConstrainedException, AlreadyIndexedException
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.neo4j.kernel.impl.store.UnderlyingStorageException;
+import org.neo4j.kernel.impl.transaction.command.IndexTransactionApplier;
+import org.neo4j.kernel.impl.transaction.command.NeoCommandHandler;
+
+/**
+ * Applies the label scan store and schema index updates of an {@link IndexTransactionApplier} on worker threads,
+ * one for each, so that they are applied in parallel with each other and with the rest of the transaction
+ * application. Each worker runs its updates in the order they were handed to it, i.e. in the order transactions
+ * get applied. {@link #close()} waits for the workers to complete the updates of this transaction, so that they
+ * are visible before the transaction is closed.
+ */
+public class ParallelIndexTransactionApplier extends NeoCommandHandler.Delegator
+{
+    private final IndexTransactionApplier delegate;
+    private final ExecutorService labelScanUpdateExecutor;
+    private final ExecutorService indexUpdateExecutor;
+    private Future<?> labelUpdates;
+    private Future<?> indexUpdates;
+
+    public ParallelIndexTransactionApplier( IndexTransactionApplier delegate,
+            ExecutorService labelScanUpdateExecutor, ExecutorService indexUpdateExecutor )
+    {
+        super( delegate );
+        this.delegate = delegate;
+        this.labelScanUpdateExecutor = labelScanUpdateExecutor;
+        this.indexUpdateExecutor = indexUpdateExecutor;
+    }
+
+    @Override
+    public void apply()
+    {
+        labelUpdates = labelScanUpdateExecutor.submit( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                delegate.applyLabelUpdates();
+            }
+        } );
+        indexUpdates = indexUpdateExecutor.submit( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                delegate.applyIndexUpdates();
+            }
+        } );
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            // Wait for both, even if the first one failed, so that no update outlives this transaction
+            try
+            {
+                awaitCompletion( labelUpdates );
+            }
+            finally
+            {
+                awaitCompletion( indexUpdates );
+            }
+        }
+        finally
+        {
+            super.close();
+        }
+    }
+
+    private static void awaitCompletion( Future<?> updates )
+    {
+        if ( updates == null )
+        {
+            return;
+        }
+
+        boolean interrupted = false;
+        try
+        {
+            while ( true )
+            {
+                try
+                {
+                    updates.get();
+                    return;
+                }
+                catch ( InterruptedException e )
+                {
+                    // The updates will be applied regardless, and must be visible before we return
+                    interrupted = true;
+                }
+            }
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new UnderlyingStorageException( cause );
+        }
+        finally
+        {
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -84,6 +84,8 @@ import static org.neo4j.helpers.collection.Iterables.filter;
 import static org.neo4j.helpers.collection.IteratorUtil.iterator;
 import static org.neo4j.helpers.collection.IteratorUtil.resourceIterator;
 import static org.neo4j.helpers.collection.IteratorUtil.singleOrNull;
+import static org.neo4j.kernel.api.ReadOperations.ANY_LABEL;
+import static org.neo4j.kernel.api.ReadOperations.ANY_RELATIONSHIP_TYPE;
 import static org.neo4j.kernel.api.StatementConstants.NO_SUCH_NODE;
 
 public class StateHandlingStatementOperations implements
@@ -937,13 +939,34 @@ public class StateHandlingStatementOperations implements
     @Override
     public long countsForNode( KernelStatement statement, int labelId )
     {
-        return storeLayer.countsForNode( labelId );
+        long count = storeLayer.countsForNode( labelId );
+        if ( statement.hasTxStateWithChanges() )
+        {
+            count += txStateCounts( statement.txState() ).nodeCount( labelId );
+        }
+        return count;
     }
 
     @Override
     public long countsForRelationship( KernelStatement statement, int startLabelId, int typeId, int endLabelId )
     {
-        return storeLayer.countsForRelationship( startLabelId, typeId, endLabelId );
+        long count = storeLayer.countsForRelationship( startLabelId, typeId, endLabelId );
+        if ( statement.hasTxStateWithChanges() )
+        {
+            count += txStateCounts( statement.txState() ).relationshipCount( startLabelId, typeId, endLabelId );
+        }
+        return count;
+    }
+
+    /**
+     * The counts store only knows about committed transactions, so the changes of this transaction are counted
+     * from its state, as they will be counted when it commits.
+     */
+    private CountsRecordState txStateCounts( TxState txState )
+    {
+        CountsRecordState counts = new CountsRecordState();
+        txState.accept( new TxStateCountingVisitor( storeLayer, txState, counts ) );
+        return counts;
     }
 
     @Override
@@ -1492,4 +1515,62 @@ public class StateHandlingStatementOperations implements
     {
         return storeLayer.relationshipGetTimeField( relid );
     }
+
+    /**
+     * Counts the nodes, labels and relationship types that a transaction changes, in addition to what
+     * {@link TransactionCountingStateVisitor} counts, since these are otherwise taken from its record commands.
+     */
+    private static class TxStateCountingVisitor extends TransactionCountingStateVisitor
+    {
+        TxStateCountingVisitor( StoreReadLayer storeLayer, TxState txState, CountsRecordState counts )
+        {
+            super( storeLayer, txState, counts );
+        }
+
+        @Override
+        public void visitCreatedNode( long id, long timeid )
+        {
+            counts.incrementNodeCount( ANY_LABEL, 1 );
+        }
+
+        @Override
+        public void visitDeletedNode( long id )
+        {
+            counts.incrementNodeCount( ANY_LABEL, -1 );
+            try
+            {
+                for ( PrimitiveIntIterator labels = storeLayer.nodeGetLabels( id ); labels.hasNext(); )
+                {
+                    counts.incrementNodeCount( labels.next(), -1 );
+                }
+            }
+            catch ( EntityNotFoundException e )
+            {
+                throw new IllegalStateException( "Node being deleted should exist.", e );
+            }
+        }
+
+        @Override
+        protected void updateRelationshipCount( long startNode, int type, long endNode, int delta )
+                throws EntityNotFoundException
+        {
+            super.updateRelationshipCount( startNode, type, endNode, delta );
+            counts.incrementRelationshipCount( ANY_LABEL, ANY_RELATIONSHIP_TYPE, ANY_LABEL, delta );
+            counts.incrementRelationshipCount( ANY_LABEL, type, ANY_LABEL, delta );
+        }
+
+        @Override
+        public void visitNodeLabelChanges( long id, Set<Integer> added, Set<Integer> removed )
+        {
+            super.visitNodeLabelChanges( id, added, removed );
+            for ( Integer label : added )
+            {
+                counts.incrementNodeCount( label, 1 );
+            }
+            for ( Integer label : removed )
+            {
+                counts.incrementNodeCount( label, -1 );
+            }
+        }
+    }
 }
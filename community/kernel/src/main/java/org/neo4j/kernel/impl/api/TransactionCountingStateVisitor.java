@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api;
+
+import java.util.Set;
+
+import org.neo4j.collection.primitive.PrimitiveIntIterator;
+import org.neo4j.kernel.api.TxState;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.api.store.StoreReadLayer;
+
+import static org.neo4j.kernel.api.ReadOperations.ANY_LABEL;
+import static org.neo4j.kernel.api.ReadOperations.ANY_RELATIONSHIP_TYPE;
+
+/**
+ * Counts the relationships that a transaction changes by the labels of their nodes. The counts of nodes, labels and
+ * relationship types are not counted here, they are taken from the record commands when the transaction is applied.
+ */
+class TransactionCountingStateVisitor extends TxState.VisitorAdapter
+{
+    protected final StoreReadLayer storeLayer;
+    protected final CountsRecordState counts;
+    private final TxState txState;
+    private final RelationshipDataExtractor relationshipData = new RelationshipDataExtractor();
+
+    TransactionCountingStateVisitor( StoreReadLayer storeLayer, TxState txState, CountsRecordState counts )
+    {
+        this.storeLayer = storeLayer;
+        this.txState = txState;
+        this.counts = counts;
+    }
+
+    @Override
+    public void visitCreatedRelationship( long id, int type, long startNode, long endNode, long timeid )
+    {
+        try
+        {
+            updateRelationshipCount( startNode, type, endNode, 1 );
+        }
+        catch ( EntityNotFoundException e )
+        {
+            throw new IllegalStateException( "Nodes with added relationships should exist.", e );
+        }
+    }
+
+    @Override
+    public void visitDeletedRelationship( long id, int type, long startNode, long endNode )
+    {
+        try
+        {
+            storeLayer.relationshipVisit( id, relationshipData );
+            updateRelationshipCount( relationshipData.startNode(), relationshipData.type(),
+                    relationshipData.endNode(), -1 );
+        }
+        catch ( EntityNotFoundException e )
+        {
+            throw new IllegalStateException(
+                    "Relationship being deleted should exist along with its nodes.", e );
+        }
+    }
+
+    protected void updateRelationshipCount( long startNode, int type, long endNode, int delta )
+            throws EntityNotFoundException
+    {
+        for ( PrimitiveIntIterator labels = labelsOf( startNode ); labels.hasNext(); )
+        {
+            int label = labels.next();
+            counts.incrementRelationshipCount( label, ANY_RELATIONSHIP_TYPE, ANY_LABEL, delta );
+            counts.incrementRelationshipCount( label, type, ANY_LABEL, delta );
+        }
+        for ( PrimitiveIntIterator labels = labelsOf( endNode ); labels.hasNext(); )
+        {
+            int label = labels.next();
+            counts.incrementRelationshipCount( ANY_LABEL, ANY_RELATIONSHIP_TYPE, label, delta );
+            counts.incrementRelationshipCount( ANY_LABEL, type, label, delta );
+        }
+    }
+
+    private PrimitiveIntIterator labelsOf( long nodeId ) throws EntityNotFoundException
+    {
+        return StateHandlingStatementOperations.nodeGetLabels( storeLayer, txState, nodeId );
+    }
+
+    @Override
+    public void visitNodeLabelChanges( long id, final Set<Integer> added, final Set<Integer> removed )
+    {
+        try
+        {
+            if ( !(added.isEmpty() && removed.isEmpty()) )
+            {
+                // get the relationship counts from *before* this transaction,
+                // the relationship changes will compensate for what happens during the transaction
+                storeLayer.nodeVisitDegrees( id, new DegreeVisitor()
+                {
+                    @Override
+                    public void visitDegree( int type, int outgoing, int incoming )
+                    {
+                        for ( Integer label : added )
+                        {
+                            // untyped
+                            counts.incrementRelationshipCount( label, -1, -1, outgoing );
+                            counts.incrementRelationshipCount( -1, -1, label, incoming );
+                            // typed
+                            counts.incrementRelationshipCount( label, type, -1, outgoing );
+                            counts.incrementRelationshipCount( -1, type, label, incoming );
+                        }
+                        for ( Integer label : removed )
+                        {
+                            // untyped
+                            counts.incrementRelationshipCount( label, -1, -1, -outgoing );
+                            counts.incrementRelationshipCount( -1, -1, label, -incoming );
+                            // typed
+                            counts.incrementRelationshipCount( label, type, -1, -outgoing );
+                            counts.incrementRelationshipCount( -1, type, label, -incoming );
+                        }
+                    }
+                } );
+            }
+        }
+        catch ( EntityNotFoundException e )
+        {
+            // ok, the node was created in this transaction
+        }
+    }
+}
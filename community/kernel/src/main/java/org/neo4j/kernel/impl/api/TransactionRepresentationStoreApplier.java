@@ -20,6 +20,8 @@
 package org.neo4j.kernel.impl.api;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.neo4j.kernel.api.labelscan.LabelScanStore;
 import org.neo4j.kernel.impl.api.LegacyIndexApplier.ProviderLookup;
@@ -29,8 +31,10 @@ import org.neo4j.kernel.impl.index.IndexConfigStore;
 import org.neo4j.kernel.impl.locking.LockGroup;
 import org.neo4j.kernel.impl.locking.LockService;
 import org.neo4j.kernel.impl.store.NeoStore;
+import org.neo4j.kernel.impl.transaction.CommittedTransactionRepresentation;
 import org.neo4j.kernel.impl.transaction.TransactionRepresentation;
 import org.neo4j.kernel.impl.transaction.command.CacheInvalidationTransactionApplier;
+import org.neo4j.kernel.impl.transaction.command.CoalescingTransactionApplier;
 import org.neo4j.kernel.impl.transaction.command.HighIdTransactionApplier;
 import org.neo4j.kernel.impl.transaction.command.IndexTransactionApplier;
 import org.neo4j.kernel.impl.transaction.command.NeoCommandHandler;
@@ -54,11 +58,28 @@ public class TransactionRepresentationStoreApplier
     private final ProviderLookup legacyIndexProviderLookup;
     private final PropertyLoader propertyLoader;
     private final IdOrderingQueue legacyIndexTransactionOrdering;
+    private final ExecutorService labelScanUpdateExecutor;
+    private final ExecutorService indexUpdateExecutor;
 
     public TransactionRepresentationStoreApplier(
             IndexingService indexingService, LabelScanStore labelScanStore, NeoStore neoStore,
             CacheAccessBackDoor cacheAccess, LockService lockService, ProviderLookup legacyIndexProviderLookup,
             IndexConfigStore indexConfigStore, IdOrderingQueue legacyIndexTransactionOrdering )
+    {
+        this( indexingService, labelScanStore, neoStore, cacheAccess, lockService, legacyIndexProviderLookup,
+                indexConfigStore, legacyIndexTransactionOrdering, null, null );
+    }
+
+    /**
+     * Given executors, label scan store and schema index updates will be applied by them, in parallel with the
+     * application to the graph store. The executors are expected to be single threaded, so that updates are applied
+     * in transaction order.
+     */
+    public TransactionRepresentationStoreApplier(
+            IndexingService indexingService, LabelScanStore labelScanStore, NeoStore neoStore,
+            CacheAccessBackDoor cacheAccess, LockService lockService, ProviderLookup legacyIndexProviderLookup,
+            IndexConfigStore indexConfigStore, IdOrderingQueue legacyIndexTransactionOrdering,
+            ExecutorService labelScanUpdateExecutor, ExecutorService indexUpdateExecutor )
     {
         this.indexingService = indexingService;
         this.labelScanStore = labelScanStore;
@@ -69,6 +90,8 @@ public class TransactionRepresentationStoreApplier
         this.indexConfigStore = indexConfigStore;
         this.legacyIndexTransactionOrdering = legacyIndexTransactionOrdering;
         this.propertyLoader = new PropertyLoader( neoStore );
+        this.labelScanUpdateExecutor = labelScanUpdateExecutor;
+        this.indexUpdateExecutor = indexUpdateExecutor;
     }
 
     public void apply( TransactionRepresentation representation, LockGroup locks,
@@ -76,21 +99,18 @@ public class TransactionRepresentationStoreApplier
             throws IOException
     {
         // Graph store application. The order of the decorated store appliers is irrelevant
-        NeoCommandHandler storeApplier = new NeoStoreTransactionApplier(
-                neoStore, cacheAccess, lockService, locks, transactionId );
-        if ( mode.needsIdTracking() )
-        {
-            storeApplier = new HighIdTransactionApplier( storeApplier, neoStore );
-        }
-        if ( mode.needsCacheInvalidationOnUpdates() )
-        {
-            storeApplier = new CacheInvalidationTransactionApplier( storeApplier, neoStore, cacheAccess );
-        }
+        NeoCommandHandler storeApplier = getStoreApplier( locks, transactionId, mode );
 
         // Schema index application
-        IndexTransactionApplier indexApplier = new IndexTransactionApplier( indexingService,
+        IndexTransactionApplier indexTransactionApplier = new IndexTransactionApplier( indexingService,
                 labelScanStore, neoStore.getNodeStore(), neoStore.getPropertyStore(), cacheAccess,
                 propertyLoader, transactionId, mode );
+        NeoCommandHandler indexApplier = indexTransactionApplier;
+        if ( labelScanUpdateExecutor != null && indexUpdateExecutor != null )
+        {
+            indexApplier = new ParallelIndexTransactionApplier(
+                    indexTransactionApplier, labelScanUpdateExecutor, indexUpdateExecutor );
+        }
 
         // Legacy index application
         LegacyIndexApplier legacyIndexApplier = new LegacyIndexApplier( indexConfigStore,
@@ -107,6 +127,65 @@ public class TransactionRepresentationStoreApplier
         }
     }
 
+    /**
+     * Applies a batch of transactions, in order, as one unit of work. The graph store, label scan store and
+     * counts store see the whole batch through one set of appliers, where the last change to any relationship or
+     * relationship group record wins, see {@link CoalescingTransactionApplier}. Schema and legacy index updates are
+     * still applied once per transaction, after it has been applied to the graph store, since they need to see the
+     * store as it was right after that transaction.
+     * <p/>
+     * The given transactions are expected to be committed, by their ids, but not closed, until this method returns.
+     */
+    public void apply( List<CommittedTransactionRepresentation> transactions, LockGroup locks,
+                       TransactionApplicationMode mode ) throws IOException
+    {
+        if ( transactions.isEmpty() )
+        {
+            return;
+        }
+        // Constraint introducing transactions are tracked by the last transaction in the batch,
+        // which is conservative, since they are all visible at the same time anyway.
+        long lastTransactionId = transactions.get( transactions.size() - 1 ).getCommitEntry().getTxId();
+        NeoCommandHandler storeApplier =
+                new CoalescingTransactionApplier( getStoreApplier( locks, lastTransactionId, mode ) );
+        IndexTransactionApplier indexApplier = new IndexTransactionApplier( indexingService,
+                labelScanStore, neoStore.getNodeStore(), neoStore.getPropertyStore(), cacheAccess,
+                propertyLoader, lastTransactionId, mode );
+        NeoCommandHandler countsStoreApplier = getCountsStoreApplier( lastTransactionId, mode );
+
+        try ( CommandApplierFacade batchApplier = new CommandApplierFacade(
+                storeApplier, indexApplier, countsStoreApplier ) )
+        {
+            for ( CommittedTransactionRepresentation transaction : transactions )
+            {
+                long transactionId = transaction.getCommitEntry().getTxId();
+                LegacyIndexApplier legacyIndexApplier = new LegacyIndexApplier( indexConfigStore,
+                        legacyIndexProviderLookup, legacyIndexTransactionOrdering, transactionId, mode );
+                try ( CommandApplierFacade applier = new CommandApplierFacade(
+                        new DeferredApplication( batchApplier ), legacyIndexApplier ) )
+                {
+                    transaction.getTransactionRepresentation().accept( applier );
+                }
+                indexApplier.applyIndexUpdates( transactionId );
+            }
+        }
+    }
+
+    private NeoCommandHandler getStoreApplier( LockGroup locks, long transactionId, TransactionApplicationMode mode )
+    {
+        NeoCommandHandler storeApplier = new NeoStoreTransactionApplier(
+                neoStore, cacheAccess, lockService, locks, transactionId );
+        if ( mode.needsIdTracking() )
+        {
+            storeApplier = new HighIdTransactionApplier( storeApplier, neoStore );
+        }
+        if ( mode.needsCacheInvalidationOnUpdates() )
+        {
+            storeApplier = new CacheInvalidationTransactionApplier( storeApplier, neoStore, cacheAccess );
+        }
+        return storeApplier;
+    }
+
     private NeoCommandHandler getCountsStoreApplier( long transactionId, TransactionApplicationMode mode )
     {
         if ( TransactionApplicationMode.RECOVERY == mode && !neoStore.getCounts().acceptTx( transactionId ) )
@@ -117,4 +196,26 @@ public class TransactionRepresentationStoreApplier
         assert neoStore.getCounts().acceptTx( transactionId );
         return new CountsStoreApplier( neoStore.getCounts(), neoStore.getNodeStore() );
     }
+
+    /**
+     * Lets commands through to the handler of a whole batch, but leaves applying and closing it to the end of
+     * the batch.
+     */
+    private static class DeferredApplication extends NeoCommandHandler.Delegator
+    {
+        DeferredApplication( NeoCommandHandler delegate )
+        {
+            super( delegate );
+        }
+
+        @Override
+        public void apply()
+        {   // Done for the whole batch
+        }
+
+        @Override
+        public void close()
+        {   // Done for the whole batch
+        }
+    }
 }
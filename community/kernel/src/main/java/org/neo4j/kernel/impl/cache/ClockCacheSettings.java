@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.graphdb.factory.Description;
+
+import static org.neo4j.helpers.Settings.BYTES;
+import static org.neo4j.helpers.Settings.NO_DEFAULT;
+import static org.neo4j.helpers.Settings.setting;
+
+/**
+ * Settings for the size bounded clock cache
+ */
+@Description( "Clock cache configuration settings" )
+public class ClockCacheSettings
+{
+    @Description( "Maximum size of the heap memory to dedicate to the cached nodes, when using the `clock` cache. "
+            + "Right before the maximum size is reached, the least recently used nodes are evicted until the cache "
+            + "size gets below 90% of the maximum size. Defaults to 10% of the maximum heap size." )
+    public static final Setting<Long> node_cache_size = setting( "clock_cache.node_cache_size", BYTES, NO_DEFAULT );
+
+    @Description( "Maximum size of the heap memory to dedicate to the cached relationships, when using the `clock` "
+            + "cache. See clock_cache.node_cache_size for more information. Defaults to 15% of the maximum heap size." )
+    public static final Setting<Long> relationship_cache_size =
+            setting( "clock_cache.relationship_cache_size", BYTES, NO_DEFAULT );
+}
@@ -0,0 +1,370 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+import org.neo4j.collection.primitive.concurrent.ConcurrentLongObjectHashMap;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * A cache that keeps strong references to its entities, and evicts them with the CLOCK algorithm when the sum of
+ * their {@link EntityWithSizeObject#sizeOfObjectInBytesIncludingOverhead() sizes} goes above a given number of bytes.
+ * Nothing is left for the garbage collector to decide, so unlike the soft and weak reference caches, the contents of
+ * this cache does not depend on how often full collections happen.
+ *
+ * Entities are looked up in a concurrent primitive map, and are also kept in a ring, which the clock hand moves
+ * around when entities need to be evicted. Getting an entity marks it as referenced, and the hand gives referenced
+ * entities a second chance, instead of evicting them. Entities start out unreferenced, so that entities that are
+ * only ever used once are the first to go. No locks are taken: eviction is normally done by a single thread at a
+ * time, but threads that find the cache more than full help out, instead of waiting for it.
+ */
+public class SizeBoundedClockCache<E extends EntityWithSizeObject> extends Cache.Adapter<E>
+{
+    private final String name;
+    private final long maxSize;
+    private final long evictStartSize;
+    private final long evictStopSize;
+    private final StringLogger logger;
+
+    private final ConcurrentLongObjectHashMap<Slot<E>> slots = new ConcurrentLongObjectHashMap<>();
+    private final Queue<Slot<E>> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong currentSize = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicInteger liveSlots = new AtomicInteger();
+    // The number of slots that have been removed from the map, but that might still be in the clock. Only used for
+    // deciding when to sweep them out of the clock, so it doesn't need to be exact.
+    private final AtomicInteger retiredSlots = new AtomicInteger();
+
+    // non thread safe, only ~statistics (atomic update will affect performance)
+    private long hitCount;
+    private long missCount;
+    private long evictCount;
+
+    public SizeBoundedClockCache( String name, long maxSizeInBytes, StringLogger logger )
+    {
+        if ( maxSizeInBytes < 1 )
+        {
+            throw new IllegalArgumentException( "Max size can not be " + maxSizeInBytes );
+        }
+        this.name = name;
+        this.maxSize = maxSizeInBytes;
+        this.evictStartSize = (long) (maxSizeInBytes * 0.95d);
+        this.evictStopSize = (long) (maxSizeInBytes * 0.90d);
+        this.logger = logger;
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public E put( E value, boolean force )
+    {
+        long id = value.getId();
+        int size = value.sizeOfObjectInBytesIncludingOverhead();
+        Slot<E> slot = new Slot<>( value, size );
+        if ( force )
+        {
+            Slot<E> previous = slots.put( id, slot );
+            if ( previous != null )
+            {
+                retire( previous );
+                sweepIfManyRetired();
+            }
+        }
+        else
+        {
+            Slot<E> existing = slots.putIfAbsent( id, slot );
+            if ( existing != null )
+            {
+                existing.reference();
+                return existing.value;
+            }
+        }
+        value.setRegisteredSize( size );
+        liveSlots.incrementAndGet();
+        clock.offer( slot );
+        grew( currentSize.addAndGet( size ) );
+        return value;
+    }
+
+    @Override
+    public void putAll( Collection<E> values )
+    {
+        for ( E value : values )
+        {
+            put( value );
+        }
+    }
+
+    @Override
+    public E remove( long key )
+    {
+        Slot<E> slot = slots.remove( key );
+        if ( slot == null )
+        {
+            return null;
+        }
+        retire( slot );
+        sweepIfManyRetired();
+        return slot.value;
+    }
+
+    @Override
+    public E get( long key )
+    {
+        Slot<E> slot = slots.get( key );
+        if ( slot == null )
+        {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        slot.reference();
+        return slot.value;
+    }
+
+    @Override
+    public void updateSize( E entity, int newSize )
+    {
+        Slot<E> slot = slots.get( entity.getId() );
+        if ( slot == null || slot.value != entity )
+        {
+            return;
+        }
+        int oldSize;
+        do
+        {
+            oldSize = slot.size;
+            if ( oldSize == Slot.RETIRED )
+            {
+                return;
+            }
+        }
+        while ( !Slot.sizeUpdater.compareAndSet( slot, oldSize, newSize ) );
+        entity.setRegisteredSize( newSize );
+        grew( currentSize.addAndGet( newSize - oldSize ) );
+    }
+
+    @Override
+    public void clear()
+    {
+        slots.visitEntries( new PrimitiveLongObjectVisitor<Slot<E>>()
+        {
+            @Override
+            public void visited( long key, Slot<E> slot )
+            {
+                if ( slots.remove( key, slot ) )
+                {
+                    retire( slot );
+                }
+            }
+        } );
+        // The clock is not simply cleared, since that could lose slots that are being put concurrently.
+        if ( evicting.compareAndSet( false, true ) )
+        {
+            try
+            {
+                sweepRetiredSlots();
+            }
+            finally
+            {
+                evicting.set( false );
+            }
+        }
+    }
+
+    /**
+     * @return the sum of the sizes of the cached entities, in bytes.
+     */
+    @Override
+    public long size()
+    {
+        return currentSize.get();
+    }
+
+    @Override
+    public long hitCount()
+    {
+        return hitCount;
+    }
+
+    @Override
+    public long missCount()
+    {
+        return missCount;
+    }
+
+    @Override
+    public void printStatistics()
+    {
+        if ( logger.isDebugEnabled() )
+        {
+            logger.debug( toString() );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + " size:" + currentSize.get() + "/" + maxSize + " hits:" + hitCount + " misses:" + missCount +
+               " evictions:" + evictCount;
+    }
+
+    private void grew( long size )
+    {
+        if ( size <= evictStartSize )
+        {
+            return;
+        }
+        if ( evicting.compareAndSet( false, true ) )
+        {
+            try
+            {
+                evictDownTo( evictStopSize );
+            }
+            finally
+            {
+                evicting.set( false );
+            }
+        }
+        else if ( size > maxSize )
+        {
+            // Someone else is evicting, but not fast enough to keep up with us, so we help out.
+            evictDownTo( maxSize );
+        }
+    }
+
+    private void evictDownTo( long targetSize )
+    {
+        Slot<E> slot;
+        while ( currentSize.get() > targetSize && (slot = clock.poll()) != null )
+        {
+            if ( slot.size == Slot.RETIRED )
+            {
+                // Removed or replaced since it was put in the clock, so it is simply dropped from it.
+                continue;
+            }
+            if ( slot.referenced )
+            {
+                slot.referenced = false;
+                clock.offer( slot );
+                continue;
+            }
+            if ( slots.remove( slot.value.getId(), slot ) )
+            {
+                currentSize.addAndGet( -slot.retire() );
+                liveSlots.decrementAndGet();
+                evictCount++;
+            }
+        }
+    }
+
+    private void retire( Slot<E> slot )
+    {
+        int size = slot.retire();
+        if ( size != Slot.RETIRED )
+        {
+            currentSize.addAndGet( -size );
+            liveSlots.decrementAndGet();
+            retiredSlots.incrementAndGet();
+        }
+    }
+
+    /**
+     * Retired slots are dropped when the clock hand comes by, but the hand only moves when the cache is full, so
+     * they are swept out of the clock once there are about as many of them as there are live slots.
+     */
+    private void sweepIfManyRetired()
+    {
+        int retired = retiredSlots.get();
+        if ( retired > 1024 && retired > liveSlots.get() && evicting.compareAndSet( false, true ) )
+        {
+            try
+            {
+                sweepRetiredSlots();
+            }
+            finally
+            {
+                evicting.set( false );
+            }
+        }
+    }
+
+    private void sweepRetiredSlots()
+    {
+        retiredSlots.set( 0 );
+        for ( Iterator<Slot<E>> iterator = clock.iterator(); iterator.hasNext(); )
+        {
+            if ( iterator.next().size == Slot.RETIRED )
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Slot<E>
+    {
+        static final int RETIRED = -1;
+        @SuppressWarnings( "rawtypes" )
+        static final AtomicIntegerFieldUpdater<Slot> sizeUpdater =
+                AtomicIntegerFieldUpdater.newUpdater( Slot.class, "size" );
+
+        final E value;
+        volatile int size;
+        volatile boolean referenced;
+
+        Slot( E value, int size )
+        {
+            this.value = value;
+            this.size = size;
+        }
+
+        void reference()
+        {
+            // Only written when it changes, to not invalidate the cache line for other readers on every get.
+            if ( !referenced )
+            {
+                referenced = true;
+            }
+        }
+
+        /**
+         * Marks this slot as no longer in the cache.
+         *
+         * @return the size that the slot had, or {@link #RETIRED} if it already was retired.
+         */
+        int retire()
+        {
+            return sizeUpdater.getAndSet( this, RETIRED );
+        }
+    }
+}
@@ -281,7 +281,7 @@ public class NodeImpl extends ArrayBasedPrimitive
                     rels = getMoreRelationships( relationshipLoader, tmpRelMap, direction, types );
                     this.relationships = toRelIdArray( tmpRelMap );
                     this.relChainPosition = rels == null ? RelationshipLoadingPosition.EMPTY : rels.third();
-                    moreRelationshipsLoaded();
+                    moreRelationshipsLoaded( relationshipLoader );
                     cacheUpdateListener.newSize( this, sizeOfObjectInBytesIncludingOverhead() );
                 }
             }
@@ -452,7 +452,7 @@ public class NodeImpl extends ArrayBasedPrimitive
                     }
                 }
                 relChainPosition = rels.third();
-                moreRelationshipsLoaded();
+                moreRelationshipsLoaded( relationshipLoader );
                 more = hasMoreRelationshipsToLoad( direction, types );
                 cacheUpdateListener.newSize( this, sizeOfObjectInBytesIncludingOverhead() );
             }
@@ -572,16 +572,17 @@ public class NodeImpl extends ArrayBasedPrimitive
         this.relChainPosition = position;
     }
 
-    private void moreRelationshipsLoaded()
+    private void moreRelationshipsLoaded( RelationshipLoader relationshipLoader )
     {
         if ( relationships != null && !hasMoreRelationshipsToLoad( DirectionWrapper.BOTH, NO_RELATIONSHIP_TYPES ) )
         {   // precondition: must be called under synchronization
             // use local reference to avoid multiple read barriers
             RelIdArray[] array = relationships;
-            // Done loading - Shrink arrays
+            // Done loading - Shrink arrays, and move the big ones off heap
             for ( int i = 0; i < array.length; i++ )
             {
                 array[i].shrink();
+                array[i].moveBlocksOffHeap( relationshipLoader.offHeapRelIdBlocks() );
             }
             relChainPosition = RelationshipLoadingPosition.EMPTY;
         }
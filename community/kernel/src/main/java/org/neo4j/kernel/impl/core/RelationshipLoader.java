@@ -33,6 +33,7 @@ import org.neo4j.kernel.impl.locking.LockService;
 import org.neo4j.kernel.impl.store.record.RelationshipRecord;
 import org.neo4j.kernel.impl.transaction.state.RelationshipChainLoader;
 import org.neo4j.kernel.impl.util.ArrayMap;
+import org.neo4j.kernel.impl.util.OffHeapRelIdBlocks;
 import org.neo4j.kernel.impl.util.RelIdArray;
 import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
 import org.neo4j.kernel.impl.util.RelIdArrayWithLoops;
@@ -46,13 +47,29 @@ public class RelationshipLoader
     private final LockService lockService;
     private final Cache<RelationshipImpl> relationshipCache;
     private final RelationshipChainLoader chainLoader;
+    private final OffHeapRelIdBlocks offHeapRelIdBlocks;
 
     public RelationshipLoader( LockService lockService, Cache<RelationshipImpl> relationshipCache,
                                RelationshipChainLoader chainLoader )
+    {
+        this( lockService, relationshipCache, chainLoader, OffHeapRelIdBlocks.NONE );
+    }
+
+    public RelationshipLoader( LockService lockService, Cache<RelationshipImpl> relationshipCache,
+                               RelationshipChainLoader chainLoader, OffHeapRelIdBlocks offHeapRelIdBlocks )
     {
         this.lockService = lockService;
         this.relationshipCache = relationshipCache;
         this.chainLoader = chainLoader;
+        this.offHeapRelIdBlocks = offHeapRelIdBlocks;
+    }
+
+    /**
+     * @return where nodes that are done loading their relationships can put the ids of them, off heap.
+     */
+    public OffHeapRelIdBlocks offHeapRelIdBlocks()
+    {
+        return offHeapRelIdBlocks;
     }
 
     public Triplet<ArrayMap<Integer, RelIdArray>, List<RelationshipImpl>, RelationshipLoadingPosition>
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking.striped;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * The global state of a single lock, as one word that is only ever changed with compare-and-set, except by the
+ * holder of the exclusive lock.
+ *
+ * The low 32 bits count the clients that hold the lock as shared. When the {@link #EXCLUSIVE} bit is set, the shared
+ * count is always zero, and the bits in between are the id of the client holding the lock, for introspection. A client
+ * that holds both a shared and an exclusive lock on the same resource is only counted as holding the exclusive one.
+ *
+ * An entry whose state drops to zero is removed from its {@link LockTable}, and marked {@link #DEAD} on the way out.
+ * Clients that still have a reference to a dead entry will fail to acquire it, and go back to the table for a fresh
+ * one.
+ */
+final class LockEntry
+{
+    private static final long DEAD = -1;
+    private static final long EXCLUSIVE = 1L << 62;
+    private static final int OWNER_SHIFT = 32;
+    private static final long OWNER_MASK = (1L << 30) - 1;
+    private static final long SHARED_MASK = 0xFFFFFFFFL;
+
+    private static final AtomicLongFieldUpdater<LockEntry> state =
+            AtomicLongFieldUpdater.newUpdater( LockEntry.class, "stateWord" );
+
+    private volatile long stateWord;
+
+    /** Acquire a shared lock on behalf of a client that does not already hold this lock in any way. */
+    boolean tryAcquireShared()
+    {
+        long current;
+        while ( (current = stateWord) != DEAD && (current & EXCLUSIVE) == 0 )
+        {
+            if ( state.compareAndSet( this, current, current + 1 ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Acquire an exclusive lock, which requires that no one else holds the lock. A client that holds the shared lock
+     * itself, is the only shared holder if the shared count is one.
+     */
+    boolean tryAcquireExclusive( int clientId, boolean holdingShared )
+    {
+        return state.compareAndSet( this, holdingShared ? 1 : 0, EXCLUSIVE | ((clientId & OWNER_MASK) << OWNER_SHIFT) );
+    }
+
+    /** Release a shared lock, returning true if this entry is now free. */
+    boolean releaseShared()
+    {
+        return state.decrementAndGet( this ) == 0;
+    }
+
+    /**
+     * Release an exclusive lock, keeping a shared lock in its place if the client also holds that. Returns true
+     * if this entry is now free.
+     */
+    boolean releaseExclusive( boolean keepShared )
+    {
+        // No one else changes the state while we hold the exclusive lock
+        stateWord = keepShared ? 1 : 0;
+        return !keepShared;
+    }
+
+    boolean isDead()
+    {
+        return stateWord == DEAD;
+    }
+
+    /** Called by the lock table, when removing this entry. */
+    boolean markDeadIfFree()
+    {
+        return state.compareAndSet( this, 0, DEAD );
+    }
+
+    String describe()
+    {
+        long current = stateWord;
+        if ( current == DEAD )
+        {
+            return "Released";
+        }
+        if ( (current & EXCLUSIVE) != 0 )
+        {
+            return "ExclusiveLock[Client[" + ((current >>> OWNER_SHIFT) & OWNER_MASK) + "]]";
+        }
+        return "SharedLock[" + (current & SHARED_MASK) + " holders]";
+    }
+
+    @Override
+    public String toString()
+    {
+        return describe();
+    }
+}
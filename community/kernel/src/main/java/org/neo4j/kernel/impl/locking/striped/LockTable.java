@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking.striped;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+import org.neo4j.kernel.impl.locking.Locks;
+
+/**
+ * The locks of one resource type, split over a fixed number of stripes, each one a primitive map from resource id
+ * to {@link LockEntry}. A stripe is only locked for the short time it takes to look up, insert or remove an entry,
+ * never while waiting for a lock, so the stripes see very little contention, even with many clients.
+ */
+final class LockTable
+{
+    private final Locks.ResourceType resourceType;
+    private final PrimitiveLongObjectMap<LockEntry>[] stripes;
+    private final int stripeMask;
+
+    @SuppressWarnings( "unchecked" )
+    LockTable( Locks.ResourceType resourceType, int stripeCount )
+    {
+        if ( Integer.bitCount( stripeCount ) != 1 )
+        {
+            throw new IllegalArgumentException( "Stripe count must be a power of two, but was " + stripeCount );
+        }
+        this.resourceType = resourceType;
+        this.stripes = (PrimitiveLongObjectMap<LockEntry>[]) new PrimitiveLongObjectMap<?>[stripeCount];
+        this.stripeMask = stripeCount - 1;
+        for ( int i = 0; i < stripeCount; i++ )
+        {
+            stripes[i] = Primitive.longObjectMap();
+        }
+    }
+
+    Locks.ResourceType resourceType()
+    {
+        return resourceType;
+    }
+
+    /** Get the entry for the given resource, creating it if there is none. */
+    LockEntry entry( long resourceId )
+    {
+        PrimitiveLongObjectMap<LockEntry> stripe = stripe( resourceId );
+        synchronized ( stripe )
+        {
+            LockEntry entry = stripe.get( resourceId );
+            if ( entry == null )
+            {
+                stripe.put( resourceId, entry = new LockEntry() );
+            }
+            return entry;
+        }
+    }
+
+    /** Remove the given entry, unless someone has acquired it since it was released. */
+    void removeIfFree( long resourceId, LockEntry entry )
+    {
+        PrimitiveLongObjectMap<LockEntry> stripe = stripe( resourceId );
+        synchronized ( stripe )
+        {
+            if ( entry.markDeadIfFree() && stripe.get( resourceId ) == entry )
+            {
+                stripe.remove( resourceId );
+            }
+        }
+    }
+
+    void accept( final Locks.Visitor visitor )
+    {
+        for ( PrimitiveLongObjectMap<LockEntry> stripe : stripes )
+        {
+            synchronized ( stripe )
+            {
+                stripe.visitEntries( new PrimitiveLongObjectVisitor<LockEntry>()
+                {
+                    @Override
+                    public void visited( long resourceId, LockEntry entry )
+                    {
+                        visitor.visit( resourceType, resourceId, entry.describe(), 0 );
+                    }
+                } );
+            }
+        }
+    }
+
+    private PrimitiveLongObjectMap<LockEntry> stripe( long resourceId )
+    {
+        // Spread the bits, since resource ids are often sequential, or hashes with poor low bits
+        long hash = resourceId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & stripeMask];
+    }
+}
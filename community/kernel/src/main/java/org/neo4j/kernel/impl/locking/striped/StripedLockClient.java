@@ -0,0 +1,510 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking.striped;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.neo4j.collection.pool.Pool;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
+import org.neo4j.collection.primitive.PrimitiveLongVisitor;
+import org.neo4j.kernel.DeadlockDetectedException;
+import org.neo4j.kernel.impl.locking.AcquireLockTimeoutException;
+import org.neo4j.kernel.impl.locking.Locks;
+import org.neo4j.kernel.impl.util.concurrent.WaitStrategy;
+
+import static java.lang.String.format;
+
+/**
+ * Grabs and releases locks in the {@link LockTable lock tables} of a {@link StripedLockManager}.
+ *
+ * Like in Forseti, the client keeps local counts of the locks it holds, so that re-entrant acquires and releases
+ * never touch the global state. The local counts, and what the client is waiting for, are guarded by the monitor of
+ * the client. Only the client itself changes them, so that monitor is uncontended, except for when other clients are
+ * looking for deadlocks.
+ *
+ * <h2>Deadlock detection</h2>
+ *
+ * While waiting, a client now and again walks the wait-for graph, starting from the lock it wants. For each lock it
+ * looks for other waiting clients that hold it in a conflicting mode, and continues with what they are waiting for.
+ * If that leads to a lock that this client holds in a conflicting mode, then there is a deadlock. Clients that are not
+ * waiting can not be part of a deadlock, so only a few clients are ever looked at, and the cost of finding a deadlock
+ * is only paid by clients that already wait. Since the graph is not looked at atomically, a cycle must be seen twice
+ * in a row before it is reported.
+ */
+public class StripedLockClient implements Locks.Client
+{
+    /** Look for deadlocks every this many wait iterations, plus one. Must be one less than a power of two. */
+    private static final int DEADLOCK_DETECTION_MASK = 63;
+
+    private final int myId;
+    private final LockTable[] lockTables;
+    private final WaitStrategy<AcquireLockTimeoutException>[] waitStrategies;
+    private final Iterable<StripedLockClient> clients;
+    private final Pool<StripedLockClient> clientPool;
+
+    /** resourceType -> (resourceId -> number of times held). Guarded by this. */
+    private final PrimitiveLongIntMap[] sharedLockCounts;
+    private final PrimitiveLongIntMap[] exclusiveLockCounts;
+
+    /** What this client is currently waiting for, or null. Guarded by this. */
+    private WaitTarget waitingFor;
+    private boolean deadlockSuspected;
+
+    StripedLockClient( int id, LockTable[] lockTables, WaitStrategy<AcquireLockTimeoutException>[] waitStrategies,
+                       Iterable<StripedLockClient> clients, Pool<StripedLockClient> clientPool )
+    {
+        this.myId = id;
+        this.lockTables = lockTables;
+        this.waitStrategies = waitStrategies;
+        this.clients = clients;
+        this.clientPool = clientPool;
+        this.sharedLockCounts = new PrimitiveLongIntMap[lockTables.length];
+        this.exclusiveLockCounts = new PrimitiveLongIntMap[lockTables.length];
+        for ( int i = 0; i < lockTables.length; i++ )
+        {
+            sharedLockCounts[i] = Primitive.longIntMap();
+            exclusiveLockCounts[i] = Primitive.longIntMap();
+        }
+    }
+
+    @Override
+    public void acquireShared( Locks.ResourceType resourceType, long... resourceIds )
+            throws AcquireLockTimeoutException
+    {
+        int typeId = resourceType.typeId();
+        LockTable lockTable = lockTables[typeId];
+        PrimitiveLongIntMap heldShared = sharedLockCounts[typeId];
+        for ( long resourceId : resourceIds )
+        {
+            int heldCount = heldShared.get( resourceId );
+            if ( heldCount == -1 && !exclusiveLockCounts[typeId].containsKey( resourceId ) )
+            {
+                int tries = 0;
+                while ( !lockTable.entry( resourceId ).tryAcquireShared() )
+                {
+                    tries = waitFor( resourceType, resourceId, false, tries );
+                }
+                stopWaiting( tries );
+            }
+            // Shared locks under our own exclusive lock are only tracked locally
+            setCount( heldShared, resourceId, heldCount == -1 ? 1 : heldCount + 1 );
+        }
+    }
+
+    @Override
+    public void acquireExclusive( Locks.ResourceType resourceType, long... resourceIds )
+            throws AcquireLockTimeoutException
+    {
+        int typeId = resourceType.typeId();
+        LockTable lockTable = lockTables[typeId];
+        PrimitiveLongIntMap heldExclusive = exclusiveLockCounts[typeId];
+        for ( long resourceId : resourceIds )
+        {
+            int heldCount = heldExclusive.get( resourceId );
+            if ( heldCount == -1 )
+            {
+                boolean holdingShared = sharedLockCounts[typeId].containsKey( resourceId );
+                int tries = 0;
+                while ( !lockTable.entry( resourceId ).tryAcquireExclusive( myId, holdingShared ) )
+                {
+                    tries = waitFor( resourceType, resourceId, true, tries );
+                }
+                stopWaiting( tries );
+            }
+            setCount( heldExclusive, resourceId, heldCount == -1 ? 1 : heldCount + 1 );
+        }
+    }
+
+    @Override
+    public boolean tryExclusiveLock( Locks.ResourceType resourceType, long... resourceIds )
+    {
+        int typeId = resourceType.typeId();
+        PrimitiveLongIntMap heldExclusive = exclusiveLockCounts[typeId];
+        for ( long resourceId : resourceIds )
+        {
+            int heldCount = heldExclusive.get( resourceId );
+            if ( heldCount == -1 )
+            {
+                boolean holdingShared = sharedLockCounts[typeId].containsKey( resourceId );
+                if ( !lockTables[typeId].entry( resourceId ).tryAcquireExclusive( myId, holdingShared ) )
+                {
+                    return false;
+                }
+            }
+            setCount( heldExclusive, resourceId, heldCount == -1 ? 1 : heldCount + 1 );
+        }
+        return true;
+    }
+
+    @Override
+    public boolean trySharedLock( Locks.ResourceType resourceType, long... resourceIds )
+    {
+        int typeId = resourceType.typeId();
+        PrimitiveLongIntMap heldShared = sharedLockCounts[typeId];
+        for ( long resourceId : resourceIds )
+        {
+            int heldCount = heldShared.get( resourceId );
+            if ( heldCount == -1 && !exclusiveLockCounts[typeId].containsKey( resourceId ) )
+            {
+                LockEntry entry;
+                while ( !(entry = lockTables[typeId].entry( resourceId )).tryAcquireShared() )
+                {
+                    if ( !entry.isDead() )
+                    {
+                        return false;
+                    }
+                    // We raced with the last holder releasing the lock, and removing the entry. Try again,
+                    // even though this is a try-lock call, since the lock is actually free.
+                }
+            }
+            setCount( heldShared, resourceId, heldCount == -1 ? 1 : heldCount + 1 );
+        }
+        return true;
+    }
+
+    @Override
+    public void releaseShared( Locks.ResourceType resourceType, long... resourceIds )
+    {
+        int typeId = resourceType.typeId();
+        for ( long resourceId : resourceIds )
+        {
+            if ( releaseLocally( resourceType, resourceId, sharedLockCounts[typeId] ) )
+            {
+                continue;
+            }
+
+            // Shared locks under our own exclusive lock are only tracked locally
+            if ( !exclusiveLockCounts[typeId].containsKey( resourceId ) )
+            {
+                releaseShared( lockTables[typeId], resourceId );
+            }
+        }
+    }
+
+    @Override
+    public void releaseExclusive( Locks.ResourceType resourceType, long... resourceIds )
+    {
+        int typeId = resourceType.typeId();
+        for ( long resourceId : resourceIds )
+        {
+            if ( releaseLocally( resourceType, resourceId, exclusiveLockCounts[typeId] ) )
+            {
+                continue;
+            }
+
+            // Downgrade to a shared lock if we still hold that
+            releaseExclusive( lockTables[typeId], resourceId, sharedLockCounts[typeId].containsKey( resourceId ) );
+        }
+    }
+
+    @Override
+    public void releaseAllShared()
+    {
+        for ( int i = 0; i < lockTables.length; i++ )
+        {
+            PrimitiveLongIntMap heldShared = sharedLockCounts[i];
+            if ( heldShared.isEmpty() )
+            {
+                continue;
+            }
+            final LockTable lockTable = lockTables[i];
+            final PrimitiveLongIntMap heldExclusive = exclusiveLockCounts[i];
+            heldShared.visitKeys( new PrimitiveLongVisitor()
+            {
+                @Override
+                public void visited( long resourceId )
+                {
+                    if ( !heldExclusive.containsKey( resourceId ) )
+                    {
+                        releaseShared( lockTable, resourceId );
+                    }
+                }
+            } );
+            clear( sharedLockCounts, i );
+        }
+    }
+
+    @Override
+    public void releaseAllExclusive()
+    {
+        for ( int i = 0; i < lockTables.length; i++ )
+        {
+            if ( exclusiveLockCounts[i].isEmpty() )
+            {
+                continue;
+            }
+            final LockTable lockTable = lockTables[i];
+            final PrimitiveLongIntMap heldShared = sharedLockCounts[i];
+            exclusiveLockCounts[i].visitKeys( new PrimitiveLongVisitor()
+            {
+                @Override
+                public void visited( long resourceId )
+                {
+                    releaseExclusive( lockTable, resourceId, heldShared.containsKey( resourceId ) );
+                }
+            } );
+            clear( exclusiveLockCounts, i );
+        }
+    }
+
+    @Override
+    public void releaseAll()
+    {
+        for ( int i = 0; i < lockTables.length; i++ )
+        {
+            final LockTable lockTable = lockTables[i];
+            final PrimitiveLongIntMap heldExclusive = exclusiveLockCounts[i];
+            if ( heldExclusive.isEmpty() && sharedLockCounts[i].isEmpty() )
+            {
+                // Clearing and visiting is proportional to the capacity of the maps, not their size
+                continue;
+            }
+
+            // Release exclusive locks without keeping shared locks in their place, since those go too
+            heldExclusive.visitKeys( new PrimitiveLongVisitor()
+            {
+                @Override
+                public void visited( long resourceId )
+                {
+                    releaseExclusive( lockTable, resourceId, false );
+                }
+            } );
+            sharedLockCounts[i].visitKeys( new PrimitiveLongVisitor()
+            {
+                @Override
+                public void visited( long resourceId )
+                {
+                    if ( !heldExclusive.containsKey( resourceId ) )
+                    {
+                        releaseShared( lockTable, resourceId );
+                    }
+                }
+            } );
+            clear( exclusiveLockCounts, i );
+            clear( sharedLockCounts, i );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        releaseAll();
+        clientPool.release( this );
+    }
+
+    @Override
+    public int getLockSessionId()
+    {
+        return myId;
+    }
+
+    int id()
+    {
+        return myId;
+    }
+
+    @Override
+    public String toString()
+    {
+        return format( "StripedLockClient[%d]", myId );
+    }
+
+    private void releaseShared( LockTable lockTable, long resourceId )
+    {
+        LockEntry entry = lockTable.entry( resourceId );
+        if ( entry.releaseShared() )
+        {
+            lockTable.removeIfFree( resourceId, entry );
+        }
+    }
+
+    private void releaseExclusive( LockTable lockTable, long resourceId, boolean keepShared )
+    {
+        LockEntry entry = lockTable.entry( resourceId );
+        if ( entry.releaseExclusive( keepShared ) )
+        {
+            lockTable.removeIfFree( resourceId, entry );
+        }
+    }
+
+    /** Release a lock locally, and return true if we still hold more references to that lock. */
+    private boolean releaseLocally( Locks.ResourceType type, long resourceId, PrimitiveLongIntMap localLocks )
+    {
+        int lockCount = localLocks.get( resourceId );
+        if ( lockCount == -1 )
+        {
+            throw new IllegalStateException( this + " cannot release lock that it does not hold: " +
+                    type + "[" + resourceId + "]." );
+        }
+
+        synchronized ( this )
+        {
+            if ( lockCount > 1 )
+            {
+                localLocks.put( resourceId, lockCount - 1 );
+                return true;
+            }
+            localLocks.remove( resourceId );
+            return false;
+        }
+    }
+
+    private synchronized void setCount( PrimitiveLongIntMap localLocks, long resourceId, int count )
+    {
+        localLocks.put( resourceId, count );
+    }
+
+    private synchronized void clear( PrimitiveLongIntMap[] localLocks, int typeId )
+    {
+        if ( localLocks[typeId].size() <= 32 )
+        {
+            localLocks[typeId].clear();
+        }
+        else
+        {
+            // Don't let clients hold on to giant maps over time
+            localLocks[typeId] = Primitive.longIntMap();
+        }
+    }
+
+    // Waiting and deadlock detection
+
+    private int waitFor( Locks.ResourceType resourceType, long resourceId, boolean exclusive, int tries )
+            throws AcquireLockTimeoutException
+    {
+        if ( tries == 0 )
+        {
+            startWaiting( new WaitTarget( resourceType, resourceId, exclusive ) );
+        }
+        try
+        {
+            waitStrategies[resourceType.typeId()].apply( tries );
+            if ( (tries & DEADLOCK_DETECTION_MASK) == DEADLOCK_DETECTION_MASK )
+            {
+                checkForDeadlock();
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            stopWaiting( 1 );
+            throw e;
+        }
+        return tries + 1;
+    }
+
+    private synchronized void startWaiting( WaitTarget target )
+    {
+        waitingFor = target;
+        deadlockSuspected = false;
+    }
+
+    private void stopWaiting( int tries )
+    {
+        if ( tries > 0 )
+        {
+            synchronized ( this )
+            {
+                waitingFor = null;
+            }
+        }
+    }
+
+    private void checkForDeadlock()
+    {
+        WaitTarget target = waitingFor;
+        boolean deadlocked = waitForGraphLeadsBackToUs( target );
+        if ( deadlocked && deadlockSuspected )
+        {
+            throw new DeadlockDetectedException( this + " can't acquire " + target + ", because holders of that " +
+                    "lock are waiting, directly or indirectly, for locks held by " + this + "." );
+        }
+        deadlockSuspected = deadlocked;
+    }
+
+    private boolean waitForGraphLeadsBackToUs( WaitTarget target )
+    {
+        List<WaitTarget> targets = new ArrayList<>();
+        Set<StripedLockClient> visited = new HashSet<>();
+        targets.add( target );
+        for ( int i = 0; i < targets.size(); i++ )
+        {
+            for ( StripedLockClient other : clients )
+            {
+                if ( other == this || visited.contains( other ) )
+                {
+                    continue;
+                }
+                WaitTarget next = other.waitingForIfBlocking( targets.get( i ) );
+                if ( next != null )
+                {
+                    if ( blocks( next ) )
+                    {
+                        return true;
+                    }
+                    visited.add( other );
+                    targets.add( next );
+                }
+            }
+        }
+        return false;
+    }
+
+    /** What this client waits for, if it is waiting and holds a lock that keeps the given target from progressing. */
+    private synchronized WaitTarget waitingForIfBlocking( WaitTarget target )
+    {
+        return waitingFor != null && blocks( target ) ? waitingFor : null;
+    }
+
+    /**
+     * Whether the locks we hold keep the given target from being acquired. Only to be called by the thread using
+     * this client, or under its monitor.
+     */
+    private boolean blocks( WaitTarget target )
+    {
+        return exclusiveLockCounts[target.typeId].containsKey( target.resourceId ) ||
+               (target.exclusive && sharedLockCounts[target.typeId].containsKey( target.resourceId ));
+    }
+
+    private static final class WaitTarget
+    {
+        private final Locks.ResourceType resourceType;
+        private final int typeId;
+        private final long resourceId;
+        private final boolean exclusive;
+
+        WaitTarget( Locks.ResourceType resourceType, long resourceId, boolean exclusive )
+        {
+            this.resourceType = resourceType;
+            this.typeId = resourceType.typeId();
+            this.resourceId = resourceId;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public String toString()
+        {
+            return (exclusive ? "ExclusiveLock" : "SharedLock") + " on " + resourceType + "(" + resourceId + ")";
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking.striped;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.collection.pool.LinkedQueuePool;
+import org.neo4j.kernel.impl.locking.AcquireLockTimeoutException;
+import org.neo4j.kernel.impl.locking.Locks;
+import org.neo4j.kernel.impl.util.concurrent.WaitStrategy;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+/**
+ * A lock manager where acquiring and releasing a lock never takes a global monitor.
+ *
+ * The locks of each resource type live in a {@link LockTable}, which is split into stripes of primitive maps from
+ * resource id to {@link LockEntry}. A stripe is only locked while looking up, inserting or removing an entry. The
+ * shared and exclusive state of each lock is a single word that is changed with compare-and-set, so an uncontended
+ * acquire costs one stripe lookup and one CAS, and a re-entrant acquire costs nothing but a local map update in the
+ * {@link StripedLockClient client}.
+ *
+ * Deadlocks are found by the waiting clients themselves, by walking the wait-for graph of the other waiting clients,
+ * see {@link StripedLockClient}. There is no fairness between shared and exclusive waiters, so a steady stream of
+ * shared lock holders can keep an exclusive waiter waiting.
+ *
+ * It is selected with the "striped" lock manager setting, in place of the default
+ * {@link org.neo4j.kernel.impl.locking.community.CommunityLockManger}.
+ */
+public class StripedLockManager extends LifecycleAdapter implements Locks
+{
+    public static final String KEY = "striped";
+
+    private static final int DEFAULT_STRIPES = 1024;
+
+    private final LockTable[] lockTables;
+    private final WaitStrategy<AcquireLockTimeoutException>[] waitStrategies;
+    private final List<StripedLockClient> clients = new CopyOnWriteArrayList<>();
+    private final ClientPool clientPool;
+
+    public StripedLockManager( ResourceType... resourceTypes )
+    {
+        this( DEFAULT_STRIPES, resourceTypes );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public StripedLockManager( int stripesPerResourceType, ResourceType... resourceTypes )
+    {
+        int maxTypeId = 0;
+        for ( ResourceType type : resourceTypes )
+        {
+            maxTypeId = Math.max( type.typeId(), maxTypeId );
+        }
+        this.lockTables = new LockTable[maxTypeId + 1];
+        this.waitStrategies = (WaitStrategy<AcquireLockTimeoutException>[]) new WaitStrategy<?>[maxTypeId + 1];
+        for ( ResourceType type : resourceTypes )
+        {
+            lockTables[type.typeId()] = new LockTable( type, stripesPerResourceType );
+            waitStrategies[type.typeId()] = type.waitStrategy();
+        }
+        this.clientPool = new ClientPool();
+    }
+
+    @Override
+    public Client newClient()
+    {
+        return clientPool.acquire();
+    }
+
+    @Override
+    public void accept( Visitor visitor )
+    {
+        for ( LockTable lockTable : lockTables )
+        {
+            if ( lockTable != null )
+            {
+                lockTable.accept( visitor );
+            }
+        }
+    }
+
+    private class ClientPool extends LinkedQueuePool<StripedLockClient>
+    {
+        private final AtomicInteger clientIds = new AtomicInteger();
+
+        ClientPool()
+        {
+            super( 128, null );
+        }
+
+        @Override
+        protected StripedLockClient create()
+        {
+            StripedLockClient client = new StripedLockClient(
+                    clientIds.getAndIncrement(), lockTables, waitStrategies, clients, this );
+            // Registered, so that waiting clients can find it when looking for deadlocks
+            clients.add( client );
+            return client;
+        }
+
+        @Override
+        protected void dispose( StripedLockClient client )
+        {
+            super.dispose( client );
+            clients.remove( client );
+        }
+    }
+}
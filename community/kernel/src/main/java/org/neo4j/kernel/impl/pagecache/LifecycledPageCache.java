@@ -27,21 +27,24 @@ import org.neo4j.io.pagecache.PageCache;
 import org.neo4j.io.pagecache.monitoring.PageCacheMonitor;
 import org.neo4j.io.pagecache.PageSwapperFactory;
 import org.neo4j.io.pagecache.PagedFile;
-import org.neo4j.io.pagecache.RunnablePageCache;
 import org.neo4j.io.pagecache.impl.muninn.MuninnPageCache;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.util.JobScheduler;
 import org.neo4j.kernel.impl.util.StringLogger;
 import org.neo4j.kernel.lifecycle.LifecycleAdapter;
 
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.mapped_memory_background_flush_io_budget;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.mapped_memory_dirty_page_high_water_mark;
 import static org.neo4j.graphdb.factory.GraphDatabaseSettings.mapped_memory_page_size;
 import static org.neo4j.graphdb.factory.GraphDatabaseSettings.mapped_memory_total_size;
 
 public class LifecycledPageCache extends LifecycleAdapter implements PageCache
 {
-    private final RunnablePageCache pageCache;
+    private final MuninnPageCache pageCache;
     private final JobScheduler scheduler;
     private volatile JobScheduler.JobHandle pageEvictionJobHandle;
+    private volatile JobScheduler.JobHandle backgroundFlushJobHandle;
+    private volatile JobScheduler.JobHandle readAheadJobHandle;
 
     public LifecycledPageCache(
             PageSwapperFactory swapperFactory,
@@ -54,7 +57,9 @@ public class LifecycledPageCache extends LifecycleAdapter implements PageCache
                 swapperFactory,
                 calculateMaxPages( config ),
                 calculatePageSize( config ),
-                monitor );
+                monitor,
+                config.get( mapped_memory_dirty_page_high_water_mark ),
+                config.get( mapped_memory_background_flush_io_budget ) );
     }
 
     private static int calculateMaxPages( Config config )
@@ -74,17 +79,27 @@ public class LifecycledPageCache extends LifecycleAdapter implements PageCache
     public void start()
     {
         pageEvictionJobHandle = scheduler.schedule( JobScheduler.Group.pageCacheEviction, pageCache );
+        backgroundFlushJobHandle = scheduler.schedule(
+                JobScheduler.Group.pageCacheBackgroundFlush, pageCache.backgroundFlusher() );
+        readAheadJobHandle = scheduler.schedule(
+                JobScheduler.Group.pageCacheReadAhead, pageCache.readAheader() );
     }
 
     @Override
     public void stop() throws IOException
     {
-        JobScheduler.JobHandle handle = pageEvictionJobHandle;
+        cancel( readAheadJobHandle );
+        cancel( backgroundFlushJobHandle );
+        cancel( pageEvictionJobHandle );
+        close();
+    }
+
+    private static void cancel( JobScheduler.JobHandle handle )
+    {
         if ( handle != null )
         {
             handle.cancel( true );
         }
-        close();
     }
 
     @Override
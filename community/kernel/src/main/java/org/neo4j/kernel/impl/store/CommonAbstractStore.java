@@ -50,6 +50,7 @@ import static org.neo4j.helpers.Exceptions.launderedException;
 import static org.neo4j.helpers.UTF8.encode;
 import static org.neo4j.io.fs.FileUtils.windowsSafeIOOperation;
 import static org.neo4j.io.pagecache.PagedFile.PF_READ_AHEAD;
+import static org.neo4j.io.pagecache.PagedFile.PF_SEQUENTIAL_SCAN;
 import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_LOCK;
 
 /**
@@ -366,7 +367,7 @@ public abstract class CommonAbstractStore implements IdSequence, AutoCloseable
             setHighId( foundHighId );
             if ( !fastRebuild )
             {
-                try ( PageCursor cursor = storeFile.io( 0, PF_SHARED_LOCK | PF_READ_AHEAD ) )
+                try ( PageCursor cursor = storeFile.io( 0, PF_SHARED_LOCK | PF_READ_AHEAD | PF_SEQUENTIAL_SCAN ) )
                 {
                     defraggedCount = rebuildIdGeneratorSlow( cursor, recordsPerPage(), blockSize,
                             reserveIdsDuringRebuild(), foundHighId );
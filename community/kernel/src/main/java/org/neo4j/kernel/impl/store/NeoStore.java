@@ -263,7 +263,11 @@ public class NeoStore extends AbstractStore implements TransactionIdStore, LogVe
     {
         try
         {
-            counts.rotate( getLastCommittedTransactionId() );
+            // Written here, after the counts store has been rotated to it, rather than on every commit. The page may
+            // be written out at any time, and the counts store must never be behind the transaction id in the file.
+            long lastCommittedTxId = getLastCommittedTransactionId();
+            counts.rotate( lastCommittedTxId );
+            setRecord( LATEST_TX_POSITION, lastCommittedTxId );
             pageCache.flush();
         }
         catch ( IOException e )
@@ -860,12 +864,7 @@ public class NeoStore extends AbstractStore implements TransactionIdStore, LogVe
     @Override
     public void transactionCommitted( long transactionId )
     {
-        long previous = lastCommittedTx.get();
         lastCommittedTx.offer( transactionId );
-        if ( transactionId > previous )
-        {
-            setRecord( LATEST_TX_POSITION, lastCommittedTx.get() );
-        }
     }
 
     @Override
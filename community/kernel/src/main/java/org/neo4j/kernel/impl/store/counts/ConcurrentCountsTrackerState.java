@@ -21,14 +21,17 @@ package org.neo4j.kernel.impl.store.counts;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.ConcurrentModificationException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+import org.neo4j.collection.primitive.concurrent.ConcurrentLongObjectHashMap;
 import org.neo4j.kernel.impl.store.counts.CountsKey.IndexCountsKey;
 import org.neo4j.kernel.impl.store.kvstore.KeyValueRecordVisitor;
 import org.neo4j.kernel.impl.store.kvstore.SortedKeyValueStore;
@@ -39,25 +42,72 @@ import org.neo4j.register.Register.DoubleLongRegister;
 import org.neo4j.register.Registers;
 
 import static org.neo4j.kernel.impl.store.counts.CountsKey.IndexSampleKey;
-import static org.neo4j.kernel.impl.store.counts.CountsKey.NodeKey;
-import static org.neo4j.kernel.impl.store.counts.CountsKey.RelationshipKey;
+import static org.neo4j.kernel.impl.store.counts.CountsKey.nodeKey;
+import static org.neo4j.kernel.impl.store.counts.CountsKey.relationshipKey;
 
+/**
+ * Keeps the changed counts in memory, on top of a store file, without taking any locks.
+ *
+ * Node and relationship counts are {@link StripedCounter striped counters}, in a primitive map keyed by the label
+ * and type ids packed into a long. Only relationship keys with token ids too large to pack go to a map with object
+ * keys. The counters hold the full count, starting from the value below them when they are created, so reads of
+ * changed counts never go to the store.
+ *
+ * During rotation a new state is put on top of this one, to take the updates while this one is written out. Its
+ * changes are built on the values in this state, which is why creating them waits for this state to be
+ * {@link #retire() retired}. That only ever waits for updates that were already in progress, which take as long as
+ * adding to a counter.
+ */
 class ConcurrentCountsTrackerState implements CountsTrackerState
 {
     private static final int INITIAL_CHANGES_CAPACITY = 1024;
     private static final int INITIAL_INDICES_CAPACITY = 32;
+    /** How many counters of a state may spread over cells, which take up to 4kB each. */
+    private static final int MAX_INFLATED_COUNTERS = 256;
+
+    /** Node keys use the lower 32 bits, relationship keys have this bit set, and 21 bits per token id. */
+    private static final long RELATIONSHIP_KEY = 1L << 63;
+    private static final int TOKEN_BITS = 21;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    /** Never a valid packed key, since it would need token ids of {@code TOKEN_MASK - 1}, which we don't pack. */
+    private static final long UNPACKED = -1;
 
     private final SortedKeyValueStore<CountsKey, CopyableDoubleLongRegister> store;
+    private final ConcurrentCountsTrackerState below;
 
-    private final ConcurrentMap<CountsKey, AtomicLong> counts =
-        new ConcurrentHashMap<>( INITIAL_CHANGES_CAPACITY );
+    private final ConcurrentLongObjectHashMap<StripedCounter> counts;
+    private final ConcurrentMap<CountsKey,StripedCounter> unpackedCounts;
+    private final ConcurrentMap<CountsKey,CopyableDoubleLongRegister> samples;
 
-    private final ConcurrentMap<CountsKey,CopyableDoubleLongRegister> samples =
-        new ConcurrentHashMap<>( INITIAL_INDICES_CAPACITY );
+    /** Updates in progress, counted per stripe of threads, see {@link #retire()}. */
+    private final AtomicLongArray updaters = StripedCounter.newCells();
+    private final AtomicInteger counterInflationBudget = new AtomicInteger( MAX_INFLATED_COUNTERS );
+    private volatile boolean retired;
 
     ConcurrentCountsTrackerState( SortedKeyValueStore<CountsKey, CopyableDoubleLongRegister> store )
+    {
+        this( store, null );
+    }
+
+    private ConcurrentCountsTrackerState( SortedKeyValueStore<CountsKey, CopyableDoubleLongRegister> store,
+                                          ConcurrentCountsTrackerState below )
+    {
+        this( store, below, new ConcurrentLongObjectHashMap<StripedCounter>( INITIAL_CHANGES_CAPACITY ),
+              new ConcurrentHashMap<CountsKey,StripedCounter>(),
+              new ConcurrentHashMap<CountsKey,CopyableDoubleLongRegister>( INITIAL_INDICES_CAPACITY ) );
+    }
+
+    private ConcurrentCountsTrackerState( SortedKeyValueStore<CountsKey, CopyableDoubleLongRegister> store,
+                                          ConcurrentCountsTrackerState below,
+                                          ConcurrentLongObjectHashMap<StripedCounter> counts,
+                                          ConcurrentMap<CountsKey,StripedCounter> unpackedCounts,
+                                          ConcurrentMap<CountsKey,CopyableDoubleLongRegister> samples )
     {
         this.store = store;
+        this.below = below;
+        this.counts = counts;
+        this.unpackedCounts = unpackedCounts;
+        this.samples = samples;
     }
 
     @Override
@@ -68,37 +118,79 @@ class ConcurrentCountsTrackerState implements CountsTrackerState
 
     public boolean hasChanges()
     {
-        return !(counts.isEmpty() && samples.isEmpty());
+        return !(counts.isEmpty() && unpackedCounts.isEmpty() && samples.isEmpty()) ||
+               (below != null && below.hasChanges());
     }
 
     @Override
-    public long nodeCount( NodeKey nodeKey )
+    public long nodeCount( int labelId )
     {
-        return readCount( nodeKey );
+        return readCount( nodeKeyBits( labelId ), null );
     }
 
     @Override
-    public void incrementNodeCount( NodeKey nodeKey, long delta )
+    public boolean incrementNodeCount( int labelId, long delta )
     {
-        incrementCount( nodeKey, delta );
+        int updater = enter();
+        if ( updater < 0 )
+        {
+            return false;
+        }
+        try
+        {
+            incrementCount( nodeKeyBits( labelId ), null, delta );
+            return true;
+        }
+        finally
+        {
+            exit( updater );
+        }
     }
 
     @Override
-    public long relationshipCount( RelationshipKey relationshipKey )
+    public long relationshipCount( int startLabelId, int typeId, int endLabelId )
     {
-        return readCount( relationshipKey );
+        long key = relationshipKeyBits( startLabelId, typeId, endLabelId );
+        return readCount( key, key == UNPACKED ? relationshipKey( startLabelId, typeId, endLabelId ) : null );
     }
 
     @Override
-    public void incrementRelationshipCount( RelationshipKey relationshipKey, long delta )
+    public boolean incrementRelationshipCount( int startLabelId, int typeId, int endLabelId, long delta )
     {
-        incrementCount( relationshipKey, delta );
+        int updater = enter();
+        if ( updater < 0 )
+        {
+            return false;
+        }
+        try
+        {
+            long key = relationshipKeyBits( startLabelId, typeId, endLabelId );
+            incrementCount( key, key == UNPACKED ? relationshipKey( startLabelId, typeId, endLabelId ) : null, delta );
+            return true;
+        }
+        finally
+        {
+            exit( updater );
+        }
     }
 
     @Override
-    public void replaceIndexUpdatesAndSize( IndexCountsKey indexCountsKey, long updates, long size )
+    public boolean replaceIndexUpdatesAndSize( IndexCountsKey indexCountsKey, long updates, long size )
     {
-        writeRegister( indexCountsKey ).write( updates, size );
+        int updater = enter();
+        if ( updater < 0 )
+        {
+            return false;
+        }
+        try
+        {
+            writeRegister( indexCountsKey ).write( updates, size );
+            return true;
+        }
+        finally
+        {
+            exit( updater );
+        }
     }
 
     @Override
@@ -108,9 +200,22 @@ class ConcurrentCountsTrackerState implements CountsTrackerState
     }
 
     @Override
-    public void incrementIndexUpdates( IndexCountsKey indexCountsKey, long delta )
+    public boolean incrementIndexUpdates( IndexCountsKey indexCountsKey, long delta )
     {
-        writeRegister( indexCountsKey ).increment( delta, 0l );
+        int updater = enter();
+        if ( updater < 0 )
+        {
+            return false;
+        }
+        try
+        {
+            writeRegister( indexCountsKey ).increment( delta, 0l );
+            return true;
+        }
+        finally
+        {
+            exit( updater );
+        }
     }
 
     @Override
@@ -120,56 +225,150 @@ class ConcurrentCountsTrackerState implements CountsTrackerState
     }
 
     @Override
-    public void replaceIndexSample( IndexSampleKey indexSampleKey, long unique, long size )
+    public boolean replaceIndexSample( IndexSampleKey indexSampleKey, long unique, long size )
+    {
+        int updater = enter();
+        if ( updater < 0 )
+        {
+            return false;
+        }
+        try
+        {
+            writeRegister( indexSampleKey ).write( unique, size );
+            return true;
+        }
+        finally
+        {
+            exit( updater );
+        }
+    }
+
+    /**
+     * Registers an update in progress, unless this state is retired. Returns the cell it was registered in, to
+     * be passed to {@link #exit(int)}, or -1 if the update must go to the state that replaced this one.
+     */
+    private int enter()
+    {
+        int updater = StripedCounter.cellOfCurrentThread();
+        updaters.incrementAndGet( updater );
+        if ( retired )
+        {
+            updaters.decrementAndGet( updater );
+            return -1;
+        }
+        return updater;
+    }
+
+    private void exit( int updater )
+    {
+        updaters.decrementAndGet( updater );
+    }
+
+    @Override
+    public void retire()
+    {
+        retired = true;
+        awaitRetired();
+    }
+
+    private void awaitRetired()
+    {
+        while ( !retired )
+        {
+            Thread.yield();
+        }
+        // An update that registers after this state got retired backs out without changing anything, so once a
+        // cell has been seen at zero, it has no more updates to wait for.
+        for ( int i = 0; i < updaters.length(); i += StripedCounter.CELL_SPACING )
+        {
+            while ( updaters.get( i ) != 0 )
+            {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    public CountsTrackerState beginRotation()
+    {
+        return new ConcurrentCountsTrackerState( store, this );
+    }
+
+    @Override
+    public CountsTrackerState completeRotation( SortedKeyValueStore<CountsKey, CopyableDoubleLongRegister> store )
     {
-        writeRegister( indexSampleKey ).write( unique, size );
+        // share the changes rather than copy them, since updates may still be going into this state
+        return new ConcurrentCountsTrackerState( store, null, counts, unpackedCounts, samples );
     }
 
-    private long readCount( CountsKey key )
+    private long readCount( long packedKey, CountsKey key )
     {
         /*
          * no need to copy values in the state since we delegate the caching to the page cache in CountStore.get(key)
          * moreover it will be faster to sort entries in the state if we do not add extra value when reading there
          * (see Merger)
          */
-        final AtomicLong count = counts.get( key );
+        StripedCounter count = counter( packedKey, key );
         if ( count != null )
         {
-            return count.get();
+            return count.sum();
         }
 
         final DoubleLongRegister value = Registers.newDoubleLongRegister();
-        store.get( key, value );
+        store.get( key == null ? unpack( packedKey ) : key, value );
         return value.readSecond();
     }
 
-    private long incrementCount( CountsKey key, long delta )
+    /** The counter of the key in this state, or the closest state below it that has one. */
+    private StripedCounter counter( long packedKey, CountsKey key )
+    {
+        StripedCounter count = key == null ? counts.get( packedKey ) : unpackedCounts.get( key );
+        if ( count == null && below != null )
+        {
+            return below.counter( packedKey, key );
+        }
+        return count;
+    }
+
+    private void incrementCount( long packedKey, CountsKey key, long delta )
     {
-        AtomicLong count = counts.get( key );
+        StripedCounter count = key == null ? counts.get( packedKey ) : unpackedCounts.get( key );
         if ( count == null )
         {
-            final DoubleLongRegister value = Registers.newDoubleLongRegister();
-            store.get( key, value );
-            AtomicLong proposal = new AtomicLong( value.readSecond() );
-            count = counts.putIfAbsent( key, proposal );
+            awaitBelow();
+            StripedCounter proposal = new StripedCounter( readCount( packedKey, key ), counterInflationBudget );
+            count = key == null ? counts.putIfAbsent( packedKey, proposal ) : unpackedCounts.putIfAbsent( key, proposal );
             if ( count == null )
             {
                 count = proposal;
             }
         }
-        return count.addAndGet( delta );
+        count.add( delta );
     }
 
-    private void readIntoRegister( CountsKey key, DoubleLongRegister target )
+    /** New changes build on the values below, which must not change anymore. */
+    private void awaitBelow()
+    {
+        if ( below != null )
+        {
+            below.awaitRetired();
+        }
+    }
+
+    private void readIntoRegister( CountsKey key, CopyableDoubleLongRegister target )
     {
         CopyableDoubleLongRegister sample = samples.get( key );
-        if ( sample == null )
+        if ( sample != null )
         {
-            store.get( key, target );
+            sample.copyTo( target );
+        }
+        else if ( below != null )
+        {
+            below.readIntoRegister( key, target );
         }
         else
         {
-            sample.copyTo( target );
+            store.get( key, target );
         }
     }
 
@@ -178,8 +377,9 @@ class ConcurrentCountsTrackerState implements CountsTrackerState
         CopyableDoubleLongRegister sample = samples.get( key );
         if ( sample == null )
         {
+            awaitBelow();
             sample = ConcurrentRegisters.OptimisticRead.newDoubleLongRegister();
-            store.get( key, sample );
+            readIntoRegister( key, sample );
             CopyableDoubleLongRegister previous = samples.putIfAbsent( key, sample );
             return previous == null ? sample : previous;
         }
@@ -205,10 +405,36 @@ class ConcurrentCountsTrackerState implements CountsTrackerState
         return store.newWriter( file, lastCommittedTxId );
     }
 
+    @Override
+    public SortedKeyValueStore<CountsKey, CopyableDoubleLongRegister> updateInPlace( File deltaLog,
+                                                                                    long lastCommittedTxId )
+            throws IOException
+    {
+        Update<CountsKey>[] updates = sortedUpdates();
+        // past this point rewriting the whole file costs about the same, and keeps the other file from going stale
+        if ( updates.length > store.totalRecordsStored() / 2 )
+        {
+            return null;
+        }
+        SortedKeyValueStore<CountsKey, CopyableDoubleLongRegister>.InPlaceUpdate inPlace =
+                store.newInPlaceUpdate( lastCommittedTxId, Registers.newDoubleLongRegister() );
+        CopyableDoubleLongRegister register = Registers.newDoubleLongRegister();
+        for ( Update<CountsKey> update : updates )
+        {
+            update.writeTo( register );
+            inPlace.visit( update.key, register );
+            if ( !inPlace.isApplicable() )
+            {
+                return null;
+            }
+        }
+        return inPlace.apply( deltaLog );
+    }
+
     @Override
     public void accept( KeyValueRecordVisitor<CountsKey, CopyableDoubleLongRegister> visitor )
     {
-        try ( Merger<CountsKey> merger = new Merger<>( visitor, sortedUpdates( counts, samples ) ) )
+        try ( Merger<CountsKey> merger = new Merger<>( visitor, sortedUpdates() ) )
         {
             store.accept( merger, Registers.newDoubleLongRegister() );
         }
@@ -220,45 +446,74 @@ class ConcurrentCountsTrackerState implements CountsTrackerState
         store.close();
     }
 
-    private static Update<CountsKey>[] sortedUpdates( ConcurrentMap<CountsKey, AtomicLong> singleUpdates,
-                                                    ConcurrentMap<CountsKey, CopyableDoubleLongRegister> doubleUpdates )
+    static long nodeKeyBits( int labelId )
     {
-        int singleSize = singleUpdates.size();
-        int doubleSize = doubleUpdates.size();
-
-        @SuppressWarnings( "unchecked" )
-        Update<CountsKey>[] result = new Update[singleSize + doubleSize];
+        return labelId & 0xFFFFFFFFL;
+    }
 
-        Iterator<Map.Entry<CountsKey, AtomicLong>> singleIterator = singleUpdates.entrySet().iterator();
-        for ( int i = 0; i < singleSize; i++ )
+    /** The ids packed into a long, or {@link #UNPACKED} if any of them is too large for that. */
+    static long relationshipKeyBits( int startLabelId, int typeId, int endLabelId )
+    {
+        // shift the ids up by one, so that the ANY token ids, which are -1, fit as well
+        long start = startLabelId + 1L, type = typeId + 1L, end = endLabelId + 1L;
+        if ( start < 0 || start >= TOKEN_MASK || type < 0 || type >= TOKEN_MASK || end < 0 || end >= TOKEN_MASK )
         {
-            if ( !singleIterator.hasNext() )
-            {
-                throw new ConcurrentModificationException( "fewer entries than expected" );
-            }
-            result[i] = Update.fromSingleLongEntry( singleIterator.next() );
+            return UNPACKED;
         }
-        if ( singleIterator.hasNext() )
+        return RELATIONSHIP_KEY | start << (2 * TOKEN_BITS) | type << TOKEN_BITS | end;
+    }
+
+    static CountsKey unpack( long packedKey )
+    {
+        if ( (packedKey & RELATIONSHIP_KEY) == 0 )
         {
-            throw new ConcurrentModificationException( "more entries than expected" );
+            return nodeKey( (int) packedKey );
         }
+        return relationshipKey( (int) ((packedKey >>> (2 * TOKEN_BITS)) & TOKEN_MASK) - 1,
+                                (int) ((packedKey >>> TOKEN_BITS) & TOKEN_MASK) - 1,
+                                (int) (packedKey & TOKEN_MASK) - 1 );
+    }
 
-        Iterator<Map.Entry<CountsKey, CopyableDoubleLongRegister>> doubleIterator = doubleUpdates.entrySet().iterator();
-        for ( int i = singleSize; i < result.length; i++ )
+    /**
+     * The changes of this state and the states below it, sorted by key, where changes higher up hide the ones
+     * below them for the same key.
+     */
+    private Update<CountsKey>[] sortedUpdates()
+    {
+        final List<Update<CountsKey>> updates = new ArrayList<>();
+        for ( ConcurrentCountsTrackerState state = this; state != null; state = state.below )
         {
-            if ( !doubleIterator.hasNext() )
+            state.counts.visitEntries( new PrimitiveLongObjectVisitor<StripedCounter>()
+            {
+                @Override
+                public void visited( long key, StripedCounter count )
+                {
+                    updates.add( new Update<>( unpack( key ), 0, count.sum() ) );
+                }
+            } );
+            for ( Map.Entry<CountsKey, StripedCounter> entry : state.unpackedCounts.entrySet() )
+            {
+                updates.add( new Update<>( entry.getKey(), 0, entry.getValue().sum() ) );
+            }
+            for ( Map.Entry<CountsKey, CopyableDoubleLongRegister> entry : state.samples.entrySet() )
             {
-                throw new ConcurrentModificationException( "fewer entries than expected" );
+                updates.add( Update.fromDoubleLongEntry( entry ) );
             }
-            result[i] = Update.fromDoubleLongEntry( doubleIterator.next() );
         }
-        if ( doubleIterator.hasNext() )
+
+        // the sort is stable, so the first update of each key is the one from the highest state
+        Collections.sort( updates );
+        List<Update<CountsKey>> result = new ArrayList<>( updates.size() );
+        for ( Update<CountsKey> update : updates )
         {
-            throw new ConcurrentModificationException( "more entries than expected" );
+            if ( result.isEmpty() || result.get( result.size() - 1 ).compareTo( update ) != 0 )
+            {
+                result.add( update );
+            }
         }
-
-        Arrays.sort( result );
-        return result;
+        @SuppressWarnings( "unchecked" )
+        Update<CountsKey>[] array = result.toArray( new Update[result.size()] );
+        return array;
     }
 
     private static final class Merger<K extends Comparable<K>>
@@ -322,11 +577,6 @@ class ConcurrentCountsTrackerState implements CountsTrackerState
         final long first;
         final long second;
 
-        static <K extends Comparable<K>> Update<K> fromSingleLongEntry( Map.Entry<K, AtomicLong> entry )
-        {
-            return new Update<>( entry.getKey(), 0, entry.getValue().longValue() );
-        }
-
         static <K extends Comparable<K>> Update<K> fromDoubleLongEntry( Map.Entry<K, CopyableDoubleLongRegister> entry )
         {
             // read out atomically in case the entry value is a concurrent register
@@ -26,6 +26,9 @@ import org.neo4j.io.pagecache.PageCursor;
 import org.neo4j.kernel.impl.store.kvstore.KeyValueRecordSerializer;
 import org.neo4j.kernel.impl.store.kvstore.KeyValueRecordVisitor;
 import org.neo4j.register.Register.CopyableDoubleLongRegister;
+import org.neo4j.register.Register.DoubleLongRegister;
+import org.neo4j.register.Registers;
+
 import static org.neo4j.kernel.impl.store.counts.CountsKey.indexCountsKey;
 import static org.neo4j.kernel.impl.store.counts.CountsKey.indexSampleKey;
 import static org.neo4j.kernel.impl.store.counts.CountsKey.nodeKey;
@@ -225,4 +228,56 @@ public final class CountsRecordSerializer implements KeyValueRecordSerializer<Co
     {
         valueRegister.write( DEFAULT_FIRST_VALUE, DEFAULT_SECOND_VALUE );
     }
+
+    @Override
+    public boolean isDefaultValue( CopyableDoubleLongRegister valueRegister )
+    {
+        return valueRegister.hasValues( DEFAULT_FIRST_VALUE, DEFAULT_SECOND_VALUE );
+    }
+
+    @Override
+    public void writeRecord( CountsKey key, CopyableDoubleLongRegister valueRegister, ByteBuffer target )
+    {
+        int one = 0, two = 0, three;
+        switch ( key.recordType() )
+        {
+            case ENTITY_NODE:
+                three = ((CountsKey.NodeKey) key).labelId();
+                break;
+
+            case ENTITY_RELATIONSHIP:
+                CountsKey.RelationshipKey relationshipKey = (CountsKey.RelationshipKey) key;
+                one = relationshipKey.startLabelId();
+                two = relationshipKey.typeId();
+                three = relationshipKey.endLabelId();
+                break;
+
+            case INDEX_COUNTS:
+            case INDEX_SAMPLE:
+                CountsKey.IndexKey indexKey = (CountsKey.IndexKey) key;
+                two = indexKey.propertyKeyId();
+                three = indexKey.labelId();
+                break;
+
+            default:
+                throw new IllegalArgumentException( "Can not write a record for key: " + key );
+        }
+        DoubleLongRegister value = Registers.newDoubleLongRegister();
+        valueRegister.copyTo( value );
+
+        // write type
+        target.put( key.recordType().code );
+
+        // write key
+        target.put( (byte) 0 ); // skip unused byte
+        target.putInt( one );
+        target.put( (byte) 0 ); // skip unused byte
+        target.putInt( two );
+        target.put( (byte) 0 ); // skip unused byte
+        target.putInt( three );
+
+        // write value
+        target.putLong( value.readFirst() );
+        target.putLong( value.readSecond() );
+    }
 }
@@ -28,6 +28,7 @@ import org.neo4j.io.pagecache.PagedFile;
 import org.neo4j.kernel.impl.store.UnderlyingStorageException;
 import org.neo4j.kernel.impl.store.kvstore.KeyValueRecordVisitor;
 import org.neo4j.kernel.impl.store.kvstore.SortedKeyValueStore;
+import org.neo4j.kernel.impl.store.kvstore.SortedKeyValueStoreDeltaLog;
 import org.neo4j.kernel.impl.store.kvstore.SortedKeyValueStoreHeader;
 import org.neo4j.register.Register.CopyableDoubleLongRegister;
 import org.neo4j.register.Registers;
@@ -46,6 +47,12 @@ public class CountsStore extends SortedKeyValueStore<CountsKey, CopyableDoubleLo
         super( fs, pageCache, file, pages, header, RECORD_SERIALIZER, RECORD_SIZE, WRITER_FACTORY );
     }
 
+    @Override
+    protected CountsStore newStore( PagedFile pages, SortedKeyValueStoreHeader header )
+    {
+        return new CountsStore( fs(), pageCache(), file(), pages, header );
+    }
+
     public static void createEmpty( PageCache pageCache, File storeFile, SortedKeyValueStoreHeader header )
     {
         try
@@ -104,9 +111,22 @@ public class CountsStore extends SortedKeyValueStore<CountsKey, CopyableDoubleLo
         }
     }
 
+    /**
+     * Finishes an in place update of a counts store that was interrupted, if the given delta log is there.
+     */
+    public static void recoverInPlaceUpdate( FileSystemAbstraction fs, PageCache pageCache, File deltaLog )
+            throws IOException
+    {
+        SortedKeyValueStoreDeltaLog.recover( fs, pageCache, deltaLog, pageSize( pageCache ) );
+    }
+
     private static PagedFile mapCountsStore( PageCache pageCache, File storeFile ) throws IOException
     {
-        int pageSize = pageCache.pageSize() - (pageCache.pageSize() % RECORD_SIZE);
-        return pageCache.map( storeFile, pageSize );
+        return pageCache.map( storeFile, pageSize( pageCache ) );
+    }
+
+    private static int pageSize( PageCache pageCache )
+    {
+        return pageCache.pageSize() - (pageCache.pageSize() % RECORD_SIZE);
     }
 }
@@ -21,14 +21,11 @@ package org.neo4j.kernel.impl.store.counts;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.io.pagecache.PageCache;
 import org.neo4j.kernel.impl.api.CountsAccessor;
 import org.neo4j.kernel.impl.api.CountsVisitor;
-import org.neo4j.kernel.impl.locking.LockWrapper;
 import org.neo4j.kernel.impl.store.UnderlyingStorageException;
 import org.neo4j.kernel.impl.store.counts.CountsKey.IndexCountsKey;
 import org.neo4j.kernel.impl.store.kvstore.KeyValueRecordVisitor;
@@ -39,8 +36,6 @@ import org.neo4j.register.Registers;
 
 import static org.neo4j.kernel.impl.store.counts.CountsKey.indexCountsKey;
 import static org.neo4j.kernel.impl.store.counts.CountsKey.indexSampleKey;
-import static org.neo4j.kernel.impl.store.counts.CountsKey.nodeKey;
-import static org.neo4j.kernel.impl.store.counts.CountsKey.relationshipKey;
 import static org.neo4j.kernel.impl.store.counts.CountsStore.RECORD_SIZE;
 import static org.neo4j.kernel.impl.store.kvstore.SortedKeyValueStoreHeader.BASE_MINOR_VERSION;
 import static org.neo4j.kernel.impl.store.kvstore.SortedKeyValueStoreHeader.with;
@@ -48,23 +43,39 @@ import static org.neo4j.kernel.impl.transaction.log.TransactionIdStore.BASE_TX_I
 
 /**
  * {@link CountsTracker} maintains two files, the {@link #alphaFile} and the {@link #betaFile} that it rotates between.
- * {@link #updateLock} is used to ensure that no updates happen while we rotate from one file to another. Reads are
- * still ok though, they just read whatever the current state is. The state is assigned atomically at the end of
- * rotation.
+ * Neither reads nor updates take any locks, they just use whatever the current state is. Rotation puts a new state on
+ * top of the current one, so that updates can go on while the current one is written to the next file, and then
+ * replaces both with a state on top of that file. The states are assigned atomically, and a state is only written out
+ * once the updates that were in progress in it have finished, see {@link CountsTrackerState#retire()}. Only
+ * rotations are serialized, by the {@link #rotationLock}.
+ *
+ * A rotation that only changes counts that already have a record in the current file, which is the common case once
+ * the labels and types of a database are in use, overwrites those records in place instead of writing the whole
+ * other file. The records are logged to the {@link #deltaFile} first, which is replayed on startup if the rotation
+ * was interrupted.
  */
 public class CountsTracker implements CountsVisitor.Visitable, AutoCloseable, CountsAccessor
 {
     public static final String STORE_DESCRIPTOR = SortedKeyValueStore.class.getSimpleName();
 
-    public static final String ALPHA = ".alpha", BETA = ".beta";
-    private final File alphaFile, betaFile;
-    private final ReadWriteLock updateLock = new ReentrantReadWriteLock( /*fair=*/true );
+    public static final String ALPHA = ".alpha", BETA = ".beta", DELTA = ".delta";
+    private final File alphaFile, betaFile, deltaFile;
+    private final Object rotationLock = new Object();
     private volatile CountsTrackerState state;
 
     public CountsTracker( FileSystemAbstraction fs, PageCache pageCache, File storeFileBase, long neoStoreTxId )
     {
         this.alphaFile = storeFile( storeFileBase, ALPHA );
         this.betaFile = storeFile( storeFileBase, BETA );
+        this.deltaFile = storeFile( storeFileBase, DELTA );
+        try
+        {
+            CountsStore.recoverInPlaceUpdate( fs, pageCache, deltaFile );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( e );
+        }
         CountsStore store = openStore( fs, pageCache, this.alphaFile, this.betaFile );
         if ( store.lastTxId() < neoStoreTxId )
         {
@@ -187,38 +198,40 @@ public class CountsTracker implements CountsVisitor.Visitable, AutoCloseable, Co
     @Override
     public long nodeCount( int labelId )
     {
-        return state.nodeCount( nodeKey( labelId ) );
+        return state.nodeCount( labelId );
     }
 
     @Override
     public void incrementNodeCount( int labelId, long delta )
     {
-        try ( LockWrapper _ = new LockWrapper( updateLock.readLock() ) )
+        CountsTrackerState state;
+        do
         {
-            CountsKey.NodeKey key = nodeKey( labelId );
-            state.incrementNodeCount( key, delta );
-            long value = state.nodeCount( key );
-            assert value >= 0 : String.format( "incrementNodeCount(key=%s, delta=%d) -> value=%d", key, delta, value );
+            state = this.state;
         }
+        while ( !state.incrementNodeCount( labelId, delta ) );
+        assert state.nodeCount( labelId ) >= 0 : String.format( "incrementNodeCount(labelId=%d, delta=%d) -> value=%d",
+                labelId, delta, state.nodeCount( labelId ) );
     }
 
     @Override
     public long relationshipCount( int startLabelId, int typeId, int endLabelId )
     {
-        return state.relationshipCount( relationshipKey( startLabelId, typeId, endLabelId ) );
+        return state.relationshipCount( startLabelId, typeId, endLabelId );
     }
 
     @Override
     public void incrementRelationshipCount( int startLabelId, int typeId, int endLabelId, long delta )
     {
-            try ( LockWrapper _ = new LockWrapper( updateLock.readLock() ) )
-            {
-                CountsKey.RelationshipKey key = relationshipKey( startLabelId, typeId, endLabelId );
-                state.incrementRelationshipCount( key, delta );
-                long value = state.relationshipCount( key );
-                assert value >= 0 :
-                        String.format( "incrementRelationshipCount(key=%s, delta=%d) -> value=%d", key, delta, value );
-            }
+        CountsTrackerState state;
+        do
+        {
+            state = this.state;
+        }
+        while ( !state.incrementRelationshipCount( startLabelId, typeId, endLabelId, delta ) );
+        assert state.relationshipCount( startLabelId, typeId, endLabelId ) >= 0 : String.format(
+                "incrementRelationshipCount(startLabelId=%d, typeId=%d, endLabelId=%d, delta=%d) -> value=%d",
+                startLabelId, typeId, endLabelId, delta, state.relationshipCount( startLabelId, typeId, endLabelId ) );
     }
 
     @Override
@@ -238,34 +251,34 @@ public class CountsTracker implements CountsVisitor.Visitable, AutoCloseable, Co
     @Override
     public void replaceIndexUpdateAndSize( int labelId, int propertyKeyId, long updates, long size )
     {
-        try ( LockWrapper _ = new LockWrapper( updateLock.readLock() ) )
+        IndexCountsKey key = indexCountsKey( labelId, propertyKeyId );
+        assert updates >= 0 && size >= 0 :
+                String.format( "replaceIndexSize(key=%s, updates=%d, size=%d)", key, updates, size );
+        while ( !state.replaceIndexUpdatesAndSize( key, updates, size ) )
         {
-            IndexCountsKey key = indexCountsKey( labelId, propertyKeyId );
-            assert updates >= 0 && size >= 0 :
-                    String.format( "replaceIndexSize(key=%s, updates=%d, size=%d)", key, updates, size );
-            state.replaceIndexUpdatesAndSize( key, updates, size );
+            // retry on the state that replaced the one we tried
         }
     }
 
     @Override
     public void incrementIndexUpdates( int labelId, int propertyKeyId, long delta )
     {
-        try ( LockWrapper _ = new LockWrapper( updateLock.readLock() ) )
+        IndexCountsKey key = indexCountsKey( labelId, propertyKeyId );
+        assert delta >= 0 : String.format( "incrementIndexUpdates(key=%s, delta=%d)", key, delta );
+        while ( !state.incrementIndexUpdates( key, delta ) )
         {
-            IndexCountsKey key = indexCountsKey( labelId, propertyKeyId );
-            assert delta >= 0 : String.format( "incrementIndexUpdates(key=%s, delta=%d)", key, delta );
-            state.incrementIndexUpdates( key, delta );
+            // retry on the state that replaced the one we tried
         }
     }
 
     @Override
     public void replaceIndexSample( int labelId, int propertyKeyId, long unique, long size )
     {
-        try ( LockWrapper _ = new LockWrapper( updateLock.readLock() ) )
+        CountsKey.IndexSampleKey key = indexSampleKey( labelId, propertyKeyId );
+        assert unique >= 0 && size >= 0 && unique <= size : String.format( "replaceIndexSample(key=%s, unique=%d, size=%d)", key, unique, size );
+        while ( !state.replaceIndexSample( key, unique, size ) )
         {
-            CountsKey.IndexSampleKey key = indexSampleKey( labelId, propertyKeyId );
-            assert unique >= 0 && size >= 0 && unique <= size : String.format( "replaceIndexSample(key=%s, unique=%d, size=%d)", key, unique, size );
-            state.replaceIndexSample( key, unique, size );
+            // retry on the state that replaced the one we tried
         }
     }
 
@@ -302,19 +315,31 @@ public class CountsTracker implements CountsVisitor.Visitable, AutoCloseable, Co
 
     public void rotate( long lastCommittedTxId ) throws IOException
     {
-        try ( LockWrapper _ = new LockWrapper( updateLock.writeLock() ) )
+        synchronized ( rotationLock )
         {
             CountsTrackerState state = this.state;
             if ( state.hasChanges() || state.lastTxId() != lastCommittedTxId )
             {
-                // select the next file, and create a writer for it
-                try ( CountsStore.Writer<CountsKey,CopyableDoubleLongRegister> writer =
-                              nextWriter( state, lastCommittedTxId ) )
+                // let updates go on top of the current state, and wait for the ones still in it, so it stays put
+                CountsTrackerState rotating = state.beginRotation();
+                this.state = rotating;
+                state.retire();
+                SortedKeyValueStore<CountsKey,CopyableDoubleLongRegister> store =
+                        state.updateInPlace( deltaFile, lastCommittedTxId );
+                if ( store == null )
                 {
-                    state.accept( writer );
-                    // replaceSecond the old store with the
-                    this.state = new ConcurrentCountsTrackerState( writer.openForReading() );
+                    // select the next file, and create a writer for it
+                    try ( CountsStore.Writer<CountsKey,CopyableDoubleLongRegister> writer =
+                                  nextWriter( state, lastCommittedTxId ) )
+                    {
+                        state.accept( writer );
+                        store = writer.openForReading();
+                    }
                 }
+                // replace the old store with the new one, under the changes made since we started
+                this.state = rotating.completeRotation( store );
+                // no update may be reading from the old store when we close it
+                rotating.retire();
                 // close the old store
                 state.close();
             }
@@ -25,41 +25,71 @@ import java.io.IOException;
 
 import org.neo4j.kernel.impl.store.counts.CountsKey.IndexCountsKey;
 import org.neo4j.kernel.impl.store.counts.CountsKey.IndexSampleKey;
-import org.neo4j.kernel.impl.store.counts.CountsKey.NodeKey;
-import org.neo4j.kernel.impl.store.counts.CountsKey.RelationshipKey;
 import org.neo4j.kernel.impl.store.kvstore.KeyValueRecordVisitor;
 import org.neo4j.kernel.impl.store.kvstore.SortedKeyValueStore;
 import org.neo4j.register.Register.CopyableDoubleLongRegister;
 import org.neo4j.register.Register.DoubleLongRegister;
 
+/**
+ * The counts as seen by a {@link CountsTracker}: a store file with changes on top of it.
+ *
+ * Updates return false when they were not applied because the state has been {@link #retire() retired}, and should
+ * then be retried on the state that replaced it.
+ */
 interface CountsTrackerState extends Closeable
 {
     long lastTxId();
 
     boolean hasChanges();
 
-    long nodeCount( NodeKey nodeKey );
+    long nodeCount( int labelId );
 
-    long relationshipCount( RelationshipKey relationshipKey );
+    long relationshipCount( int startLabelId, int typeId, int endLabelId );
 
     void indexUpdatesAndSize( IndexCountsKey indexCountsKey, DoubleLongRegister target );
 
     void indexSample( IndexSampleKey indexSampleKey, DoubleLongRegister target );
 
-    void incrementNodeCount( NodeKey nodeKey, long delta );
+    boolean incrementNodeCount( int labelId, long delta );
+
+    boolean incrementRelationshipCount( int startLabelId, int typeId, int endLabelId, long delta );
 
-    void incrementRelationshipCount( RelationshipKey relationshipKey, long delta );
+    boolean replaceIndexUpdatesAndSize( IndexCountsKey indexCountsKey, long updates, long size );
 
-    void replaceIndexUpdatesAndSize( IndexCountsKey indexCountsKey, long updates, long size );
+    boolean incrementIndexUpdates( IndexCountsKey indexCountsKey, long delta );
 
-    void incrementIndexUpdates( IndexCountsKey indexCountsKey, long delta );
+    boolean replaceIndexSample( IndexSampleKey indexSampleKey, long unique, long size );
 
-    void replaceIndexSample( IndexSampleKey indexSampleKey, long unique, long size );
+    /**
+     * A state with no changes of its own yet, on top of this one, to take the updates while this state is written
+     * to a new store file.
+     */
+    CountsTrackerState beginRotation();
+
+    /**
+     * A state with the changes of this one on top of the given store, which holds everything below this state.
+     */
+    CountsTrackerState completeRotation( SortedKeyValueStore<CountsKey, CopyableDoubleLongRegister> store );
+
+    /**
+     * Refuses any further updates, and waits for the updates that are in progress to finish. Call this after the
+     * state that replaces this one has been published.
+     */
+    void retire();
 
     File storeFile();
 
     SortedKeyValueStore.Writer<CountsKey, CopyableDoubleLongRegister> newWriter( File file, long lastCommittedTxId )
             throws IOException;
 
+    /**
+     * Writes the changes of this state, and of the states below it, into the records of the current store file, if
+     * they all have one already, and there are few enough of them to make that worth it.
+     *
+     * @return a store over the updated file, or null if the changes have to be written to a new file instead.
+     */
+    SortedKeyValueStore<CountsKey, CopyableDoubleLongRegister> updateInPlace( File deltaLog, long lastCommittedTxId )
+            throws IOException;
+
     void accept( KeyValueRecordVisitor<CountsKey, CopyableDoubleLongRegister> visitor );
 }
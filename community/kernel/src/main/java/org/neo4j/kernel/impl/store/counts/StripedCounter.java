@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store.counts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A counter that many threads can add to at the same time, in the spirit of the LongAdder of Java 8. It starts out
+ * as a single value, and only spreads over a number of cells, one per stripe of threads, once additions start to
+ * collide. Most counters never see any contention, and stay small. Spreading takes
+ * {@code STRIPES * CELL_SPACING} longs, so the owner of the counters hands them a shared budget of how many may
+ * spread. Counters that collide once the budget is spent keep adding to their single value.
+ *
+ * The {@link #sum()} is exact when nothing is being added concurrently, which is what rotation of the counts store
+ * relies on.
+ */
+final class StripedCounter
+{
+    static final int STRIPES = stripes();
+    /** Number of longs from one cell to the next, to keep them on separate cache lines. */
+    static final int CELL_SPACING = 8;
+    private static final int STRIPE_SHIFT = 64 - Integer.numberOfTrailingZeros( STRIPES );
+    private static final AtomicLongFieldUpdater<StripedCounter> BASE =
+            AtomicLongFieldUpdater.newUpdater( StripedCounter.class, "base" );
+
+    private final AtomicInteger inflationBudget;
+    private volatile long base;
+    private volatile AtomicLongArray cells;
+
+    /**
+     * @param initialValue the value to count from.
+     * @param inflationBudget how many more counters, sharing this budget, may spread over cells.
+     */
+    StripedCounter( long initialValue, AtomicInteger inflationBudget )
+    {
+        this.base = initialValue;
+        this.inflationBudget = inflationBudget;
+    }
+
+    void add( long delta )
+    {
+        AtomicLongArray cells = this.cells;
+        if ( cells == null )
+        {
+            long current = base;
+            if ( BASE.compareAndSet( this, current, current + delta ) )
+            {
+                return;
+            }
+            cells = inflate();
+            if ( cells == null )
+            {
+                BASE.getAndAdd( this, delta );
+                return;
+            }
+        }
+        cells.getAndAdd( cellOfCurrentThread(), delta );
+    }
+
+    long sum()
+    {
+        long sum = base;
+        AtomicLongArray cells = this.cells;
+        if ( cells != null )
+        {
+            for ( int i = 0; i < cells.length(); i += CELL_SPACING )
+            {
+                sum += cells.get( i );
+            }
+        }
+        return sum;
+    }
+
+    /** The cells to add to, or null if the budget doesn't allow this counter to spread. */
+    private AtomicLongArray inflate()
+    {
+        if ( inflationBudget.get() <= 0 )
+        {
+            return cells;
+        }
+        synchronized ( this )
+        {
+            if ( cells == null && takeFromBudget() )
+            {
+                cells = newCells();
+            }
+            return cells;
+        }
+    }
+
+    private boolean takeFromBudget()
+    {
+        int left;
+        do
+        {
+            left = inflationBudget.get();
+            if ( left <= 0 )
+            {
+                return false;
+            }
+        }
+        while ( !inflationBudget.compareAndSet( left, left - 1 ) );
+        return true;
+    }
+
+    /** An array with room for one padded cell per stripe. */
+    static AtomicLongArray newCells()
+    {
+        return new AtomicLongArray( STRIPES * CELL_SPACING );
+    }
+
+    /**
+     * The index of the cell, in an array from {@link #newCells()}, of the current thread. A thread always gets the
+     * same cell, and threads with consecutive ids get spread over different ones.
+     */
+    static int cellOfCurrentThread()
+    {
+        long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> STRIPE_SHIFT) * CELL_SPACING;
+    }
+
+    private static int stripes()
+    {
+        int wanted = Math.min( Runtime.getRuntime().availableProcessors() * 2, 64 );
+        return Math.max( Integer.highestOneBit( wanted - 1 ) << 1, 2 );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf( sum() );
+    }
+}
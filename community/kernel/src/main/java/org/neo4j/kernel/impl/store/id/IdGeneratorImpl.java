@@ -22,7 +22,8 @@ package org.neo4j.kernel.impl.store.id;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.neo4j.io.fs.FileSystemAbstraction;
@@ -63,6 +64,15 @@ import static org.neo4j.io.fs.FileUtils.truncateFile;
  * same file. There can only be one id generator instance per id generator file.
  * <p>
  * In case of disk/file I/O failure an <CODE>IOException</CODE> is thrown.
+ * <p>
+ * New high ids are handed out with a compare and swap on the high id, without
+ * taking the monitor of this generator, as long as there are no defragged ids
+ * around to reuse. Defragged ids are kept in primitive ring buffers, and full
+ * batches of freed ids are written to the end of the file outside of the
+ * monitor, so that threads allocating ids don't wait for the disk. The batch
+ * is written by the thread that filled it, so that thread does wait for the
+ * disk. A batch that is still waiting to be written when the generator is
+ * closed is written by {@link #close()}.
  */
 public class IdGeneratorImpl implements IdGenerator
 {
@@ -82,17 +92,25 @@ public class IdGeneratorImpl implements IdGenerator
     // total bytes read from file, used in writeIdBatch() and close()
     private long readPosition;
     // marks how much this session is allowed to read from previously released id batches.
-    private long maxReadPosition = HEADER_SIZE;
+    // Only moved forward by writers of id batches, holding the write lock.
+    private volatile long maxReadPosition = HEADER_SIZE;
     // used to calculate number of ids actually in use
     private long defraggedIdCount = -1;
 
     private final File fileName;
     private final FileSystemAbstraction fs;
-    private StoreChannel fileChannel = null;
+    private volatile StoreChannel fileChannel = null;
     // defragged ids read from file (freed in a previous session).
-    private final LinkedList<Long> idsReadFromFile = new LinkedList<>();
+    private final LongRingBuffer idsReadFromFile;
     // ids freed in this session that haven't been flushed to disk yet
-    private final LinkedList<Long> releasedIdList = new LinkedList<>();
+    private LongRingBuffer releasedIdList;
+    // full batches of freed ids, waiting to be written to the end of the file. Guarded by the monitor.
+    private final Deque<LongRingBuffer> pendingBatches = new ArrayDeque<>();
+    // Set whenever ids are made available for reuse, and cleared when looking for one finds none, always holding
+    // the monitor. While it is cleared, nextId() takes new high ids without the monitor.
+    private volatile boolean mayHaveDefraggedIds = true;
+    // Held while writing id batches to the end of the file. Taken before the monitor, never while holding it.
+    private final Object writeLock = new Object();
 
     private final long max;
     private final boolean aggressiveReuse;
@@ -135,6 +153,8 @@ public class IdGeneratorImpl implements IdGenerator
         this.max = max;
         this.fileName = fileName;
         this.grabSize = grabSize;
+        this.idsReadFromFile = new LongRingBuffer( grabSize );
+        this.releasedIdList = new LongRingBuffer( grabSize );
         initGenerator();
         this.highId.set( max( this.highId.get(), highId ) );
     }
@@ -151,25 +171,41 @@ public class IdGeneratorImpl implements IdGenerator
      * @throws IllegalStateException if this id generator has been closed
      */
     @Override
-    public synchronized long nextId()
+    public long nextId()
     {
         assertStillOpen();
-        long nextDefragId = nextIdFromDefragList();
-        if ( nextDefragId != -1 )
+        if ( mayHaveDefraggedIds )
         {
-            return nextDefragId;
+            synchronized ( this )
+            {
+                long nextDefragId = nextIdFromDefragList();
+                if ( nextDefragId != -1 )
+                {
+                    return nextDefragId;
+                }
+            }
         }
 
-        long id = highId.get();
-        if ( id == INTEGER_MINUS_ONE )
+        while ( true )
         {
-            // Skip the integer -1 (0xFFFFFFFF) because it represents
-            // special values, f.ex. the end of a relationships/property chain.
-            id = highId.incrementAndGet();
+            long current = highId.get();
+            if ( current == -1 )
+            {
+                throw new IllegalStateException( "Closed id generator " + fileName );
+            }
+            long id = current;
+            if ( id == INTEGER_MINUS_ONE )
+            {
+                // Skip the integer -1 (0xFFFFFFFF) because it represents
+                // special values, f.ex. the end of a relationships/property chain.
+                id++;
+            }
+            assertIdWithinCapacity( id );
+            if ( highId.compareAndSet( current, id + 1 ) )
+            {
+                return id;
+            }
         }
-        assertIdWithinCapacity( id );
-        highId.incrementAndGet();
-        return id;
     }
 
     private void assertIdWithinCapacity( long id )
@@ -189,24 +225,25 @@ public class IdGeneratorImpl implements IdGenerator
     {
         if ( aggressiveReuse )
         {
-            Long id = releasedIdList.poll();
-            if ( id != null )
+            long id = releasedIdList.poll();
+            if ( id != -1 )
             {
                 defraggedIdCount--;
                 return id;
             }
         }
 
-        if ( !idsReadFromFile.isEmpty() || canReadMoreIdBatches() )
+        while ( idsReadFromFile.isEmpty() && canReadMoreIdBatches() )
+        {
+            readIdBatch();
+        }
+        long id = idsReadFromFile.poll();
+        if ( id != -1 )
         {
-            if ( idsReadFromFile.isEmpty() )
-            {
-                readIdBatch();
-            }
-            long id = idsReadFromFile.removeFirst();
             defraggedIdCount--;
             return id;
         }
+        mayHaveDefraggedIds = false;
         return -1;
     }
 
@@ -242,8 +279,13 @@ public class IdGeneratorImpl implements IdGenerator
         System.arraycopy( tmpArray, 0, defragIds, 0, count );
 
         int sizeLeftForRange = size - count;
-        long start = highId.get();
-        setHighId( start + sizeLeftForRange );
+        long start;
+        do
+        {
+            start = highId.get();
+            assertIdWithinCapacity( start + sizeLeftForRange );
+        }
+        while ( !highId.compareAndSet( start, start + sizeLeftForRange ) );
         return new IdRange( defragIds, start, sizeLeftForRange );
     }
 
@@ -292,26 +334,60 @@ public class IdGeneratorImpl implements IdGenerator
      *            The id to be made available again
      */
     @Override
-    public synchronized void freeId( long id )
+    public void freeId( long id )
     {
         if ( id == INTEGER_MINUS_ONE )
         {
             return;
         }
 
-        if ( fileChannel == null )
+        synchronized ( this )
         {
-            throw new IllegalStateException( "Generator closed " + fileName );
+            if ( fileChannel == null )
+            {
+                throw new IllegalStateException( "Generator closed " + fileName );
+            }
+            if ( id < 0 || id >= highId.get() )
+            {
+                throw new IllegalArgumentException( "Illegal id[" + id + "], highId is " + highId.get() );
+            }
+            releasedIdList.add( id );
+            defraggedIdCount++;
+            if ( aggressiveReuse )
+            {
+                mayHaveDefraggedIds = true;
+            }
+            if ( releasedIdList.size() < grabSize )
+            {
+                return;
+            }
+            pendingBatches.add( releasedIdList );
+            releasedIdList = new LongRingBuffer( grabSize );
         }
-        if ( id < 0 || id >= highId.get() )
+
+        // Write the full batch outside of the monitor, so that allocating ids doesn't wait for it. Another thread,
+        // or close(), may have written it already.
+        synchronized ( writeLock )
         {
-            throw new IllegalArgumentException( "Illegal id[" + id + "], highId is " + highId.get() );
+            writePendingBatches( ByteBuffer.allocate( grabSize*8 ) );
         }
-        releasedIdList.add( id );
-        defraggedIdCount++;
-        if ( releasedIdList.size() >= grabSize )
+    }
+
+    // must hold the write lock
+    private void writePendingBatches( ByteBuffer writeBuffer )
+    {
+        while ( true )
         {
-            writeIdBatch( ByteBuffer.allocate( grabSize*8 ) );
+            LongRingBuffer batch;
+            synchronized ( this )
+            {
+                batch = pendingBatches.poll();
+            }
+            if ( batch == null )
+            {
+                return;
+            }
+            writeIdBatch( batch, writeBuffer );
         }
     }
 
@@ -325,26 +401,34 @@ public class IdGeneratorImpl implements IdGenerator
      * since the highest returned id has been set to a negative value.
      */
     @Override
-    public synchronized void close()
+    public void close()
+    {
+        synchronized ( writeLock )
+        {
+            synchronized ( this )
+            {
+                closeGenerator();
+            }
+        }
+    }
+
+    private void closeGenerator()
     {
         if ( highId.get() == -1 )
         {
             return;
         }
 
-        // write out lists
+        // write out lists, starting with the full batches that the threads that freed them have not written yet
         ByteBuffer writeBuffer = ByteBuffer.allocate( grabSize*8 );
+        writePendingBatches( writeBuffer );
         if ( !releasedIdList.isEmpty() )
         {
-            writeIdBatch( writeBuffer );
+            writeIdBatch( releasedIdList, writeBuffer );
         }
         if ( !idsReadFromFile.isEmpty() )
         {
-            while ( !idsReadFromFile.isEmpty() )
-            {
-                releasedIdList.add( idsReadFromFile.removeFirst() );
-            }
-            writeIdBatch( writeBuffer );
+            writeIdBatch( idsReadFromFile, writeBuffer );
         }
 
         try
@@ -541,9 +625,18 @@ public class IdGeneratorImpl implements IdGenerator
             int howMuchToRead = (int) Math.min( grabSize*8, maxReadPosition-readPosition );
             ByteBuffer readBuffer = ByteBuffer.allocate( howMuchToRead );
 
-            fileChannel.position( readPosition );
-            int bytesRead = fileChannel.read( readBuffer );
-            assert fileChannel.position() <= maxReadPosition;
+            // Read at an explicit position, since id batches may be written to the end of the file concurrently
+            int bytesRead = 0;
+            while ( readBuffer.hasRemaining() )
+            {
+                int read = fileChannel.read( readBuffer, readPosition + bytesRead );
+                if ( read == -1 )
+                {
+                    break;
+                }
+                bytesRead += read;
+            }
+            assert readPosition + bytesRead <= maxReadPosition;
             readPosition += bytesRead;
             readBuffer.flip();
             assert (bytesRead % 8) == 0;
@@ -565,42 +658,28 @@ public class IdGeneratorImpl implements IdGenerator
         }
     }
 
-    // writes a batch of defragged ids to file
-    private void writeIdBatch( ByteBuffer writeBuffer )
+    // writes a batch of defragged ids to the end of the file, must hold the write lock
+    private void writeIdBatch( LongRingBuffer ids, ByteBuffer writeBuffer )
     {
-        // position at end
         try
         {
-            fileChannel.position( fileChannel.size() );
-            writeBuffer.clear();
-            while ( !releasedIdList.isEmpty() )
+            long position = fileChannel.size();
+            while ( !ids.isEmpty() )
             {
-                long id = releasedIdList.removeFirst();
-                if ( id == INTEGER_MINUS_ONE )
-                {
-                    continue;
-                }
-                writeBuffer.putLong( id );
-                if ( writeBuffer.position() == writeBuffer.capacity() )
-                {
-                    writeBuffer.flip();
-                    while ( writeBuffer.hasRemaining() )
-                    {
-                        fileChannel.write( writeBuffer );
-                    }
-                    writeBuffer.clear();
-                }
-            }
-            writeBuffer.flip();
-            while ( writeBuffer.hasRemaining() )
-            {
-                fileChannel.write( writeBuffer );
+                writeBuffer.clear();
+                ids.drainTo( writeBuffer, INTEGER_MINUS_ONE );
+                writeBuffer.flip();
+                int bytes = writeBuffer.remaining();
+                fileChannel.writeAll( writeBuffer, position );
+                position += bytes;
             }
-            // position for next readIdBatch
-            fileChannel.position( readPosition );
             if ( aggressiveReuse )
             {
-                maxReadPosition = fileChannel.size();
+                synchronized ( this )
+                {
+                    maxReadPosition = position;
+                    mayHaveDefraggedIds = true;
+                }
             }
         }
         catch ( IOException e )
@@ -617,17 +696,20 @@ public class IdGeneratorImpl implements IdGenerator
      * the id generator after being invoked.
      */
     // TODO make this a nice, cosy, reusable visitor instead?
-    public synchronized void dumpFreeIds()
+    public void dumpFreeIds()
     {
-        while ( canReadMoreIdBatches() )
+        synchronized ( this )
         {
-            readIdBatch();
-        }
-        for ( Long id : idsReadFromFile )
-        {
-            System.out.print( " " + id );
+            while ( canReadMoreIdBatches() )
+            {
+                readIdBatch();
+            }
+            for ( int i = 0; i < idsReadFromFile.size(); i++ )
+            {
+                System.out.print( " " + idsReadFromFile.get( i ) );
+            }
+            System.out.println( "\nNext free id: " + highId );
         }
-        System.out.println( "\nNext free id: " + highId );
         close();
     }
 
@@ -643,8 +725,9 @@ public class IdGeneratorImpl implements IdGenerator
         return defraggedIdCount;
     }
 
-    public void clearFreeIds()
+    public synchronized void clearFreeIds()
     {
+        pendingBatches.clear();
         releasedIdList.clear();
         idsReadFromFile.clear();
         defraggedIdCount = -1;
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store.id;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A first in, first out queue of primitive longs, kept in a ring that doubles in size when it fills up.
+ * Used to keep defragged ids, without boxing them or allocating list nodes. Not thread safe.
+ */
+class LongRingBuffer
+{
+    private long[] ring;
+    private int head;
+    private int size;
+
+    LongRingBuffer( int initialCapacity )
+    {
+        ring = new long[Math.max( Integer.highestOneBit( Math.max( initialCapacity, 1 ) - 1 ) << 1, 2 )];
+    }
+
+    void add( long value )
+    {
+        if ( size == ring.length )
+        {
+            grow();
+        }
+        ring[(head + size) & (ring.length - 1)] = value;
+        size++;
+    }
+
+    /**
+     * @return the oldest value in this queue, which is also removed from it, or -1 if the queue is empty.
+     */
+    long poll()
+    {
+        if ( size == 0 )
+        {
+            return -1;
+        }
+        long value = ring[head];
+        head = (head + 1) & (ring.length - 1);
+        size--;
+        return value;
+    }
+
+    /**
+     * @return the value at the given index, counted from the oldest value, without removing it.
+     */
+    long get( int index )
+    {
+        if ( index < 0 || index >= size )
+        {
+            throw new IndexOutOfBoundsException( "Index " + index + ", size " + size );
+        }
+        return ring[(head + index) & (ring.length - 1)];
+    }
+
+    /**
+     * Moves as many values as fits in the given buffer out of this queue, oldest first, skipping the given value.
+     *
+     * @return the number of values put in the buffer.
+     */
+    int drainTo( ByteBuffer buffer, long skipValue )
+    {
+        int count = 0;
+        while ( size > 0 && buffer.remaining() >= 8 )
+        {
+            long value = poll();
+            if ( value != skipValue )
+            {
+                buffer.putLong( value );
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    void clear()
+    {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow()
+    {
+        long[] grown = new long[ring.length << 1];
+        int firstPart = Math.min( size, ring.length - head );
+        System.arraycopy( ring, head, grown, 0, firstPart );
+        System.arraycopy( ring, 0, grown, firstPart, size - firstPart );
+        ring = grown;
+        head = 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        long[] values = new long[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            values[i] = get( i );
+        }
+        return Arrays.toString( values );
+    }
+}
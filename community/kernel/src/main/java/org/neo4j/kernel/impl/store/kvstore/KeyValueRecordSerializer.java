@@ -31,4 +31,14 @@ public interface KeyValueRecordSerializer<K extends Comparable<K>, VR>
     K readRecord( PageCursor cursor, int offset, VR valueRegister ) throws IOException;
 
     void writeDefaultValue( VR valueRegister );
+
+    /**
+     * Whether the value is the default one, which is the value of keys that have no record.
+     */
+    boolean isDefaultValue( VR valueRegister );
+
+    /**
+     * Writes a record, the same way it is laid out in the store, at the position of the buffer.
+     */
+    void writeRecord( K key, VR valueRegister, ByteBuffer target );
 }
@@ -86,6 +86,20 @@ public abstract class SortedKeyValueStore<K extends Comparable<K>, VR> implement
     }
 
     public void get( K key, VR value )
+    {
+        if ( findRecord( key, value ) == -1 )
+        {
+            recordSerializer.writeDefaultValue( value );
+        }
+    }
+
+    /**
+     * Looks up the record of the given key, reading its value into the register.
+     *
+     * @return the number of the record, counting the header records, or -1 if there is no record for the key, in
+     * which case the register holds no meaningful value.
+     */
+    private int findRecord( K key, VR value )
     {
         int min = header.headerRecords();
         int max = min + totalRecords - 1;
@@ -98,7 +112,7 @@ public abstract class SortedKeyValueStore<K extends Comparable<K>, VR> implement
                 int cmp = compareKeyAndReadValue( cursor, key, mid, value );
                 if ( cmp == 0 )
                 {
-                    return;
+                    return mid;
                 }
                 else if ( cmp < 0 )
                 {
@@ -114,7 +128,7 @@ public abstract class SortedKeyValueStore<K extends Comparable<K>, VR> implement
         {
             throw new UnderlyingStorageException( e );
         }
-        recordSerializer.writeDefaultValue( value );
+        return -1;
     }
 
     private int compareKeyAndReadValue( PageCursor cursor, K target, int record, VR count ) throws IOException
@@ -137,6 +151,16 @@ public abstract class SortedKeyValueStore<K extends Comparable<K>, VR> implement
         return file;
     }
 
+    protected FileSystemAbstraction fs()
+    {
+        return fs;
+    }
+
+    protected PageCache pageCache()
+    {
+        return pageCache;
+    }
+
     public long lastTxId()
     {
         return header.lastTxId();
@@ -193,9 +217,120 @@ public abstract class SortedKeyValueStore<K extends Comparable<K>, VR> implement
         return writerFactory.create( fs, pageCache, header, targetFile, lastCommittedTxId );
     }
 
+    /**
+     * Starts an update that overwrites the records of this store file in place, instead of writing a new file. This
+     * is only possible when every updated key already has a record in this file, and none of the updates remove it,
+     * so visiting any other update makes the update {@linkplain InPlaceUpdate#isApplicable() inapplicable}.
+     *
+     * @param scratch a register that the update may overwrite while it looks up records.
+     */
+    public InPlaceUpdate newInPlaceUpdate( long lastCommittedTxId, VR scratch )
+    {
+        return new InPlaceUpdate( lastCommittedTxId, scratch );
+    }
+
+    protected abstract SortedKeyValueStore<K, VR> newStore( PagedFile pages, SortedKeyValueStoreHeader header );
+
     public void close() throws IOException
     {
         pageCache.unmap( file );
     }
 
+    public final class InPlaceUpdate implements KeyValueRecordVisitor<K, VR>
+    {
+        private final long lastCommittedTxId;
+        private final VR scratch;
+        private ByteBuffer entries = ByteBuffer.allocate( 64 * (4 + recordSize) );
+        private boolean applicable = true;
+
+        private InPlaceUpdate( long lastCommittedTxId, VR scratch )
+        {
+            this.lastCommittedTxId = lastCommittedTxId;
+            this.scratch = scratch;
+        }
+
+        @Override
+        public void visit( K key, VR register )
+        {
+            if ( !applicable )
+            {
+                return;
+            }
+            int record;
+            if ( recordSerializer.isDefaultValue( register ) || (record = findRecord( key, scratch )) == -1 )
+            {
+                applicable = false;
+                return;
+            }
+            add( record ).putInt( record );
+            recordSerializer.writeRecord( key, register, entries );
+        }
+
+        private ByteBuffer add( int record )
+        {
+            if ( entries.remaining() < 4 + recordSize )
+            {
+                ByteBuffer grown = ByteBuffer.allocate( entries.capacity() * 2 );
+                entries.flip();
+                grown.put( entries );
+                entries = grown;
+            }
+            return entries;
+        }
+
+        /**
+         * Whether all the visited updates can be written in place.
+         */
+        public boolean isApplicable()
+        {
+            return applicable;
+        }
+
+        /**
+         * The number of records that the update overwrites, not counting the header.
+         */
+        public int changedRecords()
+        {
+            return entries.position() / (4 + recordSize);
+        }
+
+        /**
+         * Writes the visited updates, and a new header, into this store file, and opens the updated file as a new
+         * store. The records are written to the given log first, so that {@link SortedKeyValueStoreDeltaLog#recover}
+         * can finish the update if it is interrupted. This store stays open and keeps working while the records are
+         * being overwritten, since the records of the updated keys do not move.
+         */
+        public SortedKeyValueStore<K, VR> apply( File logFile ) throws IOException
+        {
+            if ( !applicable )
+            {
+                throw new IllegalStateException( "Can not update " + file + " in place" );
+            }
+            long minorVersion = lastCommittedTxId == header.lastTxId()
+                                ? header.minorVersion() + 1
+                                : SortedKeyValueStoreHeader.BASE_MINOR_VERSION;
+            SortedKeyValueStoreHeader newHeader = header.update( totalRecords, lastCommittedTxId, minorVersion );
+
+            ByteBuffer headerRecords = ByteBuffer.allocate( newHeader.headerRecords() * recordSize );
+            newHeader.write( headerRecords );
+            ByteBuffer log = ByteBuffer.allocate( newHeader.headerRecords() * (4 + recordSize) + entries.position() );
+            for ( int record = 0; record < newHeader.headerRecords(); record++ )
+            {
+                log.putInt( record );
+                log.put( headerRecords.array(), record * recordSize, recordSize );
+            }
+            entries.flip();
+            log.put( entries );
+            log.flip();
+
+            SortedKeyValueStoreDeltaLog deltaLog = SortedKeyValueStoreDeltaLog.of( file, header, newHeader,
+                    recordSize, log );
+            deltaLog.write( fs, logFile );
+            deltaLog.applyTo( pages );
+            pages.flush();
+            fs.deleteFile( logFile );
+
+            return newStore( pageCache.map( file, pages.pageSize() ), newHeader );
+        }
+    }
 }
@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store.kvstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import org.neo4j.helpers.UTF8;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+
+import static org.neo4j.io.pagecache.PagedFile.PF_EXCLUSIVE_LOCK;
+
+/**
+ * The records that an in place update of a {@link SortedKeyValueStore} is about to write, header records included,
+ * so that the update can be finished if it gets interrupted by a crash half way through.
+ *
+ * The log is forced to disk before any of the records are changed in the store file, and deleted when the changed
+ * pages have been flushed. A log that was not completely written before a crash fails its checksum, and is thrown
+ * away, since the store file was not touched yet then. Layout, with all numbers big endian:
+ *
+ * <pre>
+ * [name length: short][target file name: UTF-8]
+ * [from tx id: long][from minor version: long][to tx id: long][to minor version: long]
+ * [record size: int][number of records: int]
+ * ([record number: int][record: record size bytes])*
+ * [CRC32 of everything before it: long]
+ * </pre>
+ */
+public final class SortedKeyValueStoreDeltaLog
+{
+    private static final int FIXED_HEADER_SIZE = 2 + 8 + 8 + 8 + 8 + 4 + 4;
+
+    private final String targetFileName;
+    private final long fromTxId, fromMinorVersion, toTxId, toMinorVersion;
+    private final int recordSize;
+    private final int records;
+    private final ByteBuffer entries;
+
+    private SortedKeyValueStoreDeltaLog( String targetFileName, long fromTxId, long fromMinorVersion, long toTxId,
+                                         long toMinorVersion, int recordSize, int records, ByteBuffer entries )
+    {
+        this.targetFileName = targetFileName;
+        this.fromTxId = fromTxId;
+        this.fromMinorVersion = fromMinorVersion;
+        this.toTxId = toTxId;
+        this.toMinorVersion = toMinorVersion;
+        this.recordSize = recordSize;
+        this.records = records;
+        this.entries = entries;
+    }
+
+    /**
+     * @param entries the changed records, each one preceded by its record number, between the position and the
+     * limit of the buffer.
+     */
+    static SortedKeyValueStoreDeltaLog of( File targetFile, SortedKeyValueStoreHeader from,
+                                           SortedKeyValueStoreHeader to, int recordSize, ByteBuffer entries )
+    {
+        int records = entries.remaining() / (4 + recordSize);
+        return new SortedKeyValueStoreDeltaLog( targetFile.getName(), from.lastTxId(), from.minorVersion(),
+                to.lastTxId(), to.minorVersion(), recordSize, records, entries );
+    }
+
+    /**
+     * Writes the log, and forces it to disk.
+     */
+    void write( FileSystemAbstraction fs, File logFile ) throws IOException
+    {
+        byte[] name = UTF8.encode( targetFileName );
+        ByteBuffer buffer = ByteBuffer.allocate( name.length + FIXED_HEADER_SIZE + entries.remaining() + 8 );
+        buffer.putShort( (short) name.length );
+        buffer.put( name );
+        buffer.putLong( fromTxId );
+        buffer.putLong( fromMinorVersion );
+        buffer.putLong( toTxId );
+        buffer.putLong( toMinorVersion );
+        buffer.putInt( recordSize );
+        buffer.putInt( records );
+        buffer.put( entries.duplicate() );
+        buffer.putLong( checksum( buffer.array(), buffer.position() ) );
+        buffer.flip();
+
+        try ( StoreChannel channel = fs.open( logFile, "rw" ) )
+        {
+            channel.truncate( 0 );
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer );
+            }
+            channel.force( false );
+        }
+    }
+
+    /**
+     * Reads a log, or returns null if it was not completely written.
+     */
+    static SortedKeyValueStoreDeltaLog read( FileSystemAbstraction fs, File logFile ) throws IOException
+    {
+        ByteBuffer buffer;
+        try ( StoreChannel channel = fs.open( logFile, "r" ) )
+        {
+            long size = channel.size();
+            if ( size < FIXED_HEADER_SIZE + 8 || size > Integer.MAX_VALUE )
+            {
+                return null;
+            }
+            buffer = ByteBuffer.allocate( (int) size );
+            while ( buffer.hasRemaining() && channel.read( buffer ) != -1 )
+            {
+                // keep reading until the buffer is full
+            }
+        }
+        if ( buffer.hasRemaining() )
+        {
+            return null;
+        }
+        buffer.flip();
+        int checksummed = buffer.limit() - 8;
+        if ( buffer.getLong( checksummed ) != checksum( buffer.array(), checksummed ) )
+        {
+            return null;
+        }
+
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get( name );
+        long fromTxId = buffer.getLong(), fromMinorVersion = buffer.getLong();
+        long toTxId = buffer.getLong(), toMinorVersion = buffer.getLong();
+        int recordSize = buffer.getInt();
+        int records = buffer.getInt();
+        buffer.limit( checksummed );
+        if ( buffer.remaining() != records * (4 + recordSize) )
+        {
+            return null;
+        }
+        return new SortedKeyValueStoreDeltaLog( UTF8.decode( name ), fromTxId, fromMinorVersion, toTxId,
+                toMinorVersion, recordSize, records, buffer.slice() );
+    }
+
+    /**
+     * Writes the records of the log to the store file. Flushing them is up to the caller.
+     */
+    void applyTo( PagedFile pages ) throws IOException
+    {
+        ByteBuffer entries = this.entries.duplicate();
+        byte[] record = new byte[recordSize];
+        int recordsPerPage = pages.pageSize() / recordSize;
+        try ( PageCursor cursor = pages.io( 0, PF_EXCLUSIVE_LOCK ) )
+        {
+            while ( entries.hasRemaining() )
+            {
+                int recordNumber = entries.getInt();
+                entries.get( record );
+                int pageId = recordNumber / recordsPerPage;
+                if ( pageId != cursor.getCurrentPageId() && !cursor.next( pageId ) )
+                {
+                    throw new IOException( "Could not fetch page: " + pageId );
+                }
+                do
+                {
+                    cursor.setOffset( (recordNumber % recordsPerPage) * recordSize );
+                    cursor.putBytes( record );
+                }
+                while ( cursor.shouldRetry() );
+            }
+        }
+    }
+
+    /**
+     * Whether the store file with the given header is the one that this log updates, either before or after the
+     * update. Any other header means that this log is left over from an earlier update, which was completed.
+     */
+    boolean appliesTo( SortedKeyValueStoreHeader header )
+    {
+        return (header.lastTxId() == fromTxId && header.minorVersion() == fromMinorVersion) ||
+               (header.lastTxId() == toTxId && header.minorVersion() == toMinorVersion);
+    }
+
+    /**
+     * Finishes the in place update in the given log, if there is one, and it was completely written, and deletes the
+     * log. This must happen before the store file is opened, since it might be only partially updated.
+     */
+    public static void recover( FileSystemAbstraction fs, PageCache pageCache, File logFile, int pageSize )
+            throws IOException
+    {
+        if ( !fs.fileExists( logFile ) )
+        {
+            return;
+        }
+        SortedKeyValueStoreDeltaLog log = read( fs, logFile );
+        if ( log != null )
+        {
+            File targetFile = new File( logFile.getParentFile(), log.targetFileName );
+            if ( fs.fileExists( targetFile ) )
+            {
+                PagedFile pages = pageCache.map( targetFile, pageSize );
+                try
+                {
+                    SortedKeyValueStoreHeader header = readHeader( log.recordSize, pages );
+                    // a header that can not be read was torn by the crash, which the log is about to fix
+                    if ( header == null || log.appliesTo( header ) )
+                    {
+                        log.applyTo( pages );
+                        pages.flush();
+                    }
+                }
+                finally
+                {
+                    pageCache.unmap( targetFile );
+                }
+            }
+        }
+        fs.deleteFile( logFile );
+    }
+
+    private static SortedKeyValueStoreHeader readHeader( int recordSize, PagedFile pages )
+    {
+        try
+        {
+            return SortedKeyValueStoreHeader.read( recordSize, pages );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            return null;
+        }
+    }
+
+    private static long checksum( byte[] bytes, int length )
+    {
+        CRC32 crc = new CRC32();
+        crc.update( bytes, 0, length );
+        return crc.getValue();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%s[target=%s, from=%d/%d, to=%d/%d, records=%d]", getClass().getSimpleName(),
+                targetFileName, fromTxId, fromMinorVersion, toTxId, toMinorVersion, records );
+    }
+}
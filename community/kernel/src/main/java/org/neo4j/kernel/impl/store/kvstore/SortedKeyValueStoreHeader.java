@@ -20,6 +20,7 @@
 package org.neo4j.kernel.impl.store.kvstore;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.neo4j.helpers.UTF8;
@@ -241,4 +242,18 @@ public final class SortedKeyValueStoreHeader
             page.setOffset( recordSize * headerRecords() );
         } while ( page.shouldRetry() );
     }
+
+    /**
+     * Writes the header at the position of the buffer, as it is laid out in the header records of a store, but
+     * without the zero padding that follows it there.
+     */
+    public void write( ByteBuffer buffer )
+    {
+        buffer.putShort( (short) headerRecords() );
+        buffer.putShort( (short) storeFormatVersion.length );
+        buffer.putInt( dataRecords );
+        buffer.putLong( lastTxId );
+        buffer.putLong( minorVersion );
+        buffer.put( storeFormatVersion );
+    }
 }
@@ -20,6 +20,7 @@
 package org.neo4j.kernel.impl.store.standard;
 
 import static org.neo4j.io.pagecache.PagedFile.PF_READ_AHEAD;
+import static org.neo4j.io.pagecache.PagedFile.PF_SEQUENTIAL_SCAN;
 import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_LOCK;
 import static org.neo4j.io.pagecache.PagedFile.PF_TRANSIENT;
 import static org.neo4j.kernel.impl.store.format.Store.SF_REVERSE_CURSOR;
@@ -163,7 +164,7 @@ public class BaseRecordCursor<RECORD, FORMAT extends RecordFormat<RECORD>> imple
         int flags = PF_SHARED_LOCK;
         if((storeCursorFlags & SF_SCAN) != 0)
         {
-            flags |= PF_TRANSIENT;
+            flags |= PF_TRANSIENT | PF_SEQUENTIAL_SCAN;
             if( (storeCursorFlags & SF_REVERSE_CURSOR) == 0 )
             {
                 // Note: We only use read-ahead if we are scanning forward. For OLAP type use cases, however, scanning
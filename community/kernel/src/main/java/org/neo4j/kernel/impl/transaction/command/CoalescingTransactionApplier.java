@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.command;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.neo4j.kernel.impl.store.UnderlyingStorageException;
+import org.neo4j.kernel.impl.transaction.command.Command.RelationshipCommand;
+import org.neo4j.kernel.impl.transaction.command.Command.RelationshipGroupCommand;
+
+/**
+ * Sits in front of the graph store appliers when a batch of transactions is applied in one go, and only lets the
+ * last change to any given relationship or relationship group record through, when {@link #apply()} is called.
+ * Hot relationship chains on a busy master are typically touched by most transactions in a batch,
+ * so this saves a lot of store writes on the slaves.
+ * <p/>
+ * Only records of fixed size that nothing else reads while applying the batch are coalesced. Node and property
+ * records, and anything with dynamic records, go straight through, because the schema index updates of each
+ * transaction read them from the store, and because dynamic records of an earlier change may not be part of a
+ * later one. Changes are never coalesced across a relationship deletion: a deletion patches the relationship chains
+ * of cached nodes, and a deletion read from the log only writes the in use flag, so the endpoints of the nodes to
+ * evict are read from the record that the change before it wrote.
+ */
+public class CoalescingTransactionApplier extends NeoCommandHandler.Delegator
+{
+    private final NeoCommandHandler delegate;
+    private final Map<Long,RelationshipCommand> relationshipCommands = new HashMap<>();
+    private final Map<Long,RelationshipGroupCommand> relationshipGroupCommands = new HashMap<>();
+
+    public CoalescingTransactionApplier( NeoCommandHandler delegate )
+    {
+        super( delegate );
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean visitRelationshipCommand( RelationshipCommand command ) throws IOException
+    {
+        RelationshipCommand previous = relationshipCommands.put( command.getKey(), command );
+        if ( previous != null && (!previous.getRecord().inUse() || !command.getRecord().inUse()) )
+        {
+            delegate.visitRelationshipCommand( previous );
+        }
+        return false;
+    }
+
+    @Override
+    public boolean visitRelationshipGroupCommand( RelationshipGroupCommand command ) throws IOException
+    {
+        relationshipGroupCommands.put( command.getKey(), command );
+        return false;
+    }
+
+    @Override
+    public void apply()
+    {
+        try
+        {
+            for ( RelationshipCommand command : relationshipCommands.values() )
+            {
+                delegate.visitRelationshipCommand( command );
+            }
+            for ( RelationshipGroupCommand command : relationshipGroupCommands.values() )
+            {
+                delegate.visitRelationshipGroupCommand( command );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( e );
+        }
+        finally
+        {
+            relationshipCommands.clear();
+            relationshipGroupCommands.clear();
+        }
+        super.apply();
+    }
+}
@@ -66,9 +66,9 @@ public class IndexTransactionApplier extends NeoCommandHandler.Adapter
         }
     };
 
-    private final Map<Long,NodeCommand> nodeCommands = new HashMap<>();
-    private final Map<Long,List<PropertyCommand>> propertyCommands = new HashMap<>();
-    private final List<NodeLabelUpdate> labelUpdates = new ArrayList<>();
+    private Map<Long,NodeCommand> nodeCommands = new HashMap<>();
+    private Map<Long,List<PropertyCommand>> propertyCommands = new HashMap<>();
+    private final Map<Long,NodeLabelUpdate> labelUpdates = new HashMap<>();
 
     private final IndexingService indexingService;
     private final NodeStore nodeStore;
@@ -95,20 +95,52 @@ public class IndexTransactionApplier extends NeoCommandHandler.Adapter
 
     @Override
     public void apply()
+    {
+        applyLabelUpdates();
+        applyIndexUpdates();
+    }
+
+    /**
+     * Applies the gathered label changes to the label scan store. Independent of {@link #applyIndexUpdates()},
+     * so the two can be applied in parallel.
+     */
+    public void applyLabelUpdates()
     {
         if ( !labelUpdates.isEmpty() )
         {
-            updateLabelScanStore();
-            cacheAccess.applyLabelUpdates( labelUpdates );
+            List<NodeLabelUpdate> updates = new ArrayList<>( labelUpdates.values() );
+            labelUpdates.clear();
+            updateLabelScanStore( updates );
+            cacheAccess.applyLabelUpdates( updates );
         }
+    }
+
+    /**
+     * Applies the gathered node and property changes to the schema indexes. Independent of
+     * {@link #applyLabelUpdates()}, so the two can be applied in parallel.
+     */
+    public void applyIndexUpdates()
+    {
+        applyIndexUpdates( transactionId );
+    }
 
+    /**
+     * Applies the node and property changes gathered since the last call, as the changes of the given transaction.
+     * When a batch of transactions is visited by the same applier, this is called after visiting each one of them,
+     * while the label changes of the whole batch are gathered up and applied at the end.
+     */
+    public void applyIndexUpdates( long transactionId )
+    {
         if ( !nodeCommands.isEmpty() || !propertyCommands.isEmpty() )
         {
-            updateIndexes();
+            updateIndexes( transactionId );
+            // The updates handed out keep referring to these, so gather the next transaction into new ones
+            nodeCommands = new HashMap<>();
+            propertyCommands = new HashMap<>();
         }
     }
 
-    private void updateIndexes()
+    private void updateIndexes( long transactionId )
     {
         LazyIndexUpdates updates = new LazyIndexUpdates(
                 nodeStore, propertyStore, propertyCommands, nodeCommands, propertyLoader );
@@ -120,7 +152,7 @@ public class IndexTransactionApplier extends NeoCommandHandler.Adapter
         }
     }
 
-    private void updateLabelScanStore()
+    private void updateLabelScanStore( List<NodeLabelUpdate> labelUpdates )
     {
         Collections.sort( labelUpdates, nodeLabelUpdateComparator );
 
@@ -160,7 +192,14 @@ public class IndexTransactionApplier extends NeoCommandHandler.Adapter
             long[] labelsAfter = labelFieldAfter.getIfLoaded();
             if ( labelsBefore != null && labelsAfter != null )
             {
-                labelUpdates.add( NodeLabelUpdate.labelChanges( command.getKey(), labelsBefore, labelsAfter ) );
+                // Only the first before and the last after matters for a node changed several times in a batch
+                NodeLabelUpdate previous = labelUpdates.get( command.getKey() );
+                if ( previous != null )
+                {
+                    labelsBefore = previous.getLabelsBefore();
+                }
+                labelUpdates.put( command.getKey(),
+                        NodeLabelUpdate.labelChanges( command.getKey(), labelsBefore, labelsAfter ) );
             }
         }
 
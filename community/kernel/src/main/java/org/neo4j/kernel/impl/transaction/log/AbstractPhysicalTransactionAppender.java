@@ -32,7 +32,7 @@ abstract class AbstractPhysicalTransactionAppender implements TransactionAppende
     protected final WritableLogChannel channel;
     private final TransactionMetadataCache transactionMetadataCache;
     protected final LogFile logFile;
-    private final TransactionIdStore transactionIdStore;
+    protected final TransactionIdStore transactionIdStore;
     private final TransactionLogWriter transactionLogWriter;
     private final LogPositionMarker positionMarker = new LogPositionMarker();
     private final IndexCommandDetector indexCommandDetector;
@@ -59,7 +59,7 @@ abstract class AbstractPhysicalTransactionAppender implements TransactionAppende
     /**
      * @return whether or not this transaction contains any legacy index changes.
      */
-    private boolean append0( TransactionRepresentation transaction, long transactionId ) throws IOException
+    protected final boolean append0( TransactionRepresentation transaction, long transactionId ) throws IOException
     {
         LogPosition logPosition = channel.getCurrentPosition( positionMarker ).newPosition();
 
@@ -150,7 +150,7 @@ abstract class AbstractPhysicalTransactionAppender implements TransactionAppende
         }
     }
 
-    private void coordinateMultipleThreadsApplyingLegacyIndexChanges( boolean hasLegacyIndexChanges , long transactionId  )
+    protected final void coordinateMultipleThreadsApplyingLegacyIndexChanges( boolean hasLegacyIndexChanges , long transactionId  )
             throws IOException
     {
         if ( hasLegacyIndexChanges )
@@ -166,7 +166,7 @@ abstract class AbstractPhysicalTransactionAppender implements TransactionAppende
         }
     }
 
-    private void pruneIfRotated( boolean rotated )
+    protected final void pruneIfRotated( boolean rotated )
     {
         if ( rotated )
         {
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.neo4j.kernel.impl.transaction.TransactionRepresentation;
+import org.neo4j.kernel.impl.util.IdOrderingQueue;
+
+/**
+ * Commits transactions in groups. Committing threads don't write to the log themselves, instead they push their
+ * transaction onto a lock-free stack and wait. A single {@link BatchingForceThread writer thread} takes all
+ * transactions that have been pushed so far, assigns them transaction ids and serializes them into the log channel
+ * in one pass, forces the channel once for the whole group and then releases all waiting committers.
+ *
+ * Compared to {@link BatchingPhysicalTransactionAppender}, which only batches the forcing, this also keeps the
+ * committing threads from contending for the log file monitor, which is where small transactions spend most of
+ * their time under high concurrency.
+ */
+public class GroupCommitPhysicalTransactionAppender extends AbstractPhysicalTransactionAppender
+{
+    static class PendingTransaction
+    {
+        final TransactionRepresentation transaction;
+        final Thread thread;
+        volatile PendingTransaction next;
+
+        long transactionId;
+        boolean hasLegacyIndexChanges;
+        boolean rotated;
+        Throwable failure;
+        volatile boolean done;
+
+        PendingTransaction( TransactionRepresentation transaction, Thread thread )
+        {
+            this.transaction = transaction;
+            this.thread = thread;
+        }
+
+        static final PendingTransaction END = new PendingTransaction( null, null );
+    }
+
+    final AtomicReference<PendingTransaction> pendingHead = new AtomicReference<>( PendingTransaction.END );
+    private final BatchingForceThread writerThread;
+    private volatile boolean shutDown;
+
+    public GroupCommitPhysicalTransactionAppender( LogFile logFile,
+            TransactionMetadataCache transactionMetadataCache, TransactionIdStore transactionIdStore,
+            IdOrderingQueue legacyIndexTransactionOrdering, WaitStrategy idleBackoffStrategy )
+    {
+        super( logFile, transactionMetadataCache, transactionIdStore, legacyIndexTransactionOrdering );
+        writerThread = new BatchingForceThread( new BatchingForceThread.Operation()
+        {
+            @Override
+            public boolean perform() throws IOException
+            {
+                PendingTransaction group = pendingHead.getAndSet( PendingTransaction.END );
+                if ( group == PendingTransaction.END )
+                {
+                    return false;
+                }
+                writeAndForce( inCommitOrder( group ) );
+                return true;
+            }
+        }, idleBackoffStrategy );
+        writerThread.start();
+    }
+
+    /**
+     * The pending transactions are pushed onto a stack, so reverse it to commit them in the order they came in.
+     */
+    private static PendingTransaction inCommitOrder( PendingTransaction head )
+    {
+        PendingTransaction reversed = PendingTransaction.END;
+        while ( head != PendingTransaction.END )
+        {
+            PendingTransaction next;
+            while ( (next = head.next) == null )
+            {
+                ; // spin, waiting for committer thread to finish updating the chain
+            }
+            head.next = reversed;
+            reversed = head;
+            head = next;
+        }
+        return reversed;
+    }
+
+    /**
+     * Called by the writer thread.
+     */
+    private void writeAndForce( PendingTransaction group ) throws IOException
+    {
+        try
+        {
+            // Synchronized with logFile to get absolute control over concurrent rotations happening
+            synchronized ( logFile )
+            {
+                for ( PendingTransaction pending = group; pending != PendingTransaction.END; pending = pending.next )
+                {
+                    pending.rotated = logFile.checkRotation();
+                    pending.transactionId = transactionIdStore.nextCommittingTransactionId();
+                    pending.hasLegacyIndexChanges = append0( pending.transaction, pending.transactionId );
+                }
+                channel.emptyBufferIntoChannelAndClearIt();
+            }
+            forceChannel();
+        }
+        catch ( IOException | RuntimeException | Error e )
+        {
+            for ( PendingTransaction pending = group; pending != PendingTransaction.END; pending = pending.next )
+            {
+                pending.failure = e;
+            }
+            throw e instanceof IOException ? (IOException) e : new IOException( "Failed to append transactions", e );
+        }
+        finally
+        {
+            for ( PendingTransaction pending = group; pending != PendingTransaction.END; )
+            {
+                // Read next before releasing the committer, since it's free to go as soon as it sees done
+                PendingTransaction next = pending.next;
+                pending.done = true;
+                LockSupport.unpark( pending.thread );
+                pending = next;
+            }
+        }
+    }
+
+    @Override
+    public long append( TransactionRepresentation transaction ) throws IOException
+    {
+        PendingTransaction pending = new PendingTransaction( transaction, Thread.currentThread() );
+        pending.next = pendingHead.getAndSet( pending );
+        LockSupport.unpark( writerThread );
+
+        // Stay a while and listen... while the writer hasn't yet committed our transaction
+        while ( !pending.done )
+        {
+            if ( shutDown )
+            {
+                throw new IOException( "Transaction appender has been shut down" );
+            }
+            writerThread.checkHealth();
+            LockSupport.parkNanos( 100_000 ); // 0,1 ms
+        }
+        if ( pending.failure != null )
+        {
+            throw new IOException( "Failed to append transaction", pending.failure );
+        }
+
+        pruneIfRotated( pending.rotated );
+        coordinateMultipleThreadsApplyingLegacyIndexChanges( pending.hasLegacyIndexChanges, pending.transactionId );
+        return pending.transactionId;
+    }
+
+    /**
+     * Called by {@link #append(TransactionRepresentation, long)}, but the writer thread empties the buffer itself.
+     */
+    @Override
+    protected void emptyBufferIntoChannel() throws IOException
+    {   // The writer thread will do it himself
+    }
+
+    @Override
+    protected long getNextTicket()
+    {   // Not used, since append is overridden
+        return 0;
+    }
+
+    @Override
+    protected void forceAfterAppend( long ticket ) throws IOException
+    {   // Not used, since append is overridden
+    }
+
+    @Override
+    public void force() throws IOException
+    {
+        synchronized ( logFile )
+        {
+            channel.emptyBufferIntoChannelAndClearIt();
+        }
+        forceChannel();
+    }
+
+    @Override
+    public void close()
+    {
+        writerThread.halt();
+        LockSupport.unpark( writerThread );
+        try
+        {
+            writerThread.join();
+        }
+        catch ( InterruptedException e )
+        {
+            throw new RuntimeException( e );
+        }
+        shutDown = true;
+        super.close();
+    }
+}
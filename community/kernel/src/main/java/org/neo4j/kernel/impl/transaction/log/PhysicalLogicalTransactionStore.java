@@ -46,28 +46,47 @@ public class PhysicalLogicalTransactionStore extends LifecycleAdapter implements
     private TransactionAppender appender;
     private final TransactionIdStore transactionIdStore;
     private final boolean batchedWrites;
+    private final boolean groupCommit;
     private final IdOrderingQueue legacyIndexTransactionOrdering;
 
     public PhysicalLogicalTransactionStore( LogFile logFile,
             TransactionMetadataCache transactionMetadataCache,
             TransactionIdStore transactionIdStore, IdOrderingQueue legacyIndexTransactionOrdering,
             boolean batchedWrites )
+    {
+        this( logFile, transactionMetadataCache, transactionIdStore, legacyIndexTransactionOrdering,
+                batchedWrites, false );
+    }
+
+    public PhysicalLogicalTransactionStore( LogFile logFile,
+            TransactionMetadataCache transactionMetadataCache,
+            TransactionIdStore transactionIdStore, IdOrderingQueue legacyIndexTransactionOrdering,
+            boolean batchedWrites, boolean groupCommit )
     {
         this.logFile = logFile;
         this.transactionMetadataCache = transactionMetadataCache;
         this.transactionIdStore = transactionIdStore;
         this.legacyIndexTransactionOrdering = legacyIndexTransactionOrdering;
         this.batchedWrites = batchedWrites;
+        this.groupCommit = groupCommit;
     }
 
     @Override
     public void init() throws Throwable
     {
-        this.appender = batchedWrites ?
-                new BatchingPhysicalTransactionAppender( logFile, transactionMetadataCache, transactionIdStore,
-                        legacyIndexTransactionOrdering, ATOMIC_LONG, DEFAULT_WAIT_STRATEGY ) :
-                new PhysicalTransactionAppender( logFile,
-                        transactionMetadataCache, transactionIdStore, legacyIndexTransactionOrdering );
+        if ( batchedWrites && groupCommit )
+        {
+            this.appender = new GroupCommitPhysicalTransactionAppender( logFile, transactionMetadataCache,
+                    transactionIdStore, legacyIndexTransactionOrdering, DEFAULT_WAIT_STRATEGY );
+        }
+        else
+        {
+            this.appender = batchedWrites ?
+                    new BatchingPhysicalTransactionAppender( logFile, transactionMetadataCache, transactionIdStore,
+                            legacyIndexTransactionOrdering, ATOMIC_LONG, DEFAULT_WAIT_STRATEGY ) :
+                    new PhysicalTransactionAppender( logFile,
+                            transactionMetadataCache, transactionIdStore, legacyIndexTransactionOrdering );
+        }
     }
 
     @Override
@@ -138,12 +157,15 @@ public class PhysicalLogicalTransactionStore extends LifecycleAdapter implements
                 {
                     CommittedTransactionRepresentation tx = cursor.get();
                     long committedTxId = tx.getCommitEntry().getTxId();
-                    TransactionMetadata metadata = transactionMetadataCache.cacheTransactionMetadata( committedTxId,
-                            tx.getStartEntry().getStartPosition(), tx.getStartEntry().getMasterId(),
-                            tx.getStartEntry().getLocalId(), LogEntryStart.checksum( tx.getStartEntry() ) );
+                    LogEntryStart startEntry = tx.getStartEntry();
+                    long checksum = LogEntryStart.checksum( startEntry );
+                    transactionMetadataCache.cacheTransactionMetadata( committedTxId,
+                            startEntry.getStartPosition(), startEntry.getMasterId(),
+                            startEntry.getLocalId(), checksum );
                     if ( committedTxId == transactionId )
                     {
-                        transactionMetadata = metadata;
+                        transactionMetadata = new TransactionMetadata( startEntry.getMasterId(),
+                                startEntry.getLocalId(), startEntry.getStartPosition(), checksum );
                     }
                 }
             }
@@ -29,7 +29,8 @@ import static org.neo4j.helpers.Format.KB;
 public class PhysicalWritableLogChannel implements WritableLogChannel
 {
     private LogVersionedStoreChannel channel;
-    private final ByteBuffer buffer = ByteBuffer.allocate( 512*KB );
+    // A direct buffer, so that writing it to the file channel doesn't go via a temporary direct buffer
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect( 512*KB );
 
     public PhysicalWritableLogChannel( LogVersionedStoreChannel channel )
     {
@@ -22,10 +22,10 @@ package org.neo4j.kernel.impl.transaction.log;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import org.neo4j.collection.pool.LinkedQueuePool;
 import org.neo4j.io.fs.StoreChannel;
 
 import static java.lang.Math.min;
-import static java.lang.System.arraycopy;
 
 /**
  * Basically a sequence of {@link StoreChannel channels} seamlessly seen as one.
@@ -34,7 +34,22 @@ public class ReadAheadLogChannel implements ReadableVersionableLogChannel
 {
     public static final int DEFAULT_READ_AHEAD_SIZE = 1024*4;
 
+    /**
+     * Read ahead channels are short lived, one is opened per transaction cursor, and direct buffers are
+     * expensive to allocate and to reclaim, so buffers of the default size are pooled.
+     */
+    private static final LinkedQueuePool<ByteBuffer> DEFAULT_SIZE_BUFFERS =
+            new LinkedQueuePool<ByteBuffer>( Runtime.getRuntime().availableProcessors(), null )
+    {
+        @Override
+        protected ByteBuffer create()
+        {
+            return ByteBuffer.allocateDirect( DEFAULT_READ_AHEAD_SIZE );
+        }
+    };
+
     private final ByteBuffer aheadBuffer;
+    private boolean closed;
     private LogVersionedStoreChannel channel;
     private final LogVersionBridge bridge;
     private final int readAheadSize;
@@ -44,7 +59,9 @@ public class ReadAheadLogChannel implements ReadableVersionableLogChannel
         this.channel = startingChannel;
         this.bridge = bridge;
         this.readAheadSize = readAheadSize;
-        this.aheadBuffer = ByteBuffer.allocate( readAheadSize );
+        this.aheadBuffer = readAheadSize == DEFAULT_READ_AHEAD_SIZE ?
+                DEFAULT_SIZE_BUFFERS.acquire() : ByteBuffer.allocateDirect( readAheadSize );
+        aheadBuffer.clear();
         aheadBuffer.position( aheadBuffer.capacity() );
     }
 
@@ -127,11 +144,9 @@ public class ReadAheadLogChannel implements ReadableVersionableLogChannel
 
         // We ran out, try to read some more
         // start by copying the remaining bytes to the beginning
-        arraycopy( aheadBuffer.array(), aheadBuffer.position(), aheadBuffer.array(), 0, remaining );
-        aheadBuffer.clear();
+        aheadBuffer.compact();
 
         // fill the buffer (preferably to the brim)
-        aheadBuffer.position( remaining );
         while ( aheadBuffer.position() < aheadBuffer.capacity() )
         {   // read from the current channel to try and fill the buffer
             int read = channel.read( aheadBuffer );
@@ -161,6 +176,14 @@ public class ReadAheadLogChannel implements ReadableVersionableLogChannel
     @Override
     public void close() throws IOException
     {
+        if ( !closed )
+        {
+            closed = true;
+            if ( aheadBuffer.capacity() == DEFAULT_READ_AHEAD_SIZE )
+            {
+                DEFAULT_SIZE_BUFFERS.release( aheadBuffer );
+            }
+        }
         channel.close();
     }
 
@@ -19,23 +19,64 @@
  */
 package org.neo4j.kernel.impl.transaction.log;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import org.neo4j.kernel.impl.cache.LruCache;
 
+/**
+ * Caches the start position, and other metadata, of recently committed transactions, as well as the last committed
+ * transaction id of the previous log, for log headers.
+ *
+ * Transaction ids are dense and increasing, so the transaction metadata is kept in a ring of slots indexed by the
+ * transaction id. Caching a transaction simply overwrites whatever transaction occupied its slot before. The slots
+ * live in a single {@link AtomicLongArray}, and each slot is guarded by a sequence number, like a seqlock: writers
+ * make the sequence number odd while they update the slot, and readers retry if they observe an odd or changed
+ * sequence number. This way neither readers nor writers take any locks, and caching a transaction does not allocate.
+ */
 public class TransactionMetadataCache
 {
-    private final LruCache<Long /*tx id*/, TransactionMetadata> txStartPositionCache;
+    // Layout of a slot in the transaction metadata ring:
+    private static final int SEQUENCE = 0;
+    private static final int TX_ID = 1;
+    private static final int LOG_VERSION = 2;
+    private static final int BYTE_OFFSET = 3;
+    private static final int CHECKSUM = 4;
+    private static final int MASTER_AND_AUTHOR_ID = 5;
+    private static final int SLOT_SIZE = 6;
+
+    private static final long NO_TX_ID = -1;
+
+    private final AtomicLongArray txStartPositionRing;
+    private final int slotMask;
     private final LruCache<Long /*log version*/, Long /*last committed tx*/> logHeaderCache;
 
     public TransactionMetadataCache( int headerCacheSize, int transactionCacheSize )
     {
         this.logHeaderCache = new LruCache<>( "Log header cache", headerCacheSize );
-        this.txStartPositionCache = new LruCache<>( "Tx start position cache", transactionCacheSize );
+        int slots = Integer.highestOneBit( Math.max( transactionCacheSize - 1, 1 ) ) << 1;
+        this.slotMask = slots - 1;
+        this.txStartPositionRing = new AtomicLongArray( slots * SLOT_SIZE );
+        for ( int slot = 0; slot < slots; slot++ )
+        {
+            txStartPositionRing.set( slot * SLOT_SIZE + TX_ID, NO_TX_ID );
+        }
     }
 
     public void clear()
     {
         logHeaderCache.clear();
-        txStartPositionCache.clear();
+        for ( int slot = 0; slot <= slotMask; slot++ )
+        {
+            int base = slot * SLOT_SIZE;
+            long sequence;
+            do
+            {
+                sequence = txStartPositionRing.get( base + SEQUENCE ) & ~1L;
+            }
+            while ( !txStartPositionRing.compareAndSet( base + SEQUENCE, sequence, sequence + 1 ) );
+            txStartPositionRing.set( base + TX_ID, NO_TX_ID );
+            txStartPositionRing.set( base + SEQUENCE, sequence + 2 );
+        }
     }
 
     public void putHeader( long logVersion, long previousLogLastCommittedTx )
@@ -51,20 +92,56 @@ public class TransactionMetadataCache
 
     public TransactionMetadata getTransactionMetadata( long txId )
     {
-        return txStartPositionCache.get( txId );
+        int base = slotBase( txId );
+        long sequence;
+        long logVersion;
+        long byteOffset;
+        long checksum;
+        long masterAndAuthorId;
+        do
+        {
+            sequence = txStartPositionRing.get( base + SEQUENCE );
+            if ( txStartPositionRing.get( base + TX_ID ) != txId )
+            {
+                return null;
+            }
+            logVersion = txStartPositionRing.get( base + LOG_VERSION );
+            byteOffset = txStartPositionRing.get( base + BYTE_OFFSET );
+            checksum = txStartPositionRing.get( base + CHECKSUM );
+            masterAndAuthorId = txStartPositionRing.get( base + MASTER_AND_AUTHOR_ID );
+        }
+        while ( (sequence & 1) == 1 || txStartPositionRing.get( base + SEQUENCE ) != sequence );
+
+        return new TransactionMetadata( (int) (masterAndAuthorId >> 32), (int) masterAndAuthorId,
+                new LogPosition( logVersion, byteOffset ), checksum );
     }
 
-    public TransactionMetadata cacheTransactionMetadata( long txId, LogPosition position, int masterId,
-                                                         int authorId, long checksum )
+    public void cacheTransactionMetadata( long txId, LogPosition position, int masterId,
+                                          int authorId, long checksum )
     {
         if ( position.getByteOffset() == -1 )
         {
             throw new RuntimeException( "StartEntry.position is " + position );
         }
 
-        TransactionMetadata result = new TransactionMetadata( masterId, authorId, position, checksum );
-        txStartPositionCache.put( txId, result );
-        return result;
+        int base = slotBase( txId );
+        long sequence = txStartPositionRing.get( base + SEQUENCE );
+        if ( (sequence & 1) == 1 || !txStartPositionRing.compareAndSet( base + SEQUENCE, sequence, sequence + 1 ) )
+        {
+            // Someone else is writing to this slot right now. This is a cache, so we just let them win.
+            return;
+        }
+        txStartPositionRing.set( base + TX_ID, txId );
+        txStartPositionRing.set( base + LOG_VERSION, position.getLogVersion() );
+        txStartPositionRing.set( base + BYTE_OFFSET, position.getByteOffset() );
+        txStartPositionRing.set( base + CHECKSUM, checksum );
+        txStartPositionRing.set( base + MASTER_AND_AUTHOR_ID, (((long) masterId) << 32) | (authorId & 0xFFFFFFFFL) );
+        txStartPositionRing.set( base + SEQUENCE, sequence + 2 );
+    }
+
+    private int slotBase( long txId )
+    {
+        return ((int) (txId & slotMask)) * SLOT_SIZE;
     }
 
     public static class TransactionMetadata
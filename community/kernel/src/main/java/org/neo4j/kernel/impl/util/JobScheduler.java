@@ -55,12 +55,33 @@ public interface JobScheduler extends Lifecycle
          */
         pullUpdates,
 
+        /**
+         * Leases ranges of ids from the master ahead of time, on slaves.
+         */
+        slaveIdLeasing,
+
         /**
          * Gathers approximated data about the underlying data store.
          */
         indexSamplingController,
         indexSampling,
         pageCacheEviction,
+
+        /**
+         * Writes out dirty pages ahead of page cache eviction.
+         */
+        pageCacheBackgroundFlush,
+
+        /**
+         * Prefetches pages ahead of cursors that read their files sequentially.
+         */
+        pageCacheReadAhead,
+
+        /**
+         * Runs the parts of read-only Cypher queries that are split over several threads. All queries share as many
+         * threads as the cypher_parallelism setting asks for.
+         */
+        cypherParallelReads,
     }
 
     interface JobHandle
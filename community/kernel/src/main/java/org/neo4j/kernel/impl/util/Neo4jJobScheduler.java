@@ -27,6 +27,7 @@ import java.util.concurrent.TimeUnit;
 import org.neo4j.kernel.lifecycle.LifecycleAdapter;
 
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 
 import static org.neo4j.helpers.NamedThreadFactory.daemon;
 import static org.neo4j.kernel.impl.util.DebugUtil.trackTest;
@@ -34,18 +35,30 @@ import static org.neo4j.kernel.impl.util.DebugUtil.trackTest;
 public class Neo4jJobScheduler extends LifecycleAdapter implements JobScheduler
 {
     private final String id;
+    private final int cypherParallelism;
 
     private ExecutorService executor;
+    private ExecutorService cypherParallelReadsExecutor;
     private ScheduledThreadPoolExecutor scheduledExecutor;
 
     public Neo4jJobScheduler()
     {
-        this.id = getClass().getSimpleName();
+        this( Neo4jJobScheduler.class.getSimpleName() );
     }
 
     public Neo4jJobScheduler( String id )
+    {
+        this( id, 0 );
+    }
+
+    /**
+     * @param cypherParallelism the number of threads that all {@link Group#cypherParallelReads} jobs share. Jobs
+     * beyond that wait for a thread to become free.
+     */
+    public Neo4jJobScheduler( String id, int cypherParallelism )
     {
         this.id = id;
+        this.cypherParallelism = cypherParallelism;
     }
 
     @Override
@@ -53,11 +66,20 @@ public class Neo4jJobScheduler extends LifecycleAdapter implements JobScheduler
     {
         this.executor = newCachedThreadPool( daemon( "Neo4j " + id + trackTest() ) );
         this.scheduledExecutor = new ScheduledThreadPoolExecutor( 2, daemon( "Scheduled Neo4j " + id + trackTest() ) );
+        if ( cypherParallelism > 0 )
+        {
+            this.cypherParallelReadsExecutor = newFixedThreadPool( cypherParallelism,
+                    daemon( "Cypher parallel reads " + id + trackTest() ) );
+        }
     }
 
     @Override
     public JobHandle schedule( Group group, Runnable job )
     {
+        if ( group == Group.cypherParallelReads && cypherParallelReadsExecutor != null )
+        {
+            return new Handle( cypherParallelReadsExecutor.submit( job ) );
+        }
         return new Handle( this.executor.submit( job ) );
     }
 
@@ -95,6 +117,23 @@ public class Neo4jJobScheduler extends LifecycleAdapter implements JobScheduler
             exception = new RuntimeException(e);
         }
 
+        try
+        {
+            if(cypherParallelReadsExecutor != null)
+            {
+                cypherParallelReadsExecutor.shutdownNow();
+                cypherParallelReadsExecutor.awaitTermination( 5, TimeUnit.SECONDS );
+                cypherParallelReadsExecutor = null;
+            }
+        } catch(RuntimeException e)
+        {
+            exception = e;
+        }
+        catch ( InterruptedException e )
+        {
+            exception = new RuntimeException(e);
+        }
+
         try
         {
             if(scheduledExecutor != null)
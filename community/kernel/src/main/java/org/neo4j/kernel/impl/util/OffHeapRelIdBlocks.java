@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the memory used by the blocks of relationship ids that the cached nodes have moved off the heap,
+ * see {@link RelIdArray#moveBlocksOffHeap(OffHeapRelIdBlocks)}, and keeps it within a budget. Only blocks with many
+ * ids are moved, which is what the nodes with very many relationships have, so that their ids don't fill up the
+ * heap and get copied around by the garbage collector.
+ *
+ * The blocks are kept in direct byte buffers, which are freed by the garbage collector once the cache no longer
+ * refers to them. That way a block can never be freed while a thread is still reading it. The memory they used is
+ * given back to the budget when the collector has noticed that they are gone.
+ */
+public class OffHeapRelIdBlocks
+{
+    public static final OffHeapRelIdBlocks NONE = new OffHeapRelIdBlocks( 0, Integer.MAX_VALUE );
+
+    private final long maxBytes;
+    private final int minIdsPerBlock;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong blocks = new AtomicLong();
+    private final AtomicLong ids = new AtomicLong();
+    private final ReferenceQueue<Object> freed = new ReferenceQueue<>();
+    // The references have to be reachable themselves, for them to be enqueued when their blocks are collected.
+    private final Set<BlockReference> allocated =
+            Collections.newSetFromMap( new ConcurrentHashMap<BlockReference, Boolean>() );
+
+    public OffHeapRelIdBlocks( long maxBytes, int minIdsPerBlock )
+    {
+        this.maxBytes = maxBytes;
+        this.minIdsPerBlock = minIdsPerBlock;
+    }
+
+    boolean shouldMove( int numberOfIds )
+    {
+        return numberOfIds >= minIdsPerBlock && maxBytes > 0;
+    }
+
+    /**
+     * @return a direct buffer of the given size, or null if that would take the used memory above the budget.
+     */
+    ByteBuffer allocate( int size )
+    {
+        reclaimFreedBlocks();
+        long used;
+        do
+        {
+            used = usedBytes.get();
+            if ( used + size > maxBytes )
+            {
+                return null;
+            }
+        }
+        while ( !usedBytes.compareAndSet( used, used + size ) );
+
+        try
+        {
+            return ByteBuffer.allocateDirect( size );
+        }
+        catch ( OutOfMemoryError e )
+        {
+            // The JVM has a limit of its own on the amount of direct memory, keep the ids on the heap then.
+            usedBytes.addAndGet( -size );
+            return null;
+        }
+    }
+
+    /**
+     * Starts tracking a block that has been put in a buffer from {@link #allocate(int)}, so that the memory is
+     * given back when the block is collected.
+     */
+    void track( Object block, int size, int numberOfIds )
+    {
+        allocated.add( new BlockReference( block, freed, size, numberOfIds ) );
+        blocks.incrementAndGet();
+        ids.addAndGet( numberOfIds );
+    }
+
+    private void reclaimFreedBlocks()
+    {
+        Reference<?> reference;
+        while ( (reference = freed.poll()) != null )
+        {
+            BlockReference block = (BlockReference) reference;
+            if ( allocated.remove( block ) )
+            {
+                usedBytes.addAndGet( -block.size );
+                blocks.decrementAndGet();
+                ids.addAndGet( -block.numberOfIds );
+            }
+        }
+    }
+
+    public long getMaxMemory()
+    {
+        return maxBytes;
+    }
+
+    public long getUsedMemory()
+    {
+        reclaimFreedBlocks();
+        return usedBytes.get();
+    }
+
+    public long getNumberOfBlocks()
+    {
+        reclaimFreedBlocks();
+        return blocks.get();
+    }
+
+    public long getNumberOfIds()
+    {
+        reclaimFreedBlocks();
+        return ids.get();
+    }
+
+    private static class BlockReference extends PhantomReference<Object>
+    {
+        private final int size;
+        private final int numberOfIds;
+
+        BlockReference( Object block, ReferenceQueue<Object> queue, int size, int numberOfIds )
+        {
+            super( block, queue );
+            this.size = size;
+            this.numberOfIds = numberOfIds;
+        }
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.neo4j.kernel.impl.util;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
 
@@ -192,6 +193,27 @@ public class RelIdArray implements SizeOfObject
         }
     }
 
+    /**
+     * Moves the blocks that have enough ids in them off the heap, if the given budget allows it. The blocks are
+     * replaced with read only copies, that go back on the heap if more ids are added to them. Iterators that are
+     * already reading the blocks keep reading the previous ones, which are left as they are.
+     */
+    public void moveBlocksOffHeap( OffHeapRelIdBlocks offHeap )
+    {
+        for ( DirectionWrapper direction : DIRECTIONS_FOR_BOTH )
+        {
+            IdBlock block = direction.getBlock( this );
+            if ( block != null && !(block instanceof OffHeapIdBlock) && offHeap.shouldMove( block.length() ) )
+            {
+                IdBlock offHeapBlock = OffHeapIdBlock.copyOf( block, offHeap );
+                if ( offHeapBlock != null )
+                {
+                    direction.setBlock( this, offHeapBlock );
+                }
+            }
+        }
+    }
+
     protected void setLastLoopBlock( IdBlock block )
     {
         throw new UnsupportedOperationException( "Should've upgraded to RelIdArrayWithLoops before this" );
@@ -463,6 +485,14 @@ public class RelIdArray implements SizeOfObject
         protected abstract long get( int index );
 
         protected abstract void set( long id, int index );
+
+        /**
+         * Reads the id at the position of the given iterator state, and moves it forward.
+         */
+        long next( IteratorState state )
+        {
+            return get( state.relativePosition++ );
+        }
     }
 
     private static class LowIdBlock extends IdBlock
@@ -500,6 +530,14 @@ public class RelIdArray implements SizeOfObject
             {
                 arraycopy( ((LowIdBlock)source).ids, 1, ids, targetStartIndex, itemsToCopy );
             }
+            else if ( source instanceof OffHeapIdBlock && ((OffHeapIdBlock) source).allIdsLow )
+            {
+                IteratorState state = new IteratorState( source, 0 );
+                for ( int i = 0; i < itemsToCopy; i++ )
+                {
+                    set( state.next(), targetStartIndex - 1 + i );
+                }
+            }
             else
             {
                 throw new IllegalArgumentException( source.toString() );
@@ -614,11 +652,19 @@ public class RelIdArray implements SizeOfObject
             {
                 arraycopy( ((LowIdBlock)source).ids, 1, ids, targetStartIndex, itemsToCopy );
             }
-            else
+            else if ( source instanceof HighIdBlock )
             {
                 arraycopy( ((HighIdBlock)source).ids, 1, ids, targetStartIndex, itemsToCopy );
                 arraycopy( ((HighIdBlock)source).highBits, 1, highBits, targetStartIndex, itemsToCopy );
             }
+            else
+            {
+                IteratorState state = new IteratorState( source, 0 );
+                for ( int i = 0; i < itemsToCopy; i++ )
+                {
+                    set( state.next(), targetStartIndex - 1 + i );
+                }
+            }
         }
 
         @Override
@@ -688,11 +734,229 @@ public class RelIdArray implements SizeOfObject
         }
     }
 
+    /**
+     * A read only block of ids, in a direct byte buffer. Each id is stored as the zig-zag and variable length encoded
+     * difference to the id before it, so that ids of relationships that were created close in time, which is common,
+     * take only a byte or two. Every {@link #IDS_PER_CHECKPOINT}th id is stored as it is, and its offset is stored
+     * at the start of the buffer, so that an id at a given index can be found without decoding all the ids before it.
+     */
+    private static class OffHeapIdBlock extends IdBlock
+    {
+        private static final int IDS_PER_CHECKPOINT = 64;
+
+        private final ByteBuffer buffer;
+        private final int length;
+        private final boolean allIdsLow;
+
+        private OffHeapIdBlock( ByteBuffer buffer, int length, boolean allIdsLow )
+        {
+            this.buffer = buffer;
+            this.length = length;
+            this.allIdsLow = allIdsLow;
+        }
+
+        /**
+         * @return a copy of the given block, or null if there is no room for it in the given budget.
+         */
+        static IdBlock copyOf( IdBlock block, OffHeapRelIdBlocks offHeap )
+        {
+            int length = block.length();
+            int checkpoints = (length + IDS_PER_CHECKPOINT - 1) / IDS_PER_CHECKPOINT;
+            int size = checkpoints * 4;
+            boolean allIdsLow = true;
+            long previous = 0;
+            for ( int i = 0; i < length; i++ )
+            {
+                long id = block.get( i );
+                size += encodedLength( zigZag( i % IDS_PER_CHECKPOINT == 0 ? id : id - previous ) );
+                allIdsLow &= LowIdBlock.idIsLow( id );
+                previous = id;
+            }
+
+            ByteBuffer buffer = offHeap.allocate( size );
+            if ( buffer == null )
+            {
+                return null;
+            }
+            int offset = checkpoints * 4;
+            for ( int i = 0; i < length; i++ )
+            {
+                long id = block.get( i );
+                if ( i % IDS_PER_CHECKPOINT == 0 )
+                {
+                    buffer.putInt( (i / IDS_PER_CHECKPOINT) * 4, offset );
+                    offset = encode( buffer, offset, zigZag( id ) );
+                }
+                else
+                {
+                    offset = encode( buffer, offset, zigZag( id - previous ) );
+                }
+                previous = id;
+            }
+            OffHeapIdBlock copy = new OffHeapIdBlock( buffer, length, allIdsLow );
+            offHeap.track( copy, size, length );
+            return copy;
+        }
+
+        @Override
+        public int sizeOfObjectInBytesIncludingOverhead()
+        {
+            // The ids are not on the heap, only the buffer object is
+            return withObjectOverhead( withReference( 8 ) ) + withObjectOverhead( 48 );
+        }
+
+        @Override
+        void shrink()
+        {
+        }
+
+        @Override
+        protected boolean accepts( long id )
+        {
+            return false;
+        }
+
+        @Override
+        protected boolean accepts( IdBlock block )
+        {
+            return false;
+        }
+
+        @Override
+        protected IdBlock copyAndShrink()
+        {
+            IdBlock copy = allIdsLow ? new LowIdBlock() : new HighIdBlock();
+            copy.addAll( this );
+            copy.shrink();
+            return copy;
+        }
+
+        @Override
+        IdBlock upgradeToHighIdBlock()
+        {
+            IdBlock copy = new HighIdBlock();
+            copy.addAll( this );
+            return copy;
+        }
+
+        @Override
+        protected void extendArrayTo( int numberOfItemsToCopy, int newLength )
+        {
+            throw new UnsupportedOperationException( "Read only" );
+        }
+
+        @Override
+        protected void setLength( int length )
+        {
+            throw new UnsupportedOperationException( "Read only" );
+        }
+
+        @Override
+        protected int length()
+        {
+            return length;
+        }
+
+        @Override
+        protected int capacity()
+        {
+            return length;
+        }
+
+        @Override
+        protected void append( IdBlock source, int targetStartIndex, int itemsToCopy )
+        {
+            throw new UnsupportedOperationException( "Read only" );
+        }
+
+        @Override
+        protected long get( int index )
+        {
+            IteratorState state = new IteratorState( this, index );
+            return next( state );
+        }
+
+        @Override
+        protected void set( long id, int index )
+        {
+            throw new UnsupportedOperationException( "Read only" );
+        }
+
+        @Override
+        long next( IteratorState state )
+        {
+            int index = state.relativePosition++;
+            if ( index % IDS_PER_CHECKPOINT == 0 )
+            {
+                state.offset = buffer.getInt( (index / IDS_PER_CHECKPOINT) * 4 );
+                state.previous = 0;
+            }
+            else if ( state.offset == -1 )
+            {
+                // The iterator has just started, or moved over from another block, in the middle of a checkpoint
+                state.offset = buffer.getInt( (index / IDS_PER_CHECKPOINT) * 4 );
+                state.previous = 0;
+                for ( int skip = index - index % IDS_PER_CHECKPOINT; skip < index; skip++ )
+                {
+                    decodeInto( state );
+                }
+            }
+            decodeInto( state );
+            return state.previous;
+        }
+
+        private void decodeInto( IteratorState state )
+        {
+            int offset = state.offset;
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = buffer.get( offset++ );
+                value |= (b & 0x7FL) << shift;
+                shift += 7;
+            }
+            while ( (b & 0x80) != 0 );
+            state.offset = offset;
+            state.previous += (value >>> 1) ^ -(value & 1);
+        }
+
+        private static long zigZag( long value )
+        {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private static int encodedLength( long value )
+        {
+            int length = 1;
+            while ( (value >>>= 7) != 0 )
+            {
+                length++;
+            }
+            return length;
+        }
+
+        private static int encode( ByteBuffer buffer, int offset, long value )
+        {
+            while ( (value & ~0x7FL) != 0 )
+            {
+                buffer.put( offset++, (byte) ((value & 0x7F) | 0x80) );
+                value >>>= 7;
+            }
+            buffer.put( offset++, (byte) value );
+            return offset;
+        }
+    }
+
     private static class IteratorState
     {
         private IdBlock block;
         private int relativePosition;
         private int length;
+        // Where the next id is in an OffHeapIdBlock, and the id before it, or -1 if not known yet
+        private int offset = -1;
+        private long previous;
 
         public IteratorState( IdBlock block, int relativePosition )
         {
@@ -711,11 +975,15 @@ public class RelIdArray implements SizeOfObject
          */
         long next()
         {
-            return block.get( relativePosition++ );
+            return block.next( this );
         }
 
         public void update( IdBlock block )
         {
+            if ( block != this.block )
+            {
+                offset = -1;
+            }
             this.block = block;
             this.length = block.length();
         }
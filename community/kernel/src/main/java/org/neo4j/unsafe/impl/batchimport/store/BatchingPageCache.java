@@ -249,6 +249,11 @@ public class BatchingPageCache implements PageCache
         {   // no-op
         }
 
+        @Override
+        public void setMaxReadAheadPages( int maxReadAheadPages )
+        {   // no-op, since there is only ever the one page
+        }
+
         @Override
         public long getLastPageId() throws IOException
         {
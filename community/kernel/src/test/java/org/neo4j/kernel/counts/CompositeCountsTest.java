@@ -346,6 +346,49 @@ public class CompositeCountsTest
         verifyAllCounts();
     }
 
+    @Test
+    public void shouldIncludeChangesOfTransaction() throws Exception
+    {
+        // given
+        Node foo, bar, baz;
+        Relationship relationship;
+        try ( Transaction tx = db.beginTx() )
+        {
+            foo = db.createNode( label( "Foo" ) );
+            bar = db.createNode( label( "Bar" ) );
+            baz = db.createNode();
+            relationship = foo.createRelationshipTo( bar, withName( "KNOWS" ) );
+            baz.createRelationshipTo( bar, withName( "KNOWS" ) );
+
+            tx.success();
+        }
+
+        // when
+        long fooKnows, knowsBar, knows;
+        try ( Transaction tx = db.beginTx() )
+        {
+            baz.addLabel( label( "Foo" ) );
+            foo.createRelationshipTo( bar, withName( "KNOWS" ) );
+            foo.createRelationshipTo( db.createNode( label( "Bar" ) ), withName( "KNOWS" ) );
+            relationship.delete();
+
+            fooKnows = countsForRelationship( label( "Foo" ), withName( "KNOWS" ), null );
+            knowsBar = countsForRelationship( null, withName( "KNOWS" ), label( "Bar" ) );
+            knows = countsForRelationship( null, withName( "KNOWS" ), null );
+
+            tx.success();
+        }
+
+        // then
+        assertEquals( 3, fooKnows );
+        assertEquals( 3, knowsBar );
+        assertEquals( 3, knows );
+        numberOfRelationshipsMatching( label( "Foo" ), withName( "KNOWS" ), null ).shouldBe( fooKnows );
+        numberOfRelationshipsMatching( null, withName( "KNOWS" ), label( "Bar" ) ).shouldBe( knowsBar );
+        numberOfRelationshipsMatching( null, withName( "KNOWS" ), null ).shouldBe( knows );
+        verifyAllCounts();
+    }
+
     private void verifyAllCounts()
     {
         NeoStore stores = db.resolveDependency( NeoStoreProvider.class ).evaluate();
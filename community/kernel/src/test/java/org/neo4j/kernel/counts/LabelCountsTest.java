@@ -156,6 +156,42 @@ public class LabelCountsTest
         assertEquals( 0, barCount );
     }
 
+    @Test
+    public void shouldIncludeLabelChangesOfTransaction() throws Exception
+    {
+        // given
+        GraphDatabaseService graphDb = db.getGraphDatabaseService();
+        Node n1, n2, n3;
+        try ( Transaction tx = graphDb.beginTx() )
+        {
+            n1 = graphDb.createNode( label( "Foo" ) );
+            n2 = graphDb.createNode( label( "Foo" ), label( "Bar" ) );
+            n3 = graphDb.createNode();
+
+            tx.success();
+        }
+        long fooDuring, barDuring;
+        try ( Transaction tx = graphDb.beginTx() )
+        {
+            n1.removeLabel( label( "Foo" ) );
+            n2.delete();
+            n3.addLabel( label( "Bar" ) );
+            graphDb.createNode( label( "Foo" ) );
+
+            // when
+            fooDuring = countsForNode( label( "Foo" ) );
+            barDuring = countsForNode( label( "Bar" ) );
+
+            tx.success();
+        }
+
+        // then
+        assertEquals( 1, fooDuring );
+        assertEquals( 1, barDuring );
+        assertEquals( fooDuring, numberOfNodesWith( label( "Foo" ) ) );
+        assertEquals( barDuring, numberOfNodesWith( label( "Bar" ) ) );
+    }
+
     /** Transactional version of {@link #countsForNode(Label)} */
     private long numberOfNodesWith( Label label )
     {
@@ -22,7 +22,6 @@ package org.neo4j.kernel.counts;
 import java.util.concurrent.Future;
 
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 
@@ -101,7 +100,6 @@ public class NodeCountsTest
     }
 
     @Test
-    @Ignore("TODO: reenable this test when we can etract proper counts form TxState")
     public void shouldIncludeNumberOfNodesAddedInTransaction() throws Exception
     {
         // given
@@ -127,7 +125,6 @@ public class NodeCountsTest
     }
 
     @Test
-    @Ignore("TODO: reenable this test when we can etract proper counts form TxState")
     public void shouldIncludeNumberOfNodesDeletedInTransaction() throws Exception
     {
         // given
@@ -187,7 +184,7 @@ public class NodeCountsTest
         // then
         assertEquals( 0, before );
         assertEquals( 0, nodes );
-        assertEquals( before, during );
+        assertEquals( 2, during );
         assertEquals( 2, after );
     }
 
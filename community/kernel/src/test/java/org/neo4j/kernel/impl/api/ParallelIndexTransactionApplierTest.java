@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.neo4j.kernel.impl.store.UnderlyingStorageException;
+import org.neo4j.kernel.impl.transaction.command.IndexTransactionApplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ParallelIndexTransactionApplierTest
+{
+    private final ExecutorService labelScanUpdateExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService indexUpdateExecutor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutDownExecutors()
+    {
+        labelScanUpdateExecutor.shutdown();
+        indexUpdateExecutor.shutdown();
+    }
+
+    @Test
+    public void shouldApplyLabelAndIndexUpdatesInParallelAndAwaitThemOnClose() throws Exception
+    {
+        // GIVEN two kinds of updates that can only complete if they run at the same time
+        final CountDownLatch bothStarted = new CountDownLatch( 2 );
+        IndexTransactionApplier delegate = mock( IndexTransactionApplier.class );
+        Answer<Void> awaitTheOther = new Answer<Void>()
+        {
+            @Override
+            public Void answer( InvocationOnMock invocation ) throws Throwable
+            {
+                bothStarted.countDown();
+                assertTrue( bothStarted.await( 10, TimeUnit.SECONDS ) );
+                return null;
+            }
+        };
+        doAnswer( awaitTheOther ).when( delegate ).applyLabelUpdates();
+        doAnswer( awaitTheOther ).when( delegate ).applyIndexUpdates();
+        ParallelIndexTransactionApplier applier =
+                new ParallelIndexTransactionApplier( delegate, labelScanUpdateExecutor, indexUpdateExecutor );
+
+        // WHEN
+        applier.apply();
+        applier.close();
+
+        // THEN
+        assertEquals( 0, bothStarted.getCount() );
+        verify( delegate ).applyLabelUpdates();
+        verify( delegate ).applyIndexUpdates();
+        verify( delegate ).close();
+    }
+
+    @Test
+    public void shouldPropagateFailureFromWorkerThreadOnClose() throws Exception
+    {
+        // GIVEN
+        IndexTransactionApplier delegate = mock( IndexTransactionApplier.class );
+        UnderlyingStorageException failure = new UnderlyingStorageException( "index update failed" );
+        doThrow( failure ).when( delegate ).applyIndexUpdates();
+        ParallelIndexTransactionApplier applier =
+                new ParallelIndexTransactionApplier( delegate, labelScanUpdateExecutor, indexUpdateExecutor );
+
+        // WHEN
+        applier.apply();
+        try
+        {
+            applier.close();
+            fail( "Should have failed" );
+        }
+        catch ( UnderlyingStorageException e )
+        {
+            // THEN
+            assertEquals( failure, e );
+        }
+        verify( delegate ).close();
+    }
+}
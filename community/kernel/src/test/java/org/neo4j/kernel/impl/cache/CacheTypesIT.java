@@ -76,6 +76,14 @@ public class CacheTypesIT
         db.shutdown();
     }
 
+    @Test
+    public void testClockCache()
+    {
+        GraphDatabaseAPI db = newDb( ClockCacheProvider.NAME );
+        assertEquals( ClockCacheProvider.NAME, caches( db ).getProvider().getName() );
+        db.shutdown();
+    }
+
     @Test
     public void testInvalidCache()
     {
@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import org.neo4j.kernel.impl.util.StringLogger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SizeBoundedClockCacheTest
+{
+    private final SizeBoundedClockCache<Entity> cache = new SizeBoundedClockCache<>( "test", 1000, StringLogger.DEV_NULL );
+
+    @Test
+    public void shouldKeepTrackOfTheSizeOfTheCachedEntities() throws Exception
+    {
+        // WHEN
+        cache.put( new Entity( 1, 100 ) );
+        cache.put( new Entity( 2, 200 ) );
+        cache.put( new Entity( 3, 300 ) );
+        cache.remove( 2 );
+
+        // THEN
+        assertEquals( 400, cache.size() );
+        assertNull( cache.get( 2 ) );
+        assertEquals( 100, cache.get( 1 ).getRegisteredSize() );
+    }
+
+    @Test
+    public void shouldReplaceExistingEntityWhenForced() throws Exception
+    {
+        // GIVEN
+        cache.put( new Entity( 1, 100 ) );
+
+        // WHEN
+        Entity replacement = new Entity( 1, 300 );
+        cache.put( replacement, true );
+
+        // THEN
+        assertSame( replacement, cache.get( 1 ) );
+        assertEquals( 300, cache.size() );
+    }
+
+    @Test
+    public void shouldEvictEntitiesWhenFull() throws Exception
+    {
+        // WHEN
+        for ( int id = 0; id < 100; id++ )
+        {
+            cache.put( new Entity( id, 100 ) );
+        }
+
+        // THEN
+        assertTrue( "size " + cache.size(), cache.size() <= 950 );
+        assertNotNull( cache.get( 99 ) );
+        assertNull( cache.get( 0 ) );
+    }
+
+    @Test
+    public void shouldGiveReferencedEntitiesASecondChance() throws Exception
+    {
+        // GIVEN
+        for ( int id = 0; id < 9; id++ )
+        {
+            cache.put( new Entity( id, 100 ) );
+        }
+        cache.get( 0 );
+
+        // WHEN
+        cache.put( new Entity( 9, 100 ) );
+
+        // THEN
+        assertNotNull( cache.get( 0 ) );
+        assertNull( cache.get( 1 ) );
+        assertNotNull( cache.get( 2 ) );
+    }
+
+    @Test
+    public void shouldEvictWhenCachedEntityGrows() throws Exception
+    {
+        // GIVEN
+        Entity growing = new Entity( 0, 100 );
+        cache.put( growing );
+        for ( int id = 1; id < 5; id++ )
+        {
+            cache.put( new Entity( id, 100 ) );
+        }
+        cache.get( 0 );
+
+        // WHEN
+        cache.updateSize( growing, 800 );
+
+        // THEN
+        assertEquals( 800, growing.getRegisteredSize() );
+        assertSame( growing, cache.get( 0 ) );
+        assertTrue( "size " + cache.size(), cache.size() <= 900 );
+    }
+
+    @Test
+    public void shouldIgnoreSizeUpdatesOfEntitiesNotInTheCache() throws Exception
+    {
+        // GIVEN
+        Entity cached = new Entity( 0, 100 );
+        cache.put( cached );
+
+        // WHEN
+        cache.updateSize( new Entity( 0, 100 ), 500 );
+        cache.remove( 0 );
+        cache.updateSize( cached, 500 );
+
+        // THEN
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void shouldBeEmptyAfterClear() throws Exception
+    {
+        // GIVEN
+        for ( int id = 0; id < 5; id++ )
+        {
+            cache.put( new Entity( id, 100 ) );
+        }
+
+        // WHEN
+        cache.clear();
+
+        // THEN
+        assertEquals( 0, cache.size() );
+        for ( int id = 0; id < 5; id++ )
+        {
+            assertNull( cache.get( id ) );
+        }
+    }
+
+    @Test
+    public void shouldStayWithinMaxSizeWhenUsedConcurrently() throws Exception
+    {
+        // GIVEN
+        final SizeBoundedClockCache<Entity> cache =
+                new SizeBoundedClockCache<>( "test", 100_000, StringLogger.DEV_NULL );
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        List<Future<Void>> futures = new ArrayList<>();
+
+        // WHEN
+        for ( int i = 0; i < 8; i++ )
+        {
+            final int thread = i;
+            futures.add( executor.submit( new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    for ( int j = 0; j < 100_000; j++ )
+                    {
+                        long id = (j * 31 + thread) % 5_000;
+                        Entity entity = cache.get( id );
+                        if ( entity == null )
+                        {
+                            cache.put( new Entity( id, 100 ) );
+                        }
+                        else if ( j % 7 == 0 )
+                        {
+                            cache.remove( id );
+                        }
+                    }
+                    return null;
+                }
+            } ) );
+        }
+        for ( Future<Void> future : futures )
+        {
+            future.get();
+        }
+        executor.shutdown();
+
+        // THEN
+        long sizeOfCachedEntities = 0;
+        for ( long id = 0; id < 5_000; id++ )
+        {
+            Entity entity = cache.get( id );
+            if ( entity != null )
+            {
+                sizeOfCachedEntities += entity.getRegisteredSize();
+            }
+        }
+        assertEquals( sizeOfCachedEntities, cache.size() );
+        assertTrue( "size " + cache.size(), cache.size() <= 100_000 );
+    }
+
+    private static class Entity implements EntityWithSizeObject
+    {
+        private final long id;
+        private final int size;
+        private int registeredSize;
+
+        Entity( long id, int size )
+        {
+            this.id = id;
+            this.size = size;
+        }
+
+        @Override
+        public int sizeOfObjectInBytesIncludingOverhead()
+        {
+            return size;
+        }
+
+        @Override
+        public long getId()
+        {
+            return id;
+        }
+
+        @Override
+        public void setRegisteredSize( int size )
+        {
+            registeredSize = size;
+        }
+
+        @Override
+        public int getRegisteredSize()
+        {
+            return registeredSize;
+        }
+    }
+}
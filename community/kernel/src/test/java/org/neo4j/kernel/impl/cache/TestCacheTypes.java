@@ -21,6 +21,8 @@ package org.neo4j.kernel.impl.cache;
 
 import org.junit.Test;
 
+import org.neo4j.kernel.impl.util.StringLogger;
+
 import static org.junit.Assert.assertTrue;
 
 public class TestCacheTypes
@@ -43,6 +45,12 @@ public class TestCacheTypes
         assertCacheHonorsPutsSemantics( new StrongReferenceCache<>( "test" ) );
     }
 
+    @Test
+    public void clockCacheShouldHonorPutSemantics() throws Exception
+    {
+        assertCacheHonorsPutsSemantics( new SizeBoundedClockCache<>( "test", 1024, StringLogger.DEV_NULL ) );
+    }
+
     private void assertCacheHonorsPutsSemantics( Cache<EntityWithSizeObject> cache )
     {
         Entity version1 = new Entity( 10 );
@@ -31,6 +31,7 @@ import org.junit.Test;
 
 import org.neo4j.collection.primitive.Primitive;
 import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.kernel.impl.util.OffHeapRelIdBlocks;
 import org.neo4j.kernel.impl.util.RelIdArray;
 import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
 import org.neo4j.kernel.impl.util.RelIdIterator;
@@ -197,6 +198,117 @@ public class TestRelIdArray
         assertEquals( Arrays.asList( 0L, 2L ), asList( idsWithoutLast ) );
     }
 
+    @Test
+    public void shouldIterateIdsMovedOffHeapInTheSameOrder() throws Exception
+    {
+        // GIVEN
+        RelIdArray ids = new RelIdArray( 0 );
+        List<Long> expected = new ArrayList<>();
+        for ( long i = 0; i < 1000; i++ )
+        {
+            long id = i % 3 == 0 ? 0x1FFFFFFFFL - i * 1000 : i * 7;
+            ids.add( id, OUTGOING );
+            expected.add( id );
+        }
+        ids.add( 5, INCOMING );
+        expected.add( 5L );
+        OffHeapRelIdBlocks offHeap = new OffHeapRelIdBlocks( 1024 * 1024, 100 );
+
+        // WHEN
+        ids.moveBlocksOffHeap( offHeap );
+
+        // THEN
+        assertEquals( 1, offHeap.getNumberOfBlocks() );
+        assertEquals( 1000, offHeap.getNumberOfIds() );
+        assertEquals( expected, asList( ids ) );
+        assertEquals( 1000, ids.length( OUTGOING ) );
+    }
+
+    @Test
+    public void shouldBeAbleToChangeIdsMovedOffHeap() throws Exception
+    {
+        // GIVEN
+        RelIdArray ids = new RelIdArray( 0 );
+        for ( long id = 0; id < 200; id++ )
+        {
+            ids.add( id, INCOMING );
+        }
+        ids.moveBlocksOffHeap( new OffHeapRelIdBlocks( 1024 * 1024, 100 ) );
+        RelIdArray add = new RelIdArray( 0 );
+        add.add( 200, INCOMING );
+        PrimitiveLongSet remove = Primitive.longSet();
+        remove.add( 10L );
+        remove.add( 150L );
+
+        // WHEN
+        RelIdArray changed = RelIdArray.from( ids, add, remove );
+
+        // THEN
+        Set<Long> expected = new HashSet<>();
+        for ( long id = 0; id <= 200; id++ )
+        {
+            expected.add( id );
+        }
+        expected.remove( 10L );
+        expected.remove( 150L );
+        assertEquals( expected, new HashSet<>( asList( changed ) ) );
+
+        // WHEN
+        ids.add( 1000, INCOMING );
+
+        // THEN
+        assertEquals( 201, ids.length( INCOMING ) );
+        assertEquals( 1000L, (long) asList( ids ).get( 200 ) );
+    }
+
+    @Test
+    public void iteratorShouldContinueWhereItWasWhenIdsAreMovedOffHeap() throws Exception
+    {
+        // GIVEN
+        RelIdArray ids = new RelIdArray( 0 );
+        for ( long id = 0; id < 300; id++ )
+        {
+            ids.add( id * 3, OUTGOING );
+        }
+        RelIdIterator iterator = ids.iterator( OUTGOING );
+        for ( int i = 0; i < 100; i++ )
+        {
+            iterator.next();
+        }
+
+        // WHEN
+        ids.moveBlocksOffHeap( new OffHeapRelIdBlocks( 1024 * 1024, 100 ) );
+        iterator.updateSource( ids, OUTGOING );
+
+        // THEN
+        for ( long id = 100; id < 300; id++ )
+        {
+            assertTrue( iterator.hasNext() );
+            assertEquals( id * 3, iterator.next() );
+        }
+        assertFalse( iterator.hasNext() );
+    }
+
+    @Test
+    public void shouldKeepIdsOnHeapWhenTheyDontFitInTheOffHeapBudget() throws Exception
+    {
+        // GIVEN
+        RelIdArray ids = new RelIdArray( 0 );
+        for ( long id = 0; id < 300; id++ )
+        {
+            ids.add( id, OUTGOING );
+        }
+        OffHeapRelIdBlocks offHeap = new OffHeapRelIdBlocks( 100, 100 );
+
+        // WHEN
+        ids.moveBlocksOffHeap( offHeap );
+
+        // THEN
+        assertEquals( 0, offHeap.getNumberOfBlocks() );
+        assertEquals( 0, offHeap.getUsedMemory() );
+        assertEquals( 300, asList( ids ).size() );
+    }
+
     private Set<Long> deplete( RelIdIterator iterator )
     {
         HashSet<Long> set = new HashSet<>();
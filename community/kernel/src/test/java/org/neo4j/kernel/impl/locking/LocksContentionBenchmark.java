@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.kernel.impl.locking.community.CommunityLockManger;
+import org.neo4j.kernel.impl.locking.striped.StripedLockManager;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Compares the throughput of the {@link Locks} implementations under contention, by having a number of threads
+ * run transaction like units of work: take a shared schema lock, exclusive locks on a few random nodes, and then
+ * release them all. Nodes are locked in order, so there are no deadlocks. Configured with system properties:
+ * minThreads, maxThreads, nodeCount, locksPerTx and durationMillis.
+ */
+public class LocksContentionBenchmark
+{
+    public static void main( String... args ) throws Exception
+    {
+        int minThreads = Integer.getInteger( "minThreads", 1 );
+        int maxThreads = Integer.getInteger( "maxThreads", Runtime.getRuntime().availableProcessors() * 2 );
+        int nodeCount = Integer.getInteger( "nodeCount", 10_000 );
+        int locksPerTx = Integer.getInteger( "locksPerTx", 5 );
+        long durationMillis = Long.getLong( "durationMillis", 5_000 );
+
+        for ( int threads = minThreads; threads <= maxThreads; threads *= 2 )
+        {
+            for ( Implementation impl : Implementation.values() )
+            {
+                long txs = run( impl.create(), threads, nodeCount, locksPerTx, durationMillis );
+                System.out.printf( "%-10s %3d threads: %,12d tx/s%n",
+                        impl, threads, txs * 1000 / durationMillis );
+            }
+        }
+    }
+
+    enum Implementation
+    {
+        COMMUNITY
+                {
+                    @Override
+                    Locks create()
+                    {
+                        return new CommunityLockManger();
+                    }
+                },
+        STRIPED
+                {
+                    @Override
+                    Locks create()
+                    {
+                        return new StripedLockManager( ResourceTypes.values() );
+                    }
+                };
+
+        abstract Locks create();
+    }
+
+    private static long run( final Locks locks, int threadCount, final int nodeCount, final int locksPerTx,
+                             long durationMillis ) throws InterruptedException
+    {
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicLong completedTxs = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch( 1 );
+        Thread[] threads = new Thread[threadCount];
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long[] nodes = new long[locksPerTx];
+                    long txs = 0;
+                    try
+                    {
+                        start.await();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        return;
+                    }
+                    while ( !stop.get() )
+                    {
+                        for ( int j = 0; j < nodes.length; j++ )
+                        {
+                            nodes[j] = random.nextInt( nodeCount );
+                        }
+                        Arrays.sort( nodes );
+                        try ( Locks.Client client = locks.newClient() )
+                        {
+                            client.acquireShared( ResourceTypes.SCHEMA, ResourceTypes.schemaResource() );
+                            for ( long node : nodes )
+                            {
+                                client.acquireExclusive( ResourceTypes.NODE, node );
+                            }
+                        }
+                        txs++;
+                    }
+                    completedTxs.addAndGet( txs );
+                }
+            };
+            threads[i].start();
+        }
+
+        long startTime = nanoTime();
+        start.countDown();
+        MILLISECONDS.sleep( durationMillis );
+        stop.set( true );
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        long elapsedMillis = NANOSECONDS.toMillis( nanoTime() - startTime );
+        return completedTxs.get() * durationMillis / Math.max( elapsedMillis, 1 );
+    }
+}
@@ -33,6 +33,7 @@ import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseBuilder;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.graphdb.mockfs.EphemeralFileSystemAbstraction;
 import org.neo4j.helpers.Pair;
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.io.pagecache.PageCache;
@@ -165,6 +166,40 @@ public class CountsRotationTest
         db.shutdown();
     }
 
+    @Test
+    public void shouldRecoverWhenAllDirtyPagesWereWrittenOutBeforeACrash() throws IOException
+    {
+        // GIVEN
+        GraphDatabaseAPI db = (GraphDatabaseAPI) dbBuilder.newGraphDatabase();
+        try ( Transaction tx = db.beginTx() )
+        {
+            db.createNode( A );
+            tx.success();
+        }
+
+        // WHEN
+        // the pages get written out, like the background flusher does, but the store is not flushed
+        db.getDependencyResolver().resolveDependency( PageCache.class ).flush();
+        EphemeralFileSystemAbstraction crashed = fsRule.get().snapshot();
+        db.shutdown();
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().setFileSystem( crashed )
+                .newImpermanentDatabaseBuilder( dir.getPath() ).newGraphDatabase();
+
+        // THEN
+        try
+        {
+            CountsTracker tracker = db.getDependencyResolver().resolveDependency( NeoStore.class ).getCounts();
+            int labelId = db.getDependencyResolver().resolveDependency( LabelTokenHolder.class ).getIdByName( A.name() );
+            assertEquals( 1, tracker.nodeCount( -1 ) );
+            assertEquals( 1, tracker.nodeCount( labelId ) );
+        }
+        finally
+        {
+            db.shutdown();
+            crashed.shutdown();
+        }
+    }
+
     private final Label A = DynamicLabel.label( "A" );
     private final Label B = DynamicLabel.label( "B" );
     private final Label C = DynamicLabel.label( "C" );
@@ -25,6 +25,7 @@ import org.junit.rules.TestName;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.Future;
 
 import org.neo4j.graphdb.mockfs.EphemeralFileSystemAbstraction;
@@ -44,6 +45,8 @@ import org.neo4j.test.PageCacheRule;
 import org.neo4j.test.ThreadingRule;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.neo4j.kernel.impl.store.CommonAbstractStore.buildTypeDescriptorAndVersion;
 import static org.neo4j.kernel.impl.store.counts.CountsStore.RECORD_SIZE;
@@ -183,6 +186,87 @@ public class CountsTrackerTest
         }
     }
 
+    @Test
+    public void shouldNotBlockUpdatesWhileAnotherThreadIsPerformingRotation() throws Exception
+    {
+        // given
+        CountsTracker.createEmptyCountsStore( pageCache(), storeFile(), VERSION );
+        CountsOracle oracle = oracle();
+        int newTxId = 2;
+        Barrier.Control barrier = new Barrier.Control();
+        try ( CountsTracker tracker =
+                      new InstrumentedCountsTracker( fs.get(), pageCache(), storeFile(), BASE_TX_ID, barrier ) )
+        {
+            oracle.update( tracker );
+            Future<Void> task = threading.execute( new Function<CountsTracker, Void>()
+            {
+                @Override
+                public Void apply( CountsTracker tracker )
+                {
+                    try
+                    {
+                        tracker.rotate( 1 );
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new AssertionError( e );
+                    }
+                    return null;
+                }
+            }, tracker );
+            barrier.await();
+
+            // when
+            CountsOracle delta = new CountsOracle();
+            {
+                CountsOracle.Node n1 = delta.node( 1 );
+                CountsOracle.Node n2 = delta.node( 1, 4 );  // Label 4 has not been used before...
+                delta.relationship( n1, 1, n2 );
+                delta.relationship( n2, 2, n1 ); // relationshipType 2 has not been used before...
+            }
+            delta.update( tracker );
+            delta.update( oracle );
+
+            // then
+            oracle.verify( tracker );
+            barrier.release();
+            task.get();
+            oracle.verify( tracker );
+            tracker.rotate( newTxId );
+        }
+        try ( CountsTracker tracker = new CountsTracker( fs.get(), pageCache(), storeFile(), newTxId ) )
+        {
+            oracle.verify( tracker );
+        }
+    }
+
+    @Test
+    public void shouldStoreCountsOfTokenIdsTooLargeToBePacked() throws Exception
+    {
+        // given
+        CountsTracker.createEmptyCountsStore( pageCache(), storeFile(), VERSION );
+        int largeTypeId = Integer.MAX_VALUE - 1;
+
+        // when
+        try ( CountsTracker tracker = new CountsTracker( fs.get(), pageCache(), storeFile(), BASE_TX_ID ) )
+        {
+            tracker.incrementRelationshipCount( -1, largeTypeId, 3, 2 );
+            tracker.incrementRelationshipCount( -1, 3, -1, 5 );
+            tracker.incrementNodeCount( largeTypeId, 7 );
+            assertEquals( 2, tracker.relationshipCount( -1, largeTypeId, 3 ) );
+            tracker.rotate( 1 );
+        }
+
+        // then
+        try ( CountsTracker tracker = new CountsTracker( fs.get(), pageCache(), storeFile(), BASE_TX_ID ) )
+        {
+            assertEquals( 2, tracker.relationshipCount( -1, largeTypeId, 3 ) );
+            assertEquals( 5, tracker.relationshipCount( -1, 3, -1 ) );
+            assertEquals( 0, tracker.relationshipCount( -1, 3, 3 ) );
+            assertEquals( 7, tracker.nodeCount( largeTypeId ) );
+        }
+    }
+
     @Test
     public void shouldPickStoreFileWithLargerTxId() throws IOException
     {
@@ -259,6 +343,129 @@ public class CountsTrackerTest
         }
     }
 
+    @Test
+    public void shouldUpdateExistingCountsInPlaceOnRotation() throws Exception
+    {
+        // given
+        CountsTracker.createEmptyCountsStore( pageCache(), storeFile(), VERSION );
+        CountsOracle oracle = oracle();
+        File storeFile;
+        try ( CountsTracker tracker = new CountsTracker( fs.get(), pageCache(), storeFile(), BASE_TX_ID ) )
+        {
+            oracle.update( tracker );
+            tracker.rotate( 2 );
+            storeFile = tracker.storeFile();
+
+            // when
+            existingCountsDelta().update( tracker );
+            existingCountsDelta().update( oracle );
+            tracker.rotate( 3 );
+
+            // then
+            assertEquals( storeFile, tracker.storeFile() );
+            oracle.verify( tracker );
+        }
+        assertFalse( fs.get().fileExists( deltaFile() ) );
+        try ( CountsTracker tracker = new CountsTracker( fs.get(), pageCache(), storeFile(), 3 ) )
+        {
+            assertEquals( storeFile, tracker.storeFile() );
+            oracle.verify( tracker );
+        }
+    }
+
+    @Test
+    public void shouldFinishInterruptedInPlaceRotationOnStartup() throws Exception
+    {
+        // given
+        KeepingDeltaFileSystem fs = new KeepingDeltaFileSystem();
+        EphemeralFileSystemAbstraction crashed;
+        CountsOracle oracle = oracle();
+        try
+        {
+            CountsTracker.createEmptyCountsStore( pageCache.getPageCache( fs, config ), storeFile(), VERSION );
+            try ( CountsTracker tracker = new CountsTracker( fs, pageCache.getPageCache( fs, config ), storeFile(),
+                    BASE_TX_ID ) )
+            {
+                oracle.update( tracker );
+                tracker.rotate( 2 );
+            }
+            // the store files as they were when the in place rotation started
+            crashed = fs.snapshot();
+            try ( CountsTracker tracker = new CountsTracker( fs, pageCache.getPageCache( fs, config ), storeFile(),
+                    2 ) )
+            {
+                existingCountsDelta().update( tracker );
+                existingCountsDelta().update( oracle );
+                tracker.rotate( 3 );
+            }
+            // with the delta log, but none of the records, written
+            copyFile( fs, crashed, deltaFile(), fs.getFileSize( deltaFile() ) );
+        }
+        finally
+        {
+            fs.shutdown();
+        }
+
+        // when
+        try ( CountsTracker tracker = new CountsTracker( crashed, pageCache.getPageCache( crashed, config ),
+                storeFile(), 3 ) )
+        {
+            // then
+            oracle.verify( tracker );
+        }
+        finally
+        {
+            assertFalse( crashed.fileExists( deltaFile() ) );
+            crashed.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldIgnoreIncompleteDeltaLogOnStartup() throws Exception
+    {
+        // given
+        KeepingDeltaFileSystem fs = new KeepingDeltaFileSystem();
+        EphemeralFileSystemAbstraction crashed;
+        CountsOracle oracle = oracle();
+        try
+        {
+            CountsTracker.createEmptyCountsStore( pageCache.getPageCache( fs, config ), storeFile(), VERSION );
+            try ( CountsTracker tracker = new CountsTracker( fs, pageCache.getPageCache( fs, config ), storeFile(),
+                    BASE_TX_ID ) )
+            {
+                oracle.update( tracker );
+                tracker.rotate( 2 );
+            }
+            crashed = fs.snapshot();
+            try ( CountsTracker tracker = new CountsTracker( fs, pageCache.getPageCache( fs, config ), storeFile(),
+                    2 ) )
+            {
+                existingCountsDelta().update( tracker );
+                tracker.rotate( 3 );
+            }
+            // the crash happened while the delta log was being written
+            copyFile( fs, crashed, deltaFile(), fs.getFileSize( deltaFile() ) - 1 );
+        }
+        finally
+        {
+            fs.shutdown();
+        }
+
+        // when
+        try ( CountsTracker tracker = new CountsTracker( crashed, pageCache.getPageCache( crashed, config ),
+                storeFile(), 2 ) )
+        {
+            // then
+            assertTrue( tracker.acceptTx( 3 ) );
+            oracle.verify( tracker );
+        }
+        finally
+        {
+            assertFalse( crashed.fileExists( deltaFile() ) );
+            crashed.shutdown();
+        }
+    }
+
     @Test(expected = UnderlyingStorageException.class)
     public void shouldFailToConstructACountsTrackerIfStoreIsTooOld() throws IOException
     {
@@ -299,6 +506,15 @@ public class CountsTrackerTest
     }
 
 
+    /** Changes counts that the {@link #oracle()} already has, so that they can be updated in place. */
+    private static CountsOracle existingCountsDelta()
+    {
+        CountsOracle delta = new CountsOracle();
+        delta.node( 2 );
+        delta.indexUpdatesAndSize( 1, 2, 10l, 60l );
+        return delta;
+    }
+
     private File alphaStoreFile()
     {
         return new File( testName.getMethodName() + CountsTracker.ALPHA );
@@ -309,6 +525,11 @@ public class CountsTrackerTest
         return new File( testName.getMethodName() + CountsTracker.BETA );
     }
 
+    private File deltaFile()
+    {
+        return new File( testName.getMethodName() + CountsTracker.DELTA );
+    }
+
     private File storeFile()
     {
         return new File( testName.getMethodName() );
@@ -327,6 +548,34 @@ public class CountsTrackerTest
         writer.openForReading().close();
     }
 
+    private static void copyFile( FileSystemAbstraction from, FileSystemAbstraction to, File file, long length )
+            throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( (int) length );
+        try ( StoreChannel source = from.open( file, "r" ) )
+        {
+            while ( buffer.hasRemaining() && source.read( buffer ) != -1 )
+            {
+                // keep reading
+            }
+        }
+        buffer.flip();
+        try ( StoreChannel target = to.open( file, "rw" ) )
+        {
+            target.write( buffer );
+        }
+    }
+
+    /** Keeps the delta logs of in place rotations around, as if the rotations had crashed right before the end. */
+    private static class KeepingDeltaFileSystem extends EphemeralFileSystemAbstraction
+    {
+        @Override
+        public boolean deleteFile( File fileName )
+        {
+            return !fileName.getName().endsWith( CountsTracker.DELTA ) && super.deleteFile( fileName );
+        }
+    }
+
     private static class InstrumentedCountsTracker extends CountsTracker
     {
         private final Barrier barrier;
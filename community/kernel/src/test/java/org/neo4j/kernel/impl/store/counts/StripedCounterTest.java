@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.store.counts;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StripedCounterTest
+{
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 100_000;
+
+    @Test
+    public void shouldCountEveryAdditionFromConcurrentThreads() throws Exception
+    {
+        // GIVEN
+        StripedCounter counter = new StripedCounter( 10, new AtomicInteger( 1 ) );
+
+        // WHEN
+        addConcurrently( counter );
+
+        // THEN
+        assertEquals( 10 + THREADS * ADDS_PER_THREAD, counter.sum() );
+    }
+
+    @Test
+    public void shouldNotSpreadMoreCountersThanTheBudgetAllows() throws Exception
+    {
+        // GIVEN
+        AtomicInteger budget = new AtomicInteger( 1 );
+        StripedCounter first = new StripedCounter( 0, budget );
+        StripedCounter second = new StripedCounter( 0, budget );
+
+        // WHEN
+        addConcurrently( first, second );
+
+        // THEN
+        assertTrue( "Budget overdrawn: " + budget.get(), budget.get() >= 0 );
+        assertEquals( THREADS * ADDS_PER_THREAD, first.sum() );
+        assertEquals( THREADS * ADDS_PER_THREAD, second.sum() );
+    }
+
+    private void addConcurrently( final StripedCounter... counters ) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < THREADS; t++ )
+            {
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        for ( int i = 0; i < ADDS_PER_THREAD; i++ )
+                        {
+                            for ( StripedCounter counter : counters )
+                            {
+                                counter.add( 1 );
+                            }
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
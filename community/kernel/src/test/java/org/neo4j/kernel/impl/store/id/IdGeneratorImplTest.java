@@ -23,13 +23,26 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.neo4j.kernel.impl.store.UnderlyingStorageException;
 import org.neo4j.test.EphemeralFileSystemRule;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class IdGeneratorImplTest
@@ -87,4 +100,151 @@ public class IdGeneratorImplTest
         // Then
         assertThat( idGenerator.getHighId(), equalTo( 42L ) );
     }
+
+    @Test
+    public void shouldReuseFreedIdsInOrderAfterRestart() throws Exception
+    {
+        // GIVEN
+        IdGeneratorImpl.createGenerator( fsr.get(), file );
+        IdGeneratorImpl idGenerator = new IdGeneratorImpl( fsr.get(), file, 2, 100, false, 0 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            idGenerator.nextId();
+        }
+        idGenerator.freeId( 7 );
+        idGenerator.freeId( 2 );
+        idGenerator.freeId( 5 );
+        idGenerator.close();
+
+        // WHEN
+        idGenerator = new IdGeneratorImpl( fsr.get(), file, 2, 100, false, 0 );
+
+        // THEN
+        assertEquals( 7, idGenerator.nextId() );
+        assertEquals( 2, idGenerator.nextId() );
+        assertEquals( 5, idGenerator.nextId() );
+        assertEquals( 10, idGenerator.nextId() );
+        idGenerator.close();
+    }
+
+    @Test
+    public void shouldNeverHandOutTheSameIdTwiceToConcurrentThreads() throws Exception
+    {
+        // GIVEN
+        IdGeneratorImpl.createGenerator( fsr.get(), file );
+        final IdGeneratorImpl idGenerator = new IdGeneratorImpl( fsr.get(), file, 16, Long.MAX_VALUE, true, 0 );
+        final ConcurrentHashMap<Long,Boolean> idsInUse = new ConcurrentHashMap<>();
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            // WHEN threads allocate and free ids
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < threads; t++ )
+            {
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        List<Long> ids = new ArrayList<>();
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for ( int i = 0; i < 10_000; i++ )
+                        {
+                            if ( ids.isEmpty() || random.nextBoolean() )
+                            {
+                                long id = idGenerator.nextId();
+                                assertNull( "Id " + id + " handed out twice", idsInUse.put( id, Boolean.TRUE ) );
+                                ids.add( id );
+                            }
+                            else
+                            {
+                                long id = ids.remove( ids.size() - 1 );
+                                idsInUse.remove( id );
+                                idGenerator.freeId( id );
+                            }
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // THEN freed ids were reused
+        assertTrue( idGenerator.getHighId() < threads * 10_000 );
+        idGenerator.close();
+    }
+
+    @Test
+    public void shouldNotLoseFreedIdsWhenClosedWhileFreeing() throws Exception
+    {
+        // GIVEN
+        IdGeneratorImpl.createGenerator( fsr.get(), file );
+        final IdGeneratorImpl idGenerator = new IdGeneratorImpl( fsr.get(), file, 4, Long.MAX_VALUE, false, 0 );
+        final int threads = 4;
+        final int idsPerThread = 1_000;
+        for ( int i = 0; i < threads * idsPerThread; i++ )
+        {
+            idGenerator.nextId();
+        }
+        final Set<Long> freedIds = Collections.newSetFromMap( new ConcurrentHashMap<Long,Boolean>() );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            // WHEN threads free ids while the generator is closed
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < threads; t++ )
+            {
+                final int thread = t;
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        for ( long id = thread; id < threads * idsPerThread; id += threads )
+                        {
+                            try
+                            {
+                                idGenerator.freeId( id );
+                            }
+                            catch ( IllegalStateException e )
+                            {   // closed
+                                return null;
+                            }
+                            freedIds.add( id );
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            Thread.sleep( 1 );
+            idGenerator.close();
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // THEN every id that was freed is reused after a restart
+        IdGeneratorImpl reopened = new IdGeneratorImpl( fsr.get(), file, 4, Long.MAX_VALUE, false, 0 );
+        Set<Long> reusedIds = new HashSet<>();
+        for ( int i = 0; i < freedIds.size(); i++ )
+        {
+            reusedIds.add( reopened.nextId() );
+        }
+        assertEquals( freedIds, reusedIds );
+        reopened.close();
+    }
 }
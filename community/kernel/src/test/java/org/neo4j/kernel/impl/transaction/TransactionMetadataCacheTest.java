@@ -62,6 +62,29 @@ public class TransactionMetadataCacheTest
                 metadata );
     }
 
+    @Test
+    public void shouldEvictOlderTransactionsWhenCachingNewerOnes()
+    {
+        // given
+        final TransactionMetadataCache cache = new TransactionMetadataCache( 2, 2 );
+        final LogPosition position = new LogPosition( 3, 4 );
+        final int masterId = 0;
+        final int authorId = 1;
+        final int checksum = 2;
+
+        // when
+        cache.cacheTransactionMetadata( 42, position, masterId, authorId, checksum );
+        cache.cacheTransactionMetadata( 43, position, masterId, authorId, checksum );
+        cache.cacheTransactionMetadata( 44, position, masterId, authorId, checksum );
+
+        // then
+        assertNull( cache.getTransactionMetadata( 42 ) );
+        assertEquals( new TransactionMetadataCache.TransactionMetadata( masterId, authorId, position, checksum ),
+                cache.getTransactionMetadata( 43 ) );
+        assertEquals( new TransactionMetadataCache.TransactionMetadata( masterId, authorId, position, checksum ),
+                cache.getTransactionMetadata( 44 ) );
+    }
+
     @Test
     public void shouldThrowWhenCachingATxWithNegativeOffsetPosition()
     {
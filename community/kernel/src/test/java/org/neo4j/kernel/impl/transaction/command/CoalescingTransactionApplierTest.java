@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.command;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import org.neo4j.kernel.DefaultIdGeneratorFactory;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.core.CacheAccessBackDoor;
+import org.neo4j.kernel.impl.locking.LockGroup;
+import org.neo4j.kernel.impl.locking.LockService;
+import org.neo4j.kernel.impl.store.NeoStore;
+import org.neo4j.kernel.impl.store.RelationshipStore;
+import org.neo4j.kernel.impl.store.StoreFactory;
+import org.neo4j.kernel.impl.store.record.RelationshipGroupRecord;
+import org.neo4j.kernel.impl.store.record.RelationshipRecord;
+import org.neo4j.kernel.impl.transaction.command.Command.RelationshipCommand;
+import org.neo4j.kernel.impl.transaction.command.Command.RelationshipGroupCommand;
+import org.neo4j.kernel.monitoring.Monitors;
+import org.neo4j.test.EphemeralFileSystemRule;
+import org.neo4j.test.PageCacheRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import static org.neo4j.kernel.impl.store.StoreFactory.configForStoreDir;
+import static org.neo4j.kernel.impl.util.StringLogger.DEV_NULL;
+
+public class CoalescingTransactionApplierTest
+{
+    private final NeoCommandHandler delegate = mock( NeoCommandHandler.class );
+    private final CoalescingTransactionApplier applier = new CoalescingTransactionApplier( delegate );
+
+    @Test
+    public void shouldOnlyApplyLastChangeToRelationship() throws IOException
+    {
+        // GIVEN
+        RelationshipCommand first = relationshipCommand( 5, true );
+        RelationshipCommand second = relationshipCommand( 5, true );
+
+        // WHEN
+        applier.visitRelationshipCommand( first );
+        applier.visitRelationshipCommand( second );
+
+        // THEN
+        verifyZeroInteractions( delegate );
+        applier.apply();
+        verify( delegate, never() ).visitRelationshipCommand( same( first ) );
+        InOrder order = inOrder( delegate );
+        order.verify( delegate ).visitRelationshipCommand( same( second ) );
+        order.verify( delegate ).apply();
+    }
+
+    @Test
+    public void shouldOnlyApplyLastChangeToRelationshipGroup() throws IOException
+    {
+        // GIVEN
+        RelationshipGroupCommand first = new RelationshipGroupCommand().init( new RelationshipGroupRecord( 3, 1 ) );
+        RelationshipGroupCommand second = new RelationshipGroupCommand().init( new RelationshipGroupRecord( 3, 1 ) );
+
+        // WHEN
+        applier.visitRelationshipGroupCommand( first );
+        applier.visitRelationshipGroupCommand( second );
+        applier.apply();
+
+        // THEN
+        verify( delegate, never() ).visitRelationshipGroupCommand( same( first ) );
+        verify( delegate ).visitRelationshipGroupCommand( same( second ) );
+    }
+
+    @Test
+    public void shouldNotSwallowRelationshipDeletions() throws IOException
+    {
+        // GIVEN
+        RelationshipCommand deletion = relationshipCommand( 5, false );
+        RelationshipCommand creation = relationshipCommand( 5, true );
+
+        // WHEN
+        applier.visitRelationshipCommand( deletion );
+        applier.visitRelationshipCommand( creation );
+        applier.apply();
+
+        // THEN
+        InOrder order = inOrder( delegate );
+        order.verify( delegate ).visitRelationshipCommand( same( deletion ) );
+        order.verify( delegate ).visitRelationshipCommand( same( creation ) );
+    }
+
+    @Test
+    public void shouldApplyChangeBeforeDeletionOfSameRelationship() throws IOException
+    {
+        // GIVEN
+        RelationshipCommand change = relationshipCommand( 5, true );
+        RelationshipCommand deletion = relationshipCommand( 5, false );
+
+        // WHEN
+        applier.visitRelationshipCommand( change );
+        applier.visitRelationshipCommand( deletion );
+        applier.apply();
+
+        // THEN
+        InOrder order = inOrder( delegate );
+        order.verify( delegate ).visitRelationshipCommand( same( change ) );
+        order.verify( delegate ).visitRelationshipCommand( same( deletion ) );
+    }
+
+    @Test
+    public void shouldEvictEndpointsOfRelationshipCreatedAndDeletedInSameBatch() throws IOException
+    {
+        // GIVEN a record left behind by a relationship that was deleted before the batch, whose id gets reused
+        RelationshipStore relationshipStore = neoStore.getRelationshipStore();
+        long id = relationshipStore.nextId();
+        relationshipStore.updateRecord( relationshipRecord( id, true, 1, 2 ) );
+        relationshipStore.updateRecord( relationshipRecord( id, false, 1, 2 ) );
+        CacheAccessBackDoor cacheAccess = mock( CacheAccessBackDoor.class );
+        CoalescingTransactionApplier storeApplier = new CoalescingTransactionApplier(
+                new CacheInvalidationTransactionApplier( new NeoStoreTransactionApplier( neoStore, cacheAccess,
+                        mock( LockService.class ), new LockGroup(), 2 ), neoStore, cacheAccess ) );
+
+        // WHEN one transaction creates a relationship with that id, and the next deletes it, as read from the log
+        storeApplier.visitRelationshipCommand( new RelationshipCommand().init( relationshipRecord( id, true, 3, 4 ) ) );
+        storeApplier.visitRelationshipCommand( new RelationshipCommand().init( relationshipRecord( id, false, -1, -1 ) ) );
+        storeApplier.apply();
+
+        // THEN
+        RelationshipRecord stored = relationshipStore.forceGetRaw( id );
+        assertFalse( stored.inUse() );
+        assertEquals( 3, stored.getFirstNode() );
+        assertEquals( 4, stored.getSecondNode() );
+        verify( cacheAccess ).removeNodeFromCache( 3 );
+        verify( cacheAccess ).removeNodeFromCache( 4 );
+        verify( cacheAccess, never() ).removeNodeFromCache( 1 );
+        verify( cacheAccess, never() ).removeNodeFromCache( 2 );
+    }
+
+    @Test
+    public void shouldPassOtherCommandsStraightThrough() throws IOException
+    {
+        // GIVEN
+        Command.PropertyCommand command = mock( Command.PropertyCommand.class );
+
+        // WHEN
+        applier.visitPropertyCommand( command );
+
+        // THEN
+        verify( delegate ).visitPropertyCommand( command );
+        verify( delegate, never() ).apply();
+        verify( delegate, never() ).visitRelationshipCommand( any( RelationshipCommand.class ) );
+    }
+
+    private RelationshipCommand relationshipCommand( long id, boolean inUse )
+    {
+        return new RelationshipCommand().init( relationshipRecord( id, inUse, 1, 2 ) );
+    }
+
+    private RelationshipRecord relationshipRecord( long id, boolean inUse, long firstNode, long secondNode )
+    {
+        RelationshipRecord record = new RelationshipRecord( id, firstNode, secondNode, 0 );
+        record.setInUse( inUse );
+        return record;
+    }
+
+    public final @Rule EphemeralFileSystemRule fsr = new EphemeralFileSystemRule();
+    public final @Rule PageCacheRule pageCacheRule = new PageCacheRule();
+    private NeoStore neoStore;
+
+    @Before
+    public void before()
+    {
+        File storeDir = new File( "dir" );
+        Config config = configForStoreDir( new Config(), storeDir );
+        StoreFactory storeFactory = new StoreFactory( config, new DefaultIdGeneratorFactory(),
+                pageCacheRule.getPageCache( fsr.get(), config ), fsr.get(), DEV_NULL, new Monitors() );
+        neoStore = storeFactory.newNeoStore( true, false );
+    }
+
+    @After
+    public void after()
+    {
+        neoStore.close();
+    }
+}
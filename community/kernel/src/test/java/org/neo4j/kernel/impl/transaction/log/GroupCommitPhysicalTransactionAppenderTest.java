@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.neo4j.kernel.impl.store.record.NodeRecord;
+import org.neo4j.kernel.impl.transaction.TransactionRepresentation;
+import org.neo4j.kernel.impl.transaction.command.Command;
+import org.neo4j.kernel.impl.transaction.command.Command.NodeCommand;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import static org.neo4j.kernel.impl.transaction.log.BatchingPhysicalTransactionAppender.DEFAULT_WAIT_STRATEGY;
+import static org.neo4j.kernel.impl.util.IdOrderingQueue.BYPASS;
+
+public class GroupCommitPhysicalTransactionAppenderTest
+{
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountingLogChannel channel = new CountingLogChannel();
+    private final TransactionMetadataCache cache = new TransactionMetadataCache( 10, 1_000 );
+    private final TransactionIdStore transactionIdStore = mock( TransactionIdStore.class );
+    private final AtomicLong lastTransactionId = new AtomicLong();
+    private GroupCommitPhysicalTransactionAppender appender;
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+        if ( appender != null )
+        {
+            appender.close();
+        }
+    }
+
+    @Test
+    public void shouldAppendConcurrentTransactionsWithDistinctTransactionIds() throws Exception
+    {
+        // GIVEN
+        appender = newAppender( DEFAULT_WAIT_STRATEGY );
+        int threads = 8;
+        final int transactionsPerThread = 50;
+
+        // WHEN
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for ( int i = 0; i < threads; i++ )
+        {
+            futures.add( executor.submit( new Callable<List<Long>>()
+            {
+                @Override
+                public List<Long> call() throws Exception
+                {
+                    List<Long> transactionIds = new ArrayList<>();
+                    for ( int j = 0; j < transactionsPerThread; j++ )
+                    {
+                        transactionIds.add( appender.append( transaction() ) );
+                    }
+                    return transactionIds;
+                }
+            } ) );
+        }
+
+        // THEN
+        Set<Long> transactionIds = new HashSet<>();
+        for ( Future<List<Long>> future : futures )
+        {
+            transactionIds.addAll( future.get() );
+        }
+        assertEquals( threads * transactionsPerThread, transactionIds.size() );
+        for ( long transactionId = 1; transactionId <= threads * transactionsPerThread; transactionId++ )
+        {
+            assertNotNull( cache.getTransactionMetadata( transactionId ) );
+        }
+    }
+
+    @Test
+    public void shouldForceOnceForAllTransactionsInAGroup() throws Exception
+    {
+        // GIVEN a writer thread that is held back while the group builds up
+        ControlledIdler idler = new ControlledIdler();
+        appender = newAppender( idler );
+        idler.awaitIdle();
+        int groupSize = 5;
+        List<Future<Long>> futures = new ArrayList<>();
+        for ( int i = 0; i < groupSize; i++ )
+        {
+            futures.add( executor.submit( new Callable<Long>()
+            {
+                @Override
+                public Long call() throws Exception
+                {
+                    return appender.append( transaction() );
+                }
+            } ) );
+        }
+        while ( pendingTransactions() < groupSize )
+        {
+            Thread.sleep( 1 );
+        }
+
+        // WHEN
+        idler.letLoose();
+
+        // THEN
+        List<Long> transactionIds = new ArrayList<>();
+        for ( Future<Long> future : futures )
+        {
+            transactionIds.add( future.get() );
+        }
+        Collections.sort( transactionIds );
+        assertEquals( asList( 1, 2, 3, 4, 5 ), transactionIds );
+        assertEquals( 1, channel.forces.get() );
+    }
+
+    private GroupCommitPhysicalTransactionAppender newAppender( WaitStrategy waitStrategy )
+    {
+        LogFile logFile = mock( LogFile.class );
+        when( logFile.getWriter() ).thenReturn( channel );
+        when( transactionIdStore.nextCommittingTransactionId() ).thenAnswer( new Answer<Long>()
+        {
+            @Override
+            public Long answer( InvocationOnMock invocation ) throws Throwable
+            {
+                return lastTransactionId.incrementAndGet();
+            }
+        } );
+        return new GroupCommitPhysicalTransactionAppender( logFile, cache, transactionIdStore, BYPASS, waitStrategy );
+    }
+
+    private int pendingTransactions()
+    {
+        int count = 0;
+        GroupCommitPhysicalTransactionAppender.PendingTransaction pending = appender.pendingHead.get();
+        while ( pending != GroupCommitPhysicalTransactionAppender.PendingTransaction.END && pending != null )
+        {
+            count++;
+            pending = pending.next;
+        }
+        return count;
+    }
+
+    private static List<Long> asList( long... values )
+    {
+        List<Long> list = new ArrayList<>();
+        for ( long value : values )
+        {
+            list.add( value );
+        }
+        return list;
+    }
+
+    private static TransactionRepresentation transaction()
+    {
+        List<Command> commands = new ArrayList<>();
+        NodeCommand nodeCommand = new NodeCommand();
+        NodeRecord record = new NodeRecord( 1 );
+        record.setInUse( true );
+        nodeCommand.init( new NodeRecord( record.getId() ), record );
+        commands.add( nodeCommand );
+        PhysicalTransactionRepresentation transaction = new PhysicalTransactionRepresentation( commands );
+        transaction.setHeader( new byte[0], 0, 0, 0, 0, 0, -1 );
+        return transaction;
+    }
+
+    private static class CountingLogChannel extends InMemoryLogChannel
+    {
+        final AtomicInteger forces = new AtomicInteger();
+
+        @Override
+        public void force() throws IOException
+        {
+            forces.incrementAndGet();
+            super.force();
+            // Nothing reads the written entries back, so make room for the next group in the fixed size buffer
+            reset();
+        }
+    }
+
+    private static class ControlledIdler implements WaitStrategy
+    {
+        private final CountDownLatch idle = new CountDownLatch( 1 );
+        private final CountDownLatch loose = new CountDownLatch( 1 );
+
+        @Override
+        public void wait( Thread thread )
+        {
+            idle.countDown();
+            try
+            {
+                loose.await();
+            }
+            catch ( InterruptedException e )
+            {
+                throw new RuntimeException( e );
+            }
+        }
+
+        void letLoose()
+        {
+            loose.countDown();
+        }
+
+        void awaitIdle() throws InterruptedException
+        {
+            idle.await();
+        }
+    }
+}
@@ -27,8 +27,10 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 
 import static org.neo4j.helpers.Exceptions.launderedException;
+import static org.neo4j.kernel.impl.util.JobScheduler.Group.cypherParallelReads;
 import static org.neo4j.kernel.impl.util.JobScheduler.Group.indexPopulation;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
@@ -116,6 +118,52 @@ public class Neo4jJobSchedulerTest
         assertThat( invocations.get(), equalTo(recorded) );
     }
 
+    @Test
+    public void shouldRunCypherParallelReadsOnNoMoreThreadsThanConfigured() throws Exception
+    {
+        // Given
+        scheduler = new Neo4jJobScheduler( "test", 2 );
+        scheduler.init();
+        final CountDownLatch release = new CountDownLatch( 1 );
+        Runnable job = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                invocations.incrementAndGet();
+                try
+                {
+                    release.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        // When
+        for ( int i = 0; i < 10; i++ )
+        {
+            scheduler.schedule( cypherParallelReads, job );
+        }
+        awaitInvocations( 2 );
+        sleep( 100 );
+
+        // Then
+        assertEquals( 2, invocations.get() );
+        release.countDown();
+        awaitInvocations( 10 );
+    }
+
+    private void awaitInvocations( int count )
+    {
+        while ( invocations.get() < count )
+        {
+            Thread.yield();
+        }
+    }
+
     private void awaitFirstInvocation()
     {
         while ( invocations.get() == 0 )
@@ -244,6 +244,12 @@ public class PageCacheRule extends ExternalResource
             pagedFile.force();
         }
 
+        @Override
+        public void setMaxReadAheadPages( int maxReadAheadPages )
+        {
+            pagedFile.setMaxReadAheadPages( maxReadAheadPages );
+        }
+
         @Override
         public long getLastPageId() throws IOException
         {
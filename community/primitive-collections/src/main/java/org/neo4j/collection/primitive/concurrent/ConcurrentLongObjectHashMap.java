@@ -0,0 +1,363 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.collection.primitive.concurrent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+
+/**
+ * A concurrent map from primitive longs to objects, using open addressing with linear probing, for when boxing
+ * keys and allocating entries in a {@link java.util.concurrent.ConcurrentHashMap} is too costly.
+ *
+ * Keys and values live in two parallel atomic arrays. Reads never lock and never write. A key is inserted by
+ * claiming an empty key slot with a CAS, after which that slot belongs to that key until the table is resized. The
+ * value of a key is then set, replaced and removed with CAS operations on its value slot, where null means that the
+ * key is not in the map. None of this allocates anything.
+ *
+ * Since removed keys keep their slots, the table fills up with claimed slots over time, and is then resized, which
+ * also gets rid of the removed keys. Resizing is the only thing that takes a lock: the resizing thread freezes every
+ * value slot, copies the live entries to a new table and publishes that. Writers that run into a frozen value wait for
+ * the new table and retry there, while readers simply read through the frozen values.
+ *
+ * @param <VALUE> type of values, which can not be null.
+ */
+public class ConcurrentLongObjectHashMap<VALUE>
+{
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+
+    /** Marks key slots that are not claimed. The key itself is kept in {@link #emptyKeyValue}. */
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    private final AtomicReference<VALUE> emptyKeyValue = new AtomicReference<>();
+    private volatile Table table;
+
+    public ConcurrentLongObjectHashMap()
+    {
+        this( DEFAULT_CAPACITY );
+    }
+
+    public ConcurrentLongObjectHashMap( int initialCapacity )
+    {
+        this.table = new Table( Integer.highestOneBit( Math.max( initialCapacity, 16 ) - 1 ) << 1 );
+    }
+
+    public VALUE get( long key )
+    {
+        if ( key == EMPTY_KEY )
+        {
+            return emptyKeyValue.get();
+        }
+        Table table = this.table;
+        int index = table.indexOf( key );
+        return index == -1 ? null : unfrozen( table.values.get( index ) );
+    }
+
+    public boolean containsKey( long key )
+    {
+        return get( key ) != null;
+    }
+
+    /** Associates the value with the key, returning the previous value, or null if there was none. */
+    public VALUE put( long key, VALUE value )
+    {
+        return update( key, null, value, false );
+    }
+
+    /** Associates the value with the key, unless there is a value already, which is then returned. */
+    public VALUE putIfAbsent( long key, VALUE value )
+    {
+        return update( key, null, value, true );
+    }
+
+    /** Replaces the value of the key, only if it currently is the expected one. */
+    public boolean replace( long key, VALUE expected, VALUE value )
+    {
+        if ( expected == null )
+        {
+            throw new IllegalArgumentException( "Expected value can not be null" );
+        }
+        return update( key, expected, value, false ) == expected;
+    }
+
+    /** Removes the key, returning its value, or null if it was not in the map. */
+    public VALUE remove( long key )
+    {
+        return update( key, null, null, false );
+    }
+
+    /** Removes the key, only if its value currently is the expected one. */
+    public boolean remove( long key, VALUE expected )
+    {
+        if ( expected == null )
+        {
+            throw new IllegalArgumentException( "Expected value can not be null" );
+        }
+        return update( key, expected, null, false ) == expected;
+    }
+
+    /** Counts the entries in the map, which requires looking at every slot. */
+    public int size()
+    {
+        int size = emptyKeyValue.get() != null ? 1 : 0;
+        Table table = this.table;
+        for ( int i = 0; i < table.capacity; i++ )
+        {
+            if ( unfrozen( table.values.get( i ) ) != null )
+            {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Visits the entries of the map. Entries that are added or removed while visiting may or may not be visited.
+     */
+    public void visitEntries( PrimitiveLongObjectVisitor<VALUE> visitor )
+    {
+        VALUE value = emptyKeyValue.get();
+        if ( value != null )
+        {
+            visitor.visited( EMPTY_KEY, value );
+        }
+        Table table = this.table;
+        for ( int i = 0; i < table.capacity; i++ )
+        {
+            value = unfrozen( table.values.get( i ) );
+            if ( value != null )
+            {
+                visitor.visited( table.keys.get( i ), value );
+            }
+        }
+    }
+
+    /**
+     * Changes the value of the key from the expected value, or from any value if expected is null, to the given
+     * value, where null means removing the key. When onlyIfAbsent is set, only changes the value if there is none.
+     * Returns the value seen when making the change, or when deciding not to make it.
+     */
+    @SuppressWarnings( "unchecked" )
+    private VALUE update( long key, VALUE expected, VALUE value, boolean onlyIfAbsent )
+    {
+        if ( key == EMPTY_KEY )
+        {
+            return updateEmptyKey( expected, value, onlyIfAbsent );
+        }
+
+        while ( true )
+        {
+            Table table = this.table;
+            int index = value == null ? table.indexOf( key ) : table.claim( key );
+            if ( index == -1 )
+            {
+                if ( value == null )
+                {
+                    // Can't remove what isn't there
+                    return null;
+                }
+                // The table is full
+                resize( table );
+                continue;
+            }
+
+            Object current;
+            while ( true )
+            {
+                current = table.values.get( index );
+                if ( current instanceof Frozen )
+                {
+                    break;
+                }
+                if ( (expected != null && current != expected) || (onlyIfAbsent && current != null) ||
+                     (value == null && current == null) )
+                {
+                    return (VALUE) current;
+                }
+                if ( table.values.compareAndSet( index, current, value ) )
+                {
+                    return (VALUE) current;
+                }
+            }
+
+            // Someone is resizing the table, wait for that to finish and then retry in the new table
+            resize( table );
+        }
+    }
+
+    private VALUE updateEmptyKey( VALUE expected, VALUE value, boolean onlyIfAbsent )
+    {
+        while ( true )
+        {
+            VALUE current = emptyKeyValue.get();
+            if ( (expected != null && current != expected) || (onlyIfAbsent && current != null) )
+            {
+                return current;
+            }
+            if ( emptyKeyValue.compareAndSet( current, value ) )
+            {
+                return current;
+            }
+        }
+    }
+
+    private synchronized void resize( Table full )
+    {
+        if ( table != full )
+        {
+            // Someone else resized it already
+            return;
+        }
+
+        int live = 0;
+        for ( int i = 0; i < full.capacity; i++ )
+        {
+            Object current;
+            do
+            {
+                current = full.values.get( i );
+            }
+            while ( !full.values.compareAndSet( i, current, current == null ? Frozen.EMPTY : new Frozen( current ) ) );
+            if ( current != null )
+            {
+                live++;
+            }
+        }
+
+        // Double the capacity if most of the claimed slots are still in use, otherwise just clean up removed keys
+        int capacity = live * 2 >= full.threshold ? full.capacity << 1 : full.capacity;
+        Table resized = new Table( capacity );
+        for ( int i = 0; i < full.capacity; i++ )
+        {
+            Object value = ((Frozen) full.values.get( i )).value;
+            if ( value != null )
+            {
+                int index = resized.claim( full.keys.get( i ) );
+                resized.values.set( index, value );
+            }
+        }
+        table = resized;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private VALUE unfrozen( Object value )
+    {
+        return (VALUE) (value instanceof Frozen ? ((Frozen) value).value : value);
+    }
+
+    /** Wraps values while they are being copied to a new table. */
+    private static final class Frozen
+    {
+        static final Frozen EMPTY = new Frozen( null );
+
+        final Object value;
+
+        Frozen( Object value )
+        {
+            this.value = value;
+        }
+    }
+
+    private static final class Table
+    {
+        final int capacity;
+        final int mask;
+        final int threshold;
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<Object> values;
+        final AtomicInteger claimed = new AtomicInteger();
+
+        Table( int capacity )
+        {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.threshold = (int) (capacity * 0.7);
+            this.keys = new AtomicLongArray( capacity );
+            this.values = new AtomicReferenceArray<>( capacity );
+            for ( int i = 0; i < capacity; i++ )
+            {
+                keys.set( i, EMPTY_KEY );
+            }
+        }
+
+        /** Index of the slot claimed by the key, or -1 if the key has no slot. */
+        int indexOf( long key )
+        {
+            for ( int index = hash( key ) & mask, probes = 0; probes < capacity; index = (index + 1) & mask, probes++ )
+            {
+                long keyAtIndex = keys.get( index );
+                if ( keyAtIndex == key )
+                {
+                    return index;
+                }
+                if ( keyAtIndex == EMPTY_KEY )
+                {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /** Index of the slot claimed by the key, claiming one if needed, or -1 if the table is too full for that. */
+        int claim( long key )
+        {
+            for ( int index = hash( key ) & mask, probes = 0; probes < capacity; index = (index + 1) & mask, probes++ )
+            {
+                long keyAtIndex = keys.get( index );
+                if ( keyAtIndex == key )
+                {
+                    return index;
+                }
+                if ( keyAtIndex == EMPTY_KEY )
+                {
+                    if ( claimed.get() >= threshold )
+                    {
+                        return -1;
+                    }
+                    if ( keys.compareAndSet( index, EMPTY_KEY, key ) )
+                    {
+                        claimed.incrementAndGet();
+                        return index;
+                    }
+                    if ( keys.get( index ) == key )
+                    {
+                        // Someone else claimed it for the same key
+                        return index;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private static int hash( long key )
+        {
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ (key >>> 32));
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.collection.primitive.concurrent;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentLongObjectHashMapTest
+{
+    private final ConcurrentLongObjectHashMap<String> map = new ConcurrentLongObjectHashMap<>( 16 );
+
+    @Test
+    public void shouldPutGetAndRemove() throws Exception
+    {
+        // WHEN
+        assertNull( map.put( 10, "a" ) );
+        assertEquals( "a", map.put( 10, "b" ) );
+
+        // THEN
+        assertEquals( "b", map.get( 10 ) );
+        assertTrue( map.containsKey( 10 ) );
+        assertFalse( map.containsKey( 11 ) );
+        assertEquals( "b", map.remove( 10 ) );
+        assertNull( map.get( 10 ) );
+        assertNull( map.remove( 10 ) );
+        assertTrue( map.isEmpty() );
+    }
+
+    @Test
+    public void shouldOnlyPutIfAbsent() throws Exception
+    {
+        // GIVEN
+        assertNull( map.putIfAbsent( 5, "a" ) );
+
+        // WHEN
+        String existing = map.putIfAbsent( 5, "b" );
+
+        // THEN
+        assertEquals( "a", existing );
+        assertEquals( "a", map.get( 5 ) );
+    }
+
+    @Test
+    public void shouldOnlyRemoveAndReplaceExpectedValues() throws Exception
+    {
+        // GIVEN
+        map.put( 5, "a" );
+
+        // THEN
+        assertFalse( map.replace( 5, "b", "c" ) );
+        assertTrue( map.replace( 5, "a", "c" ) );
+        assertFalse( map.remove( 5, "a" ) );
+        assertTrue( map.remove( 5, "c" ) );
+        assertNull( map.get( 5 ) );
+    }
+
+    @Test
+    public void shouldHandleAllKeysIncludingExtremes() throws Exception
+    {
+        // WHEN
+        map.put( Long.MIN_VALUE, "min" );
+        map.put( Long.MAX_VALUE, "max" );
+        map.put( -1, "minus one" );
+        map.put( 0, "zero" );
+
+        // THEN
+        assertEquals( "min", map.get( Long.MIN_VALUE ) );
+        assertEquals( "max", map.get( Long.MAX_VALUE ) );
+        assertEquals( "minus one", map.get( -1 ) );
+        assertEquals( "zero", map.get( 0 ) );
+        assertEquals( 4, map.size() );
+        assertEquals( "min", map.remove( Long.MIN_VALUE ) );
+        assertEquals( 3, map.size() );
+    }
+
+    @Test
+    public void shouldGrowAndKeepAllEntries() throws Exception
+    {
+        // WHEN
+        for ( int i = 0; i < 10_000; i++ )
+        {
+            map.put( i * 7, String.valueOf( i ) );
+        }
+
+        // THEN
+        assertEquals( 10_000, map.size() );
+        for ( int i = 0; i < 10_000; i++ )
+        {
+            assertEquals( String.valueOf( i ), map.get( i * 7 ) );
+        }
+    }
+
+    @Test
+    public void shouldReclaimSlotsOfRemovedKeys() throws Exception
+    {
+        // WHEN adding and removing many more distinct keys than there is room for
+        for ( int i = 0; i < 100_000; i++ )
+        {
+            map.put( i, "value" );
+            map.remove( i );
+        }
+        map.put( 42, "answer" );
+
+        // THEN
+        assertEquals( 1, map.size() );
+        assertEquals( "answer", map.get( 42 ) );
+    }
+
+    @Test
+    public void shouldVisitAllEntries() throws Exception
+    {
+        // GIVEN
+        final Map<Long,String> expected = new HashMap<>();
+        for ( long i = 0; i < 100; i++ )
+        {
+            map.put( i, "v" + i );
+            expected.put( i, "v" + i );
+        }
+
+        // WHEN
+        final Map<Long,String> visited = new HashMap<>();
+        map.visitEntries( new PrimitiveLongObjectVisitor<String>()
+        {
+            @Override
+            public void visited( long key, String value )
+            {
+                visited.put( key, value );
+            }
+        } );
+
+        // THEN
+        assertEquals( expected, visited );
+    }
+
+    @Test
+    public void shouldNotLoseUpdatesWhenManyThreadsRaceForTheSameKeys() throws Exception
+    {
+        // GIVEN threads that all try to take and give back the same few keys, with the map resizing underneath them
+        final ConcurrentLongObjectHashMap<Object> locks = new ConcurrentLongObjectHashMap<>( 16 );
+        final AtomicInteger[] holders = new AtomicInteger[16];
+        for ( int i = 0; i < holders.length; i++ )
+        {
+            holders[i] = new AtomicInteger();
+        }
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            Future<?>[] futures = new Future<?>[threads];
+            for ( int t = 0; t < threads; t++ )
+            {
+                futures[t] = executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        Object me = new Object();
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for ( int i = 0; i < 100_000; i++ )
+                        {
+                            int key = random.nextInt( holders.length );
+                            if ( locks.putIfAbsent( key, me ) == null )
+                            {
+                                // WHEN
+                                assertEquals( 1, holders[key].incrementAndGet() );
+                                holders[key].decrementAndGet();
+                                assertTrue( locks.remove( key, me ) );
+                            }
+                            // Plus some churn of other keys, to force resizes
+                            locks.put( 1_000 + random.nextInt( 1_000_000 ), me );
+                            locks.remove( 1_000 + random.nextInt( 1_000_000 ) );
+                        }
+                        return null;
+                    }
+                } );
+            }
+
+            // THEN no two threads held the same key at the same time
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
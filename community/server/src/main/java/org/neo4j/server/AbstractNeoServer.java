@@ -657,6 +657,15 @@ public abstract class AbstractNeoServer implements NeoServer
         return database;
     }
 
+    /**
+     * The facade that the transactional endpoints execute statements through. It is set up when the server starts,
+     * before any {@link ServerModule} is started.
+     */
+    public TransactionFacade getTransactionFacade()
+    {
+        return transactionFacade;
+    }
+
     @Override
     public TransactionRegistry getTransactionRegistry()
     {
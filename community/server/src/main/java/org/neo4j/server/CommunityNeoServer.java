@@ -29,6 +29,7 @@ import org.neo4j.kernel.logging.Logging;
 import org.neo4j.server.configuration.ConfigurationBuilder;
 import org.neo4j.server.configuration.Configurator;
 import org.neo4j.server.database.Database;
+import org.neo4j.server.modules.BinaryProtocolModule;
 import org.neo4j.server.modules.DiscoveryModule;
 import org.neo4j.server.modules.ManagementApiModule;
 import org.neo4j.server.modules.Neo4jBrowserModule;
@@ -113,7 +114,8 @@ public class CommunityNeoServer extends AbstractNeoServer
                 new WebAdminModule( webServer, logging ),
                 new Neo4jBrowserModule( webServer, configurator.configuration(), logging, database ),
                 new StatisticModule( webServer, statisticsCollector, configurator.configuration() ),
-                new SecurityRulesModule( webServer, configurator.configuration(), logging ) );
+                new SecurityRulesModule( webServer, configurator.configuration(), logging ),
+                new BinaryProtocolModule( this, configurator.configuration(), logging ) );
     }
 
     @Override
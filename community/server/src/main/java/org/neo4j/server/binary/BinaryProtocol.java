@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.binary;
+
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * The messages and values of the binary protocol. Every message is sent in a frame of its own, which starts with the
+ * length of the rest of the frame as an int, followed by the type of the message as a byte, and the fields of the
+ * message. Numbers are big endian, and strings are UTF-8 bytes preceded by their length as an int.
+ *
+ * <pre>
+ * client                                  server
+ * RUN      [statement: string]            FIELDS   [columns: int][column: string]*
+ *          [parameters: map value]        RECORD   [fields: int][value]*
+ * BEGIN                                   SUCCESS  [metadata: map value]
+ * COMMIT                                  FAILURE  [errors: int]([code: string][message: string])*
+ * ROLLBACK
+ * </pre>
+ *
+ * Requests may be pipelined. The server answers them in order, each with either SUCCESS or FAILURE, where a RUN
+ * answer is preceded by the FIELDS and the RECORDs of its result. A RUN outside of an explicit transaction, one
+ * started by BEGIN, is committed on its own.
+ *
+ * Values start with a marker byte. Nodes and relationships are sent with their properties, and paths as the list of
+ * their nodes and relationships, in order. Arrays and other iterables are sent as lists.
+ */
+public final class BinaryProtocol
+{
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    // client messages
+    public static final byte RUN = 0x01;
+    public static final byte BEGIN = 0x02;
+    public static final byte COMMIT = 0x03;
+    public static final byte ROLLBACK = 0x04;
+
+    // server messages
+    public static final byte FIELDS = 0x10;
+    public static final byte RECORD = 0x11;
+    public static final byte SUCCESS = 0x12;
+    public static final byte FAILURE = 0x13;
+
+    // value markers
+    static final byte NULL = 0x00;
+    static final byte TRUE = 0x01;
+    static final byte FALSE = 0x02;
+    static final byte INTEGER = 0x03;
+    static final byte FLOAT = 0x04;
+    static final byte STRING = 0x05;
+    static final byte LIST = 0x06;
+    static final byte MAP = 0x07;
+    static final byte NODE = 0x08;
+    static final byte RELATIONSHIP = 0x09;
+    static final byte PATH = 0x0A;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private BinaryProtocol()
+    {
+        throw new AssertionError( "Not for instantiation" );
+    }
+
+    public static void writeString( ChannelBuffer target, String string )
+    {
+        byte[] bytes = string.getBytes( UTF_8 );
+        target.writeInt( bytes.length );
+        target.writeBytes( bytes );
+    }
+
+    public static String readString( ChannelBuffer source )
+    {
+        byte[] bytes = new byte[readLength( source, 1 )];
+        source.readBytes( bytes );
+        return new String( bytes, UTF_8 );
+    }
+
+    public static void writeValue( ChannelBuffer target, Object value )
+    {
+        if ( value == null )
+        {
+            target.writeByte( NULL );
+        }
+        else if ( value instanceof Boolean )
+        {
+            target.writeByte( (Boolean) value ? TRUE : FALSE );
+        }
+        else if ( value instanceof Long || value instanceof Integer || value instanceof Short ||
+                  value instanceof Byte )
+        {
+            target.writeByte( INTEGER );
+            target.writeLong( ((Number) value).longValue() );
+        }
+        else if ( value instanceof Number )
+        {
+            target.writeByte( FLOAT );
+            target.writeDouble( ((Number) value).doubleValue() );
+        }
+        else if ( value instanceof String || value instanceof Character )
+        {
+            target.writeByte( STRING );
+            writeString( target, value.toString() );
+        }
+        else if ( value instanceof Map )
+        {
+            writeMap( target, (Map<?, ?>) value );
+        }
+        else if ( value instanceof Node )
+        {
+            Node node = (Node) value;
+            target.writeByte( NODE );
+            target.writeLong( node.getId() );
+            List<String> labels = new ArrayList<>();
+            for ( Label label : node.getLabels() )
+            {
+                labels.add( label.name() );
+            }
+            writeValue( target, labels );
+            writeProperties( target, node );
+        }
+        else if ( value instanceof Relationship )
+        {
+            Relationship relationship = (Relationship) value;
+            target.writeByte( RELATIONSHIP );
+            target.writeLong( relationship.getId() );
+            target.writeLong( relationship.getStartNode().getId() );
+            target.writeLong( relationship.getEndNode().getId() );
+            writeString( target, relationship.getType().name() );
+            writeProperties( target, relationship );
+        }
+        else if ( value instanceof Path )
+        {
+            Path path = (Path) value;
+            target.writeByte( PATH );
+            target.writeInt( path.length() * 2 + 1 );
+            for ( PropertyContainer entity : path )
+            {
+                writeValue( target, entity );
+            }
+        }
+        else if ( value instanceof Iterable )
+        {
+            List<Object> items = new ArrayList<>();
+            for ( Object item : (Iterable<?>) value )
+            {
+                items.add( item );
+            }
+            target.writeByte( LIST );
+            target.writeInt( items.size() );
+            for ( Object item : items )
+            {
+                writeValue( target, item );
+            }
+        }
+        else if ( value.getClass().isArray() )
+        {
+            int length = Array.getLength( value );
+            target.writeByte( LIST );
+            target.writeInt( length );
+            for ( int i = 0; i < length; i++ )
+            {
+                writeValue( target, Array.get( value, i ) );
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Can not send values of " + value.getClass() );
+        }
+    }
+
+    private static void writeMap( ChannelBuffer target, Map<?, ?> map )
+    {
+        target.writeByte( MAP );
+        target.writeInt( map.size() );
+        for ( Map.Entry<?, ?> entry : map.entrySet() )
+        {
+            writeString( target, String.valueOf( entry.getKey() ) );
+            writeValue( target, entry.getValue() );
+        }
+    }
+
+    private static void writeProperties( ChannelBuffer target, PropertyContainer entity )
+    {
+        writeMap( target, entity.getAllProperties() );
+    }
+
+    /**
+     * Reads a value. Nodes and relationships are read as maps of their id, labels or type, and properties, since
+     * they are not part of any database on this side.
+     */
+    public static Object readValue( ChannelBuffer source )
+    {
+        byte marker = source.readByte();
+        switch ( marker )
+        {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INTEGER:
+                return source.readLong();
+            case FLOAT:
+                return source.readDouble();
+            case STRING:
+                return readString( source );
+            case LIST:
+            case PATH:
+                int length = readLength( source, 1 );
+                List<Object> list = new ArrayList<>( length );
+                for ( int i = 0; i < length; i++ )
+                {
+                    list.add( readValue( source ) );
+                }
+                return list;
+            case MAP:
+                return readMapBody( source );
+            case NODE:
+                Map<String, Object> node = new HashMap<>();
+                node.put( "id", source.readLong() );
+                node.put( "labels", readValue( source ) );
+                node.put( "properties", readValue( source ) );
+                return node;
+            case RELATIONSHIP:
+                Map<String, Object> relationship = new HashMap<>();
+                relationship.put( "id", source.readLong() );
+                relationship.put( "startNode", source.readLong() );
+                relationship.put( "endNode", source.readLong() );
+                relationship.put( "type", readString( source ) );
+                relationship.put( "properties", readValue( source ) );
+                return relationship;
+            default:
+                throw new IllegalArgumentException( "Unknown value marker: " + marker );
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public static Map<String, Object> readMap( ChannelBuffer source )
+    {
+        Object value = readValue( source );
+        if ( !(value instanceof Map) )
+        {
+            throw new IllegalArgumentException( "Expected a map, but got: " + value );
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static Map<String, Object> readMapBody( ChannelBuffer source )
+    {
+        int size = readLength( source, 5 );
+        Map<String, Object> map = new HashMap<>( size * 2 );
+        for ( int i = 0; i < size; i++ )
+        {
+            String key = readString( source );
+            map.put( key, readValue( source ) );
+        }
+        return map;
+    }
+
+    /**
+     * Reads the length of a string, list or map, and makes sure that the rest of the frame is big enough to hold that
+     * many elements of at least the given size, so that a corrupt or hostile frame can not make us allocate more
+     * memory than it takes up.
+     */
+    private static int readLength( ChannelBuffer source, int minimumElementSize )
+    {
+        int length = source.readInt();
+        if ( length < 0 || length > source.readableBytes() / minimumElementSize )
+        {
+            throw new IllegalArgumentException( "Invalid length " + length + ", with " + source.readableBytes() +
+                                                " bytes left in the frame" );
+        }
+        return length;
+    }
+}
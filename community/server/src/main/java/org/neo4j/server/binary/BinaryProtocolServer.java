@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.binary;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.frame.LengthFieldBasedFrameDecoder;
+import org.jboss.netty.handler.execution.ExecutionHandler;
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.server.rest.transactional.TransactionFacade;
+
+import static java.util.concurrent.Executors.newCachedThreadPool;
+
+import static org.neo4j.helpers.NamedThreadFactory.daemon;
+import static org.neo4j.server.binary.BinaryProtocol.DEFAULT_MAX_FRAME_SIZE;
+
+/**
+ * Accepts binary protocol connections, see {@link BinaryProtocol}. The I/O threads only split the incoming bytes into
+ * frames. The requests are handled by a pool of worker threads, in order for each connection, so that clients can
+ * pipeline them.
+ *
+ * Both directions apply back-pressure. A connection stops being read from while the requests it has queued up take
+ * more than {@link #MAX_QUEUED_BYTES_PER_CONNECTION}, and a statement stops pulling rows while the answers it has
+ * not yet sent take more than {@link #WRITE_BUFFER_HIGH_WATER_MARK}, see {@link BinaryResultSerializer}.
+ */
+public class BinaryProtocolServer implements ChannelPipelineFactory
+{
+    static final long MAX_QUEUED_BYTES_PER_CONNECTION = 4 * 1024 * 1024;
+    static final long MAX_QUEUED_BYTES = 64 * 1024 * 1024;
+    static final int WRITE_BUFFER_HIGH_WATER_MARK = 256 * 1024;
+    static final int WRITE_BUFFER_LOW_WATER_MARK = 64 * 1024;
+
+    private final InetSocketAddress address;
+    private final TransactionFacade transactions;
+    private final int maxThreads;
+    private final StringLogger log;
+    private ServerBootstrap bootstrap;
+    private ExecutionHandler executionHandler;
+    private ChannelGroup channels;
+
+    public BinaryProtocolServer( InetSocketAddress address, TransactionFacade transactions, int maxThreads,
+                                 StringLogger log )
+    {
+        this.address = address;
+        this.transactions = transactions;
+        this.maxThreads = maxThreads;
+        this.log = log;
+    }
+
+    public void start()
+    {
+        channels = new DefaultChannelGroup( getClass().getSimpleName() );
+        executionHandler = new ExecutionHandler( new OrderedMemoryAwareThreadPoolExecutor( maxThreads,
+                MAX_QUEUED_BYTES_PER_CONNECTION, MAX_QUEUED_BYTES, 30, TimeUnit.SECONDS,
+                daemon( "Binary protocol worker" ) ) );
+        bootstrap = new ServerBootstrap( new NioServerSocketChannelFactory(
+                newCachedThreadPool( daemon( "Binary protocol boss" ) ),
+                newCachedThreadPool( daemon( "Binary protocol I/O" ) ) ) );
+        bootstrap.setPipelineFactory( this );
+        bootstrap.setOption( "reuseAddress", true );
+        bootstrap.setOption( "child.tcpNoDelay", true );
+        bootstrap.setOption( "child.keepAlive", true );
+        bootstrap.setOption( "child.writeBufferHighWaterMark", WRITE_BUFFER_HIGH_WATER_MARK );
+        bootstrap.setOption( "child.writeBufferLowWaterMark", WRITE_BUFFER_LOW_WATER_MARK );
+        channels.add( bootstrap.bind( address ) );
+    }
+
+    public void stop()
+    {
+        // closing the connections rolls back their transactions, on the worker threads
+        channels.close().awaitUninterruptibly();
+        bootstrap.releaseExternalResources();
+        executionHandler.releaseExternalResources();
+    }
+
+    @Override
+    public ChannelPipeline getPipeline()
+    {
+        return Channels.pipeline(
+                new LengthFieldBasedFrameDecoder( DEFAULT_MAX_FRAME_SIZE, 0, 4, 0, 4 ),
+                new OpenChannels(),
+                executionHandler,
+                new BinarySession( transactions, log ) );
+    }
+
+    private class OpenChannels extends SimpleChannelUpstreamHandler
+    {
+        @Override
+        public void channelOpen( ChannelHandlerContext ctx, ChannelStateEvent e ) throws Exception
+        {
+            channels.add( e.getChannel() );
+            super.channelOpen( ctx, e );
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.binary;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+
+import org.neo4j.cypher.javacompat.ExtendedExecutionResult;
+import org.neo4j.cypher.javacompat.QueryStatistics;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.server.rest.transactional.ExecutionResultSerializer;
+import org.neo4j.server.rest.transactional.ResultDataContent;
+import org.neo4j.server.rest.transactional.error.Neo4jError;
+
+import static org.apache.commons.io.output.NullOutputStream.NULL_OUTPUT_STREAM;
+
+import static org.neo4j.server.binary.BinaryProtocol.FAILURE;
+import static org.neo4j.server.binary.BinaryProtocol.FIELDS;
+import static org.neo4j.server.binary.BinaryProtocol.RECORD;
+import static org.neo4j.server.binary.BinaryProtocol.SUCCESS;
+import static org.neo4j.server.binary.BinaryProtocol.writeString;
+import static org.neo4j.server.binary.BinaryProtocol.writeValue;
+
+/**
+ * Streams the answer to one binary protocol request, in place of the JSON document that the HTTP API answers with.
+ * Result rows are sent as they are pulled from the result, gathered into writes of about {@link #BATCH_SIZE} bytes.
+ * Whenever the outbound buffer of the channel is above its high water mark, the statement waits for the previous
+ * write to reach the network before it pulls any more rows, so that a slow client holds the statement back instead
+ * of filling up the heap of the server.
+ */
+class BinaryResultSerializer extends ExecutionResultSerializer
+{
+    static final int BATCH_SIZE = 8 * 1024;
+
+    private final Channel channel;
+    private final StringLogger log;
+    private final Map<String, Object> metadata = new HashMap<>();
+    private ChannelBuffer pending;
+    private ChannelFuture lastWrite;
+    private boolean failed;
+    private boolean rolledBack;
+
+    BinaryResultSerializer( Channel channel, StringLogger log )
+    {
+        super( NULL_OUTPUT_STREAM, null, log );
+        this.channel = channel;
+        this.log = log;
+    }
+
+    @Override
+    public void transactionCommitUri( URI commitUri )
+    {
+        // binary clients commit through their connection, not through a uri
+    }
+
+    @Override
+    public void statementResult( ExtendedExecutionResult result, boolean includeStats,
+                                 ResultDataContent... resultDataContents ) throws IOException
+    {
+        List<String> columns = result.columns();
+        int message = beginMessage( FIELDS );
+        pending.writeInt( columns.size() );
+        for ( String column : columns )
+        {
+            writeString( pending, column );
+        }
+        endMessage( message );
+
+        try ( ResourceIterator<Map<String, Object>> rows = result.iterator() )
+        {
+            while ( rows.hasNext() )
+            {
+                Map<String, Object> row = rows.next();
+                message = beginMessage( RECORD );
+                try
+                {
+                    pending.writeInt( columns.size() );
+                    for ( String column : columns )
+                    {
+                        writeValue( pending, row.get( column ) );
+                    }
+                }
+                catch ( RuntimeException e )
+                {
+                    // leave out the part of the record that was written, the statement fails with this
+                    pending.writerIndex( message );
+                    throw e;
+                }
+                endMessage( message );
+            }
+        }
+        if ( includeStats )
+        {
+            metadata.put( "stats", stats( result.getQueryStatistics() ) );
+        }
+    }
+
+    @Override
+    public void errors( Iterable<? extends Neo4jError> errors )
+    {
+        List<Neo4jError> list = new ArrayList<>();
+        for ( Neo4jError error : errors )
+        {
+            list.add( error );
+        }
+        if ( list.isEmpty() )
+        {
+            return;
+        }
+        failed = true;
+        rolledBack = Neo4jError.shouldRollBackOn( list );
+        int message = beginMessage( FAILURE );
+        pending.writeInt( list.size() );
+        for ( Neo4jError error : list )
+        {
+            writeString( pending, error.status().code().serialize() );
+            writeString( pending, String.valueOf( error.getMessage() ) );
+        }
+        endMessageQuietly( message );
+    }
+
+    @Override
+    public void transactionStatus( long expiryDate )
+    {
+        metadata.put( "expires", expiryDate );
+    }
+
+    @Override
+    public void finish()
+    {
+        if ( !failed )
+        {
+            int message = beginMessage( SUCCESS );
+            writeValue( pending, metadata );
+            endMessageQuietly( message );
+        }
+        try
+        {
+            flush();
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Could not send the end of a response", e );
+        }
+    }
+
+    /**
+     * Whether the errors of the request made the transaction it ran in roll back.
+     */
+    boolean rolledBack()
+    {
+        return rolledBack;
+    }
+
+    private int beginMessage( byte type )
+    {
+        if ( pending == null )
+        {
+            pending = ChannelBuffers.dynamicBuffer( BATCH_SIZE + BATCH_SIZE / 2 );
+        }
+        int start = pending.writerIndex();
+        pending.writeInt( 0 ); // length, filled in by endMessage
+        pending.writeByte( type );
+        return start;
+    }
+
+    private void endMessage( int start ) throws IOException
+    {
+        pending.setInt( start, pending.writerIndex() - start - 4 );
+        if ( pending.writerIndex() >= BATCH_SIZE )
+        {
+            flush();
+        }
+    }
+
+    private void endMessageQuietly( int start )
+    {
+        try
+        {
+            endMessage( start );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Could not send a response", e );
+        }
+    }
+
+    private void flush() throws IOException
+    {
+        if ( pending == null || !pending.readable() )
+        {
+            return;
+        }
+        if ( lastWrite != null && !channel.isWritable() )
+        {
+            lastWrite.awaitUninterruptibly();
+        }
+        if ( !channel.isConnected() )
+        {
+            pending = null;
+            throw new IOException( "The client closed the connection" );
+        }
+        lastWrite = channel.write( pending );
+        pending = null;
+    }
+
+    private static Map<String, Object> stats( QueryStatistics stats )
+    {
+        Map<String, Object> map = new HashMap<>();
+        map.put( "contains_updates", stats.containsUpdates() );
+        map.put( "nodes_created", stats.getNodesCreated() );
+        map.put( "nodes_deleted", stats.getDeletedNodes() );
+        map.put( "properties_set", stats.getPropertiesSet() );
+        map.put( "relationships_created", stats.getRelationshipsCreated() );
+        map.put( "relationship_deleted", stats.getDeletedRelationships() );
+        map.put( "labels_added", stats.getLabelsAdded() );
+        map.put( "labels_removed", stats.getLabelsRemoved() );
+        map.put( "indexes_added", stats.getIndexesAdded() );
+        map.put( "indexes_removed", stats.getIndexesRemoved() );
+        map.put( "constraints_added", stats.getConstraintsAdded() );
+        map.put( "constraints_removed", stats.getConstraintsRemoved() );
+        return map;
+    }
+}
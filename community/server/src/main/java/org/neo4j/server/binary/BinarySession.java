@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.binary;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+
+import org.neo4j.kernel.api.exceptions.Status;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.server.rest.transactional.Statement;
+import org.neo4j.server.rest.transactional.TransactionFacade;
+import org.neo4j.server.rest.transactional.TransactionHandle;
+import org.neo4j.server.rest.transactional.error.Neo4jError;
+import org.neo4j.server.rest.transactional.error.TransactionLifecycleException;
+import org.neo4j.server.rest.web.TransactionUriScheme;
+
+import static org.neo4j.server.binary.BinaryProtocol.BEGIN;
+import static org.neo4j.server.binary.BinaryProtocol.COMMIT;
+import static org.neo4j.server.binary.BinaryProtocol.ROLLBACK;
+import static org.neo4j.server.binary.BinaryProtocol.RUN;
+import static org.neo4j.server.binary.BinaryProtocol.readMap;
+import static org.neo4j.server.binary.BinaryProtocol.readString;
+
+/**
+ * The requests of one binary protocol connection, handled one at a time in the order they arrived. The explicit
+ * transaction of the connection, if there is one, lives in the same {@link TransactionFacade transaction registry}
+ * as the transactions of the HTTP API, and times out the same way. It is rolled back if the connection closes.
+ *
+ * This handler runs behind an {@link org.jboss.netty.handler.execution.ExecutionHandler}, never on the I/O threads,
+ * since executing statements blocks.
+ */
+class BinarySession extends SimpleChannelUpstreamHandler
+{
+    private static final long NO_TRANSACTION = -1;
+    private static final String TRANSACTION_PATH = "/transaction/";
+    private static final TransactionUriScheme URI_SCHEME = new TransactionUriScheme()
+    {
+        @Override
+        public URI txUri( long id )
+        {
+            return URI.create( "binary:" + TRANSACTION_PATH + id );
+        }
+
+        @Override
+        public URI txCommitUri( long id )
+        {
+            return URI.create( "binary:" + TRANSACTION_PATH + id + "/commit" );
+        }
+    };
+
+    private final TransactionFacade transactions;
+    private final StringLogger log;
+    private long transactionId = NO_TRANSACTION;
+
+    BinarySession( TransactionFacade transactions, StringLogger log )
+    {
+        this.transactions = transactions;
+        this.log = log;
+    }
+
+    @Override
+    public void messageReceived( ChannelHandlerContext ctx, MessageEvent e )
+    {
+        ChannelBuffer frame = (ChannelBuffer) e.getMessage();
+        BinaryResultSerializer output = new BinaryResultSerializer( e.getChannel(), log );
+        byte type = frame.readByte();
+        try
+        {
+            switch ( type )
+            {
+                case RUN:
+                    run( statement( frame ), output );
+                    break;
+                case BEGIN:
+                    begin( output );
+                    break;
+                case COMMIT:
+                    commit( output );
+                    break;
+                case ROLLBACK:
+                    rollback( output );
+                    break;
+                default:
+                    fail( output, Status.Request.Invalid, "Unknown message type: " + type );
+            }
+        }
+        catch ( TransactionLifecycleException ex )
+        {
+            // the transaction of this connection timed out, or was terminated
+            transactionId = NO_TRANSACTION;
+            output.errors( Collections.singletonList( ex.toNeo4jError() ) );
+            output.finish();
+        }
+        catch ( RuntimeException ex )
+        {
+            // the frame could not be decoded
+            output.errors( Collections.singletonList( new Neo4jError( Status.Request.InvalidFormat, ex ) ) );
+            output.finish();
+        }
+    }
+
+    private Statement statement( ChannelBuffer frame )
+    {
+        String statement = readString( frame );
+        Map<String, Object> parameters = readMap( frame );
+        return new Statement( statement, parameters, true );
+    }
+
+    private void run( Statement statement, BinaryResultSerializer output ) throws TransactionLifecycleException
+    {
+        if ( transactionId == NO_TRANSACTION )
+        {
+            TransactionHandle handle = transactions.newTransactionHandle( URI_SCHEME );
+            handle.commit( new BinaryStatements( statement ), output, true );
+        }
+        else
+        {
+            TransactionHandle handle = transactions.findTransactionHandle( transactionId );
+            handle.execute( new BinaryStatements( statement ), output );
+            if ( output.rolledBack() )
+            {
+                transactionId = NO_TRANSACTION;
+            }
+        }
+    }
+
+    private void begin( BinaryResultSerializer output ) throws TransactionLifecycleException
+    {
+        if ( transactionId != NO_TRANSACTION )
+        {
+            fail( output, Status.Request.Invalid, "There already is a transaction open on this connection" );
+            return;
+        }
+        TransactionHandle handle = transactions.newTransactionHandle( URI_SCHEME );
+        transactionId = idOf( handle.uri() );
+        handle.execute( new BinaryStatements(), output );
+        if ( output.rolledBack() )
+        {
+            transactionId = NO_TRANSACTION;
+        }
+    }
+
+    private void commit( BinaryResultSerializer output ) throws TransactionLifecycleException
+    {
+        if ( transactionId == NO_TRANSACTION )
+        {
+            fail( output, Status.Transaction.UnknownId, "There is no transaction open on this connection" );
+            return;
+        }
+        TransactionHandle handle = transactions.findTransactionHandle( transactionId );
+        transactionId = NO_TRANSACTION;
+        handle.commit( new BinaryStatements(), output, false );
+    }
+
+    private void rollback( BinaryResultSerializer output ) throws TransactionLifecycleException
+    {
+        if ( transactionId == NO_TRANSACTION )
+        {
+            fail( output, Status.Transaction.UnknownId, "There is no transaction open on this connection" );
+            return;
+        }
+        TransactionHandle handle = transactions.findTransactionHandle( transactionId );
+        transactionId = NO_TRANSACTION;
+        handle.rollback( output );
+    }
+
+    private void fail( BinaryResultSerializer output, Status status, String message )
+    {
+        output.errors( Collections.singletonList( new Neo4jError( status, new IllegalStateException( message ) ) ) );
+        output.finish();
+    }
+
+    @Override
+    public void channelClosed( ChannelHandlerContext ctx, ChannelStateEvent e )
+    {
+        if ( transactionId != NO_TRANSACTION )
+        {
+            try
+            {
+                TransactionHandle handle = transactions.terminate( transactionId );
+                if ( handle != null )
+                {
+                    handle.rollback( new BinaryResultSerializer( e.getChannel(), log ) );
+                }
+            }
+            catch ( TransactionLifecycleException ex )
+            {
+                // it timed out already
+            }
+            transactionId = NO_TRANSACTION;
+        }
+    }
+
+    @Override
+    public void exceptionCaught( ChannelHandlerContext ctx, ExceptionEvent e )
+    {
+        log.warn( "Closing binary protocol connection " + e.getChannel().getRemoteAddress(), e.getCause() );
+        Channel channel = e.getChannel();
+        channel.close();
+    }
+
+    static long idOf( URI transactionUri )
+    {
+        return Long.parseLong( transactionUri.getPath().substring( TRANSACTION_PATH.length() ) );
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.binary;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.neo4j.server.rest.transactional.Statement;
+import org.neo4j.server.rest.transactional.StatementDeserializer;
+
+/**
+ * The statements of a single binary protocol request, which are already decoded, handed to a
+ * {@link org.neo4j.server.rest.transactional.TransactionHandle} the way it expects statements from the HTTP API.
+ */
+class BinaryStatements extends StatementDeserializer
+{
+    private final Iterator<Statement> statements;
+
+    BinaryStatements( Statement... statements )
+    {
+        super( new ByteArrayInputStream( new byte[0] ) );
+        this.statements = Arrays.asList( statements ).iterator();
+    }
+
+    @Override
+    protected Statement fetchNextOrNull()
+    {
+        return statements.hasNext() ? statements.next() : null;
+    }
+}
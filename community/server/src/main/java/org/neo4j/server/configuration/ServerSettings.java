@@ -62,6 +62,18 @@ public interface ServerSettings
     public static final Setting<String> webserver_address = setting( "org.neo4j.server.webserver.address", STRING,
             "localhost", illegalValueMessage( "Must be a valid hostname", matches( ANY ) ) );
 
+    @Description( "Enable the binary protocol endpoint, which runs Cypher statements over plain TCP." )
+    public static final Setting<Boolean> binary_enabled = setting( "org.neo4j.server.binary.enabled", BOOLEAN,
+            FALSE );
+
+    @Description( "Port for the binary protocol endpoint. It listens on the same host as the REST API." )
+    public static final Setting<Integer> binary_port = setting( "org.neo4j.server.binary.port", INTEGER, "7687",
+            port );
+
+    @Description( "Number of threads that execute the statements of binary protocol connections." )
+    public static final Setting<Integer> binary_max_threads = setting( "org.neo4j.server.binary.maxthreads",
+            INTEGER, String.valueOf( Runtime.getRuntime().availableProcessors() * 2 ), min( 1 ) );
+
     @Description( "Number of Neo4j worker threads." )
     public static final Setting<Integer> webserver_max_threads = setting( "org.neo4j.server.webserver.maxthreads",
             INTEGER, NO_DEFAULT, min( 1 ) );
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.modules;
+
+import java.net.InetSocketAddress;
+
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.logging.ConsoleLogger;
+import org.neo4j.kernel.logging.Logging;
+import org.neo4j.server.AbstractNeoServer;
+import org.neo4j.server.binary.BinaryProtocolServer;
+import org.neo4j.server.configuration.ServerSettings;
+
+/**
+ * Serves the binary protocol, when it is enabled, next to the HTTP endpoints. It runs statements through the same
+ * transaction facade as the transactional HTTP endpoint.
+ */
+public class BinaryProtocolModule implements ServerModule
+{
+    private final AbstractNeoServer server;
+    private final Config config;
+    private final Logging logging;
+    private final ConsoleLogger log;
+    private BinaryProtocolServer binaryServer;
+
+    public BinaryProtocolModule( AbstractNeoServer server, Config config, Logging logging )
+    {
+        this.server = server;
+        this.config = config;
+        this.logging = logging;
+        this.log = logging.getConsoleLog( getClass() );
+    }
+
+    @Override
+    public void start()
+    {
+        if ( !config.get( ServerSettings.binary_enabled ) )
+        {
+            return;
+        }
+        InetSocketAddress address = new InetSocketAddress( config.get( ServerSettings.webserver_address ),
+                config.get( ServerSettings.binary_port ) );
+        binaryServer = new BinaryProtocolServer( address, server.getTransactionFacade(),
+                config.get( ServerSettings.binary_max_threads ),
+                logging.getMessagesLog( BinaryProtocolServer.class ) );
+        binaryServer.start();
+        log.log( "Binary protocol listening at [%s:%d]", address.getHostName(), address.getPort() );
+    }
+
+    @Override
+    public void stop()
+    {
+        if ( binaryServer != null )
+        {
+            binaryServer.stop();
+            binaryServer = null;
+        }
+    }
+}
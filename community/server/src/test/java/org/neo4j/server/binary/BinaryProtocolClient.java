@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import static org.neo4j.server.binary.BinaryProtocol.BEGIN;
+import static org.neo4j.server.binary.BinaryProtocol.COMMIT;
+import static org.neo4j.server.binary.BinaryProtocol.FAILURE;
+import static org.neo4j.server.binary.BinaryProtocol.FIELDS;
+import static org.neo4j.server.binary.BinaryProtocol.RECORD;
+import static org.neo4j.server.binary.BinaryProtocol.ROLLBACK;
+import static org.neo4j.server.binary.BinaryProtocol.RUN;
+import static org.neo4j.server.binary.BinaryProtocol.SUCCESS;
+import static org.neo4j.server.binary.BinaryProtocol.readMap;
+import static org.neo4j.server.binary.BinaryProtocol.readString;
+import static org.neo4j.server.binary.BinaryProtocol.readValue;
+import static org.neo4j.server.binary.BinaryProtocol.writeString;
+import static org.neo4j.server.binary.BinaryProtocol.writeValue;
+
+/**
+ * A blocking client for the binary protocol. Requests are buffered until a response is asked for, so sending
+ * several requests before receiving the first response pipelines them.
+ */
+public class BinaryProtocolClient implements AutoCloseable
+{
+    private final Socket socket;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+
+    public BinaryProtocolClient( String host, int port ) throws IOException
+    {
+        socket = new Socket( host, port );
+        socket.setTcpNoDelay( true );
+        input = new DataInputStream( new BufferedInputStream( socket.getInputStream(), 64 * 1024 ) );
+        output = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream(), 64 * 1024 ) );
+    }
+
+    public Response run( String statement, Map<String, Object> parameters ) throws IOException
+    {
+        sendRun( statement, parameters );
+        return receive();
+    }
+
+    public Response begin() throws IOException
+    {
+        send( BEGIN );
+        return receive();
+    }
+
+    public Response commit() throws IOException
+    {
+        send( COMMIT );
+        return receive();
+    }
+
+    public Response rollback() throws IOException
+    {
+        send( ROLLBACK );
+        return receive();
+    }
+
+    public void sendRun( String statement, Map<String, Object> parameters ) throws IOException
+    {
+        ChannelBuffer message = ChannelBuffers.dynamicBuffer();
+        message.writeByte( RUN );
+        writeString( message, statement );
+        writeValue( message, parameters );
+        send( message );
+    }
+
+    public void send( byte type ) throws IOException
+    {
+        ChannelBuffer message = ChannelBuffers.buffer( 1 );
+        message.writeByte( type );
+        send( message );
+    }
+
+    /**
+     * Sends a message as it is, without checking that it is well formed.
+     */
+    public void send( ChannelBuffer message ) throws IOException
+    {
+        output.writeInt( message.readableBytes() );
+        message.readBytes( output, message.readableBytes() );
+    }
+
+    /**
+     * Reads the response to the oldest request that has not had its response read yet.
+     */
+    public Response receive() throws IOException
+    {
+        output.flush();
+        Response response = new Response();
+        while ( true )
+        {
+            byte[] frame = new byte[input.readInt()];
+            input.readFully( frame );
+            ChannelBuffer message = ChannelBuffers.wrappedBuffer( frame );
+            byte type = message.readByte();
+            switch ( type )
+            {
+                case FIELDS:
+                    int columns = message.readInt();
+                    for ( int i = 0; i < columns; i++ )
+                    {
+                        response.columns.add( readString( message ) );
+                    }
+                    break;
+                case RECORD:
+                    int fields = message.readInt();
+                    List<Object> record = new ArrayList<>( fields );
+                    for ( int i = 0; i < fields; i++ )
+                    {
+                        record.add( readValue( message ) );
+                    }
+                    response.records.add( record );
+                    break;
+                case SUCCESS:
+                    response.metadata = readMap( message );
+                    return response;
+                case FAILURE:
+                    int errors = message.readInt();
+                    for ( int i = 0; i < errors; i++ )
+                    {
+                        response.errorCodes.add( readString( message ) );
+                        response.errorMessages.add( readString( message ) );
+                    }
+                    return response;
+                default:
+                    throw new IOException( "Unknown message type: " + type );
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        socket.close();
+    }
+
+    public static class Response
+    {
+        public final List<String> columns = new ArrayList<>();
+        public final List<List<Object>> records = new ArrayList<>();
+        public final List<String> errorCodes = new ArrayList<>();
+        public final List<String> errorMessages = new ArrayList<>();
+        public Map<String, Object> metadata = Collections.emptyMap();
+
+        public boolean succeeded()
+        {
+            return errorCodes.isEmpty();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Response{columns=" + columns + ", records=" + records.size() +
+                   ", errors=" + errorCodes + " " + errorMessages + ", metadata=" + metadata + "}";
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.binary;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.neo4j.server.CommunityNeoServer;
+import org.neo4j.server.configuration.ServerSettings;
+import org.neo4j.test.server.ExclusiveServerTestBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.map;
+import static org.neo4j.kernel.api.exceptions.Status.Request.Invalid;
+import static org.neo4j.kernel.api.exceptions.Status.Request.InvalidFormat;
+import static org.neo4j.kernel.api.exceptions.Status.Statement.InvalidSyntax;
+import static org.neo4j.server.helpers.CommunityServerBuilder.server;
+
+public class BinaryProtocolIT extends ExclusiveServerTestBase
+{
+    private static final int PORT = 7688;
+
+    private CommunityNeoServer server;
+    private BinaryProtocolClient client;
+
+    @Before
+    public void startTheServer() throws Exception
+    {
+        server = server()
+                .withProperty( ServerSettings.binary_enabled.name(), "true" )
+                .withProperty( ServerSettings.binary_port.name(), String.valueOf( PORT ) )
+                .build();
+        server.start();
+        client = connect();
+    }
+
+    @After
+    public void stopTheServer() throws Exception
+    {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void shouldStreamAllRecordsOfAStatement() throws Exception
+    {
+        // When
+        BinaryProtocolClient.Response response =
+                client.run( "UNWIND range(1, {rows}) AS i RETURN i", map( "rows", 100000 ) );
+
+        // Then
+        assertTrue( response.toString(), response.succeeded() );
+        assertEquals( Collections.singletonList( "i" ), response.columns );
+        assertEquals( 100000, response.records.size() );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            assertEquals( Collections.<Object>singletonList( (long) i + 1 ), response.records.get( i ) );
+        }
+    }
+
+    @Test
+    public void shouldSendNodesWithTheirLabelsAndProperties() throws Exception
+    {
+        // When
+        BinaryProtocolClient.Response response =
+                client.run( "CREATE (n:Person {name: {name}}) RETURN n", map( "name", "Alice" ) );
+
+        // Then
+        assertTrue( response.toString(), response.succeeded() );
+        @SuppressWarnings( "unchecked" )
+        Map<String, Object> node = (Map<String, Object>) response.records.get( 0 ).get( 0 );
+        assertEquals( Collections.singletonList( "Person" ), node.get( "labels" ) );
+        assertEquals( map( "name", "Alice" ), node.get( "properties" ) );
+    }
+
+    @Test
+    public void shouldCommitExplicitTransaction() throws Exception
+    {
+        // Given
+        assertTrue( client.begin().succeeded() );
+        assertTrue( client.run( "CREATE (n:Person)", noParameters() ).succeeded() );
+
+        // When
+        BinaryProtocolClient.Response response = client.commit();
+
+        // Then
+        assertTrue( response.toString(), response.succeeded() );
+        assertEquals( 1L, countPersons() );
+    }
+
+    @Test
+    public void shouldRollBackExplicitTransaction() throws Exception
+    {
+        // Given
+        assertTrue( client.begin().succeeded() );
+        assertTrue( client.run( "CREATE (n:Person)", noParameters() ).succeeded() );
+
+        // When
+        BinaryProtocolClient.Response response = client.rollback();
+
+        // Then
+        assertTrue( response.toString(), response.succeeded() );
+        assertEquals( 0L, countPersons() );
+    }
+
+    @Test
+    public void shouldSeeOwnWritesWithinExplicitTransaction() throws Exception
+    {
+        // Given
+        client.begin();
+        client.run( "CREATE (n:Person)", noParameters() );
+
+        // When
+        BinaryProtocolClient.Response response = client.run( "MATCH (n:Person) RETURN count(n)", noParameters() );
+
+        // Then
+        assertEquals( Collections.<Object>singletonList( 1L ), response.records.get( 0 ) );
+        client.rollback();
+    }
+
+    @Test
+    public void shouldAnswerPipelinedRequestsInOrder() throws Exception
+    {
+        // When
+        client.send( BinaryProtocol.BEGIN );
+        for ( int i = 0; i < 10; i++ )
+        {
+            client.sendRun( "CREATE (n:Person {i: {i}}) RETURN n.i", map( "i", i ) );
+        }
+        client.send( BinaryProtocol.COMMIT );
+
+        // Then
+        assertTrue( client.receive().succeeded() );
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertEquals( Collections.<Object>singletonList( (long) i ), client.receive().records.get( 0 ) );
+        }
+        assertTrue( client.receive().succeeded() );
+        assertEquals( 10L, countPersons() );
+    }
+
+    @Test
+    public void shouldReportFailureAndCarryOnWithTheNextRequest() throws Exception
+    {
+        // When
+        client.sendRun( "THIS IS NOT CYPHER", noParameters() );
+        client.sendRun( "RETURN 1", noParameters() );
+
+        // Then
+        BinaryProtocolClient.Response failure = client.receive();
+        assertFalse( failure.succeeded() );
+        assertEquals( Arrays.asList( InvalidSyntax.code().serialize() ), failure.errorCodes );
+        assertEquals( Collections.<Object>singletonList( 1L ), client.receive().records.get( 0 ) );
+    }
+
+    @Test
+    public void shouldRefuseFrameThatClaimsMoreDataThanItHas() throws Exception
+    {
+        // Given
+        ChannelBuffer message = ChannelBuffers.dynamicBuffer();
+        message.writeByte( BinaryProtocol.RUN );
+        message.writeInt( Integer.MAX_VALUE - 8 );
+        message.writeBytes( new byte[]{'R', 'E', 'T'} );
+
+        // When
+        client.send( message );
+
+        // Then
+        BinaryProtocolClient.Response failure = client.receive();
+        assertEquals( Arrays.asList( InvalidFormat.code().serialize() ), failure.errorCodes );
+        assertTrue( client.run( "RETURN 1", noParameters() ).succeeded() );
+    }
+
+    @Test
+    public void shouldKeepTransactionOpenAfterClientError() throws Exception
+    {
+        // Given
+        client.begin();
+        client.run( "CREATE (n:Person)", noParameters() );
+
+        // When
+        assertFalse( client.run( "THIS IS NOT CYPHER", noParameters() ).succeeded() );
+
+        // Then
+        assertTrue( client.commit().succeeded() );
+        assertEquals( 1L, countPersons() );
+    }
+
+    @Test
+    public void shouldRefuseToBeginNestedTransaction() throws Exception
+    {
+        // Given
+        client.begin();
+
+        // When
+        BinaryProtocolClient.Response response = client.begin();
+
+        // Then
+        assertEquals( Arrays.asList( Invalid.code().serialize() ), response.errorCodes );
+        assertTrue( client.rollback().succeeded() );
+    }
+
+    private long countPersons() throws Exception
+    {
+        try ( BinaryProtocolClient other = connect() )
+        {
+            List<Object> record = other.run( "MATCH (n:Person) RETURN count(n)", noParameters() ).records.get( 0 );
+            return (Long) record.get( 0 );
+        }
+    }
+
+    private BinaryProtocolClient connect() throws Exception
+    {
+        return new BinaryProtocolClient( "localhost", PORT );
+    }
+
+    private static Map<String, Object> noParameters()
+    {
+        return Collections.emptyMap();
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.binary;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+public class BinaryProtocolTest
+{
+    @Test
+    public void shouldReadBackScalarValues() throws Exception
+    {
+        assertEquals( null, roundTrip( null ) );
+        assertEquals( true, roundTrip( true ) );
+        assertEquals( false, roundTrip( false ) );
+        assertEquals( 42L, roundTrip( 42L ) );
+        assertEquals( Long.MIN_VALUE, roundTrip( Long.MIN_VALUE ) );
+        assertEquals( 3.14, roundTrip( 3.14 ) );
+        assertEquals( "Gr\u00fc\u00dfe, \u4e16\u754c", roundTrip( "Gr\u00fc\u00dfe, \u4e16\u754c" ) );
+        assertEquals( "", roundTrip( "" ) );
+    }
+
+    @Test
+    public void shouldWidenIntegersAndFloats() throws Exception
+    {
+        assertEquals( 7L, roundTrip( 7 ) );
+        assertEquals( 7L, roundTrip( (short) 7 ) );
+        assertEquals( 7L, roundTrip( (byte) 7 ) );
+        assertEquals( 1.5, roundTrip( 1.5f ) );
+        assertEquals( "c", roundTrip( 'c' ) );
+    }
+
+    @Test
+    public void shouldReadBackNestedCollections() throws Exception
+    {
+        Map<String, Object> value = new HashMap<>();
+        value.put( "list", Arrays.<Object>asList( 1L, "two", null, Collections.singletonList( 3L ) ) );
+        value.put( "map", map( "key", "value" ) );
+        value.put( "empty", Collections.emptyList() );
+
+        assertEquals( value, roundTrip( value ) );
+    }
+
+    @Test
+    public void shouldSendArraysAsLists() throws Exception
+    {
+        assertEquals( Arrays.<Object>asList( 1L, 2L, 3L ), roundTrip( new int[]{1, 2, 3} ) );
+        assertEquals( Arrays.<Object>asList( "a", "b" ), roundTrip( new String[]{"a", "b"} ) );
+    }
+
+    @Test
+    public void shouldReadStringsWrittenNextToEachOther() throws Exception
+    {
+        // Given
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        BinaryProtocol.writeString( buffer, "first" );
+        BinaryProtocol.writeString( buffer, "second" );
+
+        // Then
+        assertEquals( "first", BinaryProtocol.readString( buffer ) );
+        assertEquals( "second", BinaryProtocol.readString( buffer ) );
+        assertFalse( buffer.readable() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRefuseValuesItCanNotSend() throws Exception
+    {
+        BinaryProtocol.writeValue( ChannelBuffers.dynamicBuffer(), new Object() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRefuseParametersThatAreNotAMap() throws Exception
+    {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        BinaryProtocol.writeValue( buffer, "not a map" );
+        BinaryProtocol.readMap( buffer );
+    }
+
+    @Test
+    public void shouldWriteValuesInTheDocumentedLayout() throws Exception
+    {
+        // Given
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+
+        // When
+        BinaryProtocol.writeValue( buffer, "hi" );
+
+        // Then
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.readBytes( bytes );
+        assertArrayEquals( new byte[]{BinaryProtocol.STRING, 0, 0, 0, 2, 'h', 'i'}, bytes );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRefuseStringLongerThanTheFrame() throws Exception
+    {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        buffer.writeInt( Integer.MAX_VALUE - 8 );
+        buffer.writeBytes( new byte[]{'h', 'i'} );
+        BinaryProtocol.readString( buffer );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRefuseStringWithNegativeLength() throws Exception
+    {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        buffer.writeInt( -1 );
+        BinaryProtocol.readString( buffer );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRefuseListWithMoreItemsThanTheFrameCanHold() throws Exception
+    {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        buffer.writeByte( BinaryProtocol.LIST );
+        buffer.writeInt( Integer.MAX_VALUE );
+        buffer.writeByte( BinaryProtocol.NULL );
+        BinaryProtocol.readValue( buffer );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRefuseListWithNegativeLength() throws Exception
+    {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        buffer.writeByte( BinaryProtocol.PATH );
+        buffer.writeInt( Integer.MIN_VALUE );
+        BinaryProtocol.readValue( buffer );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRefuseMapWithMoreEntriesThanTheFrameCanHold() throws Exception
+    {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        buffer.writeByte( BinaryProtocol.MAP );
+        buffer.writeInt( 2 );
+        BinaryProtocol.writeString( buffer, "k" );
+        buffer.writeByte( BinaryProtocol.NULL );
+        BinaryProtocol.readValue( buffer );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRefuseMapWithNegativeSize() throws Exception
+    {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        buffer.writeByte( BinaryProtocol.MAP );
+        buffer.writeInt( -2 );
+        BinaryProtocol.readValue( buffer );
+    }
+
+    private static Object roundTrip( Object value )
+    {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        BinaryProtocol.writeValue( buffer, value );
+        Object read = BinaryProtocol.readValue( buffer );
+        assertFalse( "Value should be read completely", buffer.readable() );
+        return read;
+    }
+}
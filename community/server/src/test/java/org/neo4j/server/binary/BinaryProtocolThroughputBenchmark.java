@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.binary;
+
+import java.util.Map;
+
+import org.neo4j.server.CommunityNeoServer;
+import org.neo4j.server.configuration.ServerSettings;
+import org.neo4j.test.server.HTTP;
+
+import static java.lang.System.nanoTime;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.neo4j.helpers.collection.MapUtil.map;
+import static org.neo4j.server.helpers.CommunityServerBuilder.server;
+
+/**
+ * Compares how many rows per second a single client gets out of the server over loopback, through the transactional
+ * HTTP endpoint and through the binary protocol, one request at a time and with a number of requests in flight.
+ * Every request is an auto-committed statement that returns a given number of rows. Configured with system
+ * properties: requests, rows, window and port.
+ */
+public class BinaryProtocolThroughputBenchmark
+{
+    private static final String STATEMENT = "UNWIND range(1, {rows}) AS i RETURN i, 'row ' + i AS name";
+
+    public static void main( String... args ) throws Exception
+    {
+        int requests = Integer.getInteger( "requests", 2_000 );
+        int rows = Integer.getInteger( "rows", 100 );
+        int window = Integer.getInteger( "window", 16 );
+        int port = Integer.getInteger( "port", 7688 );
+
+        CommunityNeoServer server = server()
+                .withProperty( ServerSettings.binary_enabled.name(), "true" )
+                .withProperty( ServerSettings.binary_port.name(), String.valueOf( port ) )
+                .build();
+        server.start();
+        try
+        {
+            String commitUri = server.baseUri().toString() + "db/data/transaction/commit";
+            Map<String, Object> parameters = map( "rows", rows );
+
+            // warm up all the paths before measuring any of them
+            http( commitUri, parameters, requests / 10 );
+            binary( port, parameters, requests / 10, 1 );
+            binary( port, parameters, requests / 10, window );
+
+            long http = http( commitUri, parameters, requests );
+            report( "http", requests, rows, http );
+            long binary = binary( port, parameters, requests, 1 );
+            report( "binary", requests, rows, binary );
+            long pipelined = binary( port, parameters, requests, window );
+            report( "binary, " + window + " in flight", requests, rows, pipelined );
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private static long http( String commitUri, Map<String, Object> parameters, int requests )
+    {
+        Object payload = map( "statements", asList( map( "statement", STATEMENT, "parameters", parameters ) ) );
+        long start = nanoTime();
+        for ( int i = 0; i < requests; i++ )
+        {
+            HTTP.Response response = HTTP.POST( commitUri, payload );
+            if ( response.status() != 200 )
+            {
+                throw new IllegalStateException( "Request failed: " + response );
+            }
+        }
+        return nanoTime() - start;
+    }
+
+    private static long binary( int port, Map<String, Object> parameters, int requests, int window )
+            throws Exception
+    {
+        try ( BinaryProtocolClient client = new BinaryProtocolClient( "localhost", port ) )
+        {
+            long start = nanoTime();
+            int sent = 0;
+            for ( ; sent < Math.min( window, requests ); sent++ )
+            {
+                client.sendRun( STATEMENT, parameters );
+            }
+            for ( int received = 0; received < requests; received++ )
+            {
+                BinaryProtocolClient.Response response = client.receive();
+                if ( !response.succeeded() )
+                {
+                    throw new IllegalStateException( "Request failed: " + response );
+                }
+                if ( sent < requests )
+                {
+                    client.sendRun( STATEMENT, parameters );
+                    sent++;
+                }
+            }
+            return nanoTime() - start;
+        }
+    }
+
+    private static void report( String name, int requests, int rows, long elapsedNanos )
+    {
+        long elapsedMicros = Math.max( NANOSECONDS.toMicros( elapsedNanos ), 1 );
+        System.out.printf( "%-22s %,10d requests/s %,14d rows/s%n", name + ":",
+                requests * 1_000_000L / elapsedMicros, requests * (long) rows * 1_000_000L / elapsedMicros );
+    }
+}
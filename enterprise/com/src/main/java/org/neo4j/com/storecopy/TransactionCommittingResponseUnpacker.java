@@ -20,6 +20,8 @@
 package org.neo4j.com.storecopy;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.neo4j.com.Response;
 import org.neo4j.com.TransactionStream;
@@ -62,27 +64,18 @@ public class TransactionCommittingResponseUnpacker implements ResponseUnpacker,
             appender.append( transaction.getTransactionRepresentation(), transaction.getCommitEntry().getTxId() );
         }
     };
-    // Visits all queued, and recently appended, transactions, applying them to the store
-    private final TransactionVisitor batchCommitterAndApplier = new TransactionVisitor()
+    // Visits all queued, and recently appended, transactions, marking them as committed and gathering them up
+    // so that they can be applied to the store as one batch
+    private final List<CommittedTransactionRepresentation> batch = new ArrayList<>();
+    private final List<TxHandler> batchHandlers = new ArrayList<>();
+    private final TransactionVisitor batchCommitter = new TransactionVisitor()
     {
         @Override
         public void visit( CommittedTransactionRepresentation transaction, TxHandler handler ) throws IOException
         {
-            long transactionId = transaction.getCommitEntry().getTxId();
-            transactionIdStore.transactionCommitted( transactionId );
-            try
-            {
-                try ( LockGroup locks = new LockGroup() )
-                {
-                    storeApplier.apply( transaction.getTransactionRepresentation(), locks,
-                            transactionId, TransactionApplicationMode.EXTERNAL );
-                    handler.accept( transaction );
-                }
-            }
-            finally
-            {
-                transactionIdStore.transactionClosed( transactionId );
-            }
+            transactionIdStore.transactionCommitted( transaction.getCommitEntry().getTxId() );
+            batch.add( transaction );
+            batchHandlers.add( handler );
         }
     };
     private TransactionAppender appender;
@@ -166,7 +159,8 @@ public class TransactionCommittingResponseUnpacker implements ResponseUnpacker,
                     // changed before that change would have ended up in the log, it would be fine sine as a slave
                     // you would pull that transaction again anyhow before making changes to (after reading) any record.
                     appender.force();
-                    transactionQueue.accept( batchCommitterAndApplier );
+                    transactionQueue.accept( batchCommitter );
+                    applyBatch();
                 }
             }
             catch ( IOException e )
@@ -178,6 +172,30 @@ public class TransactionCommittingResponseUnpacker implements ResponseUnpacker,
             finally
             {
                 transactionQueue.clear();
+                batch.clear();
+                batchHandlers.clear();
+            }
+        }
+    }
+
+    private void applyBatch() throws IOException
+    {
+        try
+        {
+            try ( LockGroup locks = new LockGroup() )
+            {
+                storeApplier.apply( batch, locks, TransactionApplicationMode.EXTERNAL );
+                for ( int i = 0; i < batch.size(); i++ )
+                {
+                    batchHandlers.get( i ).accept( batch.get( i ) );
+                }
+            }
+        }
+        finally
+        {
+            for ( CommittedTransactionRepresentation transaction : batch )
+            {
+                transactionIdStore.transactionClosed( transaction.getCommitEntry().getTxId() );
             }
         }
     }
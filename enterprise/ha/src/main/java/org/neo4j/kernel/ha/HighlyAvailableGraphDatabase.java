@@ -24,6 +24,7 @@ import org.jboss.netty.logging.InternalLoggerFactory;
 import java.lang.reflect.Proxy;
 import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.neo4j.cluster.ClusterSettings;
 import org.neo4j.cluster.InstanceId;
@@ -102,6 +103,7 @@ import org.neo4j.kernel.impl.storemigration.UpgradeNotAllowedByDatabaseModeExcep
 import org.neo4j.kernel.impl.transaction.TransactionHeaderInformationFactory;
 import org.neo4j.kernel.impl.transaction.log.LogicalTransactionStore;
 import org.neo4j.kernel.impl.transaction.state.NeoStoreInjectedTransactionValidator;
+import org.neo4j.kernel.impl.util.JobScheduler;
 import org.neo4j.kernel.lifecycle.LifeSupport;
 import org.neo4j.kernel.lifecycle.Lifecycle;
 import org.neo4j.kernel.lifecycle.LifecycleAdapter;
@@ -464,7 +466,14 @@ public class HighlyAvailableGraphDatabase extends InternalAbstractGraphDatabase
     protected IdGeneratorFactory createIdGeneratorFactory()
     {
         idGeneratorFactory = new HaIdGeneratorFactory( masterDelegateInvocationHandler, logging,
-                requestContextFactory );
+                requestContextFactory, new Executor()
+        {
+            @Override
+            public void execute( Runnable leaseRequest )
+            {
+                jobScheduler.schedule( JobScheduler.Group.slaveIdLeasing, leaseRequest );
+            }
+        } );
         SwitchToSlave switchToSlaveInstance = new SwitchToSlave( logging.getConsoleLog(
                 HighAvailabilityModeSwitcher.class ), config, getDependencyResolver(),
                 (HaIdGeneratorFactory) idGeneratorFactory,
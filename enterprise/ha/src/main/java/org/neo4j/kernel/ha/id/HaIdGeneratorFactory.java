@@ -20,9 +20,14 @@
 package org.neo4j.kernel.ha.id;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.neo4j.com.Response;
 import org.neo4j.kernel.DefaultIdGeneratorFactory;
@@ -37,22 +42,44 @@ import org.neo4j.kernel.impl.store.id.IdRange;
 import org.neo4j.kernel.impl.util.StringLogger;
 import org.neo4j.kernel.logging.Logging;
 
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Id generators for HA instances, that allocate ids locally on the master, and lease ranges of ids from the master on
+ * slaves.
+ *
+ * Given an executor, slaves adapt the size of their leases to how fast they use ids, and fetch the next lease in the
+ * background before the current one runs out. A lease is one or more allocations from the master, and is doubled
+ * when a lease lasted less than half of {@link #TARGET_LEASE_MILLIS}, and halved when it lasted more than twice that.
+ * Without an executor, slaves ask the master for a single allocation when they run out of ids.
+ */
 public class HaIdGeneratorFactory implements IdGeneratorFactory
 {
+    static final long TARGET_LEASE_MILLIS = 2000;
+    static final int MAX_ALLOCATIONS_PER_LEASE = 64;
+
     private final Map<IdType, HaIdGenerator> generators =
             new EnumMap<IdType, HaIdGenerator>( IdType.class );
     private final IdGeneratorFactory localFactory = new DefaultIdGeneratorFactory();
     private final DelegateInvocationHandler<Master> master;
     private final StringLogger logger;
     private final RequestContextFactory requestContextFactory;
+    private final Executor leasePrefetcher;
     private IdGeneratorState globalState = IdGeneratorState.PENDING;
 
     public HaIdGeneratorFactory( DelegateInvocationHandler<Master> master, Logging logging,
             RequestContextFactory requestContextFactory )
+    {
+        this( master, logging, requestContextFactory, null );
+    }
+
+    public HaIdGeneratorFactory( DelegateInvocationHandler<Master> master, Logging logging,
+            RequestContextFactory requestContextFactory, Executor leasePrefetcher )
     {
         this.master = master;
         this.logger = logging.getMessagesLog( getClass() );
         this.requestContextFactory = requestContextFactory;
+        this.leasePrefetcher = leasePrefetcher;
     }
 
     @Override
@@ -71,7 +98,8 @@ public class HaIdGeneratorFactory implements IdGeneratorFactory
             initialIdGenerator = localFactory.open( fs, fileName, grabSize, idType, highId );
             break;
         case SLAVE:
-            initialIdGenerator = new SlaveIdGenerator( idType, highId, master.cement(), logger, requestContextFactory );
+            initialIdGenerator = new SlaveIdGenerator( idType, highId, master.cement(), logger, requestContextFactory,
+                    leasePrefetcher );
             break;
         default:
             throw new IllegalStateException( globalState.name() );
@@ -156,7 +184,7 @@ public class HaIdGeneratorFactory implements IdGeneratorFactory
         {
             long highId = delegate.getHighId();
             delegate.close();
-            delegate = new SlaveIdGenerator( idType, highId, master, logger, requestContextFactory );
+            delegate = new SlaveIdGenerator( idType, highId, master, logger, requestContextFactory, leasePrefetcher );
             logger.debug( "Instantiated slave delegate " + delegate + " of type " + idType + " with highid " + highId );
             state = IdGeneratorState.SLAVE;
         }
@@ -173,8 +201,15 @@ public class HaIdGeneratorFactory implements IdGeneratorFactory
                 }
                     
                 localFactory.create( fs, fileName, highId );
+                IdGenerator slaveDelegate = delegate;
                 delegate = localFactory.open( fs, fileName, grabSize, idType, highId );
                 logger.debug( "Instantiated master delegate " + delegate + " of type " + idType + " with highid " + highId );
+                if ( slaveDelegate instanceof SlaveIdGenerator )
+                {
+                    // Ids leased from the previous master, that we never used, are ours to hand out again
+                    int returned = ((SlaveIdGenerator) slaveDelegate).returnUnusedIdsTo( delegate );
+                    logger.debug( "Returned " + returned + " unused leased ids of type " + idType );
+                }
             }
             else
             {
@@ -283,20 +318,32 @@ public class HaIdGeneratorFactory implements IdGeneratorFactory
         private final IdType idType;
         private final StringLogger logger;
         private final RequestContextFactory requestContextFactory;
+        private final Executor leasePrefetcher;
+
+        // The rest is guarded by this. Ranges leased from the master, to use after the ones in idQueue.
+        private final Deque<IdRangeIterator> leasedRanges = new ArrayDeque<>();
+        private long leasedIdsLeft;
+        private int allocationsPerLease = 1;
+        private long lastLeaseSize;
+        private long lastLeaseRequestedAt;
+        private boolean prefetching;
+        private boolean closed;
 
         SlaveIdGenerator( IdType idType, long highId, Master master, StringLogger logger,
-                RequestContextFactory requestContextFactory )
+                RequestContextFactory requestContextFactory, Executor leasePrefetcher )
         {
             this.idType = idType;
             this.highestIdInUse = highId;
             this.master = master;
             this.logger = logger;
             this.requestContextFactory = requestContextFactory;
+            this.leasePrefetcher = leasePrefetcher;
         }
 
         @Override
-        public void close()
+        public synchronized void close()
         {
+            closed = true;
         }
 
         @Override
@@ -327,36 +374,183 @@ public class HaIdGeneratorFactory implements IdGeneratorFactory
         {
             long nextId = nextLocalId();
             if ( nextId == VALUE_REPRESENTING_NULL )
+            {
+                awaitPrefetch();
+                nextId = nextLocalId();
+            }
+            if ( nextId == VALUE_REPRESENTING_NULL )
             {
                 // If we don't have anymore grabbed ids from master, grab a bunch
+                storeLocally( allocate( nextLeaseSize() ) );
+                nextId = nextLocalId();
+            }
+            leasedIdsLeft--;
+            prefetchIfRunningLow();
+            return nextId;
+        }
+
+        @Override
+        public IdRange nextIdBatch( int size )
+        {
+            throw new UnsupportedOperationException( "Should never be called" );
+        }
+
+        /**
+         * Hands the ids of all leases that haven't been used yet to the given id generator, as free ids.
+         *
+         * @return the number of returned ids.
+         */
+        synchronized int returnUnusedIdsTo( IdGenerator generator )
+        {
+            int returned = 0;
+            for ( long id = nextLocalId(); id != VALUE_REPRESENTING_NULL; id = nextLocalId() )
+            {
+                generator.freeId( id );
+                returned++;
+            }
+            leasedIdsLeft = 0;
+            return returned;
+        }
+
+        private List<IdAllocation> allocate( int allocations )
+        {
+            List<IdAllocation> result = new ArrayList<>( allocations );
+            for ( int i = 0; i < allocations; i++ )
+            {
                 try ( Response<IdAllocation> response =
                         master.allocateIds( requestContextFactory.newRequestContext(), idType ) )
                 {
                     IdAllocation allocation = response.response();
                     logger.info( "Received id allocation " + allocation + " from master " + master + " for " + idType );
-                    nextId = storeLocally( allocation );
+                    result.add( allocation );
                 }
             }
-            return nextId;
+            return result;
         }
 
-        @Override
-        public IdRange nextIdBatch( int size )
+        private void storeLocally( List<IdAllocation> allocations )
         {
-            throw new UnsupportedOperationException( "Should never be called" );
+            long leaseSize = 0;
+            for ( IdAllocation allocation : allocations )
+            {
+                setHighId( allocation.getHighestIdInUse() );
+                this.defragCount = allocation.getDefragCount();
+                IdRangeIterator range = new IdRangeIterator( allocation.getIdRange() );
+                leaseSize += range.remaining();
+                leasedRanges.add( range );
+            }
+            leasedIdsLeft += leaseSize;
+            lastLeaseSize = leaseSize;
         }
 
-        private long storeLocally( IdAllocation allocation )
+        private long nextLocalId()
         {
-            setHighId( allocation.getHighestIdInUse() );
-            this.defragCount = allocation.getDefragCount();
-            this.idQueue = new IdRangeIterator( allocation.getIdRange() );
-            return idQueue.next();
+            long id = this.idQueue.next();
+            while ( id == VALUE_REPRESENTING_NULL && !leasedRanges.isEmpty() )
+            {
+                this.idQueue = leasedRanges.poll();
+                id = this.idQueue.next();
+            }
+            return id;
         }
 
-        private long nextLocalId()
+        /**
+         * The number of allocations to ask the master for, growing it if the previous lease was used up quickly and
+         * shrinking it if it lasted long. The time between requests for leases is how long a lease lasts.
+         */
+        private int nextLeaseSize()
         {
-            return this.idQueue.next();
+            if ( leasePrefetcher == null )
+            {
+                return 1;
+            }
+            long now = currentTimeMillis();
+            if ( lastLeaseRequestedAt != 0 )
+            {
+                long lasted = now - lastLeaseRequestedAt;
+                if ( lasted < TARGET_LEASE_MILLIS / 2 && allocationsPerLease < MAX_ALLOCATIONS_PER_LEASE )
+                {
+                    allocationsPerLease *= 2;
+                }
+                else if ( lasted > TARGET_LEASE_MILLIS * 2 && allocationsPerLease > 1 )
+                {
+                    allocationsPerLease /= 2;
+                }
+            }
+            lastLeaseRequestedAt = now;
+            return allocationsPerLease;
+        }
+
+        private void prefetchIfRunningLow()
+        {
+            if ( leasePrefetcher == null || prefetching || closed || leasedIdsLeft > lastLeaseSize / 2 )
+            {
+                return;
+            }
+            prefetching = true;
+            final int allocations = nextLeaseSize();
+            try
+            {
+                leasePrefetcher.execute( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        prefetch( allocations );
+                    }
+                } );
+            }
+            catch ( RuntimeException e )
+            {
+                prefetching = false;
+                logger.warn( "Unable to prefetch ids of type " + idType + " from master", e );
+            }
+        }
+
+        private void prefetch( int allocations )
+        {
+            List<IdAllocation> lease = null;
+            try
+            {
+                lease = allocate( allocations );
+            }
+            catch ( RuntimeException e )
+            {
+                // The next thread to run out of ids will ask the master itself, and get to see the failure
+                logger.warn( "Unable to prefetch ids of type " + idType + " from master", e );
+            }
+            finally
+            {
+                synchronized ( this )
+                {
+                    if ( lease != null && !closed )
+                    {
+                        storeLocally( lease );
+                    }
+                    prefetching = false;
+                    notifyAll();
+                }
+            }
+        }
+
+        private void awaitPrefetch()
+        {
+            boolean interrupted = false;
+            while ( prefetching )
+            {
+                try
+                {
+                    wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
         }
 
         @Override
@@ -397,6 +591,11 @@ public class HaIdGeneratorFactory implements IdGeneratorFactory
             this.length = idRange.getRangeLength();
         }
 
+        int remaining()
+        {
+            return Math.max( defrag.length + length - position, 0 );
+        }
+
         long next()
         {
             try
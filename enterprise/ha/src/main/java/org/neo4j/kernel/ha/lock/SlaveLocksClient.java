@@ -20,10 +20,13 @@
 package org.neo4j.kernel.ha.lock;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
 import org.neo4j.com.Response;
 import org.neo4j.kernel.AvailabilityGuard;
 import org.neo4j.kernel.DeadlockDetectedException;
@@ -45,6 +48,14 @@ import static org.neo4j.kernel.impl.locking.LockType.WRITE;
  * The client maintains a local "real" lock client, backed by some regular Locks implementation, but it also coordinates
  * with the master for certain types of locks. If you grab a lock on a node, for instance, this class will grab a
  * cluster-global lock by talking to the master machine, and then grab that same lock locally before returning.
+ *
+ * Locks taken on the master are only released there when the lock session ends, no matter what is released locally
+ * in the mean time. The client remembers which locks the master holds for the session, and only asks the master for
+ * the ones it doesn't already hold, all of the ids of a call in a single request. A request for exclusive locks on
+ * ids that the master holds shared locks on goes in that same request, so upgrades cost no extra round trips.
+ *
+ * Requests are not deferred or batched across calls: a lock must be held on the master once acquire returns. So a
+ * transaction that locks many different ids one call at a time still makes one round trip to the master per call.
  */
 class SlaveLocksClient implements Locks.Client
 {
@@ -58,6 +69,9 @@ class SlaveLocksClient implements Locks.Client
     // Using atomic ints to avoid creating garbage through boxing.
     private final Map<Locks.ResourceType, Map<Long, AtomicInteger>> sharedLocks;
     private final Map<Locks.ResourceType, Map<Long, AtomicInteger>> exclusiveLocks;
+    // The locks that the master holds on behalf of the current lock session.
+    private final Map<Locks.ResourceType, PrimitiveLongSet> sharedLocksOnMaster;
+    private final Map<Locks.ResourceType, PrimitiveLongSet> exclusiveLocksOnMaster;
     private boolean initialized = false;
 
     public SlaveLocksClient(
@@ -76,6 +90,8 @@ class SlaveLocksClient implements Locks.Client
         this.config = config;
         sharedLocks = new HashMap<>();
         exclusiveLocks = new HashMap<>();
+        sharedLocksOnMaster = new HashMap<>();
+        exclusiveLocksOnMaster = new HashMap<>();
     }
 
     private Map<Long, AtomicInteger> getLockMap(
@@ -91,6 +107,19 @@ class SlaveLocksClient implements Locks.Client
         return lockMap;
     }
 
+    private PrimitiveLongSet getMasterLockSet(
+            Map<Locks.ResourceType, PrimitiveLongSet> resourceMap,
+            Locks.ResourceType resourceType )
+    {
+        PrimitiveLongSet lockSet = resourceMap.get( resourceType );
+        if ( lockSet == null )
+        {
+            lockSet = Primitive.longSet();
+            resourceMap.put( resourceType, lockSet );
+        }
+        return lockSet;
+    }
+
     @Override
     public void acquireShared( Locks.ResourceType resourceType, long... resourceIds ) throws AcquireLockTimeoutException
     {
@@ -237,6 +266,7 @@ class SlaveLocksClient implements Locks.Client
         {
             master.endLockSession( requestContextFactory.newRequestContext( (int) client.getLockSessionId() ), true );
             initialized = false;
+            clearLocksOnMaster();
         }
         client.releaseAll();
     }
@@ -249,6 +279,7 @@ class SlaveLocksClient implements Locks.Client
         if ( initialized )
         {
             master.endLockSession( requestContextFactory.newRequestContext( client.getLockSessionId() ), true );
+            clearLocksOnMaster();
         }
         client.close();
     }
@@ -266,9 +297,18 @@ class SlaveLocksClient implements Locks.Client
             || resourceType == ResourceTypes.GRAPH_PROPS
             || resourceType == ResourceTypes.LEGACY_INDEX )
         {
+            PrimitiveLongSet sharedOnMaster = getMasterLockSet( sharedLocksOnMaster, resourceType );
+            long[] ids = notHeldOnMaster( resourceId, sharedOnMaster,
+                    getMasterLockSet( exclusiveLocksOnMaster, resourceType ) );
+            if ( ids.length == 0 )
+            {
+                return true;
+            }
             makeSureTxHasBeenInitialized();
-            return receiveLockResponse(
-                master.acquireSharedLock( requestContextFactory.newRequestContext( (int) getLockSessionId() ), resourceType, resourceId ));
+            receiveLockResponse(
+                master.acquireSharedLock( requestContextFactory.newRequestContext( (int) getLockSessionId() ), resourceType, ids ));
+            addAll( sharedOnMaster, ids );
+            return true;
         }
         else
         {
@@ -278,9 +318,52 @@ class SlaveLocksClient implements Locks.Client
 
     private boolean acquireExclusiveOnMaster( Locks.ResourceType resourceType, long ... resourceId )
     {
+        PrimitiveLongSet exclusiveOnMaster = getMasterLockSet( exclusiveLocksOnMaster, resourceType );
+        long[] ids = notHeldOnMaster( resourceId, exclusiveOnMaster, null );
+        if ( ids.length == 0 )
+        {
+            return true;
+        }
         makeSureTxHasBeenInitialized();
-        return receiveLockResponse(
-                master.acquireExclusiveLock( requestContextFactory.newRequestContext( (int) getLockSessionId() ), resourceType, resourceId ));
+        receiveLockResponse(
+                master.acquireExclusiveLock( requestContextFactory.newRequestContext( (int) getLockSessionId() ), resourceType, ids ));
+        addAll( exclusiveOnMaster, ids );
+        return true;
+    }
+
+    /**
+     * The ids, in the order given and without duplicates, that are in neither of the given sets of locks held on the
+     * master. The second set may be null.
+     */
+    private static long[] notHeldOnMaster( long[] resourceIds, PrimitiveLongSet heldOnMaster,
+                                           PrimitiveLongSet alsoHeldOnMaster )
+    {
+        PrimitiveLongSet seen = resourceIds.length > 1 ? Primitive.longSet( resourceIds.length ) : null;
+        long[] ids = new long[resourceIds.length];
+        int count = 0;
+        for ( long id : resourceIds )
+        {
+            if ( !heldOnMaster.contains( id ) && (alsoHeldOnMaster == null || !alsoHeldOnMaster.contains( id ))
+                 && (seen == null || seen.add( id )) )
+            {
+                ids[count++] = id;
+            }
+        }
+        return count == ids.length ? ids : Arrays.copyOf( ids, count );
+    }
+
+    private static void addAll( PrimitiveLongSet set, long[] ids )
+    {
+        for ( long id : ids )
+        {
+            set.add( id );
+        }
+    }
+
+    private void clearLocksOnMaster()
+    {
+        sharedLocksOnMaster.clear();
+        exclusiveLocksOnMaster.clear();
     }
 
     private boolean receiveLockResponse( Response<LockResult> response )
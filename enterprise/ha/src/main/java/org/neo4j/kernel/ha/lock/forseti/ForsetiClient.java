@@ -19,13 +19,12 @@
  */
 package org.neo4j.kernel.ha.lock.forseti;
 
-import java.util.concurrent.ConcurrentMap;
-
 import org.neo4j.collection.primitive.Primitive;
 import org.neo4j.collection.pool.LinkedQueuePool;
 import org.neo4j.collection.primitive.PrimitiveIntIterator;
 import org.neo4j.collection.primitive.PrimitiveLongIntMap;
 import org.neo4j.collection.primitive.PrimitiveLongVisitor;
+import org.neo4j.collection.primitive.concurrent.ConcurrentLongObjectHashMap;
 import org.neo4j.kernel.DeadlockDetectedException;
 import org.neo4j.kernel.impl.locking.AcquireLockTimeoutException;
 import org.neo4j.kernel.impl.locking.Locks;
@@ -48,7 +47,7 @@ public class ForsetiClient implements Locks.Client
     private final int myId;
 
     /** resourceType -> lock map. These are the global lock maps, shared across all clients. */
-    private final ConcurrentMap[] lockMaps;
+    private final ConcurrentLongObjectHashMap[] lockMaps;
 
     /** resourceType -> wait strategy */
     private final WaitStrategy<AcquireLockTimeoutException>[] waitStrategies;
@@ -77,7 +76,7 @@ public class ForsetiClient implements Locks.Client
     private final ExclusiveLock myExclusiveLock = new ExclusiveLock(this);
 
     public ForsetiClient( int id,
-                          ConcurrentMap[] lockMaps,
+                          ConcurrentLongObjectHashMap[] lockMaps,
                           WaitStrategy[] waitStrategies,
                           LinkedQueuePool<ForsetiClient> clientPool )
     {
@@ -99,7 +98,7 @@ public class ForsetiClient implements Locks.Client
     public void acquireShared( Locks.ResourceType resourceType, long... resourceIds ) throws AcquireLockTimeoutException
     {
         // Grab the global lock map we will be using
-        ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
+        ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
 
         // And grab our local lock maps
         PrimitiveLongIntMap heldShareLocks = sharedLockCounts[resourceType.typeId()];
@@ -195,7 +194,7 @@ public class ForsetiClient implements Locks.Client
     {
         // For details on how this works, refer to the acquireShared method call, as the two are very similar
 
-        ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
+        ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
         PrimitiveLongIntMap heldLocks = exclusiveLockCounts[resourceType.typeId()];
 
         for ( long resourceId : resourceIds )
@@ -238,7 +237,7 @@ public class ForsetiClient implements Locks.Client
     @Override
     public boolean tryExclusiveLock( Locks.ResourceType resourceType, long... resourceIds )
     {
-        ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
+        ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap = lockMaps[resourceType.typeId()];
         PrimitiveLongIntMap heldLocks = exclusiveLockCounts[resourceType.typeId()];
 
         for ( long resourceId : resourceIds )
@@ -295,7 +294,7 @@ public class ForsetiClient implements Locks.Client
     @Override
     public boolean trySharedLock( Locks.ResourceType resourceType, long... resourceIds )
     {
-        ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap     = lockMaps[resourceType.typeId()];
+        ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap     = lockMaps[resourceType.typeId()];
         PrimitiveLongIntMap heldShareLocks = sharedLockCounts[resourceType.typeId()];
         PrimitiveLongIntMap heldExclusiveLocks = exclusiveLockCounts[resourceType.typeId()];
 
@@ -559,17 +558,17 @@ public class ForsetiClient implements Locks.Client
     }
 
     /** Release a lock from the global pool. */
-    private void releaseGlobalLock( ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap, long resourceId )
+    private void releaseGlobalLock( ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap, long resourceId )
     {
         ForsetiLockManager.Lock lock = lockMap.get( resourceId );
         if( lock instanceof ExclusiveLock )
         {
-            lockMap.remove( resourceId );
+            lockMap.remove( resourceId, lock );
         }
         else if( lock instanceof SharedLock && ((SharedLock)lock).release(this) )
         {
             // We were the last to hold this lock, it is now dead and we should remove it.
-            lockMap.remove( resourceId );
+            lockMap.remove( resourceId, lock );
         }
     }
 
@@ -592,7 +591,7 @@ public class ForsetiClient implements Locks.Client
     }
 
     /** Attempt to upgrade a share lock to an exclusive lock, grabbing the share lock if we don't hold it. */
-    private boolean tryUpgradeSharedToExclusive( Locks.ResourceType resourceType, ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap,
+    private boolean tryUpgradeSharedToExclusive( Locks.ResourceType resourceType, ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap,
                                                  long resourceId, SharedLock sharedLock ) throws AcquireLockTimeoutException
     {
         int tries = 0;
@@ -632,7 +631,7 @@ public class ForsetiClient implements Locks.Client
     /** Attempt to upgrade a share lock that we hold to an exclusive lock. */
     private boolean tryUpgradeToExclusiveWithShareLockHeld(
             Locks.ResourceType resourceType,
-            ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap,
+            ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap,
             long resourceId,
             SharedLock sharedLock,
             int tries ) throws AcquireLockTimeoutException
@@ -711,10 +710,10 @@ public class ForsetiClient implements Locks.Client
     private class ReleaseSharedLocksVisitor implements PrimitiveLongVisitor
     {
         private PrimitiveLongIntMap exclusiveLockCounts;
-        private ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap;
+        private ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap;
 
         private PrimitiveLongVisitor initialize( PrimitiveLongIntMap exclusiveLockCounts,
-                                                 ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap )
+                                                 ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap )
         {
             this.exclusiveLockCounts = exclusiveLockCounts;
             this.lockMap = lockMap;
@@ -738,9 +737,9 @@ public class ForsetiClient implements Locks.Client
      */
     private class ReleaseSharedDontCheckExclusiveVisitor implements PrimitiveLongVisitor
     {
-        private ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap;
+        private ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap;
 
-        private PrimitiveLongVisitor initialize( ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap )
+        private PrimitiveLongVisitor initialize( ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap )
         {
             this.lockMap = lockMap;
             return this;
@@ -756,10 +755,10 @@ public class ForsetiClient implements Locks.Client
     private class ReleaseExclusiveLocksVisitor implements PrimitiveLongVisitor
     {
         private PrimitiveLongIntMap sharedLockCounts;
-        private ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap;
+        private ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap;
 
         private PrimitiveLongVisitor initialize( PrimitiveLongIntMap sharedLockCounts,
-                                                 ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap )
+                                                 ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap )
         {
             this.sharedLockCounts = sharedLockCounts;
             this.lockMap = lockMap;
@@ -789,10 +788,10 @@ public class ForsetiClient implements Locks.Client
     private class ReleaseExclusiveLocksAndClearSharedVisitor implements PrimitiveLongVisitor
     {
         private PrimitiveLongIntMap sharedLockCounts;
-        private ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap;
+        private ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap;
 
         private PrimitiveLongVisitor initialize( PrimitiveLongIntMap sharedLockCounts,
-                                                 ConcurrentMap<Long, ForsetiLockManager.Lock> lockMap )
+                                                 ConcurrentLongObjectHashMap<ForsetiLockManager.Lock> lockMap )
         {
             this.sharedLockCounts = sharedLockCounts;
             this.lockMap = lockMap;
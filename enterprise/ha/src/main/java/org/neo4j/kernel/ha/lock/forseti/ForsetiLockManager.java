@@ -19,15 +19,14 @@
  */
 package org.neo4j.kernel.ha.lock.forseti;
 
-import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.neo4j.collection.pool.LinkedQueuePool;
 import org.neo4j.collection.pool.Pool;
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+import org.neo4j.collection.primitive.concurrent.ConcurrentLongObjectHashMap;
 import org.neo4j.kernel.impl.locking.Locks;
 import org.neo4j.kernel.impl.util.collection.SimpleBitSet;
 import org.neo4j.kernel.impl.util.concurrent.WaitStrategy;
@@ -84,14 +83,16 @@ import org.neo4j.kernel.lifecycle.LifecycleAdapter;
  * As it performs this union, B will find itself in A's waiting list, and when it does, it has detected a deadlock.
  *
  *
+ * <h2>Lock maps</h2>
+ *
+ * The lock maps are {@link ConcurrentLongObjectHashMap open addressing maps} of primitive keys, so that looking up
+ * and inserting locks neither boxes resource ids nor allocates map entries.
+ *
  * <h2>Future work</h2>
  *
  * We have at least one type of lock (SchemaLock) that can be held concurrently by several hundred transactions. It may
  * be worth investigating fat locks, or in any case optimize the current way SharedLock adds and removes clients from
  * its holder list.
- *
- * The maps used by forseti should be replaced by faster concurrent maps, perhaps a striped hopscotch map or something
- * similar.
  */
 public class ForsetiLockManager extends LifecycleAdapter implements Locks
 {
@@ -107,7 +108,7 @@ public class ForsetiLockManager extends LifecycleAdapter implements Locks
     }
 
     /** Pointers to lock maps, one array per resource type. */
-    private final ConcurrentMap[] lockMaps;
+    private final ConcurrentLongObjectHashMap[] lockMaps;
 
     /** Wait strategies per resource type */
     private final WaitStrategy[] waitStrategies;
@@ -120,13 +121,13 @@ public class ForsetiLockManager extends LifecycleAdapter implements Locks
 
     public ForsetiLockManager( ResourceType... resourceTypes )
     {
-        this.lockMaps = new ConcurrentMap[findMaxResourceId( resourceTypes )];
+        this.lockMaps = new ConcurrentLongObjectHashMap[findMaxResourceId( resourceTypes )];
         this.waitStrategies = new WaitStrategy[findMaxResourceId( resourceTypes )];
         this.resourceTypes = new ResourceType[findMaxResourceId( resourceTypes )];
 
         for ( ResourceType type : resourceTypes )
         {
-            this.lockMaps[type.typeId()] = new ConcurrentHashMap(16, 0.6f, 512);
+            this.lockMaps[type.typeId()] = new ConcurrentLongObjectHashMap<Lock>();
             this.waitStrategies[type.typeId()] = type.waitStrategy();
             this.resourceTypes[type.typeId()] = type;
         }
@@ -148,19 +149,22 @@ public class ForsetiLockManager extends LifecycleAdapter implements Locks
     }
 
     @Override
-    public void accept( Visitor out )
+    public void accept( final Visitor out )
     {
         for ( int i = 0; i < lockMaps.length; i++ )
         {
             if(lockMaps[i] != null)
             {
-                ResourceType type = resourceTypes[i];
-                for ( Object raw : lockMaps[i].entrySet() )
+                final ResourceType type = resourceTypes[i];
+                ConcurrentLongObjectHashMap<Lock> lockMap = lockMaps[i];
+                lockMap.visitEntries( new PrimitiveLongObjectVisitor<Lock>()
                 {
-                    Map.Entry<Long, Lock> entry = (Map.Entry<Long, Lock>)raw;
-                    Lock lock = entry.getValue();
-                    out.visit( type, entry.getKey(), lock.describeWaitList(), 0 );
-                }
+                    @Override
+                    public void visited( long resourceId, Lock lock )
+                    {
+                        out.visit( type, resourceId, lock.describeWaitList(), 0 );
+                    }
+                } );
             }
         }
     }
@@ -183,10 +187,10 @@ public class ForsetiLockManager extends LifecycleAdapter implements Locks
         /** Re-use ids, forseti uses these in arrays, so we want to keep them low and not loose them. */
         // TODO we could use a synchronised SimpleBitSet instead, since we know that we only care about reusing a very limited set of integers.
         private final Queue<Integer> unusedIds = new ConcurrentLinkedQueue<>();
-        private final ConcurrentMap[] lockMaps;
+        private final ConcurrentLongObjectHashMap[] lockMaps;
         private final WaitStrategy[] waitStrategies;
 
-        public ForsetiClientFlyweightPool( ConcurrentMap[] lockMaps, WaitStrategy[] waitStrategies )
+        public ForsetiClientFlyweightPool( ConcurrentLongObjectHashMap[] lockMaps, WaitStrategy[] waitStrategies )
         {
             super( 128, null);
             this.lockMaps = lockMaps;
@@ -74,6 +74,7 @@ import static java.util.Arrays.asList;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -145,8 +146,8 @@ public class MasterClientTest
         // Then
         verify( txAppender, times( TX_LOG_COUNT ) ).append( any( TransactionRepresentation.class ), anyLong() );
         verify( txIdStore, times( TX_LOG_COUNT ) ).transactionCommitted( anyLong() );
-        verify( txApplier, times( TX_LOG_COUNT ) )
-                .apply( any( TransactionRepresentation.class ), any( LockGroup.class ), anyLong(),
+        verify( txApplier, times( 1 ) )
+                .apply( anyListOf( CommittedTransactionRepresentation.class ), any( LockGroup.class ),
                         any( TransactionApplicationMode.class ) );
         verify( txIdStore, times( TX_LOG_COUNT ) ).transactionClosed( anyLong() );
     }
@@ -20,9 +20,12 @@
 package org.neo4j.kernel.ha.id;
 
 import java.io.File;
+import java.util.concurrent.Executor;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import org.neo4j.com.RequestContext;
 import org.neo4j.com.Response;
@@ -153,6 +156,48 @@ public class HaIdGeneratorFactoryTest
         assertEquals ( highIdFromUpdatedRecord, gen.getHighId() );
     }
     
+    @Test
+    public void slaveShouldGrowLeasesAndFetchThemBeforeRunningOut() throws Exception
+    {
+        // GIVEN a master that hands out ranges of ten ids, and a slave that uses them quickly
+        when( master.allocateIds( any( RequestContext.class ), any( IdType.class ) ) )
+                .thenAnswer( new ConsecutiveRanges( 10 ) );
+        fac = new HaIdGeneratorFactory( masterDelegate, new DevNullLoggingService(),
+                mock( RequestContextFactory.class ), new DirectExecutor() );
+
+        // WHEN
+        IdGenerator gen = switchToSlave();
+        for ( long i = 0; i < 20; i++ )
+        {
+            assertEquals( i, gen.nextId() );
+        }
+
+        // THEN the first lease is a single allocation, fetched when the first id is needed. The next one, fetched
+        // when half of that is used, is two allocations, and the one after that is four.
+        verify( master, times( 1 + 2 + 4 ) ).allocateIds( any( RequestContext.class ), eq( IdType.NODE ) );
+        for ( long i = 20; i < 70; i++ )
+        {
+            assertEquals( i, gen.nextId() );
+        }
+    }
+
+    @Test
+    public void slaveShouldReturnUnusedLeasedIdsWhenSwitchingToMaster() throws Exception
+    {
+        // GIVEN
+        when( master.allocateIds( any( RequestContext.class ), any( IdType.class ) ) )
+                .thenAnswer( new ConsecutiveRanges( 10 ) );
+        IdGenerator gen = switchToSlave();
+        gen.nextId();
+        gen.nextId();
+
+        // WHEN
+        fac.switchToMaster();
+
+        // THEN the eight ids that were never used are free ids on the new master
+        assertEquals( 8, gen.getDefragCount() );
+    }
+
     private Master master;
     private DelegateInvocationHandler<Master> masterDelegate;
     private EphemeralFileSystemAbstraction fs;
@@ -183,4 +228,32 @@ public class HaIdGeneratorFactoryTest
         masterDelegate.setDelegate( master );
         return gen;
     }
+
+    private class ConsecutiveRanges implements Answer<Response<IdAllocation>>
+    {
+        private final int rangeLength;
+        private long nextStart;
+
+        ConsecutiveRanges( int rangeLength )
+        {
+            this.rangeLength = rangeLength;
+        }
+
+        @Override
+        public Response<IdAllocation> answer( InvocationOnMock invocation ) throws Throwable
+        {
+            long start = nextStart;
+            nextStart += rangeLength;
+            return response( new IdAllocation( new IdRange( new long[0], start, rangeLength ), nextStart, 0 ) );
+        }
+    }
+
+    private static class DirectExecutor implements Executor
+    {
+        @Override
+        public void execute( Runnable command )
+        {
+            command.run();
+        }
+    }
 }
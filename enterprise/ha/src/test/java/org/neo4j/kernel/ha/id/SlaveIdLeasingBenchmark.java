@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.ha.id;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.com.RequestContext;
+import org.neo4j.com.ResourceReleaser;
+import org.neo4j.com.TransactionStream;
+import org.neo4j.com.TransactionStreamResponse;
+import org.neo4j.graphdb.mockfs.EphemeralFileSystemAbstraction;
+import org.neo4j.kernel.IdType;
+import org.neo4j.kernel.ha.DelegateInvocationHandler;
+import org.neo4j.kernel.ha.com.RequestContextFactory;
+import org.neo4j.kernel.ha.com.master.Master;
+import org.neo4j.kernel.impl.store.id.IdGenerator;
+import org.neo4j.kernel.impl.store.id.IdRange;
+import org.neo4j.kernel.logging.DevNullLoggingService;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Measures how many node ids a number of slaves get to use per second, with and without adaptive, prefetched id
+ * leases. The slaves share a master that hands out ranges of a thousand ids, like the real one, after a simulated
+ * network round trip. Every slave has a number of writer threads that take a hundred ids per transaction, and spend
+ * some time committing each transaction. Configured with system properties: slaves, writersPerSlave, roundTripMillis,
+ * commitMillis and durationMillis.
+ */
+public class SlaveIdLeasingBenchmark
+{
+    public static void main( String... args ) throws Exception
+    {
+        int slaves = Integer.getInteger( "slaves", 3 );
+        int writersPerSlave = Integer.getInteger( "writersPerSlave", 2 );
+        long roundTripMillis = Long.getLong( "roundTripMillis", 1 );
+        long commitMillis = Long.getLong( "commitMillis", 1 );
+        long durationMillis = Long.getLong( "durationMillis", 5_000 );
+
+        ExecutorService prefetcher = Executors.newCachedThreadPool();
+        try
+        {
+            long fixed = run( null, slaves, writersPerSlave, roundTripMillis, commitMillis, durationMillis );
+            System.out.printf( "fixed leases:    %,14d ids/s%n", fixed * 1000 / durationMillis );
+            long adaptive = run( prefetcher, slaves, writersPerSlave, roundTripMillis, commitMillis,
+                    durationMillis );
+            System.out.printf( "adaptive leases: %,14d ids/s%n", adaptive * 1000 / durationMillis );
+        }
+        finally
+        {
+            prefetcher.shutdown();
+        }
+    }
+
+    private static long run( Executor prefetcher, int slaves, int writersPerSlave, long roundTripMillis,
+                             final long commitMillis, long durationMillis ) throws InterruptedException
+    {
+        DelegateInvocationHandler<Master> masterDelegate = new DelegateInvocationHandler<>( Master.class );
+        RequestContextFactory requestContextFactory = new RequestContextFactory( 0, null )
+        {
+            @Override
+            public RequestContext newRequestContext()
+            {
+                return null;
+            }
+        };
+
+        final AtomicLong usedIds = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final long[] deadline = new long[1];
+        Thread[] writers = new Thread[slaves * writersPerSlave];
+        for ( int slave = 0; slave < slaves; slave++ )
+        {
+            HaIdGeneratorFactory factory = new HaIdGeneratorFactory( masterDelegate, new DevNullLoggingService(),
+                    requestContextFactory, prefetcher );
+            factory.switchToSlave();
+            final IdGenerator ids = factory.open( new EphemeralFileSystemAbstraction(), new File( "nodes.id" ), 10,
+                    IdType.NODE, 0 );
+            for ( int i = 0; i < writersPerSlave; i++ )
+            {
+                Thread writer = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        long count = 0;
+                        try
+                        {
+                            start.await();
+                            long stopAt = deadline[0];
+                            do
+                            {
+                                for ( int j = 0; j < 100; j++ )
+                                {
+                                    ids.nextId();
+                                }
+                                count += 100;
+                                MILLISECONDS.sleep( commitMillis );
+                            }
+                            while ( nanoTime() < stopAt );
+                        }
+                        catch ( InterruptedException e )
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        usedIds.addAndGet( count );
+                    }
+                };
+                writers[slave * writersPerSlave + i] = writer;
+                writer.start();
+            }
+        }
+
+        // Like a switch to slave, this hardens the master that the id generators have cemented.
+        masterDelegate.setDelegate( simulatedMaster( roundTripMillis ) );
+
+        long startTime = nanoTime();
+        deadline[0] = startTime + MILLISECONDS.toNanos( durationMillis );
+        start.countDown();
+        for ( Thread writer : writers )
+        {
+            writer.join();
+        }
+        long elapsedMillis = NANOSECONDS.toMillis( nanoTime() - startTime );
+        return usedIds.get() * durationMillis / Math.max( elapsedMillis, 1 );
+    }
+
+    private static Master simulatedMaster( final long roundTripMillis )
+    {
+        final AtomicLong highId = new AtomicLong();
+        return (Master) Proxy.newProxyInstance( Master.class.getClassLoader(), new Class<?>[]{Master.class},
+                new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable
+                    {
+                        if ( method.getName().equals( "toString" ) )
+                        {
+                            return "SimulatedMaster";
+                        }
+                        if ( !method.getName().equals( "allocateIds" ) )
+                        {
+                            throw new UnsupportedOperationException( method.getName() );
+                        }
+                        MILLISECONDS.sleep( roundTripMillis );
+                        long start = highId.getAndAdd( 1000 );
+                        IdAllocation allocation = new IdAllocation( new IdRange( new long[0], start, 1000 ),
+                                start + 1000, 0 );
+                        return new TransactionStreamResponse<>( allocation, null, TransactionStream.EMPTY,
+                                ResourceReleaser.NO_OP );
+                    }
+                } );
+    }
+}
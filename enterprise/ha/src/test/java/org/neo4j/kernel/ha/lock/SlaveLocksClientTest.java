@@ -38,6 +38,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -137,6 +138,78 @@ public class SlaveLocksClientTest
         verify( master ).acquireExclusiveLock( null, NODE, 3 );
     }
 
+    @Test
+    public void shouldNotTakeSharedLockOnMasterIfMasterAlreadyHoldsExclusiveLock()
+    {
+        // Given
+        client.acquireExclusive( NODE, 1 );
+
+        // When
+        client.acquireShared( NODE, 1 );
+
+        // Then
+        verify( master ).acquireExclusiveLock( null, NODE, 1 );
+        verify( master, never() ).acquireSharedLock( any( RequestContext.class ), any( Locks.ResourceType.class ),
+                Matchers.<long[]>anyVararg() );
+    }
+
+    @Test
+    public void shouldNotTakeLockOnMasterAgainAfterReleasingItLocally()
+    {
+        // Given the master keeps its locks until the lock session ends
+        client.acquireExclusive( NODE, 1 );
+        client.releaseExclusive( NODE, 1 );
+
+        // When
+        client.acquireExclusive( NODE, 1 );
+
+        // Then
+        verify( master, times( 1 ) ).acquireExclusiveLock( null, NODE, 1 );
+        verify( local, times( 2 ) ).tryExclusiveLock( NODE, 1 );
+    }
+
+    @Test
+    public void shouldTakeLockOnMasterAgainInNewLockSession()
+    {
+        // Given
+        client.acquireExclusive( NODE, 1 );
+        client.releaseAll();
+
+        // When
+        client.acquireExclusive( NODE, 1 );
+
+        // Then
+        verify( master, times( 2 ) ).acquireExclusiveLock( null, NODE, 1 );
+    }
+
+    @Test
+    public void shouldUpgradeAndTakeNewLocksOnMasterInSingleRequest()
+    {
+        // Given
+        when( local.tryExclusiveLock( NODE, 1, 2 ) ).thenReturn( true );
+        client.acquireShared( NODE, 1 );
+
+        // When
+        client.acquireExclusive( NODE, 1, 2 );
+
+        // Then
+        verify( master ).acquireSharedLock( null, NODE, 1 );
+        verify( master ).acquireExclusiveLock( null, NODE, 1, 2 );
+    }
+
+    @Test
+    public void shouldSendEachIdToMasterOnlyOnce()
+    {
+        // Given
+        when( local.tryExclusiveLock( NODE, 1, 2, 1 ) ).thenReturn( true );
+
+        // When
+        client.acquireExclusive( NODE, 1, 2, 1 );
+
+        // Then
+        verify( master ).acquireExclusiveLock( null, NODE, 1, 2 );
+    }
+
     @Test
     public void shouldAllowAcquiringReleasingAndReacquiringExclusive() throws Exception
     {
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.ha.lock.forseti;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.kernel.impl.locking.Locks;
+import org.neo4j.kernel.impl.locking.ResourceTypes;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Measures the raw acquire/release throughput of the {@link ForsetiLockManager}, at 1 up to 64 threads. Each thread
+ * keeps one client for the whole run and takes and releases a lock on a random node, shared or exclusive depending
+ * on the configured write ratio. Every thread count gets a number of warmup iterations, whose results are thrown
+ * away, before the measured ones. Configured with system properties: minThreads, maxThreads, nodeCount,
+ * writePercent, warmupIterations, iterations and iterationMillis.
+ */
+public class ForsetiAcquireReleaseBenchmark
+{
+    public static void main( String... args ) throws Exception
+    {
+        int minThreads = Integer.getInteger( "minThreads", 1 );
+        int maxThreads = Integer.getInteger( "maxThreads", 64 );
+        int nodeCount = Integer.getInteger( "nodeCount", 100_000 );
+        int writePercent = Integer.getInteger( "writePercent", 10 );
+        int warmupIterations = Integer.getInteger( "warmupIterations", 3 );
+        int iterations = Integer.getInteger( "iterations", 5 );
+        long iterationMillis = Long.getLong( "iterationMillis", 1_000 );
+
+        for ( int threads = minThreads; threads <= maxThreads; threads *= 2 )
+        {
+            Locks locks = new ForsetiLockManager( ResourceTypes.values() );
+            for ( int i = 0; i < warmupIterations; i++ )
+            {
+                run( locks, threads, nodeCount, writePercent, iterationMillis );
+            }
+            long total = 0;
+            long best = 0;
+            for ( int i = 0; i < iterations; i++ )
+            {
+                long ops = run( locks, threads, nodeCount, writePercent, iterationMillis );
+                total += ops;
+                best = Math.max( best, ops );
+            }
+            System.out.printf( "%3d threads: %,14d ops/s avg %,14d ops/s best%n", threads,
+                    total * 1000 / (iterations * iterationMillis), best * 1000 / iterationMillis );
+        }
+    }
+
+    private static long run( final Locks locks, int threadCount, final int nodeCount, final int writePercent,
+                             long iterationMillis ) throws InterruptedException
+    {
+        final AtomicLong completedOps = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final long[] deadline = new long[1];
+        Thread[] threads = new Thread[threadCount];
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long ops = 0;
+                    try ( Locks.Client client = locks.newClient() )
+                    {
+                        start.await();
+                        long stopAt = deadline[0];
+                        do
+                        {
+                            // Check the clock in batches, so that it doesn't show up in the measurement
+                            for ( int j = 0; j < 100; j++ )
+                            {
+                                long node = random.nextInt( nodeCount );
+                                if ( random.nextInt( 100 ) < writePercent )
+                                {
+                                    client.acquireExclusive( ResourceTypes.NODE, node );
+                                    client.releaseExclusive( ResourceTypes.NODE, node );
+                                }
+                                else
+                                {
+                                    client.acquireShared( ResourceTypes.NODE, node );
+                                    client.releaseShared( ResourceTypes.NODE, node );
+                                }
+                            }
+                            ops += 100;
+                        }
+                        while ( nanoTime() < stopAt );
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        return;
+                    }
+                    completedOps.addAndGet( ops );
+                }
+            };
+            threads[i].start();
+        }
+
+        long startTime = nanoTime();
+        deadline[0] = startTime + MILLISECONDS.toNanos( iterationMillis );
+        start.countDown();
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        long elapsedMillis = NANOSECONDS.toMillis( nanoTime() - startTime );
+        return completedOps.get() * iterationMillis / Math.max( elapsedMillis, 1 );
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.stresstests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.PageSwapperFactory;
+import org.neo4j.io.pagecache.impl.ByteBufferPage;
+import org.neo4j.io.pagecache.impl.MappedPageSwapperFactory;
+import org.neo4j.io.pagecache.impl.SingleFilePageSwapperFactory;
+
+import static java.lang.Integer.parseInt;
+import static java.lang.System.getProperty;
+import static java.lang.System.getenv;
+import static java.nio.file.Paths.get;
+
+/**
+ * Compares the swap-in throughput of the channel based and the memory mapped page swappers, for sequential and
+ * random page reads from a file that fits in the OS page cache.
+ *
+ * Notice the class name: this is _not_ going to be run as part of the main build.
+ */
+public class PageSwapperBenchmarking
+{
+    private static final int filePageSize = 8192;
+
+    @Test
+    public void compareSwapInThroughput() throws Exception
+    {
+        int numberOfPages = parseInt( fromEnvironmentOrDefault( "PAGE_SWAPPER_BENCHMARK_NUMBER_OF_PAGES", "100000" ) );
+        int iterations = parseInt( fromEnvironmentOrDefault( "PAGE_SWAPPER_BENCHMARK_ITERATIONS", "5" ) );
+        String workingDirectory = fromEnvironmentOrDefault(
+                "PAGE_SWAPPER_BENCHMARK_WORKING_DIRECTORY", getProperty( "java.io.tmpdir" ) );
+
+        DefaultFileSystemAbstraction fs = new DefaultFileSystemAbstraction();
+        File file = Files.createTempFile( get( workingDirectory ), "pageswapperbenchmark", ".bin" ).toFile();
+        file.deleteOnExit();
+        writeFile( fs, file, numberOfPages );
+
+        PageSwapperFactory channelFactory = new SingleFilePageSwapperFactory( fs );
+        PageSwapperFactory mappedFactory = new MappedPageSwapperFactory( fs );
+
+        for ( int i = 0; i < iterations; i++ )
+        {
+            report( "channel, sequential", swapIn( channelFactory, file, numberOfPages, false ), numberOfPages );
+            report( "mapped,  sequential", swapIn( mappedFactory, file, numberOfPages, false ), numberOfPages );
+            report( "channel, random    ", swapIn( channelFactory, file, numberOfPages, true ), numberOfPages );
+            report( "mapped,  random    ", swapIn( mappedFactory, file, numberOfPages, true ), numberOfPages );
+        }
+        file.delete();
+    }
+
+    private static void writeFile( DefaultFileSystemAbstraction fs, File file, int numberOfPages ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( filePageSize );
+        try ( StoreChannel channel = fs.open( file, "rw" ) )
+        {
+            for ( int i = 0; i < numberOfPages; i++ )
+            {
+                buffer.clear();
+                buffer.putInt( 0, i );
+                channel.writeAll( buffer );
+            }
+        }
+    }
+
+    private static long swapIn( PageSwapperFactory factory, File file, int numberOfPages, boolean random )
+            throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect( filePageSize );
+        ByteBufferPage page = new ByteBufferPage( buffer );
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        PageSwapper swapper = factory.createPageSwapper( file, filePageSize, null );
+        try
+        {
+            long start = System.nanoTime();
+            long checksum = 0;
+            for ( int i = 0; i < numberOfPages; i++ )
+            {
+                long filePageId = random ? rng.nextInt( numberOfPages ) : i;
+                buffer.clear();
+                swapper.read( filePageId, page );
+                checksum += buffer.getInt( 0 );
+            }
+            long elapsed = System.nanoTime() - start;
+            if ( checksum < 0 )
+            {
+                // Keep the JIT from eliminating the reads.
+                throw new AssertionError( "Negative checksum: " + checksum );
+            }
+            return elapsed;
+        }
+        finally
+        {
+            swapper.close();
+        }
+    }
+
+    private static void report( String name, long elapsedNanos, int numberOfPages )
+    {
+        double seconds = elapsedNanos / 1e9;
+        double megabytes = ((double) numberOfPages) * filePageSize / (1024 * 1024);
+        System.out.printf( " - %s: %,.0f pages/s, %,.1f MiB/s%n",
+                name, numberOfPages / seconds, megabytes / seconds );
+    }
+
+    private static String fromEnvironmentOrDefault( String environmentVariableName, String defaultValue )
+    {
+        String environmentVariableValue = getenv( environmentVariableName );
+
+        if ( environmentVariableValue == null )
+        {
+            return defaultValue;
+        }
+
+        return environmentVariableValue;
+    }
+}